@@ -0,0 +1,76 @@
+package FFT;
+
+// *****************************************************************************
+// Ardoise : zone de travail propre à chaque thread, pour les calculs par
+// bloc qui ne doivent rien allouer en régime établi (trame fenêtrée,
+// spectre intermédiaire, FFT réelle ou par lots...). Les tableaux sont
+// créés au premier usage puis réutilisés, et ne sont réalloués que si une
+// taille plus grande est demandée.
+// Les tampons sont désignés par un numéro choisi par l'appelant : deux
+// calculs imbriqués sur un même thread doivent employer des numéros
+// différents, et le contenu d'un tampon n'est plus garanti une fois rendu
+// la main à un code qui pourrait s'en servir.
+
+public final class Ardoise
+{
+	// Nombre de tampons disponibles par thread
+	public static final int NbTampons = 8;
+	// Nombre de FFT réelles gardées par thread (tailles différentes)
+	private static final int NbFFT = 4;
+
+	private static final ThreadLocal<Ardoise> ardoises = ThreadLocal.withInitial(Ardoise::new);
+
+	private final float[][] tampons = new float[NbTampons][];
+	private byte[] octets;
+	private final FFTReelle[] ffts = new FFTReelle[NbFFT];
+	private FFTLot fftLot;
+	// Prochain emplacement de FFT remplacé lorsque toutes sont prises
+	private int remplacee = 0;
+
+	private Ardoise() {}
+
+	// Ardoise du thread appelant
+	public static Ardoise courante()
+	{
+		return ardoises.get();
+	}
+
+	// Tampon numéro "numero" d'au moins "taille" valeurs (contenu quelconque)
+	public float[] tampon(final int numero, final int taille)
+	{
+		float[] tampon = tampons[numero];
+		if (tampon == null || tampon.length < taille)
+			tampons[numero] = tampon = new float[taille];
+		return tampon;
+	}
+
+	// Tampon d'octets d'au moins "taille" valeurs (entrées quantifiées d'un
+	// modèle int8, contenu quelconque)
+	public byte[] octets(final int taille)
+	{
+		if (octets == null || octets.length < taille)
+			octets = new byte[taille];
+		return octets;
+	}
+
+	// FFT réelle de la taille demandée, propre à ce thread
+	public FFTReelle fftReelle(final int taille)
+	{
+		for (final FFTReelle fft : ffts)
+			if (fft != null && fft.taille() == taille)
+				return fft;
+		final FFTReelle fft = new FFTReelle(taille);
+		ffts[remplacee] = fft;
+		remplacee = (remplacee+1)%NbFFT;
+		return fft;
+	}
+
+	// FFT par lots de la taille demandée, propre à ce thread (une seule
+	// gardée : ses tampons sont grands)
+	public FFTLot fftLot(final int taille)
+	{
+		if (fftLot == null || fftLot.taille() != taille)
+			fftLot = FFTLot.cree(taille);
+		return fftLot;
+	}
+}
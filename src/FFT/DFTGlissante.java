@@ -0,0 +1,174 @@
+package FFT;
+
+// *****************************************************************************
+// DFT glissante : suit quelques raies choisies d'une DFT de taille
+// tailleFenetre calculée sur les derniers échantillons reçus, mise à jour en
+// O(1) par raie et par échantillon grâce à la récurrence
+//     X_k(n) = exp(2iπk/N).(X_k(n-1) - x(n-N) + x(n))
+// Une décision (lecture des modules) est proposée tous les "cadence"
+// échantillons, par exemple pour alimenter un neurone à nbRaies entrées.
+// Les erreurs d'arrondi de la récurrence s'accumulant, les raies sont
+// recalculées exactement depuis le tampon circulaire à intervalle régulier,
+// ce qui permet de fonctionner pendant des heures sans dérive.
+
+public class DFTGlissante
+{
+	// Reçoit les modules des raies suivies à chaque décision
+	@FunctionalInterface
+	public interface EcouteurRaies
+	{
+		public void decision(long position, float[] modules);
+	}
+
+	private final int tailleFenetre;
+	private final int[] raies;
+	private final int cadence;
+	// Intervalle (en échantillons) entre deux recalculs exacts
+	private int periodeResynchro;
+
+	// Facteur de rotation exp(2iπk/N) de chaque raie suivie
+	private final double[] rotationReel;
+	private final double[] rotationImag;
+	// Table exp(-2iπm/N), m < N, pour le recalcul exact
+	private final double[] cosinus;
+	private final double[] sinus;
+	// Valeurs courantes des raies suivies
+	private final double[] raieReel;
+	private final double[] raieImag;
+	private final float[] modules;
+
+	// Tampon circulaire des N derniers échantillons, le plus ancien en "tete"
+	private final float[] anneau;
+	private int tete = 0;
+	// Nombre total d'échantillons reçus
+	private long position = 0;
+
+	public DFTGlissante(final int tailleFenetre, final int[] raies, final int cadence)
+	{
+		if (cadence < 1)
+			throw new IllegalArgumentException("Cadence de décision invalide : "+cadence);
+		for (final int k : raies)
+			if (k < 0 || k > tailleFenetre/2)
+				throw new IllegalArgumentException("Raie hors du spectre : "+k);
+		this.tailleFenetre = tailleFenetre;
+		this.raies = raies.clone();
+		this.cadence = cadence;
+		periodeResynchro = 8*tailleFenetre;
+
+		rotationReel = new double[raies.length];
+		rotationImag = new double[raies.length];
+		for (int j = 0; j < raies.length; ++j)
+		{
+			rotationReel[j] = Math.cos(2.*Math.PI*raies[j]/tailleFenetre);
+			rotationImag[j] = Math.sin(2.*Math.PI*raies[j]/tailleFenetre);
+		}
+		cosinus = new double[tailleFenetre];
+		sinus = new double[tailleFenetre];
+		for (int m = 0; m < tailleFenetre; ++m)
+		{
+			cosinus[m] = Math.cos(-2.*Math.PI*m/tailleFenetre);
+			sinus[m] = Math.sin(-2.*Math.PI*m/tailleFenetre);
+		}
+		raieReel = new double[raies.length];
+		raieImag = new double[raies.length];
+		modules = new float[raies.length];
+		anneau = new float[tailleFenetre];
+	}
+
+	// Modifie l'intervalle entre deux recalculs exacts des raies
+	public void fixePeriodeResynchro(final int periode)
+	{
+		if (periode < 1)
+			throw new IllegalArgumentException("Période de resynchronisation invalide : "+periode);
+		periodeResynchro = periode;
+	}
+
+	public int tailleFenetre() {return tailleFenetre;}
+	public int nbRaies() {return raies.length;}
+	public long position() {return position;}
+
+	// Ajoute un échantillon ; renvoie true si une décision est due
+	// (fenêtre remplie et "cadence" échantillons depuis la précédente)
+	public boolean ajoute(final float echantillon)
+	{
+		final float ancien = anneau[tete];
+		anneau[tete] = echantillon;
+		tete = tete+1 == tailleFenetre ? 0 : tete+1;
+		++position;
+
+		if (position%periodeResynchro == 0)
+			resynchronise();
+		else
+		{
+			final double difference = echantillon-ancien;
+			for (int j = 0; j < raies.length; ++j)
+			{
+				final double r = raieReel[j]+difference;
+				final double m = raieImag[j];
+				raieReel[j] = r*rotationReel[j]-m*rotationImag[j];
+				raieImag[j] = r*rotationImag[j]+m*rotationReel[j];
+			}
+		}
+		return position >= tailleFenetre && (position-tailleFenetre)%cadence == 0;
+	}
+
+	// Ajoute n échantillons et transmet les modules à l'écouteur à chaque décision
+	public void ajoute(final float[] echantillons, final int debut, final int n, final EcouteurRaies ecouteur)
+	{
+		for (int i = debut; i < debut+n; ++i)
+			if (ajoute(echantillons[i]))
+				ecouteur.decision(position, modules());
+	}
+
+	// Modules courants des raies suivies (tableau réutilisé)
+	public float[] modules()
+	{
+		for (int j = 0; j < raies.length; ++j)
+			modules[j] = (float)Math.hypot(raieReel[j], raieImag[j]);
+		return modules;
+	}
+
+	// Recalcul exact des raies par DFT directe du tampon, en ordre chronologique
+	private void resynchronise()
+	{
+		for (int j = 0; j < raies.length; ++j)
+		{
+			final int k = raies[j];
+			double r = 0, m = 0;
+			int angle = 0;
+			for (int i = 0; i < tailleFenetre; ++i)
+			{
+				final float x = anneau[(tete+i)%tailleFenetre];
+				r += x*cosinus[angle];
+				m += x*sinus[angle];
+				angle += k;
+				if (angle >= tailleFenetre)
+					angle -= tailleFenetre;
+			}
+			raieReel[j] = r;
+			raieImag[j] = m;
+		}
+	}
+
+	public static void main(String[] args)
+	{
+		if (args.length >= 2)
+		{
+			// Suivi, sur un fichier WAV, des raies données en paramètres
+			final Son.Son son = new Son.Son(args[0]);
+			final int[] raies = new int[args.length-1];
+			for (int j = 0; j < raies.length; ++j)
+				raies[j] = Integer.parseInt(args[j+1]);
+			final DFTGlissante dft = new DFTGlissante(1024, raies, 128);
+			dft.ajoute(son.donnees(), 0, son.taille(), (position, modules) ->
+			{
+				System.out.print(position+" :");
+				for (final float module : modules)
+					System.out.print(" "+module);
+				System.out.println();
+			});
+		}
+		else
+			System.out.println("Veuillez donner un fichier WAV puis les numéros de raies à suivre SVP.");
+	}
+}
@@ -5,43 +5,22 @@ public class FFTCplx
 	public final static int TailleFFTtest = 16;
 	public final static double NbPeriodes = 3;
 
-// 	private int taille;
-// 
-// // Indiquer la taille permettra des optimisations par la suite
-// 	public FFTCplx(int taille)
-// 	{
-// 		this.taille = taille;
-// 	}
-
-	// Sous-signal obligatoirement découpé par pas de deux
-	private static Complexe[] demiSignal(Complexe[] signal, int depart)
-	{
-		Complexe[] sousSignal = new Complexe[signal.length/2];
-		for (int i = 0; i < sousSignal.length; ++i)
-			sousSignal[i] = signal[depart+2*i];
-		return sousSignal;
-	}
-	
+	// Conservée pour compatibilité : la transformée est déléguée au plan
+	// (tables précalculées, calcul en place sur tableaux primitifs)
 	public static Complexe[] appliqueSur(Complexe[] signal)
 	{
-		Complexe[] trSignal = new Complexe[signal.length];
-		if (signal.length == 1)	// Cas trivial de la FFT d'une valeur unique
-			trSignal[0] = new ComplexeCartesien(signal[0].reel(), signal[0].imag());
-		else
+		final FFTPlan plan = FFTPlan.pour(signal.length);
+		final double[] reel = new double[signal.length];
+		final double[] imag = new double[signal.length];
+		for (int i = 0; i < signal.length; ++i)
 		{
-			// Découpage des deux sous-groupes de données sur lesquels on applique la FFT
-			// (voir définition de cours)
-			final Complexe[] P0 = appliqueSur(demiSignal(signal, 0));
-			final Complexe[] P1 = appliqueSur(demiSignal(signal, 1));
-			// On applique le regroupement "papillon" pour créer le résultat final
-			for (int k = 0; k < signal.length/2; ++k)
-			{
-				final ComplexePolaire expo = new ComplexePolaire(1., -2.*Math.PI*k/signal.length);
-				final Complexe temp = P0[k];
-				trSignal[k] = temp.plus(expo.fois(P1[k]));
-				trSignal[k+signal.length/2] = temp.moins(expo.fois(P1[k]));
-			}
+			reel[i] = signal[i].reel();
+			imag[i] = signal[i].imag();
 		}
+		plan.transforme(reel, imag);
+		Complexe[] trSignal = new Complexe[signal.length];
+		for (int k = 0; k < signal.length; ++k)
+			trSignal[k] = new ComplexeCartesien(reel[k], imag[k]);
 		return trSignal;
 	}
 
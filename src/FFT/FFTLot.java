@@ -0,0 +1,89 @@
+package FFT;
+
+import java.util.Arrays;
+
+// *****************************************************************************
+// FFT en simple précision d'un lot de blocs contigus de même taille
+// (par exemple tout un morceau d'un long fichier) : le bloc b occupe les
+// indices [b*taille, (b+1)*taille[ des tableaux.
+// Lorsque le module jdk.incubator.vector est disponible, les papillons sont
+// vectorisés à travers les blocs (un bloc par voie SIMD) ; sinon chaque bloc
+// passe par le plan scalaire.
+// Une instance garde ses tampons de travail et ne doit pas être partagée
+// entre plusieurs threads.
+
+public abstract class FFTLot
+{
+	// Nombre de blocs traités d'un coup par module(...)
+	private static final int BlocsParPassage = 64;
+
+	protected final int taille;
+	protected final FFTPlan plan;
+	// Tampons de module(...), pour BlocsParPassage blocs
+	private final float[] tamponReel;
+	private final float[] tamponImag;
+
+	protected FFTLot(final int taille)
+	{
+		this.taille = taille;
+		plan = FFTPlan.pour(taille);
+		tamponReel = new float[BlocsParPassage*taille];
+		tamponImag = new float[BlocsParPassage*taille];
+	}
+
+	// Renvoie une FFT par lots, vectorielle si la plateforme le permet
+	// (et si la taille est une puissance de deux)
+	public static FFTLot cree(final int taille)
+	{
+		if (Integer.bitCount(taille) == 1 && vectorielDisponible())
+		{
+			try
+			{
+				return new FFTLotVectoriel(taille);
+			}
+			catch (LinkageError e)
+			{
+				// Module présent mais inutilisable : on se rabat sur le scalaire
+			}
+		}
+		return new FFTLotScalaire(taille);
+	}
+
+	// Vrai si l'API Vector (module incubateur) a été ajoutée au lancement
+	static boolean vectorielDisponible()
+	{
+		return ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+	}
+
+	public int taille() {return taille;}
+
+	// FFT directe en place de nbBlocs blocs contigus de reel/imag
+	public abstract void transforme(final float[] reel, final float[] imag, final int nbBlocs);
+
+	// Pour chacun des nbBlocs blocs réels de echantillons[debut..], écrit les
+	// nbRaies premiers modules (nbRaies <= taille/2+1) dans dest[b*nbRaies..]
+	public void module(final float[] echantillons, final int debut, final int nbBlocs,
+			final float[] dest, final int nbRaies)
+	{
+		if (nbRaies > taille/2+1)
+			throw new IllegalArgumentException("Au plus "+(taille/2+1)+" raies disponibles, "+nbRaies+" demandées");
+		for (int premier = 0; premier < nbBlocs; premier += BlocsParPassage)
+		{
+			final int n = Math.min(BlocsParPassage, nbBlocs-premier);
+			System.arraycopy(echantillons, debut+premier*taille, tamponReel, 0, n*taille);
+			Arrays.fill(tamponImag, 0, n*taille, 0.f);
+			transforme(tamponReel, tamponImag, n);
+			for (int b = 0; b < n; ++b)
+			{
+				final int source = b*taille;
+				final int cible = (premier+b)*nbRaies;
+				for (int k = 0; k < nbRaies; ++k)
+				{
+					final float r = tamponReel[source+k];
+					final float m = tamponImag[source+k];
+					dest[cible+k] = (float)Math.sqrt(r*r+m*m);
+				}
+			}
+		}
+	}
+}
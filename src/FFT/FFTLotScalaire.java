@@ -0,0 +1,16 @@
+package FFT;
+
+// Repli scalaire de FFTLot : chaque bloc est transformé par le plan
+final class FFTLotScalaire extends FFTLot
+{
+	FFTLotScalaire(final int taille)
+	{
+		super(taille);
+	}
+
+	public void transforme(final float[] reel, final float[] imag, final int nbBlocs)
+	{
+		for (int b = 0; b < nbBlocs; ++b)
+			plan.transforme(reel, imag, b*taille);
+	}
+}
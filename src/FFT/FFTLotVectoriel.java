@@ -0,0 +1,96 @@
+package FFT;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorSpecies;
+
+// *****************************************************************************
+// FFTLot vectorisée avec l'API Vector : les blocs sont traités par groupes
+// de "largeur" blocs (une voie SIMD par bloc). Chaque groupe est transposé
+// (en appliquant l'inversion de bits au passage) dans un tampon où l'élément
+// k des blocs du groupe est contigu, de sorte que chaque papillon devienne
+// une opération vectorielle avec un facteur de rotation scalaire commun.
+
+final class FFTLotVectoriel extends FFTLot
+{
+	private static final VectorSpecies<Float> Espece = FloatVector.SPECIES_PREFERRED;
+
+	private final int largeur = Espece.length();
+	private final int[] inversionBits;
+	private final float[] cosinus;
+	private final float[] sinus;
+	// Groupe transposé : trReel[k*largeur+voie] = élément k du bloc (premier+voie)
+	private final float[] trReel;
+	private final float[] trImag;
+
+	FFTLotVectoriel(final int taille)
+	{
+		super(taille);
+		final FFTPlanRadix2 radix2 = (FFTPlanRadix2)plan;
+		inversionBits = radix2.inversionBits();
+		cosinus = radix2.cosinusF();
+		sinus = radix2.sinusF();
+		trReel = new float[taille*largeur];
+		trImag = new float[taille*largeur];
+	}
+
+	public void transforme(final float[] reel, final float[] imag, final int nbBlocs)
+	{
+		int b = 0;
+		for (; b+largeur <= nbBlocs; b += largeur)
+			transformeGroupe(reel, imag, b);
+		// Blocs restants, moins nombreux qu'une largeur de vecteur
+		for (; b < nbBlocs; ++b)
+			plan.transforme(reel, imag, b*taille);
+	}
+
+	private void transformeGroupe(final float[] reel, final float[] imag, final int premier)
+	{
+		// Transposition du groupe, avec permutation par inversion de bits
+		for (int voie = 0; voie < largeur; ++voie)
+		{
+			final int base = (premier+voie)*taille;
+			for (int k = 0; k < taille; ++k)
+			{
+				final int source = base+inversionBits[k];
+				trReel[k*largeur+voie] = reel[source];
+				trImag[k*largeur+voie] = imag[source];
+			}
+		}
+
+		// Papillons : une opération vectorielle traite le même indice de tous les blocs
+		for (int demi = 1, pas = taille/2; demi < taille; demi <<= 1, pas >>= 1)
+		{
+			for (int groupe = 0; groupe < taille; groupe += 2*demi)
+			{
+				for (int k = 0; k < demi; ++k)
+				{
+					final float wr = cosinus[k*pas];
+					final float wi = sinus[k*pas];
+					final int i = (groupe+k)*largeur;
+					final int j = i+demi*largeur;
+					final FloatVector ar = FloatVector.fromArray(Espece, trReel, i);
+					final FloatVector ai = FloatVector.fromArray(Espece, trImag, i);
+					final FloatVector br = FloatVector.fromArray(Espece, trReel, j);
+					final FloatVector bi = FloatVector.fromArray(Espece, trImag, j);
+					final FloatVector tr = br.mul(wr).sub(bi.mul(wi));
+					final FloatVector ti = bi.mul(wr).add(br.mul(wi));
+					ar.sub(tr).intoArray(trReel, j);
+					ai.sub(ti).intoArray(trImag, j);
+					ar.add(tr).intoArray(trReel, i);
+					ai.add(ti).intoArray(trImag, i);
+				}
+			}
+		}
+
+		// Transposition inverse vers les blocs d'origine
+		for (int voie = 0; voie < largeur; ++voie)
+		{
+			final int base = (premier+voie)*taille;
+			for (int k = 0; k < taille; ++k)
+			{
+				reel[base+k] = trReel[k*largeur+voie];
+				imag[base+k] = trImag[k*largeur+voie];
+			}
+		}
+	}
+}
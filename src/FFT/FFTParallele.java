@@ -0,0 +1,376 @@
+package FFT;
+
+import java.util.BitSet;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+// *****************************************************************************
+// FFT de très grande taille (2^20 à 2^24 points, par exemple le spectre d'un
+// enregistrement entier) répartie sur tous les cœurs par un ForkJoinPool.
+// Algorithme « six étapes » de Bailey : le signal de taille N = N1.N2 est vu
+// comme une matrice N1 x N2, et la transformée se ramène à
+//  1. une transposition (N2 lignes de N1 points),
+//  2. N2 FFT de taille N1, suivies de la multiplication par exp(-2iπ.n2.k1/N),
+//  3. une transposition (N1 lignes de N2 points),
+//  4. N1 FFT de taille N2,
+//  5. une transposition finale remettant les raies dans l'ordre naturel.
+// Chaque FFT de ligne (quelques milliers de points) tient dans le cache et
+// les lignes sont traitées en parallèle. Tout se fait en place sur les
+// tableaux float fournis : seuls une ligne de travail et les tables de
+// rotation (de l'ordre de la racine de N) sont alloués en plus.
+// Les tailles non puissances de deux, et celles sous SeuilParallele, passent
+// directement par le plan séquentiel.
+// Une instance est immuable : plusieurs transformées peuvent être lancées en
+// même temps depuis différents threads.
+
+public class FFTParallele
+{
+	// Taille en dessous de laquelle la FFT séquentielle est plus rapide
+	public static final int SeuilParallele = 1<<16;
+	// Nombre minimal de points traités par une tâche élémentaire
+	private static final int GrainTache = 1<<14;
+	// Côté des tuiles des transpositions
+	private static final int Tuile = 32;
+
+	private final int taille;
+	private final ForkJoinPool pool;
+	// Décomposition N = lignes.colonnes, avec colonnes = lignes ou 2.lignes
+	// (lignes = 0 : transformée séquentielle)
+	private final int lignes;
+	private final int colonnes;
+	// exp(-2iπm/N) = haut[m/Base].bas[m%Base] : deux tables de ~racine(N) valeurs
+	private final int bitsBas;
+	private final double[] cosinusHaut;
+	private final double[] sinusHaut;
+	private final double[] cosinusBas;
+	private final double[] sinusBas;
+
+	public FFTParallele(final int taille)
+	{
+		this(taille, ForkJoinPool.commonPool(), SeuilParallele);
+	}
+
+	public FFTParallele(final int taille, final ForkJoinPool pool)
+	{
+		this(taille, pool, SeuilParallele);
+	}
+
+	// seuil : taille minimale traitée en six étapes (abaissé par les tests)
+	FFTParallele(final int taille, final ForkJoinPool pool, final int seuil)
+	{
+		if (taille < 1)
+			throw new IllegalArgumentException("Taille de FFT invalide : "+taille);
+		this.taille = taille;
+		this.pool = pool;
+		if (Integer.bitCount(taille) != 1 || taille < Math.max(4, seuil))
+		{
+			lignes = colonnes = 0;
+			bitsBas = 0;
+			cosinusHaut = sinusHaut = cosinusBas = sinusBas = null;
+			return;
+		}
+		final int nbBits = Integer.numberOfTrailingZeros(taille);
+		lignes = 1<<(nbBits/2);
+		colonnes = taille/lignes;
+
+		bitsBas = (nbBits+1)/2;
+		final int base = 1<<bitsBas;
+		final int nbHaut = taille>>bitsBas;
+		cosinusBas = new double[base];
+		sinusBas = new double[base];
+		for (int l = 0; l < base; ++l)
+		{
+			final double angle = -2.*Math.PI*l/taille;
+			cosinusBas[l] = Math.cos(angle);
+			sinusBas[l] = Math.sin(angle);
+		}
+		cosinusHaut = new double[nbHaut];
+		sinusHaut = new double[nbHaut];
+		for (int h = 0; h < nbHaut; ++h)
+		{
+			final double angle = -2.*Math.PI*h*base/taille;
+			cosinusHaut[h] = Math.cos(angle);
+			sinusHaut[h] = Math.sin(angle);
+		}
+	}
+
+	public int taille() {return taille;}
+
+	// FFT directe en place de reel/imag[0..taille[
+	public void transforme(final float[] reel, final float[] imag)
+	{
+		if (lignes == 0)
+		{
+			FFTPlan.pour(taille).transforme(reel, imag);
+			return;
+		}
+		transpose(reel, imag, lignes, colonnes);
+		// colonnes lignes de "lignes" points, puis rotation par exp(-2iπ.n2.k1/N)
+		final FFTPlan planLignes = FFTPlan.pour(lignes);
+		enParallele(pool, colonnes, lignes, (debut, fin) ->
+		{
+			for (int n2 = debut; n2 < fin; ++n2)
+			{
+				planLignes.transforme(reel, imag, n2*lignes);
+				tourne(reel, imag, n2);
+			}
+		});
+		transpose(reel, imag, colonnes, lignes);
+		final FFTPlan planColonnes = FFTPlan.pour(colonnes);
+		enParallele(pool, lignes, colonnes, (debut, fin) ->
+		{
+			for (int k1 = debut; k1 < fin; ++k1)
+				planColonnes.transforme(reel, imag, k1*colonnes);
+		});
+		transpose(reel, imag, lignes, colonnes);
+	}
+
+	// Modules des N/2+1 raies du spectre d'un signal réel entier, complété
+	// par des zéros jusqu'à la puissance de deux supérieure N
+	public static float[] module(final float[] signal, final ForkJoinPool pool)
+	{
+		final int n = Integer.highestOneBit(Math.max(1, signal.length-1))<<1;
+		final int demi = n/2;
+		// Échantillons pairs en partie réelle, impairs en partie imaginaire
+		final float[] reel = new float[demi];
+		final float[] imag = new float[demi];
+		for (int i = 0; 2*i < signal.length; ++i)
+		{
+			reel[i] = signal[2*i];
+			imag[i] = 2*i+1 < signal.length ? signal[2*i+1] : 0.f;
+		}
+		new FFTParallele(demi, pool).transforme(reel, imag);
+
+		// Séparation des spectres pair et impair, comme dans FFTReelle ; le
+		// facteur exp(-2iπk/N) de chaque tranche avance par multiplications
+		final float[] dest = new float[demi+1];
+		enParallele(pool, demi+1, 1, (debut, fin) ->
+		{
+			final double pas = -2.*Math.PI/n;
+			final double cr = Math.cos(pas), ci = Math.sin(pas);
+			double wr = Math.cos(pas*debut), wi = Math.sin(pas*debut);
+			for (int k = debut; k < fin; ++k)
+			{
+				final int a = k%demi;
+				final int b = (demi-k)%demi;
+				final double er = (reel[a]+reel[b])*.5;
+				final double ei = (imag[a]-imag[b])*.5;
+				final double or = (imag[a]+imag[b])*.5;
+				final double oi = (reel[b]-reel[a])*.5;
+				final double xr = er+wr*or-wi*oi;
+				final double xi = ei+wr*oi+wi*or;
+				dest[k] = (float)Math.sqrt(xr*xr+xi*xi);
+				final double t = wr*cr-wi*ci;
+				wi = wr*ci+wi*cr;
+				wr = t;
+			}
+		});
+		return dest;
+	}
+
+	// Multiplie la ligne n2 (k1 = 0..lignes-1) par exp(-2iπ.n2.k1/N)
+	private void tourne(final float[] reel, final float[] imag, final int n2)
+	{
+		final int masque = (1<<bitsBas)-1;
+		final int debut = n2*lignes;
+		for (int k1 = 1; k1 < lignes; ++k1)
+		{
+			// n2.k1 < N : l'exposant tient dans un int
+			final int m = n2*k1;
+			final int h = m>>>bitsBas, l = m&masque;
+			final double wr = cosinusHaut[h]*cosinusBas[l]-sinusHaut[h]*sinusBas[l];
+			final double wi = cosinusHaut[h]*sinusBas[l]+sinusHaut[h]*cosinusBas[l];
+			final double r = reel[debut+k1], i = imag[debut+k1];
+			reel[debut+k1] = (float)(r*wr-i*wi);
+			imag[debut+k1] = (float)(r*wi+i*wr);
+		}
+	}
+
+	// Transpose en place la matrice nbLignes x nbColonnes rangée ligne par
+	// ligne, carrée ou dont un côté est le double de l'autre
+	private void transpose(final float[] reel, final float[] imag, final int nbLignes, final int nbColonnes)
+	{
+		if (nbLignes == nbColonnes)
+			transposeCarres(reel, imag, nbLignes, nbLignes, 1);
+		else if (nbColonnes == 2*nbLignes)
+		{
+			// [A B] -> [tA ; tB] : transposition des deux carrés, puis les
+			// demi-lignes entrelacées tA0 tB0 tA1 tB1... sont regroupées
+			transposeCarres(reel, imag, nbLignes, nbColonnes, 2);
+			permuteBlocs(reel, imag, nbLignes, false);
+		}
+		else
+		{
+			// [A ; B] -> [tA tB] : opérations inverses
+			permuteBlocs(reel, imag, nbColonnes, true);
+			transposeCarres(reel, imag, nbColonnes, nbLignes, 2);
+		}
+	}
+
+	// Transpose en place nbCarres carrés côte à côte de cote x cote, dans une
+	// matrice dont les lignes font "largeur" points
+	private void transposeCarres(final float[] reel, final float[] imag, final int cote, final int largeur,
+			final int nbCarres)
+	{
+		final int nbTuiles = (cote+Tuile-1)/Tuile;
+		enParallele(pool, nbCarres*nbTuiles, Tuile*cote, (debut, fin) ->
+		{
+			for (int t = debut; t < fin; ++t)
+			{
+				// Bande de tuiles ti : échange des tuiles (ti, tj) et (tj, ti) pour tj >= ti
+				final int origine = (t/nbTuiles)*cote;
+				final int ti = t%nbTuiles;
+				final int i0 = ti*Tuile, i1 = Math.min(cote, i0+Tuile);
+				for (int j0 = i0; j0 < cote; j0 += Tuile)
+				{
+					final int j1 = Math.min(cote, j0+Tuile);
+					for (int i = i0; i < i1; ++i)
+						for (int j = j0 == i0 ? i+1 : j0; j < j1; ++j)
+						{
+							final int p = i*largeur+origine+j, q = j*largeur+origine+i;
+							final float r = reel[p]; reel[p] = reel[q]; reel[q] = r;
+							final float m = imag[p]; imag[p] = imag[q]; imag[q] = m;
+						}
+				}
+			}
+		});
+	}
+
+	// Considère les données comme 2.cote blocs de cote points : regroupe les
+	// blocs pairs puis impairs (bloc p -> p/2 + (p%2).cote), ou l'inverse,
+	// en suivant les cycles de la permutation avec un seul bloc de travail
+	private void permuteBlocs(final float[] reel, final float[] imag, final int cote, final boolean inverse)
+	{
+		final int nbBlocs = 2*cote;
+		final BitSet places = new BitSet(nbBlocs);
+		final float[] tamponReel = new float[cote];
+		final float[] tamponImag = new float[cote];
+		for (int depart = 0; depart < nbBlocs; ++depart)
+		{
+			if (places.get(depart))
+				continue;
+			// Le bloc de départ est mis de côté, puis chaque place libérée est
+			// remplie par le bloc qui doit l'occuper, jusqu'à revenir au départ
+			System.arraycopy(reel, depart*cote, tamponReel, 0, cote);
+			System.arraycopy(imag, depart*cote, tamponImag, 0, cote);
+			int place = depart;
+			while (true)
+			{
+				places.set(place);
+				// Bloc venant occuper "place"
+				final int source = inverse ? place/2+(place%2)*cote : 2*(place%cote)+place/cote;
+				if (source == depart)
+				{
+					System.arraycopy(tamponReel, 0, reel, place*cote, cote);
+					System.arraycopy(tamponImag, 0, imag, place*cote, cote);
+					break;
+				}
+				System.arraycopy(reel, source*cote, reel, place*cote, cote);
+				System.arraycopy(imag, source*cote, imag, place*cote, cote);
+				place = source;
+			}
+		}
+	}
+
+	// Traitement d'une tranche [debut, fin[ d'éléments indépendants
+	@FunctionalInterface
+	private interface Tranche
+	{
+		public void traite(int debut, int fin);
+	}
+
+	// Répartit nbElements éléments d'environ "cout" points chacun en tâches
+	// d'au moins GrainTache points, exécutées dans le pool
+	private static void enParallele(final ForkJoinPool pool, final int nbElements, final int cout,
+			final Tranche tranche)
+	{
+		final int grain = Math.max(1, GrainTache/Math.max(1, cout));
+		pool.invoke(new Tache(0, nbElements, grain, tranche));
+	}
+
+	private static final class Tache extends RecursiveAction
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final int debut, fin, grain;
+		// Jamais sérialisée : une tâche ne quitte pas le pool
+		private final transient Tranche tranche;
+
+		Tache(final int debut, final int fin, final int grain, final Tranche tranche)
+		{
+			this.debut = debut;
+			this.fin = fin;
+			this.grain = grain;
+			this.tranche = tranche;
+		}
+
+		protected void compute()
+		{
+			if (fin-debut <= grain)
+			{
+				tranche.traite(debut, fin);
+				return;
+			}
+			final int milieu = (debut+fin)>>>1;
+			invokeAll(new Tache(debut, milieu, grain, tranche), new Tache(milieu, fin, grain, tranche));
+		}
+	}
+
+	// Spectre d'un fichier WAV entier (raies les plus fortes), ou sans
+	// argument, comparaison des temps séquentiel et parallèle
+	public static void main(String[] args)
+	{
+		final ForkJoinPool pool = ForkJoinPool.commonPool();
+		if (args.length >= 1)
+		{
+			final Son.Son son = new Son.Son(args[0]);
+			final long t0 = System.nanoTime();
+			final float[] spectre = module(son.donnees(), pool);
+			final long t1 = System.nanoTime();
+			final double pasRaie = (double)son.frequence()/(2*(spectre.length-1));
+			System.out.printf("%d échantillons, %d raies de %.4f Hz, calculées en %.1f ms%n",
+					son.taille(), spectre.length, pasRaie, (t1-t0)/1e6);
+			// Les 10 raies les plus fortes
+			final boolean[] prises = new boolean[spectre.length];
+			for (int n = 0; n < 10 && n < spectre.length; ++n)
+			{
+				int meilleure = -1;
+				for (int k = 1; k < spectre.length; ++k)
+					if (!prises[k] && (meilleure < 0 || spectre[k] > spectre[meilleure]))
+						meilleure = k;
+				if (meilleure < 0)
+					break;
+				prises[meilleure] = true;
+				System.out.printf("%10.3f Hz : %g%n", meilleure*pasRaie, spectre[meilleure]);
+			}
+		}
+		else
+		{
+			System.out.println("Usage : java FFT.FFTParallele fichier.wav (spectre du fichier entier)");
+			final Random rand = new Random(1);
+			for (int bits = 18; bits <= 24; bits += 2)
+			{
+				final int n = 1<<bits;
+				final float[] reel = new float[n], imag = new float[n];
+				for (int i = 0; i < n; ++i)
+					reel[i] = rand.nextFloat()*2-1;
+				final FFTParallele fft = new FFTParallele(n, pool);
+				fft.transforme(reel, imag);	// échauffement
+				long t0 = System.nanoTime();
+				fft.transforme(reel, imag);
+				final long parallele = System.nanoTime()-t0;
+				System.out.printf("N = 2^%d : parallèle (%d threads) %.1f ms", bits, pool.getParallelism(), parallele/1e6);
+				// Le plan séquentiel garde des tables de taille N en mémoire :
+				// il n'est mesuré que jusqu'à 2^22
+				if (bits <= 22)
+				{
+					t0 = System.nanoTime();
+					FFTPlan.pour(n).transforme(reel, imag);
+					System.out.printf(", séquentiel %.1f ms", (System.nanoTime()-t0)/1e6);
+				}
+				System.out.println();
+			}
+		}
+	}
+}
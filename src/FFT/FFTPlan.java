@@ -0,0 +1,71 @@
+package FFT;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+// *****************************************************************************
+// Plan de FFT pour une taille donnée : les tables de facteurs de rotation
+// (twiddles) et de permutation sont calculées une seule fois, puis la
+// transformée s'applique en place sur des tableaux primitifs de parties
+// réelles et imaginaires, sans aucune allocation par appel.
+// Toute taille est acceptée : radix 2 pour les puissances de deux, radix
+// mixte 2/3/4/5 si la taille ne contient pas d'autre facteur premier, et
+// algorithme de Bluestein (convolution par une FFT puissance de deux) sinon.
+// Un plan est immuable : une même instance peut servir à plusieurs threads.
+
+public abstract class FFTPlan
+{
+	// Plans déjà construits, partagés par taille
+	private static final ConcurrentHashMap<Integer, FFTPlan> plans = new ConcurrentHashMap<>();
+
+	protected final int taille;
+
+	// Renvoie le plan associé à la taille demandée, en le construisant au besoin.
+	// Le plan est construit hors de la table : un plan de Bluestein y demande
+	// son plan de convolution, ce que computeIfAbsent interdit. Deux threads
+	// peuvent construire le même plan ; seul le premier enregistré sert.
+	public static FFTPlan pour(final int taille)
+	{
+		final FFTPlan plan = plans.get(taille);
+		if (plan != null)
+			return plan;
+		final FFTPlan construit = construit(taille);
+		final FFTPlan existant = plans.putIfAbsent(taille, construit);
+		return existant != null ? existant : construit;
+	}
+
+	private static FFTPlan construit(final int taille)
+	{
+		if (taille < 1)
+			throw new IllegalArgumentException("Taille de FFT invalide : "+taille);
+		if (Integer.bitCount(taille) == 1)
+			return new FFTPlanRadix2(taille);
+		if (FFTPlanMixte.radicesDe(taille) != null)
+			return new FFTPlanMixte(taille);
+		return new FFTPlanBluestein(taille);
+	}
+
+	protected FFTPlan(final int taille)
+	{
+		this.taille = taille;
+	}
+
+	public int taille() {return taille;}
+
+	// FFT directe en place de reel/imag[0..taille[
+	public void transforme(final double[] reel, final double[] imag)
+	{
+		transforme(reel, imag, 0);
+	}
+
+	// FFT directe en place de reel/imag[0..taille[, en simple précision
+	public void transforme(final float[] reel, final float[] imag)
+	{
+		transforme(reel, imag, 0);
+	}
+
+	// FFT directe en place de reel/imag[debut..debut+taille[
+	public abstract void transforme(final double[] reel, final double[] imag, final int debut);
+
+	// FFT directe en place de reel/imag[debut..debut+taille[, en simple précision
+	public abstract void transforme(final float[] reel, final float[] imag, final int debut);
+}
@@ -0,0 +1,115 @@
+package FFT;
+
+import java.util.Arrays;
+
+// *****************************************************************************
+// Plan de FFT de Bluestein pour les tailles contenant un facteur premier
+// autre que 2, 3 et 5 : la DFT de taille n s'écrit comme une convolution
+// avec le "chirp" exp(-iπk²/n), calculée par des FFT radix 2 de taille
+// m >= 2n-1. La transformée du chirp est précalculée une fois pour toutes.
+
+final class FFTPlanBluestein extends FFTPlan
+{
+	private final FFTPlan planConvolution;
+	// Chirp w[k] = exp(-iπk²/n), k < n
+	private final double[] chirpReel;
+	private final double[] chirpImag;
+	// FFT de taille m du conjugué du chirp, prolongé symétriquement
+	private final double[] noyauReel;
+	private final double[] noyauImag;
+	// Tampons de travail de chaque thread : {reel, imag}, de taille m
+	private final ThreadLocal<double[][]> tampons;
+
+	FFTPlanBluestein(final int taille)
+	{
+		super(taille);
+		int m = 1;
+		while (m < 2*taille-1)
+			m <<= 1;
+		planConvolution = FFTPlan.pour(m);
+
+		chirpReel = new double[taille];
+		chirpImag = new double[taille];
+		for (int k = 0; k < taille; ++k)
+		{
+			// k² est réduit modulo 2n pour garder un angle précis
+			final double angle = -Math.PI*((long)k*k%(2L*taille))/taille;
+			chirpReel[k] = Math.cos(angle);
+			chirpImag[k] = Math.sin(angle);
+		}
+
+		noyauReel = new double[m];
+		noyauImag = new double[m];
+		noyauReel[0] = chirpReel[0];
+		noyauImag[0] = -chirpImag[0];
+		for (int k = 1; k < taille; ++k)
+		{
+			noyauReel[k] = noyauReel[m-k] = chirpReel[k];
+			noyauImag[k] = noyauImag[m-k] = -chirpImag[k];
+		}
+		planConvolution.transforme(noyauReel, noyauImag);
+
+		final int tailleConvolution = m;
+		tampons = ThreadLocal.withInitial(() -> new double[2][tailleConvolution]);
+	}
+
+	public void transforme(final double[] reel, final double[] imag, final int debut)
+	{
+		final double[][] t = tampons.get();
+		for (int k = 0; k < taille; ++k)
+			multiplieChirp(t, k, reel[debut+k], imag[debut+k]);
+		convolue(t);
+		for (int k = 0; k < taille; ++k)
+		{
+			reel[debut+k] = t[0][k];
+			imag[debut+k] = t[1][k];
+		}
+	}
+
+	public void transforme(final float[] reel, final float[] imag, final int debut)
+	{
+		final double[][] t = tampons.get();
+		for (int k = 0; k < taille; ++k)
+			multiplieChirp(t, k, reel[debut+k], imag[debut+k]);
+		convolue(t);
+		for (int k = 0; k < taille; ++k)
+		{
+			reel[debut+k] = (float)t[0][k];
+			imag[debut+k] = (float)t[1][k];
+		}
+	}
+
+	// t[k] = x.w[k]
+	private void multiplieChirp(final double[][] t, final int k, final double xr, final double xi)
+	{
+		t[0][k] = xr*chirpReel[k]-xi*chirpImag[k];
+		t[1][k] = xr*chirpImag[k]+xi*chirpReel[k];
+	}
+
+	// Convolution circulaire de t[0..n[ (complété de zéros) par le conjugué du
+	// chirp, puis multiplication par le chirp : t[0..n[ reçoit la DFT
+	private void convolue(final double[][] t)
+	{
+		final int m = planConvolution.taille();
+		final double[] r = t[0], i = t[1];
+		Arrays.fill(r, taille, m, 0.);
+		Arrays.fill(i, taille, m, 0.);
+		planConvolution.transforme(r, i);
+		// Produit par le noyau, conjugué pour obtenir la FFT inverse par une FFT directe
+		for (int k = 0; k < m; ++k)
+		{
+			final double pr = r[k]*noyauReel[k]-i[k]*noyauImag[k];
+			final double pi = r[k]*noyauImag[k]+i[k]*noyauReel[k];
+			r[k] = pr;
+			i[k] = -pi;
+		}
+		planConvolution.transforme(r, i);
+		final double echelle = 1./m;
+		for (int k = 0; k < taille; ++k)
+		{
+			final double cr = r[k]*echelle, ci = -i[k]*echelle;
+			r[k] = cr*chirpReel[k]-ci*chirpImag[k];
+			i[k] = cr*chirpImag[k]+ci*chirpReel[k];
+		}
+	}
+}
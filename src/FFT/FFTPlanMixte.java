@@ -0,0 +1,222 @@
+package FFT;
+
+import java.util.Arrays;
+
+// *****************************************************************************
+// Plan de FFT à radix mixte pour les tailles de la forme 2^a.3^b.5^c
+// (par exemple 960 = 20 ms à 48 kHz) : schéma de Stockham, qui enchaîne
+// des étages radix 4, 2, 3 et 5 sans permutation finale, en alternant entre
+// deux tampons de travail propres à chaque thread.
+
+final class FFTPlanMixte extends FFTPlan
+{
+	// cos(2π/3), sin(2π/3), cos(2π/5), sin(2π/5), cos(4π/5), sin(4π/5)
+	private static final double S3 = Math.sqrt(3.)/2.;
+	private static final double C51 = Math.cos(2.*Math.PI/5.);
+	private static final double S51 = Math.sin(2.*Math.PI/5.);
+	private static final double C52 = Math.cos(4.*Math.PI/5.);
+	private static final double S52 = Math.sin(4.*Math.PI/5.);
+
+	// Radix de chaque étage, dans l'ordre d'application
+	private final int[] radices;
+	// Facteurs de rotation de l'étage s : exp(-2iπrk/(ns.R)) rangé en [k*(R-1)+r-1]
+	private final double[][] cosinus;
+	private final double[][] sinus;
+	// Tampons de travail de chaque thread : {reelA, imagA, reelB, imagB}
+	private final ThreadLocal<double[][]> tampons;
+
+	// Décomposition de la taille en radix 4, 2, 3 et 5, ou null si impossible
+	static int[] radicesDe(int taille)
+	{
+		final int[] radices = new int[32];
+		int nb = 0;
+		while (taille%4 == 0) {radices[nb++] = 4; taille /= 4;}
+		if (taille%2 == 0) {radices[nb++] = 2; taille /= 2;}
+		while (taille%3 == 0) {radices[nb++] = 3; taille /= 3;}
+		while (taille%5 == 0) {radices[nb++] = 5; taille /= 5;}
+		return taille == 1 ? Arrays.copyOf(radices, nb) : null;
+	}
+
+	FFTPlanMixte(final int taille)
+	{
+		super(taille);
+		radices = radicesDe(taille);
+		if (radices == null)
+			throw new IllegalArgumentException("Taille non décomposable en radix 2, 3, 4 et 5 : "+taille);
+		cosinus = new double[radices.length][];
+		sinus = new double[radices.length][];
+		int ns = 1;
+		for (int s = 0; s < radices.length; ++s)
+		{
+			final int r = radices[s];
+			cosinus[s] = new double[ns*(r-1)];
+			sinus[s] = new double[ns*(r-1)];
+			for (int k = 0; k < ns; ++k)
+				for (int q = 1; q < r; ++q)
+				{
+					final double angle = -2.*Math.PI*q*k/(ns*r);
+					cosinus[s][k*(r-1)+q-1] = Math.cos(angle);
+					sinus[s][k*(r-1)+q-1] = Math.sin(angle);
+				}
+			ns *= r;
+		}
+		tampons = ThreadLocal.withInitial(() -> new double[4][taille]);
+	}
+
+	public void transforme(final double[] reel, final double[] imag, final int debut)
+	{
+		final double[][] t = tampons.get();
+		System.arraycopy(reel, debut, t[0], 0, taille);
+		System.arraycopy(imag, debut, t[1], 0, taille);
+		final int resultat = calcule(t);
+		System.arraycopy(t[resultat], 0, reel, debut, taille);
+		System.arraycopy(t[resultat+1], 0, imag, debut, taille);
+	}
+
+	public void transforme(final float[] reel, final float[] imag, final int debut)
+	{
+		final double[][] t = tampons.get();
+		for (int i = 0; i < taille; ++i)
+		{
+			t[0][i] = reel[debut+i];
+			t[1][i] = imag[debut+i];
+		}
+		final int resultat = calcule(t);
+		for (int i = 0; i < taille; ++i)
+		{
+			reel[debut+i] = (float)t[resultat][i];
+			imag[debut+i] = (float)t[resultat+1][i];
+		}
+	}
+
+	// Applique les étages en alternant les tampons ; renvoie l'indice du
+	// tampon (0 ou 2) qui contient le résultat
+	private int calcule(final double[][] t)
+	{
+		int source = 0;
+		int ns = 1;
+		for (int s = 0; s < radices.length; ++s)
+		{
+			final int cible = 2-source;
+			final double[] xr = t[source], xi = t[source+1], yr = t[cible], yi = t[cible+1];
+			switch (radices[s])
+			{
+				case 2: passe2(xr, xi, yr, yi, ns, cosinus[s], sinus[s]); break;
+				case 3: passe3(xr, xi, yr, yi, ns, cosinus[s], sinus[s]); break;
+				case 4: passe4(xr, xi, yr, yi, ns, cosinus[s], sinus[s]); break;
+				default: passe5(xr, xi, yr, yi, ns, cosinus[s], sinus[s]); break;
+			}
+			ns *= radices[s];
+			source = cible;
+		}
+		return source;
+	}
+
+	// Dans chaque étage, l'élément j (j < taille/R) combine les entrées
+	// j + q.taille/R, et écrit ses R sorties en (j/ns).ns.R + j%ns + q.ns
+
+	private void passe2(final double[] xr, final double[] xi, final double[] yr, final double[] yi,
+			final int ns, final double[] wc, final double[] ws)
+	{
+		final int m = taille/2;
+		for (int g = 0; g < m; g += ns)
+			for (int k = 0; k < ns; ++k)
+			{
+				final int j = g+k;
+				final int o = g*2+k;
+				final double ar = xr[j], ai = xi[j];
+				final double br = xr[j+m]*wc[k]-xi[j+m]*ws[k];
+				final double bi = xr[j+m]*ws[k]+xi[j+m]*wc[k];
+				yr[o] = ar+br; yi[o] = ai+bi;
+				yr[o+ns] = ar-br; yi[o+ns] = ai-bi;
+			}
+	}
+
+	private void passe3(final double[] xr, final double[] xi, final double[] yr, final double[] yi,
+			final int ns, final double[] wc, final double[] ws)
+	{
+		final int m = taille/3;
+		for (int g = 0; g < m; g += ns)
+			for (int k = 0; k < ns; ++k)
+			{
+				final int j = g+k;
+				final int o = g*3+k;
+				final int w = 2*k;
+				final double ar = xr[j], ai = xi[j];
+				final double br = xr[j+m]*wc[w]-xi[j+m]*ws[w];
+				final double bi = xr[j+m]*ws[w]+xi[j+m]*wc[w];
+				final double cr = xr[j+2*m]*wc[w+1]-xi[j+2*m]*ws[w+1];
+				final double ci = xr[j+2*m]*ws[w+1]+xi[j+2*m]*wc[w+1];
+				final double sr = br+cr, si = bi+ci;
+				final double mr = ar-.5*sr, mi = ai-.5*si;
+				// -i.sin(2π/3).(b-c)
+				final double dr = S3*(bi-ci), di = -S3*(br-cr);
+				yr[o] = ar+sr; yi[o] = ai+si;
+				yr[o+ns] = mr+dr; yi[o+ns] = mi+di;
+				yr[o+2*ns] = mr-dr; yi[o+2*ns] = mi-di;
+			}
+	}
+
+	private void passe4(final double[] xr, final double[] xi, final double[] yr, final double[] yi,
+			final int ns, final double[] wc, final double[] ws)
+	{
+		final int m = taille/4;
+		for (int g = 0; g < m; g += ns)
+			for (int k = 0; k < ns; ++k)
+			{
+				final int j = g+k;
+				final int o = g*4+k;
+				final int w = 3*k;
+				final double ar = xr[j], ai = xi[j];
+				final double br = xr[j+m]*wc[w]-xi[j+m]*ws[w];
+				final double bi = xr[j+m]*ws[w]+xi[j+m]*wc[w];
+				final double cr = xr[j+2*m]*wc[w+1]-xi[j+2*m]*ws[w+1];
+				final double ci = xr[j+2*m]*ws[w+1]+xi[j+2*m]*wc[w+1];
+				final double dr = xr[j+3*m]*wc[w+2]-xi[j+3*m]*ws[w+2];
+				final double di = xr[j+3*m]*ws[w+2]+xi[j+3*m]*wc[w+2];
+				final double t0r = ar+cr, t0i = ai+ci;
+				final double t1r = ar-cr, t1i = ai-ci;
+				final double t2r = br+dr, t2i = bi+di;
+				// -i.(b-d)
+				final double t3r = bi-di, t3i = dr-br;
+				yr[o] = t0r+t2r; yi[o] = t0i+t2i;
+				yr[o+ns] = t1r+t3r; yi[o+ns] = t1i+t3i;
+				yr[o+2*ns] = t0r-t2r; yi[o+2*ns] = t0i-t2i;
+				yr[o+3*ns] = t1r-t3r; yi[o+3*ns] = t1i-t3i;
+			}
+	}
+
+	private void passe5(final double[] xr, final double[] xi, final double[] yr, final double[] yi,
+			final int ns, final double[] wc, final double[] ws)
+	{
+		final int m = taille/5;
+		for (int g = 0; g < m; g += ns)
+			for (int k = 0; k < ns; ++k)
+			{
+				final int j = g+k;
+				final int o = g*5+k;
+				final int w = 4*k;
+				final double x0r = xr[j], x0i = xi[j];
+				final double x1r = xr[j+m]*wc[w]-xi[j+m]*ws[w];
+				final double x1i = xr[j+m]*ws[w]+xi[j+m]*wc[w];
+				final double x2r = xr[j+2*m]*wc[w+1]-xi[j+2*m]*ws[w+1];
+				final double x2i = xr[j+2*m]*ws[w+1]+xi[j+2*m]*wc[w+1];
+				final double x3r = xr[j+3*m]*wc[w+2]-xi[j+3*m]*ws[w+2];
+				final double x3i = xr[j+3*m]*ws[w+2]+xi[j+3*m]*wc[w+2];
+				final double x4r = xr[j+4*m]*wc[w+3]-xi[j+4*m]*ws[w+3];
+				final double x4i = xr[j+4*m]*ws[w+3]+xi[j+4*m]*wc[w+3];
+				final double a1r = x1r+x4r, a1i = x1i+x4i, b1r = x1r-x4r, b1i = x1i-x4i;
+				final double a2r = x2r+x3r, a2i = x2i+x3i, b2r = x2r-x3r, b2i = x2i-x3i;
+				final double m1r = x0r+C51*a1r+C52*a2r, m1i = x0i+C51*a1i+C52*a2i;
+				final double m2r = x0r+C52*a1r+C51*a2r, m2i = x0i+C52*a1i+C51*a2i;
+				// -i.(s1.b1 + s2.b2) et -i.(s2.b1 - s1.b2)
+				final double n1r = S51*b1i+S52*b2i, n1i = -(S51*b1r+S52*b2r);
+				final double n2r = S52*b1i-S51*b2i, n2i = -(S52*b1r-S51*b2r);
+				yr[o] = x0r+a1r+a2r; yi[o] = x0i+a1i+a2i;
+				yr[o+ns] = m1r+n1r; yi[o+ns] = m1i+n1i;
+				yr[o+2*ns] = m2r+n2r; yi[o+2*ns] = m2i+n2i;
+				yr[o+3*ns] = m2r-n2r; yi[o+3*ns] = m2i-n2i;
+				yr[o+4*ns] = m1r-n1r; yi[o+4*ns] = m1i-n1i;
+			}
+	}
+}
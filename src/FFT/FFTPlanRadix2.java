@@ -0,0 +1,122 @@
+package FFT;
+
+// *****************************************************************************
+// Plan de FFT radix 2 pour les tailles puissances de deux : permutation par
+// inversion de bits puis papillons itératifs, avec des tables de facteurs
+// de rotation précalculées.
+
+final class FFTPlanRadix2 extends FFTPlan
+{
+	// inversionBits[i] : indice de i écrit à l'envers sur log2(taille) bits
+	private final int[] inversionBits;
+	// Facteurs exp(-2iπk/taille) pour k < taille/2, en double et en float
+	private final double[] cosinus;
+	private final double[] sinus;
+	private final float[] cosinusF;
+	private final float[] sinusF;
+
+	FFTPlanRadix2(final int taille)
+	{
+		super(taille);
+
+		inversionBits = new int[taille];
+		final int nbBits = Integer.numberOfTrailingZeros(taille);
+		for (int i = 0; i < taille; ++i)
+			inversionBits[i] = nbBits == 0 ? 0 : Integer.reverse(i) >>> (32-nbBits);
+
+		final int demi = Math.max(1, taille/2);
+		cosinus = new double[demi];
+		sinus = new double[demi];
+		cosinusF = new float[demi];
+		sinusF = new float[demi];
+		for (int k = 0; k < demi; ++k)
+		{
+			final double angle = -2.*Math.PI*k/taille;
+			cosinus[k] = Math.cos(angle);
+			sinus[k] = Math.sin(angle);
+			cosinusF[k] = (float)cosinus[k];
+			sinusF[k] = (float)sinus[k];
+		}
+	}
+
+	// Tables partagées avec la FFT par lots vectorielle (lecture seule)
+	int[] inversionBits() {return inversionBits;}
+	float[] cosinusF() {return cosinusF;}
+	float[] sinusF() {return sinusF;}
+
+	public void transforme(final double[] reel, final double[] imag, final int debut)
+	{
+		permute(reel, imag, debut);
+		// Regroupements "papillon" successifs, de la taille 2 jusqu'à la taille complète
+		for (int demi = 1, pas = taille/2; demi < taille; demi <<= 1, pas >>= 1)
+		{
+			for (int groupe = debut; groupe < debut+taille; groupe += 2*demi)
+			{
+				for (int k = 0; k < demi; ++k)
+				{
+					final double wr = cosinus[k*pas];
+					final double wi = sinus[k*pas];
+					final int i = groupe+k;
+					final int j = i+demi;
+					final double tr = wr*reel[j]-wi*imag[j];
+					final double ti = wr*imag[j]+wi*reel[j];
+					reel[j] = reel[i]-tr;
+					imag[j] = imag[i]-ti;
+					reel[i] += tr;
+					imag[i] += ti;
+				}
+			}
+		}
+	}
+
+	public void transforme(final float[] reel, final float[] imag, final int debut)
+	{
+		permute(reel, imag, debut);
+		for (int demi = 1, pas = taille/2; demi < taille; demi <<= 1, pas >>= 1)
+		{
+			for (int groupe = debut; groupe < debut+taille; groupe += 2*demi)
+			{
+				for (int k = 0; k < demi; ++k)
+				{
+					final float wr = cosinusF[k*pas];
+					final float wi = sinusF[k*pas];
+					final int i = groupe+k;
+					final int j = i+demi;
+					final float tr = wr*reel[j]-wi*imag[j];
+					final float ti = wr*imag[j]+wi*reel[j];
+					reel[j] = reel[i]-tr;
+					imag[j] = imag[i]-ti;
+					reel[i] += tr;
+					imag[i] += ti;
+				}
+			}
+		}
+	}
+
+	// Réordonne les données selon l'inversion des bits de leur indice
+	private void permute(final double[] reel, final double[] imag, final int debut)
+	{
+		for (int i = 0; i < taille; ++i)
+		{
+			final int j = inversionBits[i];
+			if (j > i)
+			{
+				final double r = reel[debut+i]; reel[debut+i] = reel[debut+j]; reel[debut+j] = r;
+				final double m = imag[debut+i]; imag[debut+i] = imag[debut+j]; imag[debut+j] = m;
+			}
+		}
+	}
+
+	private void permute(final float[] reel, final float[] imag, final int debut)
+	{
+		for (int i = 0; i < taille; ++i)
+		{
+			final int j = inversionBits[i];
+			if (j > i)
+			{
+				final float r = reel[debut+i]; reel[debut+i] = reel[debut+j]; reel[debut+j] = r;
+				final float m = imag[debut+i]; imag[debut+i] = imag[debut+j]; imag[debut+j] = m;
+			}
+		}
+	}
+}
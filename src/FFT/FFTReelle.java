@@ -0,0 +1,112 @@
+package FFT;
+
+// *****************************************************************************
+// FFT d'un signal réel de taille N (paire) : les N échantillons sont rangés
+// deux par deux dans N/2 nombres complexes (pairs en partie réelle, impairs
+// en partie imaginaire), transformés par un plan de taille N/2, puis séparés
+// pour obtenir les N/2+1 raies non redondantes du spectre.
+// Une instance garde ses tampons de travail : elle n'alloue rien par appel,
+// mais ne doit pas être partagée entre plusieurs threads.
+
+public class FFTReelle
+{
+	private final int taille;
+	private final FFTPlan plan;
+	// Facteurs exp(-2iπk/N) pour k <= N/2
+	private final double[] cosinus;
+	private final double[] sinus;
+	// Tampons de travail de taille N/2
+	private final double[] reel;
+	private final double[] imag;
+
+	public FFTReelle(final int taille)
+	{
+		if (taille < 2 || taille%2 != 0)
+			throw new IllegalArgumentException("Taille de FFT réelle non paire : "+taille);
+		this.taille = taille;
+		final int demi = taille/2;
+		plan = FFTPlan.pour(demi);
+		cosinus = new double[demi+1];
+		sinus = new double[demi+1];
+		for (int k = 0; k <= demi; ++k)
+		{
+			final double angle = -2.*Math.PI*k/taille;
+			cosinus[k] = Math.cos(angle);
+			sinus[k] = Math.sin(angle);
+		}
+		reel = new double[demi];
+		imag = new double[demi];
+	}
+
+	public int taille() {return taille;}
+	// Nombre de raies non redondantes produites : N/2+1
+	public int nbRaies() {return taille/2+1;}
+
+	// Calcule les raies 0..dest.length-1 du spectre de signal[debut..debut+N[,
+	// en module (dest.length doit être au plus N/2+1)
+	public void module(final float[] signal, final int debut, final float[] dest)
+	{
+		calcule(signal, debut, dest, dest.length, true);
+	}
+
+	// Calcule les raies 0..nbRaies-1 en module, dans un tampon dest
+	// éventuellement plus grand (nbRaies doit être au plus N/2+1)
+	public void module(final float[] signal, final int debut, final float[] dest, final int nbRaies)
+	{
+		calcule(signal, debut, dest, nbRaies, true);
+	}
+
+	// Idem en puissance (module au carré), sans racine carrée
+	public void puissance(final float[] signal, final int debut, final float[] dest)
+	{
+		calcule(signal, debut, dest, dest.length, false);
+	}
+
+	// Renvoie les N/2+1 modules du spectre de signal[0..N[
+	public float[] module(final float[] signal)
+	{
+		final float[] dest = new float[nbRaies()];
+		module(signal, 0, dest);
+		return dest;
+	}
+
+	// Renvoie les N/2+1 puissances du spectre de signal[0..N[
+	public float[] puissance(final float[] signal)
+	{
+		final float[] dest = new float[nbRaies()];
+		puissance(signal, 0, dest);
+		return dest;
+	}
+
+	private void calcule(final float[] signal, final int debut, final float[] dest, final int nbRaies,
+			final boolean enModule)
+	{
+		final int demi = taille/2;
+		if (nbRaies > demi+1)
+			throw new IllegalArgumentException("Au plus "+(demi+1)+" raies disponibles, "+nbRaies+" demandées");
+
+		// Échantillons pairs en partie réelle, impairs en partie imaginaire
+		for (int i = 0; i < demi; ++i)
+		{
+			reel[i] = signal[debut+2*i];
+			imag[i] = signal[debut+2*i+1];
+		}
+		plan.transforme(reel, imag);
+
+		// Séparation des spectres pair (E) et impair (O) puis recombinaison
+		// X[k] = E[k] + exp(-2iπk/N).O[k]
+		for (int k = 0; k < nbRaies; ++k)
+		{
+			final int a = k%demi;
+			final int b = (demi-k)%demi;
+			final double er = (reel[a]+reel[b])*.5;
+			final double ei = (imag[a]-imag[b])*.5;
+			final double or = (imag[a]+imag[b])*.5;
+			final double oi = (reel[b]-reel[a])*.5;
+			final double xr = er+cosinus[k]*or-sinus[k]*oi;
+			final double xi = ei+cosinus[k]*oi+sinus[k]*or;
+			final double p = xr*xr+xi*xi;
+			dest[k] = (float)(enModule ? Math.sqrt(p) : p);
+		}
+	}
+}
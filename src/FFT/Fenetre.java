@@ -0,0 +1,63 @@
+package FFT;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+// *****************************************************************************
+// Fenêtres de pondération appliquées à chaque trame avant la FFT, pour
+// limiter les fuites spectrales dues au découpage du signal.
+// Les coefficients sont calculés une seule fois par taille (forme périodique,
+// adaptée aux trames qui se recouvrent) puis partagés : ne pas les modifier.
+
+public enum Fenetre
+{
+	RECTANGULAIRE("rect"),
+	HANN("hann"),
+	HAMMING("hamming"),
+	BLACKMAN("blackman");
+
+	private final String nom;
+	private final ConcurrentHashMap<Integer, float[]> coefficients = new ConcurrentHashMap<>();
+
+	Fenetre(final String nom)
+	{
+		this.nom = nom;
+	}
+
+	// Nom court, tel qu'accepté en ligne de commande
+	public String nom() {return nom;}
+
+	// Renvoie la fenêtre correspondant au nom court (insensible à la casse)
+	public static Fenetre depuisNom(final String nom)
+	{
+		for (final Fenetre fenetre : values())
+			if (fenetre.nom.equalsIgnoreCase(nom))
+				return fenetre;
+		throw new IllegalArgumentException("Fenêtre inconnue : "+nom);
+	}
+
+	// Coefficients de la fenêtre de taille donnée (tableau partagé)
+	public float[] coefficients(final int taille)
+	{
+		float[] w = coefficients.get(taille);
+		if (w == null)
+			w = coefficients.computeIfAbsent(taille, this::calcule);
+		return w;
+	}
+
+	private float[] calcule(final int taille)
+	{
+		final float[] w = new float[taille];
+		for (int i = 0; i < taille; ++i)
+		{
+			final double x = 2.*Math.PI*i/taille;
+			switch (this)
+			{
+				case HANN: w[i] = (float)(.5-.5*Math.cos(x)); break;
+				case HAMMING: w[i] = (float)(.54-.46*Math.cos(x)); break;
+				case BLACKMAN: w[i] = (float)(.42-.5*Math.cos(x)+.08*Math.cos(2.*x)); break;
+				default: w[i] = 1.f; break;
+			}
+		}
+		return w;
+	}
+}
@@ -0,0 +1,53 @@
+package FFT;
+
+// *****************************************************************************
+// Algorithme de Goertzel : calcule le module de quelques raies isolées d'un
+// bloc de taille N en O(N) par raie, sans FFT complète. Plus économique que
+// la FFT lorsque le nombre de raies utiles est petit devant log2(N).
+// Les fréquences ne sont pas limitées aux raies entières de la DFT.
+// Une instance est immuable et peut être partagée entre plusieurs threads.
+
+public class Goertzel
+{
+	private final int tailleBloc;
+	// 2.cos(2πk/N) pour chaque raie k suivie
+	private final double[] coefficients;
+
+	// raies : indices (éventuellement fractionnaires) des raies à calculer
+	public Goertzel(final int tailleBloc, final double[] raies)
+	{
+		this.tailleBloc = tailleBloc;
+		coefficients = new double[raies.length];
+		for (int j = 0; j < raies.length; ++j)
+			coefficients[j] = 2.*Math.cos(2.*Math.PI*raies[j]/tailleBloc);
+	}
+
+	// Raies correspondant à des fréquences en Hz, pour une fréquence d'échantillonnage donnée
+	public static Goertzel pourFrequences(final int tailleBloc, final double[] frequences, final int frequenceEchantillonnage)
+	{
+		final double[] raies = new double[frequences.length];
+		for (int j = 0; j < frequences.length; ++j)
+			raies[j] = frequences[j]*tailleBloc/frequenceEchantillonnage;
+		return new Goertzel(tailleBloc, raies);
+	}
+
+	public int tailleBloc() {return tailleBloc;}
+	public int nbRaies() {return coefficients.length;}
+
+	// Écrit dans dest le module de chaque raie pour bloc[debut..debut+N[
+	public void modules(final float[] bloc, final int debut, final float[] dest)
+	{
+		for (int j = 0; j < coefficients.length; ++j)
+		{
+			final double c = coefficients[j];
+			double s1 = 0, s2 = 0;
+			for (int i = debut; i < debut+tailleBloc; ++i)
+			{
+				final double s = bloc[i]+c*s1-s2;
+				s2 = s1;
+				s1 = s;
+			}
+			dest[j] = (float)Math.sqrt(Math.max(0., s1*s1+s2*s2-c*s1*s2));
+		}
+	}
+}
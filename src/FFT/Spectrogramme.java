@@ -0,0 +1,138 @@
+package FFT;
+
+import Son.FluxSon;
+import Son.Son;
+
+// *****************************************************************************
+// Transformée de Fourier à court terme (STFT) d'un Son ou d'un FluxSon : des trames de
+// tailleFFT échantillons, espacées de "pas" échantillons et pondérées par
+// une fenêtre, sont transformées une à une au fil du parcours.
+// Les trames sont produites de manière incrémentale (suivante() ou parcourir)
+// sans jamais matérialiser le spectrogramme entier. Un tampon circulaire
+// conserve la partie commune à deux trames successives : chaque échantillon
+// n'est lu qu'une seule fois depuis le son, quel que soit le recouvrement.
+// Lu depuis un FluxSon, un fichier de n'importe quelle durée est analysé
+// avec une mémoire constante.
+// Le tableau renvoyé par spectre() est réutilisé d'une trame à l'autre.
+
+public class Spectrogramme
+{
+	// Reçoit chaque trame calculée : numéro, premier échantillon et spectre
+	@FunctionalInterface
+	public interface EcouteurTrame
+	{
+		public void trame(int indice, long debut, float[] spectre);
+	}
+
+	private final FluxSon flux;
+	private final int tailleFFT;
+	private final int pas;
+	private final float[] coefficients;
+	private final FFTReelle fft;
+
+	// Tampon circulaire des tailleFFT derniers échantillons, le plus ancien en "tete"
+	private final float[] anneau;
+	private int tete = 0;
+	// Trame fenêtrée, entrée de la FFT
+	private final float[] trame;
+	private final float[] spectre;
+
+	// Numéro de la trame courante (-1 avant la première)
+	private int indice = -1;
+
+	// nbRaies : nombre de raies gardées par trame, au plus tailleFFT/2+1
+	public Spectrogramme(final Son son, final int tailleFFT, final int pas, final Fenetre fenetre, final int nbRaies)
+	{
+		this(new FluxSon(son, FluxSon.TailleMorceau), tailleFFT, pas, fenetre, nbRaies);
+	}
+
+	// Spectrogramme gardant toutes les raies non redondantes (tailleFFT/2+1)
+	public Spectrogramme(final Son son, final int tailleFFT, final int pas, final Fenetre fenetre)
+	{
+		this(son, tailleFFT, pas, fenetre, tailleFFT/2+1);
+	}
+
+	// Spectrogramme lu au fil d'un flux (qui reste à fermer par l'appelant)
+	public Spectrogramme(final FluxSon flux, final int tailleFFT, final int pas, final Fenetre fenetre,
+			final int nbRaies)
+	{
+		if (pas < 1)
+			throw new IllegalArgumentException("Pas de trame invalide : "+pas);
+		if (nbRaies > tailleFFT/2+1)
+			throw new IllegalArgumentException("Au plus "+(tailleFFT/2+1)+" raies disponibles, "+nbRaies+" demandées");
+		this.flux = flux;
+		this.tailleFFT = tailleFFT;
+		this.pas = pas;
+		coefficients = fenetre.coefficients(tailleFFT);
+		fft = new FFTReelle(tailleFFT);
+		anneau = new float[tailleFFT];
+		trame = new float[tailleFFT];
+		spectre = new float[nbRaies];
+	}
+
+	public int tailleFFT() {return tailleFFT;}
+	public int pas() {return pas;}
+	// Numéro de la trame courante
+	public int indice() {return indice;}
+	// Position (en échantillons) du début de la trame courante
+	public long debut() {return (long)indice*pas;}
+	// Spectre de la trame courante (tableau réutilisé)
+	public float[] spectre() {return spectre;}
+
+	// Nombre total de trames complètes que fournira le parcours,
+	// ou -1 si la durée du flux n'est pas connue
+	public int nbTrames()
+	{
+		final long taille = flux.taille();
+		if (taille < 0)
+			return -1;
+		return taille < tailleFFT ? 0 : (int)((taille-tailleFFT)/pas+1);
+	}
+
+	// Passe à la trame suivante et calcule son spectre ;
+	// renvoie false lorsque le son ne contient plus de trame complète
+	public boolean suivante()
+	{
+		if (indice < 0 || pas >= tailleFFT)
+		{
+			// Pas de recouvrement : la trame est entièrement lue
+			if (indice >= 0 && flux.saute(pas-tailleFFT) < pas-tailleFFT)
+				return false;
+			if (lire(0, tailleFFT) < tailleFFT)
+				return false;
+			tete = 0;
+		}
+		else
+		{
+			// Seuls les "pas" nouveaux échantillons remplacent les plus anciens
+			final int avantFin = Math.min(pas, tailleFFT-tete);
+			if (lire(tete, avantFin) < avantFin || lire(0, pas-avantFin) < pas-avantFin)
+				return false;
+			tete = (tete+pas)%tailleFFT;
+		}
+		++indice;
+
+		// Remise dans l'ordre chronologique et pondération par la fenêtre
+		final int fin = tailleFFT-tete;
+		for (int i = 0; i < fin; ++i)
+			trame[i] = anneau[tete+i]*coefficients[i];
+		for (int i = fin; i < tailleFFT; ++i)
+			trame[i] = anneau[i-fin]*coefficients[i];
+		fft.module(trame, 0, spectre);
+		return true;
+	}
+
+	// Calcule toutes les trames restantes et les transmet à l'écouteur
+	public void parcourir(final EcouteurTrame ecouteur)
+	{
+		while (suivante())
+			ecouteur.trame(indice, debut(), spectre);
+	}
+
+	// Copie jusqu'à n échantillons du son dans anneau[position..] ;
+	// renvoie le nombre d'échantillons effectivement lus
+	private int lire(final int position, final int n)
+	{
+		return flux.lire(anneau, position, n);
+	}
+}
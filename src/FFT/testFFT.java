@@ -0,0 +1,292 @@
+package FFT;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+public class testFFT
+{
+	final static double ToleranceDouble = 1.e-9; // Erreur relative acceptée en double précision
+	final static double ToleranceFloat = 1.e-4;  // Erreur relative acceptée en simple précision
+
+	/**
+	 * Compare les plans de FFT à une DFT directe sur des signaux aléatoires.
+	 * @param args Aucun argument n'est attendu.
+	 */
+	public static void main(final String[] args)
+	{
+		final Random rand = new Random(42);
+		boolean succes = true;
+
+		// Plans de Bluestein construits avant tout autre : leur plan de
+		// convolution est demandé pendant leur construction
+		boolean construits = true;
+		try
+		{
+			construits &= FFTPlan.pour(112).taille() == 112 && FFTPlan.pour(176).taille() == 176;
+			new FFTReelle(224);
+		}
+		catch (IllegalStateException e)
+		{
+			construits = false;
+		}
+		System.out.println((construits ? "OK     " : "ÉCHEC  ")+"construction des plans 112, 176 et 224");
+		succes &= construits;
+
+		final int[] tailles = {1, 2, 4, 8, 64, 1024, 4096,	// radix 2
+				3, 5, 6, 12, 15, 60, 960, 1200,				// radix mixte
+				7, 11, 14, 97, 112, 176, 1001};					// Bluestein
+		for (final int taille : tailles)
+		{
+			final double[] reel = new double[taille];
+			final double[] imag = new double[taille];
+			for (int i = 0; i < taille; ++i)
+			{
+				reel[i] = rand.nextDouble()*2-1;
+				imag[i] = rand.nextDouble()*2-1;
+			}
+			final double[][] attendu = dft(reel, imag);
+
+			// Plan en double précision
+			final double[] r = reel.clone();
+			final double[] m = imag.clone();
+			FFTPlan.pour(taille).transforme(r, m);
+			succes &= verifie("FFTPlan double", taille, attendu, r, m, ToleranceDouble);
+
+			// Plan en simple précision
+			final float[] rf = new float[taille];
+			final float[] mf = new float[taille];
+			for (int i = 0; i < taille; ++i)
+			{
+				rf[i] = (float)reel[i];
+				mf[i] = (float)imag[i];
+			}
+			FFTPlan.pour(taille).transforme(rf, mf);
+			succes &= verifie("FFTPlan float", taille, attendu, toDouble(rf), toDouble(mf), ToleranceFloat);
+
+			// Enveloppe de compatibilité sur Complexe[]
+			final Complexe[] signal = new Complexe[taille];
+			for (int i = 0; i < taille; ++i)
+				signal[i] = new ComplexeCartesien(reel[i], imag[i]);
+			final Complexe[] resultat = FFTCplx.appliqueSur(signal);
+			final double[] rc = new double[taille];
+			final double[] mc = new double[taille];
+			for (int i = 0; i < taille; ++i)
+			{
+				rc[i] = resultat[i].reel();
+				mc[i] = resultat[i].imag();
+			}
+			succes &= verifie("appliqueSur", taille, attendu, rc, mc, ToleranceDouble);
+		}
+
+		// FFT d'un signal réel : seules les N/2+1 premières raies sont produites
+		for (final int taille : new int[] {2, 4, 16, 1024, 6, 10, 960, 22, 224, 1200})
+		{
+			final float[] signal = new float[taille];
+			final double[] reel = new double[taille];
+			for (int i = 0; i < taille; ++i)
+				reel[i] = signal[i] = rand.nextFloat()*2-1;
+			final double[][] attendu = dft(reel, new double[taille]);
+			final double[][] moduleAttendu = new double[2][taille/2+1];
+			for (int k = 0; k <= taille/2; ++k)
+				moduleAttendu[0][k] = Math.hypot(attendu[0][k], attendu[1][k]);
+			final FFTReelle fft = new FFTReelle(taille);
+			succes &= verifie("FFTReelle module", taille, moduleAttendu,
+					toDouble(fft.module(signal)), new double[taille/2+1], ToleranceFloat);
+			final float[] puissance = fft.puissance(signal);
+			final double[] racines = new double[puissance.length];
+			for (int k = 0; k < puissance.length; ++k)
+				racines[k] = Math.sqrt(puissance[k]);
+			succes &= verifie("FFTReelle puissance", taille, moduleAttendu,
+					racines, new double[taille/2+1], ToleranceFloat);
+		}
+
+		// FFT par lots en simple précision (vectorielle si disponible, et scalaire)
+		final int tailleLot = 256;
+		final int nbBlocs = 21;
+		final float[] lotReel = new float[nbBlocs*tailleLot];
+		final float[] lotImag = new float[nbBlocs*tailleLot];
+		for (int i = 0; i < lotReel.length; ++i)
+		{
+			lotReel[i] = rand.nextFloat()*2-1;
+			lotImag[i] = rand.nextFloat()*2-1;
+		}
+		for (final FFTLot lot : new FFTLot[] {FFTLot.cree(tailleLot), new FFTLotScalaire(tailleLot)})
+		{
+			final float[] r = lotReel.clone();
+			final float[] m = lotImag.clone();
+			lot.transforme(r, m, nbBlocs);
+			for (int b = 0; b < nbBlocs; ++b)
+			{
+				final double[] reel = new double[tailleLot];
+				final double[] imag = new double[tailleLot];
+				for (int i = 0; i < tailleLot; ++i)
+				{
+					reel[i] = lotReel[b*tailleLot+i];
+					imag[i] = lotImag[b*tailleLot+i];
+				}
+				final double[] obtenuReel = new double[tailleLot];
+				final double[] obtenuImag = new double[tailleLot];
+				for (int i = 0; i < tailleLot; ++i)
+				{
+					obtenuReel[i] = r[b*tailleLot+i];
+					obtenuImag[i] = m[b*tailleLot+i];
+				}
+				succes &= verifie(lot.getClass().getSimpleName(), tailleLot, dft(reel, imag),
+						obtenuReel, obtenuImag, ToleranceFloat);
+			}
+		}
+
+		// Spectrogramme avec recouvrement : chaque trame doit valoir la FFT de
+		// l'extrait correspondant, pondéré par la fenêtre
+		final float[] signal = new float[10000];
+		for (int i = 0; i < signal.length; ++i)
+			signal[i] = rand.nextFloat()*2-1;
+		for (final int pas : new int[] {64, 256, 300, 512})
+		{
+			final Spectrogramme stft = new Spectrogramme(new Son.Son(signal, 16000), 256, pas, Fenetre.HANN);
+			final FFTReelle fft = new FFTReelle(256);
+			final float[] w = Fenetre.HANN.coefficients(256);
+			final float[] extrait = new float[256];
+			int nbTrames = 0;
+			while (stft.suivante())
+			{
+				for (int i = 0; i < 256; ++i)
+					extrait[i] = signal[(int)stft.debut()+i]*w[i];
+				final double[][] attendu = {toDouble(fft.module(extrait)), new double[129]};
+				succes &= verifie("Spectrogramme (pas "+pas+")", 256, attendu,
+						toDouble(stft.spectre()), new double[129], ToleranceFloat);
+				++nbTrames;
+			}
+			if (nbTrames != stft.nbTrames())
+			{
+				System.out.println("Spectrogramme (pas "+pas+") : "+nbTrames+" trames au lieu de "+stft.nbTrames());
+				succes = false;
+			}
+
+			// Même résultat lu par petits morceaux (frontières de morceaux dans les trames)
+			final Spectrogramme parFlux = new Spectrogramme(new Son.FluxSon(new Son.Son(signal, 16000), 100),
+					256, pas, Fenetre.HANN, 129);
+			final Spectrogramme enMemoire = new Spectrogramme(new Son.Son(signal, 16000), 256, pas, Fenetre.HANN);
+			int nbTramesFlux = 0;
+			while (parFlux.suivante() && enMemoire.suivante())
+			{
+				succes &= verifie("Spectrogramme par flux (pas "+pas+")", 256,
+						new double[][] {toDouble(enMemoire.spectre()), new double[129]},
+						toDouble(parFlux.spectre()), new double[129], 0);
+				++nbTramesFlux;
+			}
+			if (nbTramesFlux != nbTrames)
+			{
+				System.out.println("Spectrogramme par flux (pas "+pas+") : "+nbTramesFlux+" trames au lieu de "+nbTrames);
+				succes = false;
+			}
+		}
+
+		// DFT glissante et Goertzel : comparaison avec la FFT des derniers échantillons
+		final int[] raies = {0, 3, 17, 64, 128};
+		final DFTGlissante glissante = new DFTGlissante(256, raies, 100);
+		final Goertzel goertzel = new Goertzel(256, new double[] {0, 3, 17, 64, 128});
+		final FFTReelle reference = new FFTReelle(256);
+		final float[] derniers = new float[256];
+		final float[] parGoertzel = new float[raies.length];
+		for (int i = 0; i < signal.length; ++i)
+		{
+			if (!glissante.ajoute(signal[i]))
+				continue;
+			System.arraycopy(signal, i-255, derniers, 0, 256);
+			final float[] spectre = reference.module(derniers);
+			final double[] attendu = new double[raies.length];
+			for (int j = 0; j < raies.length; ++j)
+				attendu[j] = spectre[raies[j]];
+			goertzel.modules(derniers, 0, parGoertzel);
+			succes &= verifie("DFTGlissante", 256, new double[][] {attendu, new double[raies.length]},
+					toDouble(glissante.modules()), new double[raies.length], ToleranceFloat);
+			succes &= verifie("Goertzel", 256, new double[][] {attendu, new double[raies.length]},
+					toDouble(parGoertzel), new double[raies.length], ToleranceFloat);
+		}
+
+		// FFT parallèle en six étapes : petites tailles (seuil abaissé) comparées
+		// à la DFT directe, grandes tailles comparées au plan en double précision
+		final ForkJoinPool pool = ForkJoinPool.commonPool();
+		for (final int taille : new int[] {16, 32, 1024, 2048, 1<<17, 1<<18})
+		{
+			final double[] reel = new double[taille];
+			final double[] imag = new double[taille];
+			final float[] rf = new float[taille];
+			final float[] mf = new float[taille];
+			for (int i = 0; i < taille; ++i)
+			{
+				rf[i] = (float)(reel[i] = rand.nextDouble()*2-1);
+				mf[i] = (float)(imag[i] = rand.nextDouble()*2-1);
+			}
+			final double[][] attendu;
+			if (taille <= 2048)
+				attendu = dft(reel, imag);
+			else
+			{
+				FFTPlan.pour(taille).transforme(reel, imag);
+				attendu = new double[][] {reel, imag};
+			}
+			new FFTParallele(taille, pool, 4).transforme(rf, mf);
+			succes &= verifie("FFTParallele", taille, attendu, toDouble(rf), toDouble(mf), ToleranceFloat);
+		}
+		// Spectre d'un signal réel complété par des zéros (2^19 points)
+		final float[] enregistrement = new float[1<<19];
+		for (int i = 0; i < 300000; ++i)
+			enregistrement[i] = rand.nextFloat()*2-1;
+		final double[][] spectreAttendu = {toDouble(new FFTReelle(1<<19).module(enregistrement)), new double[(1<<18)+1]};
+		succes &= verifie("FFTParallele.module", 1<<19, spectreAttendu,
+				toDouble(FFTParallele.module(Arrays.copyOf(enregistrement, 300000), pool)),
+				new double[(1<<18)+1], ToleranceFloat);
+
+		System.out.println(succes ? "Tous les tests FFT sont passés" : "Des tests FFT ont échoué");
+		if (!succes)
+			System.exit(1);
+	}
+
+	// DFT directe en O(n²), servant de référence
+	static double[][] dft(final double[] reel, final double[] imag)
+	{
+		final int n = reel.length;
+		final double[][] resultat = new double[2][n];
+		for (int k = 0; k < n; ++k)
+		{
+			double sr = 0, si = 0;
+			for (int t = 0; t < n; ++t)
+			{
+				final double angle = -2.*Math.PI*((long)k*t % n)/n;
+				sr += reel[t]*Math.cos(angle)-imag[t]*Math.sin(angle);
+				si += reel[t]*Math.sin(angle)+imag[t]*Math.cos(angle);
+			}
+			resultat[0][k] = sr;
+			resultat[1][k] = si;
+		}
+		return resultat;
+	}
+
+	// Affiche et renvoie le résultat de la comparaison avec la référence
+	static boolean verifie(final String nom, final int taille, final double[][] attendu,
+			final double[] reel, final double[] imag, final double tolerance)
+	{
+		double erreur = 0, norme = 0;
+		for (int k = 0; k < reel.length; ++k)
+		{
+			erreur = Math.max(erreur, Math.hypot(reel[k]-attendu[0][k], imag[k]-attendu[1][k]));
+			norme = Math.max(norme, Math.hypot(attendu[0][k], attendu[1][k]));
+		}
+		final double relative = norme > 0 ? erreur/norme : erreur;
+		final boolean ok = relative <= tolerance;
+		if (!ok)
+			System.out.println(nom+" (taille "+taille+") : erreur relative "+relative);
+		return ok;
+	}
+
+	static double[] toDouble(final float[] valeurs)
+	{
+		final double[] resultat = new double[valeurs.length];
+		for (int i = 0; i < valeurs.length; ++i)
+			resultat[i] = valeurs[i];
+		return resultat;
+	}
+}
@@ -1,12 +1,37 @@
-// Importation des classes nécessaires pour la FFT (transformée de Fourier rapide)
-import FFT.Complexe;
-import FFT.ComplexeCartesien;
-import FFT.FFTCplx;
+// Importation des classes nécessaires pour l'analyse spectrale (FFT à court terme)
+import FFT.Fenetre;
+// Importation de l'étage d'extraction des caractéristiques (spectre, mel, MFCC) et de son cache
+import caracteristiques.AnalyseParallele;
+import caracteristiques.CacheCaracteristiques;
+import caracteristiques.Extracteur;
+import caracteristiques.FluxCaracteristiques;
+import caracteristiques.JeuDeDonnees;
+// Importation de la lecture en flux des fichiers audio
+import Son.FluxSon;
 // Importation des différents types de neurones artificiels
+import neurone.ConfigApprentissage;
+import neurone.EcouteurApprentissage;
+import neurone.Activation;
+import neurone.Reseau;
+import neurone.iNeurone;
+import neurone.Modele;
+import neurone.ModeleNeurone;
+import neurone.ModeleQuantifie;
+import neurone.Neurone;
 import neurone.NeuroneHeavyside;
 import neurone.NeuroneSigmoide;
 import neurone.NeuroneReLU;
+import neurone.ProduitScalaire;
+import pipeline.Etage;
+import sortie.CanalTampon;
+import sortie.EcrivainResultats;
+import sortie.Format;
+import sortie.Segmentation;
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Programme principal de classification audio : Chat vs Chien
@@ -22,34 +47,176 @@ import java.io.File;
 public class Main {
 
     // CONSTANTES DU PROGRAMME
-    // Taille de chaque segment audio analysé (1024 échantillons ≈ 0.02 seconde à 44kHz)
-    static final int tailleBloc = 1024;
-    // Nombre d'exemples utilisés pour entraîner le neurone (20 miaulements + 20 aboiements)
+    // Nombre d'exemples pris dans un fichier d'entraînement seul (20 miaulements + 20 aboiements)
     static final int nbExtraitsParClasse = 20;
 
+    // RÉGLAGES MODIFIABLES EN LIGNE DE COMMANDE
+    // Taille de chaque segment audio analysé (1024 échantillons ≈ 0.02 seconde à 44kHz)
+    static int tailleBloc = 1024;
+    // Décalage entre deux blocs successifs (0 = tailleBloc, blocs sans recouvrement)
+    static int pas = 0;
+    // Fenêtre de pondération appliquée à chaque bloc avant la FFT
+    static Fenetre fenetre = Fenetre.RECTANGULAIRE;
+    // Caractéristiques données au neurone : spectre brut, bancs de filtres ou MFCC
+    static Extracteur.Type typeCaracteristiques = Extracteur.Type.SPECTRE;
+    static int nbFiltres = 40;
+    static boolean compression = false;
+    static int nbCoefficients = 13;
+    // Fréquence à laquelle les sons sont rééchantillonnés dès leur lecture (0 = fréquence des fichiers)
+    static int frequenceCible = 0;
+    // Blocs pris au début de chaque fichier d'un dossier d'entraînement (0 = tous)
+    static int blocsParFichier = 0;
+    // Cache sur disque des caractéristiques (désactivé sans l'option -cache)
+    static String dossierCache = null;
+    static long tailleMaxCache = 256;  // Mo
+    static CacheCaracteristiques cache = null;
+    // Apprentissage par mini-lots répartis entre les cœurs (0 = exemple par exemple)
+    static int tailleLot = 0;
+    static boolean hogwild = false;
+    // Neurones de la couche cachée (0 = neurone seul, sans couche cachée)
+    static int nbCachees = 0;
+    // Graine des poids initiaux du neurone (null = tirage non reproductible)
+    static Long graine = null;
+    // Sauvegarde du neurone au format texte (une valeur par ligne) plutôt qu'au format binaire
+    static boolean formatTexte = false;
+    // Analyse par le modèle quantifié en int8 (neurone seul)
+    static boolean quantification = false;
+    // Exemples étiquetés mis de côté (miaulements, aboiements) sur lesquels comparer
+    // le neurone float et sa version int8 (null : pas de comparaison)
+    static String[] sourcesValidation = null;
+    // Dossier d'apprentissage à plusieurs classes (un sous-dossier par classe), null pour chat/chien
+    static String dossierClasses = null;
+    // Noms des classes, dans l'ordre des sorties du réseau (null pour chat/chien)
+    static List<String> nomsClasses = null;
+    // Champ de la description du neurone qui donne les noms des classes
+    static final String ChampClasses = ";classes=";
+    // Threads de l'analyse du fichier long (1 = bloc par bloc, sans threads)
+    static int nbThreadsAnalyse = 1;
+    // Threads de chaque étage (lecture des fichiers, caractéristiques, classification),
+    // null pour la répartition par défaut
+    static int[] threadsEtages = null;
+    // Affichage du résultat de chaque bloc du fichier long (sinon : résumé seul)
+    static boolean afficheBlocs = false;
+    // Fichier de résultats : format (RESUME : aucun fichier) et chemin (null : nom du fichier analysé)
+    static Format formatSortie = Format.RESUME;
+    static String fichierSortie = null;
+    // Regroupement des blocs consécutifs de même étiquette en segments, lissés
+    // par une médiane sur lissageMedian blocs et une hystérésis
+    static boolean segmentsSortie = false;
+    static int lissageMedian = 1;
+    static float hysteresis = 0;
+    // Réglages de l'apprentissage (critères d'arrêt, coefficient, optimiseur)
+    static ConfigApprentissage configApprentissage = ConfigApprentissage.parDefaut();
+    // Époques entre deux affichages de la progression de l'apprentissage
+    static final int epoquesParAffichage = 100;
+    // Extension des fichiers de neurone au format binaire
+    static final String ExtensionBinaire = ".mod";
+
     /**
      * Méthode principale du programme
      * @param args Arguments de la ligne de commande :
-     *            [0] fichier de miaulements
-     *            [1] fichier d'aboiements
+     *            [0] fichier de miaulements, ou dossier de fichiers de miaulements
+     *            [1] fichier d'aboiements, ou dossier de fichiers d'aboiements
      *            [2] fichier long à analyser
      *            [3] type de neurone (R/H/S)
+     *            puis des options facultatives :
+     *            -bloc N       taille des blocs analysés
+     *            -pas N        décalage en échantillons entre deux blocs
+     *            -fenetre F    fenêtre de pondération (rect, hann, hamming, blackman)
+     *            -caracteristiques T  entrées du neurone (spectre, mel, log, mfcc)
+     *            -filtres N    nombre de filtres du banc mel ou log
+     *            -compression  compression logarithmique des énergies des filtres
+     *            -coefficients N  nombre de coefficients MFCC
+     *            -frequence F  fréquence de rééchantillonnage des sons, en Hz
+     *            -cache D      dossier du cache des caractéristiques
+     *            -cacheMax N   taille maximale du cache, en Mo
+     *            -blocsParFichier N  blocs pris au début de chaque fichier d'un dossier d'entraînement
+     *            -lot N        apprentissage par mini-lots de N exemples, en parallèle
+     *            -hogwild      mini-lots avec mises à jour des poids sans verrou
+     *            -graine N     graine des poids initiaux, pour des entraînements reproductibles
+     *            -cachee N     réseau à une couche cachée de N neurones au lieu d'un neurone seul
+     *            -texte        sauvegarde du neurone au format texte au lieu du format binaire
+     *            -quantifie    analyse par le neurone quantifié en int8
+     *            -validation M,A  neurones float et int8 comparés sur des exemples mis de côté
+     *            -threads N    analyse du fichier long répartie entre N threads (0 = tous les cœurs)
+     *            -etages L,C,E threads de lecture, de caractéristiques et de classification
+     *            -blocs        affichage du résultat de chaque bloc du fichier long
+     *            -segments     regroupement des blocs consécutifs de même étiquette en segments
+     *            -lissage N    segments lissés par une médiane sur N blocs (N impair)
+     *            -hysteresis X segments changeant d'étiquette avec un écart d'au moins X
+     *            -format F     fichier de résultats csv, jsonl ou bin
+     *            -sortie F     chemin du fichier de résultats (format d'après l'extension)
+     *            -classes D    apprentissage de plusieurs classes, une par sous-dossier de D
+     *                          (les deux premiers paramètres sont alors ignorés)
+     *            -epoques N    nombre maximal d'époques d'apprentissage
+     *            -duree S      durée maximale de l'apprentissage, en secondes
+     *            -patience N   arrêt après N époques sans progrès (0 = jamais)
+     *            -eta X        coefficient d'apprentissage
+     *            -methode M    mise à jour des poids (sgd, inertie, adam)
+     *            -planning P   évolution du coefficient (constant, exponentiel, cosinus)
      */
     public static void main(String[] args) {
 
         // VÉRIFICATION DES ARGUMENTS
         // Le programme a besoin de exactement 4 paramètres pour fonctionner
-        if (args.length != 4) {
-            System.out.println("Usage : java Main miaulement.wav aboiement.wav fichier_long.wav [R|H|S]");
+        if (args.length < 4 || !lireOptions(args)) {
+            System.out.println("Usage : java Main miaulement.wav aboiement.wav fichier_long.wav [R|H|S] [options]");
+            System.out.println("  (miaulement.wav et aboiement.wav peuvent être des dossiers de fichiers WAV)");
             System.out.println("  R = ReLU");        // Fonction d'activation linéaire rectifiée
             System.out.println("  H = Heavyside");   // Fonction d'activation en escalier (0 ou 1)
             System.out.println("  S = Sigmoide");    // Fonction d'activation en courbe S (0 à 1)
+            System.out.println("Options :");
+            System.out.println("  -bloc N        taille des blocs analysés (défaut 1024)");
+            System.out.println("  -pas N         décalage entre deux blocs (défaut : taille des blocs, sans recouvrement)");
+            System.out.println("  -fenetre F     fenêtre rect, hann, hamming ou blackman (défaut rect)");
+            System.out.println("  -caracteristiques T  spectre (défaut), mel, log (filtres en échelle log) ou mfcc");
+            System.out.println("  -filtres N     nombre de filtres mel ou log (défaut 40)");
+            System.out.println("  -compression   logarithme des énergies des filtres");
+            System.out.println("  -coefficients N  nombre de coefficients MFCC (défaut 13)");
+            System.out.println("  -frequence F   rééchantillonne les sons à F Hz dès leur lecture (ex. 16000)");
+            System.out.println("  -cache D       garde les caractéristiques calculées dans le dossier D");
+            System.out.println("  -cacheMax N    taille maximale du cache en Mo (défaut 256)");
+            System.out.println("  -blocsParFichier N  blocs pris au début de chaque fichier d'un dossier (défaut : tous)");
+            System.out.println("  -lot N         apprentissage par mini-lots de N exemples répartis entre les cœurs");
+            System.out.println("  -hogwild       mini-lots avec mises à jour des poids sans verrou (non reproductible)");
+            System.out.println("  -graine N      graine des poids initiaux (entraînement reproductible)");
+            System.out.println("  -cachee N      réseau à une couche cachée de N neurones (défaut : neurone seul)");
+            System.out.println("  -texte         sauvegarde du neurone au format texte (défaut : binaire, .mod)");
+            System.out.println("  -quantifie     analyse par le neurone quantifié en int8 (poids 4 fois plus petits)");
+            System.out.println("  -validation M,A  compare les neurones float et int8 sur des miaulements M et des");
+            System.out.println("                 aboiements A (fichiers ou dossiers) non vus à l'entraînement");
+            System.out.println("  -threads N     analyse répartie entre N threads (défaut 1, 0 = tous les cœurs)");
+            System.out.println("  -etages L,C,E  threads par étage : lecture, caractéristiques, classification");
+            System.out.println("  -blocs         affiche le résultat de chaque bloc (défaut : résumé seul)");
+            System.out.println("  -segments      regroupe les blocs consécutifs de même étiquette en segments");
+            System.out.println("  -lissage N     segments lissés par une médiane sur N blocs (N impair, défaut 1)");
+            System.out.println("  -hysteresis X  changement d'étiquette d'un segment à un écart d'au moins X (défaut 0)");
+            System.out.println("  -format F      résultats dans un fichier csv, jsonl ou bin (défaut : résumé seul)");
+            System.out.println("  -sortie F      fichier des résultats (défaut : nom du fichier analysé_resultats)");
+            System.out.println("  -classes D     une classe par sous-dossier de D, couche de sortie softmax");
+            System.out.println("                 (miaulement.wav et aboiement.wav sont alors ignorés, par exemple -)");
+            System.out.println("  -epoques N     nombre maximal d'époques d'apprentissage (défaut 1000)");
+            System.out.println("  -duree S       durée maximale de l'apprentissage en secondes (défaut : sans limite)");
+            System.out.println("  -patience N    arrêt après N époques sans progrès de l'erreur (défaut 50, 0 = jamais)");
+            System.out.println("  -eta X         coefficient d'apprentissage (défaut 0.0001)");
+            System.out.println("  -methode M     sgd (défaut), inertie ou adam");
+            System.out.println("  -planning P    constant (défaut), exponentiel (x0.99 par époque) ou cosinus");
             return;
         }
+        if (pas == 0) {
+            pas = tailleBloc;
+        }
+        if (dossierCache != null) {
+            try {
+                cache = new CacheCaracteristiques(Path.of(dossierCache), tailleMaxCache << 20);
+            } catch (IOException e) {
+                System.err.println("Cache de caractéristiques désactivé : " + e.getMessage());
+            }
+        }
 
         // RÉCUPÉRATION DES PARAMÈTRES
-        String fichierMiaulement = args[0];  // Fichier d'exemples de miaulements
-        String fichierAboiement = args[1];   // Fichier d'exemples d'aboiements
+        String fichierMiaulement = args[0];  // Fichier (ou dossier) d'exemples de miaulements
+        String fichierAboiement = args[1];   // Fichier (ou dossier) d'exemples d'aboiements
         String fichierLong = args[2];        // Fichier long à analyser
         String typeActivation = args[3].toUpperCase(); // Type de neurone choisi
 
@@ -60,65 +227,344 @@ public class Main {
             return;
         }
 
+        // SOURCES D'APPRENTISSAGE
+        // Miaulements (1) et aboiements (0), ou une source par classe, numérotées
+        // dans l'ordre alphabétique des sous-dossiers
+        List<JeuDeDonnees.Source> sources = new ArrayList<>();
+        if (dossierClasses != null) {
+            nomsClasses = new ArrayList<>();
+            try {
+                for (Path dossier : JeuDeDonnees.dossiersClasses(Path.of(dossierClasses))) {
+                    sources.add(new JeuDeDonnees.Source(dossier.toString(), nomsClasses.size(), blocsParFichier));
+                    nomsClasses.add(dossier.getFileName().toString());
+                }
+            } catch (IOException e) {
+                System.out.println("Erreur : dossier de classes illisible : " + e.getMessage());
+                return;
+            }
+            if (nomsClasses.size() < 2) {
+                System.out.println("Erreur : il faut au moins deux sous-dossiers de classes dans " + dossierClasses);
+                return;
+            }
+            System.out.println(nomsClasses.size() + " classes : " + String.join(", ", nomsClasses));
+        } else {
+            sources.add(new JeuDeDonnees.Source(fichierMiaulement, 1, blocsParSource(fichierMiaulement)));
+            sources.add(new JeuDeDonnees.Source(fichierAboiement, 0, blocsParSource(fichierAboiement)));
+        }
+
+        // RÉGLAGES DES CARACTÉRISTIQUES DEMANDÉS
+        // La fréquence d'échantillonnage sera fixée par les fichiers d'entraînement
+        Extracteur demande;
+        try {
+            demande = new Extracteur(typeCaracteristiques, tailleBloc, fenetre, 0,
+                    nbFiltres, compression, nbCoefficients);
+        } catch (IllegalArgumentException e) {
+            System.out.println("Erreur : " + e.getMessage());
+            return;
+        }
+
         // CONFIGURATION DU NEURONE SELON LE TYPE CHOISI
-        String fichierNeurone;  // Nom du fichier de sauvegarde du neurone entraîné
         String typeNeurone;     // Nom complet du type de neurone
 
         switch (typeActivation) {
             case "R":
-                fichierNeurone = "neuroneChatChienReLU.txt";
                 typeNeurone = "ReLU";
                 break;
             case "H":
-                fichierNeurone = "neuroneChatChienHeavyside.txt";
                 typeNeurone = "Heavyside";
                 break;
             case "S":
-                fichierNeurone = "neuroneChatChienSigmoide.txt";
                 typeNeurone = "Sigmoide";
                 break;
             default:
                 return;
         }
+        // Nom du fichier de sauvegarde du neurone entraîné, propre aux réglages
+        // des caractéristiques (inchangé pour les réglages par défaut), au format
+        // binaire (.mod) ou texte (.txt, avec -texte)
+        String nomNeurone = (nomsClasses != null ? "neuroneClasses" : "neuroneChatChien") + typeNeurone
+                + demande.suffixe()
+                + (frequenceCible > 0 ? "_" + frequenceCible + "Hz" : "")
+                + (nbCachees > 0 ? "_cachee" + nbCachees : "")
+                + (nomsClasses != null ? "_" + nomsClasses.size() + "classes" : "");
+        String fichierNeurone = nomNeurone + (formatTexte ? Neurone.ExtensionTexte : ExtensionBinaire);
 
-        System.out.println("Type de neurone sélectionné : " + typeNeurone);
+        System.out.println("Type de neurone sélectionné : " + typeNeurone
+                + (nbCachees > 0 ? " (réseau à " + nbCachees + " neurones cachés)" : ""));
         System.out.println("Fichier de sauvegarde : " + fichierNeurone);
 
-        // CRÉATION DU NEURONE
-        // Création d'un neurone avec une taille d'entrée de 512 (tailleBloc/2 fréquences)
-        Object neurone = creerNeurone(typeActivation, tailleBloc / 2);
-        if (neurone == null) {
-            System.err.println("Erreur : Impossible de créer le neurone de type " + typeNeurone);
-            return;
-        }
+        iNeurone neurone = null;       // Neurone chargé ou entraîné
+        Extracteur extracteur = null;  // Réglages des caractéristiques de ce neurone
 
         // VÉRIFICATION DE L'EXISTENCE D'UN NEURONE DÉJÀ ENTRAÎNÉ
         // Si un neurone a déjà été entraîné et sauvegardé, on essaie de le charger
+        // (à défaut, le même neurone enregistré dans l'autre format)
         File fichier = new File(fichierNeurone);
+        if (!fichier.isFile()) {
+            File autreFormat = new File(nomNeurone + (formatTexte ? ExtensionBinaire : Neurone.ExtensionTexte));
+            if (autreFormat.isFile()) {
+                fichier = autreFormat;
+            }
+        }
         if (fichier.exists() && fichier.isFile()) {
-            System.out.println("Fichier de neurone trouvé : " + fichierNeurone);
+            System.out.println("Fichier de neurone trouvé : " + fichier.getPath());
             System.out.println("Tentative de chargement du neurone existant...");
 
-            // Tentative de chargement du neurone pré-entraîné
-            boolean chargementReussi = chargerNeurone(neurone, typeActivation, fichierNeurone);
+            // Les caractéristiques enregistrées avec le neurone doivent correspondre à celles demandées
+            extracteur = lireReglages(fichier.getPath());
+            if (extracteur != null && extracteur.memesReglages(demande)) {
+                // Création d'un neurone ayant autant d'entrées que de caractéristiques
+                neurone = creerNeurone(typeActivation, extracteur.dimension());
+                // Tentative de chargement du neurone pré-entraîné
+                if (neurone != null && !chargerNeurone(neurone, fichier.getPath())) {
+                    neurone = null;
+                }
+                // Les sorties doivent correspondre aux mêmes classes, dans le même ordre
+                if (neurone != null && nomsClasses != null
+                        && !nomsClasses.equals(classesEnregistrees(neurone.description()))) {
+                    System.out.println("Le neurone sauvegardé a appris d'autres classes : "
+                            + classesEnregistrees(neurone.description()));
+                    neurone = null;
+                }
+            } else if (extracteur != null) {
+                System.out.println("Le neurone sauvegardé utilise d'autres caractéristiques : " + extracteur.description());
+            }
 
-            if (chargementReussi) {
-                System.out.println("Neurone chargé avec succès depuis : " + fichierNeurone);
+            if (neurone != null) {
+                System.out.println("Neurone chargé avec succès depuis : " + fichier.getPath());
             } else {
                 // Si le chargement échoue, on crée et entraîne un nouveau neurone
                 System.out.println("Échec du chargement. Création et entraînement d'un nouveau neurone...");
-                entrainerNeurone(neurone, typeActivation, fichierMiaulement, fichierAboiement, fichierNeurone);
             }
         } else {
             // Aucun neurone pré-entraîné trouvé, création d'un nouveau neurone
             System.out.println("Fichier de neurone non trouvé : " + fichierNeurone);
             System.out.println("Création et entraînement d'un nouveau neurone " + typeNeurone + "...");
-            entrainerNeurone(neurone, typeActivation, fichierMiaulement, fichierAboiement, fichierNeurone);
+        }
+
+        if (neurone == null) {
+            // CRÉATION DU NEURONE
+            // Autant d'entrées que de caractéristiques (512 fréquences pour le spectre par défaut)
+            neurone = creerNeurone(typeActivation, demande.dimension());
+            if (neurone == null) {
+                System.err.println("Erreur : Impossible de créer le neurone de type " + typeNeurone);
+                return;
+            }
+            extracteur = entrainerNeurone(neurone, demande, sources, fichierNeurone);
+            if (extracteur == null) {
+                return;
+            }
+        }
+
+        // COMPARAISON DES NEURONES FLOAT ET INT8
+        // Sur des exemples étiquetés que l'entraînement n'a pas vus, avec -validation
+        if (sourcesValidation != null) {
+            validerQuantification(neurone.modele(), extracteur, sourcesValidation[0], sourcesValidation[1]);
         }
 
         // ANALYSE DU FICHIER LONG
-        // Utilisation du neurone (entraîné ou chargé) pour analyser le fichier long
-        analyserFichierLong(neurone, typeActivation, fichierLong);
+        // Utilisation du neurone (entraîné ou chargé) pour analyser le fichier long,
+        // avec les mêmes caractéristiques que lors de l'entraînement
+        analyserFichierLong(neurone, extracteur, typeActivation, fichierLong);
+    }
+
+    /**
+     * Lit les options facultatives placées après les 4 paramètres obligatoires
+     * @param args Arguments de la ligne de commande
+     * @return true si toutes les options sont valides, false sinon
+     */
+    private static boolean lireOptions(String[] args) {
+        try {
+            for (int i = 4; i < args.length; i++) {
+                switch (args[i]) {
+                    case "-pas":
+                        pas = Integer.parseInt(args[++i]);
+                        if (pas < 1) {
+                            System.out.println("Erreur : le pas doit être positif");
+                            return false;
+                        }
+                        break;
+                    case "-fenetre":
+                        fenetre = Fenetre.depuisNom(args[++i]);
+                        break;
+                    case "-bloc":
+                        tailleBloc = Integer.parseInt(args[++i]);
+                        if (tailleBloc < 2 || tailleBloc % 2 != 0) {
+                            System.out.println("Erreur : la taille des blocs doit être paire");
+                            return false;
+                        }
+                        break;
+                    case "-caracteristiques":
+                        typeCaracteristiques = Extracteur.Type.valueOf(args[++i].toUpperCase());
+                        break;
+                    case "-filtres":
+                        nbFiltres = Integer.parseInt(args[++i]);
+                        break;
+                    case "-compression":
+                        compression = true;
+                        break;
+                    case "-coefficients":
+                        nbCoefficients = Integer.parseInt(args[++i]);
+                        break;
+                    case "-blocsParFichier":
+                        blocsParFichier = Integer.parseInt(args[++i]);
+                        if (blocsParFichier < 0) {
+                            System.out.println("Erreur : le nombre de blocs par fichier doit être positif");
+                            return false;
+                        }
+                        break;
+                    case "-cache":
+                        dossierCache = args[++i];
+                        break;
+                    case "-cacheMax":
+                        tailleMaxCache = Long.parseLong(args[++i]);
+                        if (tailleMaxCache < 0) {
+                            System.out.println("Erreur : la taille du cache doit être positive");
+                            return false;
+                        }
+                        break;
+                    case "-lot":
+                        tailleLot = Integer.parseInt(args[++i]);
+                        if (tailleLot < 1) {
+                            System.out.println("Erreur : la taille des lots doit être positive");
+                            return false;
+                        }
+                        break;
+                    case "-hogwild":
+                        hogwild = true;
+                        break;
+                    case "-cachee":
+                        nbCachees = Integer.parseInt(args[++i]);
+                        if (nbCachees < 0) {
+                            System.out.println("Erreur : le nombre de neurones cachés doit être positif");
+                            return false;
+                        }
+                        break;
+                    case "-graine":
+                        graine = Long.parseLong(args[++i]);
+                        break;
+                    case "-texte":
+                        formatTexte = true;
+                        break;
+                    case "-quantifie":
+                        quantification = true;
+                        break;
+                    case "-validation":
+                        sourcesValidation = args[++i].split(",");
+                        if (sourcesValidation.length != 2) {
+                            System.out.println("Erreur : -validation attend deux sources d'exemples (M,A)");
+                            return false;
+                        }
+                        break;
+                    case "-classes":
+                        dossierClasses = args[++i];
+                        break;
+                    case "-threads":
+                        nbThreadsAnalyse = Integer.parseInt(args[++i]);
+                        if (nbThreadsAnalyse < 0) {
+                            System.out.println("Erreur : le nombre de threads doit être positif");
+                            return false;
+                        }
+                        if (nbThreadsAnalyse == 0) {
+                            nbThreadsAnalyse = Runtime.getRuntime().availableProcessors();
+                        }
+                        break;
+                    case "-etages":
+                        String[] etages = args[++i].split(",");
+                        if (etages.length != 3) {
+                            System.out.println("Erreur : -etages attend trois nombres de threads (L,C,E)");
+                            return false;
+                        }
+                        threadsEtages = new int[3];
+                        for (int e = 0; e < 3; e++) {
+                            threadsEtages[e] = Integer.parseInt(etages[e].trim());
+                            if (threadsEtages[e] < 0) {
+                                System.out.println("Erreur : le nombre de threads doit être positif");
+                                return false;
+                            }
+                        }
+                        // 0 : un thread par cœur pour la lecture et les caractéristiques,
+                        // classification par les threads des caractéristiques
+                        for (int e = 0; e < 2; e++) {
+                            if (threadsEtages[e] == 0) {
+                                threadsEtages[e] = Runtime.getRuntime().availableProcessors();
+                            }
+                        }
+                        break;
+                    case "-epoques":
+                        configApprentissage = configApprentissage.avecNbEpoquesMax(Integer.parseInt(args[++i]));
+                        break;
+                    case "-duree":
+                        configApprentissage = configApprentissage.avecDureeMax(
+                                Math.round(Double.parseDouble(args[++i]) * 1000));
+                        break;
+                    case "-patience":
+                        configApprentissage = configApprentissage.avecPatience(Integer.parseInt(args[++i]),
+                                configApprentissage.ameliorationMin());
+                        break;
+                    case "-eta":
+                        configApprentissage = configApprentissage.avecEta(Float.parseFloat(args[++i]));
+                        break;
+                    case "-methode":
+                        configApprentissage = configApprentissage.avecMethode(
+                                ConfigApprentissage.Methode.valueOf(args[++i].toUpperCase()));
+                        break;
+                    case "-planning":
+                        configApprentissage = configApprentissage.avecPlanning(
+                                ConfigApprentissage.Planning.valueOf(args[++i].toUpperCase()),
+                                configApprentissage.decroissance());
+                        break;
+                    case "-frequence":
+                        frequenceCible = Integer.parseInt(args[++i]);
+                        if (frequenceCible < 1) {
+                            System.out.println("Erreur : la fréquence doit être positive");
+                            return false;
+                        }
+                        break;
+                    case "-blocs":
+                        afficheBlocs = true;
+                        break;
+                    case "-segments":
+                        segmentsSortie = true;
+                        break;
+                    case "-lissage":
+                        lissageMedian = Integer.parseInt(args[++i]);
+                        if (lissageMedian < 1 || lissageMedian % 2 == 0) {
+                            System.out.println("Erreur : le lissage doit porter sur un nombre impair de blocs");
+                            return false;
+                        }
+                        segmentsSortie = true;
+                        break;
+                    case "-hysteresis":
+                        hysteresis = Float.parseFloat(args[++i]);
+                        if (!(hysteresis >= 0 && hysteresis < 0.5f)) {
+                            System.out.println("Erreur : l'hystérésis doit être comprise entre 0 et 0.5");
+                            return false;
+                        }
+                        segmentsSortie = true;
+                        break;
+                    case "-format":
+                        formatSortie = Format.depuisNom(args[++i]);
+                        break;
+                    case "-sortie":
+                        fichierSortie = args[++i];
+                        if (formatSortie == Format.RESUME) {
+                            formatSortie = Format.depuisFichier(fichierSortie);
+                        }
+                        break;
+                    default:
+                        System.out.println("Erreur : option inconnue " + args[i]);
+                        return false;
+                }
+            }
+            return true;
+        } catch (ArrayIndexOutOfBoundsException e) {
+            System.out.println("Erreur : valeur manquante pour l'option " + args[args.length - 1]);
+            return false;
+        } catch (IllegalArgumentException e) {
+            System.out.println("Erreur : " + e.getMessage());
+            return false;
+        }
     }
 
     /**
@@ -127,18 +573,37 @@ public class Main {
      * @param taille Nombre d'entrées du neurone (nombre de fréquences analysées)
      * @return Instance du neurone créé, ou null en cas d'erreur
      */
-    private static Object creerNeurone(String typeActivation, int taille) {
+    private static iNeurone creerNeurone(String typeActivation, int taille) {
         try {
+            if (nomsClasses != null) {
+                // Couche de sortie softmax, une probabilité par classe, précédée
+                // éventuellement d'une couche cachée de l'activation choisie
+                int[] nbNeurones = nbCachees > 0 ? new int[] {nbCachees, nomsClasses.size()}
+                        : new int[] {nomsClasses.size()};
+                Activation[] activations = nbCachees > 0
+                        ? new Activation[] {Activation.depuisLettre(typeActivation), Activation.SOFTMAX}
+                        : new Activation[] {Activation.SOFTMAX};
+                return graine != null ? new Reseau(taille, nbNeurones, activations, graine)
+                        : new Reseau(taille, nbNeurones, activations);
+            }
+            if (nbCachees > 0) {
+                // Perceptron à une couche cachée, même activation pour les deux couches
+                Activation activation = Activation.depuisLettre(typeActivation);
+                int[] nbNeurones = {nbCachees, 1};
+                Activation[] activations = {activation, activation};
+                return graine != null ? new Reseau(taille, nbNeurones, activations, graine)
+                        : new Reseau(taille, nbNeurones, activations);
+            }
             switch (typeActivation) {
                 case "R":
                     // ReLU : f(x) = max(0, x) - Bonne pour la classification
-                    return new NeuroneReLU(taille);
+                    return graine != null ? new NeuroneReLU(taille, graine) : new NeuroneReLU(taille);
                 case "H":
                     // Heavyside : f(x) = 0 si x<0, 1 si x≥0 - Classification binaire stricte
-                    return new NeuroneHeavyside(taille);
+                    return graine != null ? new NeuroneHeavyside(taille, graine) : new NeuroneHeavyside(taille);
                 case "S":
                     // Sigmoide : f(x) = 1/(1+e^-x) - Sortie probabiliste entre 0 et 1
-                    return new NeuroneSigmoide(taille);
+                    return graine != null ? new NeuroneSigmoide(taille, graine) : new NeuroneSigmoide(taille);
                 default:
                     return null;
             }
@@ -148,29 +613,33 @@ public class Main {
         }
     }
 
+    /**
+     * Lit les réglages des caractéristiques enregistrés avec un neurone
+     * @param fichierNeurone Chemin vers le fichier de sauvegarde
+     * @return Réglages du neurone (réglages historiques si le fichier n'en contient pas),
+     *         ou null si le fichier est illisible
+     */
+    private static Extracteur lireReglages(String fichierNeurone) {
+        try {
+            String description = Neurone.lireDescription(fichierNeurone);
+            // Les neurones sauvegardés sans description utilisent le spectre brut de 1024 échantillons
+            return description == null ? Extracteur.parDefaut(1024) : Extracteur.depuisDescription(description);
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Erreur lors de la lecture des réglages : " + e.getMessage());
+            return null;
+        }
+    }
+
     /**
      * Charge un neurone pré-entraîné depuis un fichier
      * @param neurone Instance du neurone à charger
-     * @param typeActivation Type du neurone
      * @param fichierNeurone Chemin vers le fichier de sauvegarde
      * @return true si le chargement réussit, false sinon
      */
-    private static boolean chargerNeurone(Object neurone, String typeActivation, String fichierNeurone) {
+    private static boolean chargerNeurone(iNeurone neurone, String fichierNeurone) {
         try {
-            switch (typeActivation) {
-                case "R":
-                    // Cast de l'objet générique vers le type spécifique et chargement
-                    ((NeuroneReLU) neurone).chargement(fichierNeurone);
-                    return true;
-                case "H":
-                    ((NeuroneHeavyside) neurone).chargement(fichierNeurone);
-                    return true;
-                case "S":
-                    ((NeuroneSigmoide) neurone).chargement(fichierNeurone);
-                    return true;
-                default:
-                    return false;
-            }
+            neurone.chargement(fichierNeurone);
+            return true;
         } catch (Exception e) {
             System.err.println("Erreur lors du chargement : " + e.getMessage());
             return false;
@@ -178,37 +647,47 @@ public class Main {
     }
 
     /**
-     * Entraîne le neurone avec des exemples de miaulements et d'aboiements
+     * Entraîne le neurone avec des exemples de miaulements et d'aboiements (ou de chaque classe),
+     * puis le sauvegarde
      * @param neurone Instance du neurone à entraîner
-     * @param typeActivation Type du neurone
-     * @param fichierMiaulement Fichier contenant des exemples de miaulements
-     * @param fichierAboiement Fichier contenant des exemples d'aboiements
+     * @param demande Réglages des caractéristiques à utiliser
+     * @param sources Miaulements (étiquette 1) et aboiements (étiquette 0), ou une source par classe
+     *                (étiquette : numéro de la classe)
      * @param fichierNeurone Fichier où sauvegarder le neurone entraîné
+     * @return Réglages des caractéristiques du neurone entraîné, ou null en cas d'erreur
      */
-    private static void entrainerNeurone(Object neurone, String typeActivation, String fichierMiaulement,
-                                         String fichierAboiement, String fichierNeurone) {
-        System.out.println("Chargement des fichiers d'entraînement...");
-
-        // CHARGEMENT DES FICHIERS AUDIO D'ENTRAÎNEMENT
-        Son.Son sonChat = new Son.Son(fichierMiaulement);   // Fichier des miaulements
-        Son.Son sonChien = new Son.Son(fichierAboiement);   // Fichier des aboiements
+    private static Extracteur entrainerNeurone(iNeurone neurone, Extracteur demande, List<JeuDeDonnees.Source> sources,
+                                               String fichierNeurone) {
+        System.out.println("Chargement des fichiers d'entraînement et extraction des caractéristiques audio...");
 
-        // PRÉPARATION DES DONNÉES D'ENTRAÎNEMENT
-        // Création des tableaux pour stocker les données d'entrée et les résultats attendus
-        float[][] entrees = new float[2 * nbExtraitsParClasse][];  // 40 exemples au total
-        float[] sorties = new float[2 * nbExtraitsParClasse];      // Résultats attendus
-
-        System.out.println("Extraction des caractéristiques audio...");
-
-        // EXTRACTION DES CARACTÉRISTIQUES AUDIO
-        for (int i = 0; i < nbExtraitsParClasse; i++) {
-            // Extraction et conversion en spectre de fréquences pour les miaulements
-            entrees[i] = blocVersSpectre(sonChat.bloc_deTaille(i, tailleBloc));
-            sorties[i] = 1; // miaulement = 1 (classe positive)
-
-            // Extraction et conversion en spectre de fréquences pour les aboiements
-            entrees[i + nbExtraitsParClasse] = blocVersSpectre(sonChien.bloc_deTaille(i, tailleBloc));
-            sorties[i + nbExtraitsParClasse] = 0; // aboiement = 0 (classe négative)
+        // CHARGEMENT DES EXEMPLES D'ENTRAÎNEMENT
+        // Les premiers blocs de chaque fichier, découpés comme lors de l'analyse :
+        // nbExtraitsParClasse pour un fichier seul, blocsParFichier pour chaque
+        // fichier d'un dossier. Les fichiers sont lus et transformés en parallèle,
+        // rééchantillonnés à la fréquence demandée ou à celle du premier fichier.
+        // miaulement = 1 (classe positive), aboiement = 0 (classe négative)
+        JeuDeDonnees donnees;
+        try {
+            if (threadsEtages != null) {
+                donnees = JeuDeDonnees.charge(sources, demande, pas, frequenceCible, cache,
+                        threadsEtages[0], threadsEtages[1]);
+                afficheEtages("Étages du chargement", donnees.etagesChargement(), donnees.dureeChargement());
+            } else {
+                donnees = JeuDeDonnees.charge(sources, demande, pas, frequenceCible, cache,
+                        Runtime.getRuntime().availableProcessors());
+            }
+        } catch (IOException e) {
+            System.err.println("Erreur lors de la lecture des fichiers d'entraînement : " + e.getMessage());
+            return null;
+        }
+        if (donnees.nbExemples() == 0) {
+            System.err.println("Erreur : aucun exemple d'entraînement");
+            return null;
+        }
+        // Les bancs de filtres dépendent de la fréquence d'échantillonnage des fichiers
+        Extracteur extracteur = donnees.extracteur();
+        if (donnees.nbFichiers() > 2) {
+            System.out.println(donnees.nbExemples() + " exemples tirés de " + donnees.nbFichiers() + " fichiers");
         }
 
         System.out.println("Entraînement du neurone en cours...");
@@ -216,188 +695,483 @@ public class Main {
         try {
             // PHASE D'APPRENTISSAGE
             // Le neurone ajuste ses poids synaptiques pour apprendre à distinguer chat/chien
-            switch (typeActivation) {
-                case "R":
-                    // Taux d'apprentissage = 0.01 (vitesse d'adaptation du neurone)
-                    ((NeuroneReLU) neurone).apprentissage(entrees, sorties, 0.01f);
-                    break;
-                case "H":
-                    ((NeuroneHeavyside) neurone).apprentissage(entrees, sorties, 0.01f);
-                    break;
-                case "S":
-                    ((NeuroneSigmoide) neurone).apprentissage(entrees, sorties, 0.01f);
-                    break;
+            // Erreur quadratique moyenne visée = 0.01, dans la limite du nombre
+            // d'époques, de la durée et de la patience choisies
+            ConfigApprentissage config = configApprentissage.avecMseLimite(0.01f).avecEcouteur(new EcouteurApprentissage() {
+                public void epoque(int epoque, double mse, float eta) {
+                    if (epoque % epoquesParAffichage == 0) {
+                        System.out.printf("Époque %d, mse : %.6f%n", epoque, mse);
+                    }
+                }
+
+                public void fin(ConfigApprentissage.Arret arret, int nbEpoques, double mse) {
+                    System.out.printf("Apprentissage terminé après %d époques (%s), mse : %.6f%n", nbEpoques,
+                            arret.name().toLowerCase().replace('_', ' '), mse);
+                }
+            });
+            if (tailleLot > 0 || hogwild) {
+                // Mini-lots répartis entre les cœurs
+                config = config.avecLots(tailleLot > 0 ? tailleLot : donnees.nbExemples(),
+                        Runtime.getRuntime().availableProcessors(), hogwild);
             }
+            // Plusieurs classes : une sortie attendue par classe, 1 pour celle de l'exemple
+            neurone.apprentissage(donnees.matrice(),
+                    nomsClasses != null ? donnees.unParmi(nomsClasses.size()) : donnees.etiquettes(), config);
         } catch (Exception e) {
             System.err.println("Erreur lors de l'entraînement : " + e.getMessage());
-            return;
+            return null;
         }
 
         // SAUVEGARDE DU NEURONE ENTRAÎNÉ
         System.out.println("Sauvegarde du neurone entraîné...");
         try {
-            switch (typeActivation) {
-                case "R":
-                    // Sauvegarde des poids et paramètres du neurone dans un fichier
-                    ((NeuroneReLU) neurone).sauvegarde(fichierNeurone);
-                    break;
-                case "H":
-                    ((NeuroneHeavyside) neurone).sauvegarde(fichierNeurone);
-                    break;
-                case "S":
-                    ((NeuroneSigmoide) neurone).sauvegarde(fichierNeurone);
-                    break;
-            }
+            // Sauvegarde des poids et paramètres du neurone dans un fichier,
+            // précédés des réglages des caractéristiques (et des noms des classes)
+            neurone.fixeDescription(extracteur.description()
+                    + (nomsClasses != null ? ChampClasses + String.join(",", nomsClasses) : ""));
+            neurone.sauvegarde(fichierNeurone);
             System.out.println("Neurone sauvegardé avec succès dans : " + fichierNeurone);
         } catch (Exception e) {
             System.err.println("Erreur lors de la sauvegarde : " + e.getMessage());
         }
+        return extracteur;
+    }
+
+    /**
+     * Noms des classes enregistrés dans la description d'un neurone
+     * @param description Description du neurone (peut être null)
+     * @return Noms des classes dans l'ordre des sorties, ou null si la description n'en contient pas
+     */
+    private static List<String> classesEnregistrees(String description) {
+        if (description == null || !description.contains(ChampClasses)) {
+            return null;
+        }
+        String valeur = description.substring(description.indexOf(ChampClasses) + ChampClasses.length());
+        int fin = valeur.indexOf(';');
+        return List.of((fin >= 0 ? valeur.substring(0, fin) : valeur).split(","));
+    }
+
+    /**
+     * Nombre de blocs pris au début de chaque fichier d'une source d'entraînement
+     * @param source Fichier ou dossier d'exemples
+     * @return nbExtraitsParClasse pour un fichier seul, blocsParFichier (0 = tous) pour un dossier
+     */
+    private static int blocsParSource(String source) {
+        return new File(source).isDirectory() ? blocsParFichier : nbExtraitsParClasse;
+    }
+
+    /**
+     * Compare le neurone float et sa version quantifiée en int8 sur des exemples
+     * étiquetés mis de côté : taux de bonnes décisions de chacun, décisions qui
+     * diffèrent et écart maximal des sorties. Les caractéristiques de chaque exemple
+     * sont quantifiées une seule fois, comme dans l'analyse int8
+     * @param modele Instantané du neurone entraîné
+     * @param extracteur Réglages des caractéristiques du neurone
+     * @param miaulements Fichier ou dossier de miaulements (étiquette 1)
+     * @param aboiements Fichier ou dossier d'aboiements (étiquette 0)
+     */
+    private static void validerQuantification(Modele modele, Extracteur extracteur, String miaulements,
+                                              String aboiements) {
+        if (!(modele instanceof ModeleNeurone)) {
+            System.out.println("Validation int8 réservée au neurone seul : pas de version quantifiée d'un réseau");
+            return;
+        }
+        ModeleNeurone reference = (ModeleNeurone) modele;
+        ModeleQuantifie quantifie = reference.quantifie();
+        List<JeuDeDonnees.Source> sources = List.of(
+                new JeuDeDonnees.Source(miaulements, 1, blocsParSource(miaulements)),
+                new JeuDeDonnees.Source(aboiements, 0, blocsParSource(aboiements)));
+        JeuDeDonnees validation;
+        try {
+            validation = JeuDeDonnees.charge(sources, extracteur, pas, extracteur.frequence(), cache,
+                    Runtime.getRuntime().availableProcessors());
+        } catch (IOException e) {
+            System.err.println("Erreur lors de la lecture des exemples de validation : " + e.getMessage());
+            return;
+        }
+
+        int dimension = validation.dimension();
+        float[] entree = new float[dimension];
+        byte[] octets = new byte[dimension];
+        int nbJustesFloat = 0;
+        int nbJustesInt8 = 0;
+        int nbDifferences = 0;
+        float ecartMax = 0;
+        for (int i = 0; i < validation.nbExemples(); i++) {
+            validation.exemple(i, entree);
+            float sortie = reference.evalue(entree);
+            float echelle = ProduitScalaire.courant().quantifie(entree, 0, dimension, octets);
+            float sortieInt8 = quantifie.evalue(octets, echelle);
+            // Même seuil de décision que l'analyse : au-dessus de 0.5, chat (étiquette 1)
+            boolean chat = sortie > 0.5f;
+            boolean chatInt8 = sortieInt8 > 0.5f;
+            boolean attendu = validation.etiquettes()[i] == 1;
+            nbJustesFloat += chat == attendu ? 1 : 0;
+            nbJustesInt8 += chatInt8 == attendu ? 1 : 0;
+            nbDifferences += chat != chatInt8 ? 1 : 0;
+            ecartMax = Math.max(ecartMax, Math.abs(sortie - sortieInt8));
+        }
+        int n = Math.max(1, validation.nbExemples());
+        System.out.printf("Validation sur %d exemples mis de côté (%d fichiers) :%n", validation.nbExemples(),
+                validation.nbFichiers());
+        System.out.printf("  neurone float : %.1f%% de bonnes décisions%n", 100.0 * nbJustesFloat / n);
+        System.out.printf("  neurone int8  : %.1f%% de bonnes décisions (poids sur %d octets au lieu de %d)%n",
+                100.0 * nbJustesInt8 / n, quantifie.taillePoids(), reference.nbEntrees() * Float.BYTES);
+        System.out.printf("  %d décisions différentes (%.2f%%), écart maximal des sorties %.4f%n", nbDifferences,
+                100.0 * nbDifferences / n, ecartMax);
     }
 
     /**
      * Analyse un fichier audio long pour détecter la présence de chats et de chiens
      * @param neurone Neurone entraîné à utiliser pour la classification
+     * @param extracteur Réglages des caractéristiques du neurone
      * @param typeActivation Type du neurone
      * @param fichierLong Chemin vers le fichier audio à analyser
      */
-    private static void analyserFichierLong(Object neurone, String typeActivation, String fichierLong) {
+    private static void analyserFichierLong(iNeurone neurone, Extracteur extracteur, String typeActivation,
+                                            String fichierLong) {
         System.out.println("\nAnalyse du fichier : " + fichierLong);
 
-        // CHARGEMENT DU FICHIER AUDIO À ANALYSER
-        Son.Son sonLong = new Son.Son(fichierLong);
-        int nbBlocs = sonLong.taille() / tailleBloc;  // Nombre de segments à analyser
-        int nbChats = 0;   // Compteur de détections de chats
-        int nbChiens = 0;  // Compteur de détections de chiens
+        // OUVERTURE DU FICHIER AUDIO À ANALYSER
+        // Lu en flux, par morceaux (projeté en mémoire si possible) : la mémoire
+        // utilisée ne dépend pas de la durée du fichier. Il est rééchantillonné
+        // à la fréquence d'entraînement du neurone, si elle est connue
+        FluxSon sonLong;
+        try {
+            sonLong = FluxSon.ouvre(fichierLong, extracteur.frequence() > 0 ? extracteur.frequence() : frequenceCible);
+        } catch (IOException e) {
+            System.err.println("Erreur lors de la lecture du fichier " + fichierLong + " : " + e.getMessage());
+            return;
+        }
+
+        try (sonLong) {
+            // Instantané immuable du neurone entraîné, évalué bloc par bloc
+            Modele modele = neurone.modele();
+            // Avec -quantifie, seul le modèle int8 classe les blocs (réseaux : pas de
+            // version quantifiée) ; la comparaison au modèle float est l'affaire de -validation
+            ModeleQuantifie quantifie = null;
+            if (quantification && modele instanceof ModeleNeurone) {
+                quantifie = ((ModeleNeurone) modele).quantifie();
+                modele = quantifie;
+                System.out.printf("Neurone quantifié en int8 : poids sur %d octets au lieu de %d%n",
+                        quantifie.taillePoids(), modele.nbEntrees() * Float.BYTES);
+            } else if (quantification) {
+                System.out.println("Quantification int8 réservée au neurone seul : analyse par le réseau float");
+            }
 
-        System.out.println("Nombre de blocs à analyser : " + nbBlocs);
-        System.out.println("\nRésultats de détection :");
-        System.out.println("========================");
+            // CLASSIFICATION D'UN SEGMENT AUDIO
+            // Valeurs calculées pour chaque bloc à partir de ses caractéristiques :
+            // la probabilité de chaque classe (en un seul passage), ou la sortie du
+            // modèle. Dans l'analyse répartie, les blocs d'un segment sont évalués
+            // ensemble (evalueLot), et le modèle int8 reçoit des caractéristiques déjà
+            // quantifiées par l'étage des caractéristiques ; bloc par bloc, il les
+            // quantifie lui-même, une fois par bloc
+            int nbValeurs = nomsClasses != null ? nomsClasses.size() : 1;
+            AnalyseParallele.Evaluation evaluation = modele::evalueLot;
+            AnalyseParallele.EvaluationQuantifiee evaluationQuantifiee = quantifie != null ? quantifie::evalueLot : null;
+            // Fichier de résultats (blocs, ou segments avec -segments)
+            double secondesParBloc = (double) pas / sonLong.frequence();
+            double dureeBloc = (double) extracteur.tailleBloc() / sonLong.frequence();
+            EcrivainResultats resultats = null;
+            if (formatSortie != Format.RESUME) {
+                String chemin = fichierSortie != null ? fichierSortie
+                        : nomSansExtension(fichierLong) + "_resultats." + formatSortie.extension();
+                resultats = EcrivainResultats.ouvre(formatSortie, chemin, Detection.etiquettes(nomsClasses),
+                        secondesParBloc, dureeBloc, segmentsSortie);
+                System.out.println("Résultats " + (segmentsSortie ? "par segment" : "par bloc") + " écrits dans "
+                        + chemin);
+            }
 
-        // ANALYSE BLOC PAR BLOC
-        // Chaque bloc représente environ 0.02 seconde d'audio
-        for (int i = 0; i < nbBlocs; i++) {
-            // Extraction d'un segment audio
-            float[] bloc = sonLong.bloc_deTaille(i, tailleBloc);
-            // Conversion en spectre de fréquences (comme pour l'entraînement)
-            float[] spectre = blocVersSpectre(bloc);
+            List<Etage> etages = null;
+            long duree = 0;
+            try (Detection detection = new Detection(typeActivation, nomsClasses, resultats,
+                    secondesParBloc, dureeBloc)) {
+                if (nbThreadsAnalyse > 1 || threadsEtages != null) {
+                    // ANALYSE RÉPARTIE ENTRE LES CŒURS
+                    // Segments de blocs consécutifs passant par les étages décodage,
+                    // caractéristiques et classification, chacun avec ses threads (ou
+                    // caractéristiques et classification par les mêmes threads avec
+                    // -threads) ; résultats rendus dans l'ordre du fichier, ceux de
+                    // l'analyse bloc par bloc aux arrondis de la FFT par lots près
+                    int nbThreadsCaracteristiques = threadsEtages != null ? threadsEtages[1] : nbThreadsAnalyse;
+                    int nbThreadsClassification = threadsEtages != null ? threadsEtages[2] : 0;
+                    try (AnalyseParallele analyse = evaluationQuantifiee != null
+                            ? new AnalyseParallele(sonLong, extracteur, pas, nbValeurs, evaluationQuantifiee,
+                                    nbThreadsCaracteristiques, nbThreadsClassification)
+                            : new AnalyseParallele(sonLong, extracteur, pas, nbValeurs, evaluation,
+                                    nbThreadsCaracteristiques, nbThreadsClassification)) {
+                        detection.debut(analyse.nbBlocs());
+                        while (analyse.suivant()) {
+                            for (int b = 0; b < analyse.nbBlocsSegment(); b++) {
+                                detection.bloc(analyse.premierBloc() + b, analyse.valeurs(), b * nbValeurs);
+                            }
+                        }
+                        etages = analyse.etages();
+                        duree = analyse.duree();
+                    }
+                } else {
+                    // ANALYSE BLOC PAR BLOC
+                    // Découpage en blocs de la taille utilisée à l'entraînement, espacés de "pas"
+                    // échantillons (caractéristiques relues du cache si le fichier y est déjà)
+                    // Chaque bloc représente environ 0.02 seconde d'audio
+                    float[] valeurs = new float[nbValeurs];
+                    try (FluxCaracteristiques trames = caracteristiques(fichierLong, sonLong, extracteur, 0)) {
+                        detection.debut(trames.nbTrames());
+                        while (trames.suivante()) {
+                            // Caractéristiques du segment audio, calculées comme pour l'entraînement
+                            evaluation.evalue(trames.caracteristiques(), 1, valeurs);
+                            detection.bloc(trames.indice(), valeurs, 0);
+                        }
+                    }
+                }
 
-            float sortie = 0;  // Résultat de la classification
+                // AFFICHAGE DU RÉSUMÉ FINAL
+                detection.resume();
+            }
+            if (etages != null) {
+                afficheEtages("Étages de l'analyse", etages, duree);
+            }
+        } catch (IOException e) {
+            System.err.println("Erreur d'entrée-sortie lors de l'analyse de " + fichierLong + " : " + e.getMessage());
+        } catch (RuntimeException e) {
+            System.err.println("Erreur lors de l'analyse de " + fichierLong + " : " + e.getMessage());
+        }
+    }
 
-            try {
-                // CLASSIFICATION DU SEGMENT AUDIO
-                switch (typeActivation) {
-                    case "R":
-                        // Mise à jour du neurone avec les nouvelles données
-                        ((NeuroneReLU) neurone).metAJour(spectre);
-                        // Récupération de la sortie du neurone
-                        sortie = ((NeuroneReLU) neurone).sortie();
-                        break;
-                    case "H":
-                        ((NeuroneHeavyside) neurone).metAJour(spectre);
-                        sortie = ((NeuroneHeavyside) neurone).sortie();
-                        break;
-                    case "S":
-                        ((NeuroneSigmoide) neurone).metAJour(spectre);
-                        sortie = ((NeuroneSigmoide) neurone).sortie();
-                        break;
+    /**
+     * Nom d'un fichier sans son dossier ni son extension
+     * @param chemin Chemin du fichier
+     * @return Nom du fichier, sans ce qui suit son dernier point
+     */
+    private static String nomSansExtension(String chemin) {
+        String nom = Path.of(chemin).getFileName().toString();
+        int point = nom.lastIndexOf('.');
+        return point > 0 ? nom.substring(0, point) : nom;
+    }
+
+    /**
+     * Affiche les compteurs de chaque étage d'une chaîne de traitement : débit,
+     * part du temps passée à calculer ou à attendre, remplissage de la file de sortie
+     * @param titre Nom de la chaîne
+     * @param etages Compteurs de la source puis de chaque étage
+     * @param duree Durée de l'exécution en nanosecondes
+     */
+    private static void afficheEtages(String titre, List<Etage> etages, long duree) {
+        System.out.printf("%s (%.2f s) :\n", titre, duree / 1e9);
+        for (Etage etage : etages) {
+            System.out.println("  " + etage.resume(duree));
+        }
+    }
+
+    /**
+     * Interprétation des valeurs calculées pour chaque bloc : comptes du résumé final,
+     * affichage du résultat du bloc (avec -blocs), regroupement en segments (avec
+     * -segments) et fichier de résultats (avec -sortie ou -format). Tout ce qui est
+     * affiché passe par un tampon vidé à la fin de l'analyse, et non ligne par ligne.
+     */
+    private static final class Detection implements AutoCloseable {
+        private final String typeActivation;
+        // Noms des classes (null pour chat/chien)
+        private final List<String> classes;
+        // Noms des étiquettes des segments et du fichier de résultats
+        private final List<String> etiquettes;
+        private final CanalTampon console;
+        // Fichier de résultats (null si aucun)
+        private final EcrivainResultats fichier;
+        // Regroupement en segments (null sans -segments)
+        private final Segmentation segmentation;
+        private final double secondesParBloc;
+        private final double dureeBloc;
+        private final StringBuilder ligne = new StringBuilder(128);
+        private int nbChats = 0;   // Compteur de détections de chats
+        private int nbChiens = 0;  // Compteur de détections de chiens
+        private final int[] blocsParClasse;
+
+        /**
+         * @param fichier Fichier de résultats, fermé avec la détection (null si aucun)
+         * @param secondesParBloc Écart entre les débuts de deux blocs, en secondes
+         * @param dureeBloc Durée d'un bloc, en secondes
+         */
+        Detection(String typeActivation, List<String> classes, EcrivainResultats fichier, double secondesParBloc,
+                  double dureeBloc) {
+            this.typeActivation = typeActivation;
+            this.classes = classes;
+            this.fichier = fichier;
+            this.secondesParBloc = secondesParBloc;
+            this.dureeBloc = dureeBloc;
+            etiquettes = etiquettes(classes);
+            blocsParClasse = classes != null ? new int[classes.size()] : null;
+            segmentation = segmentsSortie
+                    ? new Segmentation(classes != null ? classes.size() : 1, lissageMedian, hysteresis, this::segment)
+                    : null;
+            console = CanalTampon.console();
+        }
+
+        /**
+         * Noms des étiquettes : les classes, ou Chien (0) et Chat (1) comme à l'entraînement
+         */
+        static List<String> etiquettes(List<String> classes) {
+            return classes != null ? classes : List.of("Chien", "Chat");
+        }
+
+        /**
+         * Annonce de l'analyse
+         * @param nbBlocs Nombre de segments à analyser (-1 s'il est inconnu)
+         */
+        void debut(int nbBlocs) throws IOException {
+            console.ecrit("Nombre de blocs à analyser : " + (nbBlocs >= 0 ? nbBlocs : "inconnu") + "\n");
+            if (afficheBlocs || (segmentation != null && fichier == null)) {
+                console.ecrit("\nRésultats de détection :\n========================\n");
+            }
+        }
+
+        /**
+         * Interprète le résultat d'un bloc
+         * @param i Numéro du bloc
+         * @param valeurs Valeurs calculées pour le bloc, à partir de valeurs[debut]
+         * @param debut Position des valeurs du bloc
+         */
+        void bloc(int i, float[] valeurs, int debut) throws IOException {
+            if (segmentation != null) {
+                segmentation.ajoute(i, valeurs, debut);
+            }
+            if (classes != null) {
+                // Classe la plus probable et sa probabilité
+                int classe = 0;
+                for (int k = 1; k < classes.size(); k++) {
+                    if (valeurs[debut + k] > valeurs[debut + classe]) {
+                        classe = k;
+                    }
                 }
-            } catch (Exception e) {
-                System.err.println("Erreur lors de l'analyse du bloc " + i + " : " + e.getMessage());
-                continue;
+                blocsParClasse[classe]++;
+                if (fichier != null && segmentation == null) {
+                    fichier.bloc(i, classe, valeurs[debut + classe], valeurs[debut + classe]);
+                }
+                if (afficheBlocs) {
+                    console.ecrit(String.format("Bloc %4d : %s (Probabilité: %.1f%%)\n", i, classes.get(classe),
+                            valeurs[debut + classe] * 100));
+                }
+                return;
             }
 
-            // INTERPRÉTATION DU RÉSULTAT
-            float confiance;
-            String resultat;
+            float sortie = valeurs[debut];  // Résultat de la classification
 
+            // INTERPRÉTATION DU RÉSULTAT
+            // Seuil de décision à 0.5 : au-dessus chat (étiquette 1), sinon chien (0)
+            int etiquette = sortie > 0.5f ? 1 : 0;
+            if (etiquette == 1) {
+                nbChats++;
+            } else {
+                nbChiens++;
+            }
+            if (fichier != null && segmentation == null) {
+                fichier.bloc(i, etiquette, sortie, Segmentation.confiance(valeurs, debut, 1, etiquette));
+            }
+            if (!afficheBlocs) {
+                return;
+            }
+            String resultat = etiquettes.get(etiquette);
             if (typeActivation.equals("R")) {
-                // Pour ReLU : classification binaire simple sans affichage de confiance en pourcentage
-                // Seuil de décision à 0.5
-                if (sortie > 0.5f) {
-                    resultat = "Chat";
-                    nbChats++;
-                } else {
-                    resultat = "Chien";
-                    nbChiens++;
-                }
-                // Pas d'affichage de confiance pour ReLU (sortie peut être > 1)
-                System.out.printf("Bloc %4d : %s (Sortie: %.3f)\n", i, resultat, sortie);
+                // Pour ReLU : pas d'affichage de confiance (sortie peut être > 1)
+                console.ecrit(String.format("Bloc %4d : %s (Sortie: %.3f)\n", i, resultat, sortie));
             } else {
-                // Pour Heavyside et Sigmoide, sortie déjà entre 0 et 1, on affiche la confiance en %
-                if (sortie > 0.5f) {
-                    // Plus la sortie est proche de 1, plus on est confiant que c'est un chat
-                    confiance = sortie * 100;
-                    resultat = "Chat";
-                    nbChats++;
-                } else {
-                    // Plus la sortie est proche de 0, plus on est confiant que c'est un chien
-                    confiance = (1 - sortie) * 100;
-                    resultat = "Chien";
-                    nbChiens++;
-                }
-                System.out.printf("Bloc %4d : %s (Sortie: %.3f, Confiance: %.1f%%)\n", i, resultat, sortie, confiance);
+                // Pour Heavyside et Sigmoide, sortie déjà entre 0 et 1, on affiche la confiance en % :
+                // plus la sortie est proche de 1 (de 0), plus on est confiant que c'est un chat (un chien)
+                float confiance = (etiquette == 1 ? sortie : 1 - sortie) * 100;
+                console.ecrit(String.format("Bloc %4d : %s (Sortie: %.3f, Confiance: %.1f%%)\n", i, resultat,
+                        sortie, confiance));
+            }
+        }
+
+        /**
+         * Segment terminé : écrit dans le fichier de résultats, affiché sinon
+         */
+        private void segment(int debut, int fin, int etiquette, float confiance) throws IOException {
+            if (fichier != null) {
+                fichier.segment(debut, fin, etiquette, confiance);
+                return;
             }
+            ligne.setLength(0);
+            ligne.append(String.format("Segment %5d - %5d (%8.2f s - %8.2f s) : %s (Confiance moyenne: %.1f%%)\n",
+                    debut, fin, debut * secondesParBloc, fin * secondesParBloc + dureeBloc,
+                    etiquettes.get(etiquette), confiance * 100));
+            console.ecrit(ligne);
         }
 
-        // AFFICHAGE DU RÉSUMÉ FINAL
-        System.out.println("\n========================");
-        System.out.printf("Résumé de détection : %d Chats, %d Chiens\n", nbChats, nbChiens);
+        /**
+         * Affiche le résumé de l'analyse
+         */
+        void resume() throws IOException {
+            if (segmentation != null) {
+                segmentation.termine();
+            }
+            ligne.setLength(0);
+            ligne.append("\n========================\n");
+            if (segmentation != null) {
+                ligne.append(String.format("Segments : %d\n", segmentation.nbSegments()));
+            }
+            if (blocsParClasse != null) {
+                int total = 0;
+                for (int n : blocsParClasse) {
+                    total += n;
+                }
+                ligne.append("Résumé de détection :\n");
+                for (int k = 0; k < blocsParClasse.length; k++) {
+                    ligne.append(String.format("  %-20s %5d blocs (%.1f%%)\n", classes.get(k), blocsParClasse[k],
+                            total > 0 ? 100.0 * blocsParClasse[k] / total : 0.0));
+                }
+            } else {
+                ligne.append(String.format("Résumé de détection : %d Chats, %d Chiens\n", nbChats, nbChiens));
+
+                // Calcul et affichage des pourcentages
+                if (nbChats + nbChiens > 0) {
+                    double pourcentageChats = (double) nbChats / (nbChats + nbChiens) * 100;
+                    double pourcentageChiens = (double) nbChiens / (nbChats + nbChiens) * 100;
 
-        // Calcul et affichage des pourcentages
-        if (nbChats + nbChiens > 0) {
-            double pourcentageChats = (double) nbChats / (nbChats + nbChiens) * 100;
-            double pourcentageChiens = (double) nbChiens / (nbChats + nbChiens) * 100;
+                    ligne.append(String.format("Pourcentages : %.1f%% Chats, %.1f%% Chiens\n",
+                            pourcentageChats, pourcentageChiens));
+                }
+            }
+            console.ecrit(ligne);
+            console.vide();
+        }
 
-            System.out.printf("Pourcentages : %.1f%% Chats, %.1f%% Chiens\n",
-                    pourcentageChats, pourcentageChiens);
+        /**
+         * Vide l'affichage et ferme le fichier de résultats
+         */
+        public void close() throws IOException {
+            try {
+                console.close();
+            } finally {
+                if (fichier != null) {
+                    fichier.close();
+                }
+            }
         }
     }
 
     /**
-     * Convertit un bloc audio en spectre de fréquences normalisé
-     *
-     * Cette fonction est cruciale car elle transforme le signal audio temporel
-     * en information fréquentielle que le neurone peut analyser.
-     *
-     * @param bloc Échantillons audio bruts
-     * @return Spectre de fréquences normalisé (amplitudes entre 0 et 1)
+     * Ouvre le parcours des caractéristiques d'un fichier son, relues du cache
+     * lorsqu'il est activé et les contient déjà, calculées au fil du flux sinon
+     * @param fichierSon Fichier audio, dont le contenu identifie l'entrée du cache
+     * @param son Flux ouvert sur ce fichier
+     * @param extracteur Réglages des caractéristiques
+     * @param nbMax Nombre maximal de blocs parcourus (0 = tous)
+     * @return Parcours des caractéristiques, à fermer par l'appelant
      */
-    static float[] blocVersSpectre(float[] bloc) {
-        // PRÉPARATION POUR LA FFT (Transformée de Fourier Rapide)
-        // Conversion des échantillons réels en nombres complexes
-        Complexe[] entree = new Complexe[bloc.length];
-        for (int i = 0; i < bloc.length; i++) {
-            // Partie réelle = échantillon audio, partie imaginaire = 0
-            entree[i] = new ComplexeCartesien(bloc[i], 0);
-        }
-
-        // APPLICATION DE LA FFT
-        // Transformation du signal temporel en signal fréquentiel
-        // Révèle quelles fréquences sont présentes dans le son
-        Complexe[] fft = FFTCplx.appliqueSur(entree);
-
-        // EXTRACTION DES AMPLITUDES DES FRÉQUENCES
-        // On ne garde que la moitié du spectre (l'autre moitié est symétrique)
-        int tailleSpectre = bloc.length / 2;
-        float[] spectre = new float[tailleSpectre];
-        for (int i = 0; i < tailleSpectre; i++) {
-            // Calcul de l'amplitude (module du nombre complexe)
-            spectre[i] = (float) fft[i].mod();
-        }
-
-        // NORMALISATION DU SPECTRE
-        // Mise à l'échelle entre 0 et 1 pour faciliter l'apprentissage du neurone
-        float max = 0;
-        // Recherche de la valeur maximale
-        for (float v : spectre) {
-            if (v > max) max = v;
-        }
-        // Division par le maximum si celui-ci est non nul
-        if (max > 0) {
-            for (int i = 0; i < spectre.length; i++) {
-                spectre[i] /= max;
+    private static FluxCaracteristiques caracteristiques(String fichierSon, FluxSon son, Extracteur extracteur,
+                                                         int nbMax) {
+        if (cache != null) {
+            try {
+                FluxCaracteristiques trames = cache.ouvre(fichierSon, son, extracteur, pas, nbMax);
+                if (trames.depuisCache()) {
+                    System.out.println("Caractéristiques relues du cache : " + fichierSon);
+                }
+                return trames;
+            } catch (IOException e) {
+                System.err.println("Cache de caractéristiques inutilisable : " + e.getMessage());
             }
         }
-        return spectre;
+        return new FluxCaracteristiques(son, extracteur, pas, nbMax);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,304 @@
+package Son;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.UnsupportedAudioFileException;
+
+// *****************************************************************************
+// Lecture en flux d'un fichier son PCM (voir FormatPCM : plusieurs canaux,
+// mélangés, entiers ou flottants, ramenés à l'échelle 16 bits) : les
+// échantillons sont décodés par morceaux de taille fixe,
+// dans des tampons réutilisés, si bien que la mémoire employée ne dépend
+// pas de la durée du fichier (un enregistrement de plusieurs heures se lit
+// avec quelques dizaines de kilo-octets).
+// Les échantillons se consomment au choix par morceaux (itérateur : le
+// tableau renvoyé par next() est réutilisé d'un appel à l'autre) ou en
+// quantités quelconques (lire, saute), comme le fait Spectrogramme.
+// Un flux peut aussi parcourir un Son existant, en mémoire ou projeté depuis
+// le fichier (SonMappe) : c'est ce que fait ouvre() lorsque le fichier est
+// un WAV que SonMappe sait lire.
+// Une fréquence cible peut être demandée : le signal est alors rééchantillonné
+// au fil de la lecture (Reechantillonneur), par exemple de 48 kHz stéréo à
+// 16 kHz monaural, ce qui divise d'autant le travail de toute la suite
+// (spectres, apprentissage, analyse) sans copie intermédiaire du fichier.
+
+public class FluxSon implements Iterator<float[]>, AutoCloseable
+{
+	// Taille par défaut des morceaux décodés (échantillons)
+	public static final int TailleMorceau = 8192;
+
+	private final int frequence;
+	// Nombre total d'échantillons, ou -1 s'il n'est pas connu d'avance
+	private final long taille;
+
+	// Source : flux audio décodé par morceaux, ou données déjà en mémoire
+	private final AudioInputStream ais;
+	private final Son son;
+	private final FormatPCM format;
+	private final byte[] octets;
+	private final ByteBuffer vueOctets;
+
+	// Changement de fréquence (null si la fréquence d'origine est gardée),
+	// appliqué aux morceaux bruts lus dans la source
+	private final Reechantillonneur reechantillonneur;
+	private final float[] brut;
+	private boolean sourceFinie = false;
+
+	// Morceau décodé en cours de consommation : tampon[position..valides[
+	private final float[] tampon;
+	private int position = 0;
+	private int valides = 0;
+	// Indice dans la source du premier échantillon pas encore décodé
+	private long decodes = 0;
+	// Plus rien à produire
+	private boolean fini = false;
+
+	// Morceau renvoyé par next() et nombre d'échantillons valides qu'il contient
+	private final float[] morceau;
+	private int nbValides = 0;
+
+	// Ouvre un fichier son, découpé en morceaux de TailleMorceau échantillons
+	public FluxSon(final String nomFichier) throws IOException
+	{
+		this(nomFichier, TailleMorceau);
+	}
+
+	public FluxSon(final String nomFichier, final int tailleMorceau) throws IOException
+	{
+		this(nomFichier, tailleMorceau, 0);
+	}
+
+	// Comme ci-dessus, rééchantillonné à frequenceCible Hz (0 : fréquence du fichier)
+	public FluxSon(final String nomFichier, final int tailleMorceau, final int frequenceCible) throws IOException
+	{
+		if (tailleMorceau < 1)
+			throw new IllegalArgumentException("Taille de morceau invalide : "+tailleMorceau);
+		AudioInputStream flux;
+		try
+		{
+			flux = AudioSystem.getAudioInputStream(new File(nomFichier));
+			// Codages compressés simples (loi µ, loi A...) : décodés par Java Sound
+			final AudioFormat.Encoding codage = flux.getFormat().getEncoding();
+			if (codage != AudioFormat.Encoding.PCM_SIGNED && codage != AudioFormat.Encoding.PCM_UNSIGNED
+					&& codage != AudioFormat.Encoding.PCM_FLOAT
+					&& AudioSystem.isConversionSupported(AudioFormat.Encoding.PCM_SIGNED, flux.getFormat()))
+				flux = AudioSystem.getAudioInputStream(AudioFormat.Encoding.PCM_SIGNED, flux);
+		}
+		catch (UnsupportedAudioFileException e)
+		{
+			throw new IOException("Format de fichier son non reconnu : "+nomFichier, e);
+		}
+		ais = flux;
+		try
+		{
+			format = FormatPCM.depuis(ais.getFormat());
+		}
+		catch (IOException e)
+		{
+			ais.close();
+			throw e;
+		}
+		son = null;
+		reechantillonneur = reechantillonneur(format.frequence, frequenceCible);
+		brut = reechantillonneur == null ? null : new float[reechantillonneur.maxEntrees(tailleMorceau)];
+		frequence = reechantillonneur == null ? format.frequence : frequenceCible;
+		final long nbTrames = ais.getFrameLength();
+		taille = nbTrames == AudioSystem.NOT_SPECIFIED ? -1 : tailleSortie(nbTrames);
+		octets = new byte[(brut == null ? tailleMorceau : brut.length)*format.octetsParTrame];
+		vueOctets = ByteBuffer.wrap(octets).order(format.ordre);
+		tampon = new float[tailleTampon(tailleMorceau)];
+		morceau = new float[tailleMorceau];
+	}
+
+	// Parcourt par morceaux un son déjà en mémoire
+	public FluxSon(final Son son, final int tailleMorceau)
+	{
+		this(son, tailleMorceau, 0);
+	}
+
+	// Comme ci-dessus, rééchantillonné à frequenceCible Hz (0 : fréquence du son)
+	public FluxSon(final Son son, final int tailleMorceau, final int frequenceCible)
+	{
+		if (tailleMorceau < 1)
+			throw new IllegalArgumentException("Taille de morceau invalide : "+tailleMorceau);
+		this.son = son;
+		ais = null;
+		format = null;
+		octets = null;
+		vueOctets = null;
+		reechantillonneur = reechantillonneur(son.frequence(), frequenceCible);
+		brut = reechantillonneur == null ? null : new float[reechantillonneur.maxEntrees(tailleMorceau)];
+		frequence = reechantillonneur == null ? son.frequence() : frequenceCible;
+		taille = tailleSortie(son.taille());
+		tampon = new float[tailleTampon(tailleMorceau)];
+		morceau = new float[tailleMorceau];
+	}
+
+	// Ouvre un fichier son en flux : projeté en mémoire par SonMappe si son
+	// format le permet, décodé par l'API Java Sound sinon
+	public static FluxSon ouvre(final String nomFichier) throws IOException
+	{
+		return ouvre(nomFichier, 0);
+	}
+
+	// Comme ci-dessus, rééchantillonné à frequenceCible Hz (0 : fréquence du fichier)
+	public static FluxSon ouvre(final String nomFichier, final int frequenceCible) throws IOException
+	{
+		try
+		{
+			return new FluxSon(SonMappe.ouvre(nomFichier), TailleMorceau, frequenceCible);
+		}
+		catch (IOException e)
+		{
+			return new FluxSon(nomFichier, TailleMorceau, frequenceCible);
+		}
+	}
+
+	private static Reechantillonneur reechantillonneur(final int frequenceSource, final int frequenceCible)
+	{
+		if (frequenceCible < 0)
+			throw new IllegalArgumentException("Fréquence cible invalide : "+frequenceCible);
+		return frequenceCible == 0 || frequenceCible == frequenceSource ? null
+				: new Reechantillonneur(frequenceSource, frequenceCible);
+	}
+
+	// Nombre d'échantillons produits pour nbSource échantillons de la source
+	private long tailleSortie(final long nbSource)
+	{
+		return reechantillonneur == null ? nbSource : reechantillonneur.nbSorties(nbSource);
+	}
+
+	// Le tampon doit pouvoir recevoir tout ce qu'un morceau brut produit
+	private int tailleTampon(final int tailleMorceau)
+	{
+		return reechantillonneur == null ? tailleMorceau
+				: Math.max(tailleMorceau, reechantillonneur.maxSorties(brut.length));
+	}
+
+	public int frequence() {return frequence;}
+	// Nombre total d'échantillons de la source, ou -1 s'il est inconnu
+	public long taille() {return taille;}
+	// Nombre d'échantillons valides dans le dernier morceau renvoyé par next()
+	// (moins que la taille des morceaux à la fin du fichier, le reste étant nul)
+	public int nbValides() {return nbValides;}
+
+	// Vrai s'il reste au moins un échantillon à lire
+	public boolean hasNext()
+	{
+		return position < valides || remplit();
+	}
+
+	// Morceau suivant (tableau réutilisé), complété par des zéros en fin de fichier
+	public float[] next()
+	{
+		if (!hasNext())
+			throw new NoSuchElementException();
+		nbValides = lire(morceau, 0, morceau.length);
+		Arrays.fill(morceau, nbValides, morceau.length, 0.f);
+		return morceau;
+	}
+
+	// Copie jusqu'à n échantillons dans dest[debut..] ; renvoie le nombre
+	// effectivement lus, inférieur à n seulement à la fin du fichier
+	public int lire(final float[] dest, final int debut, final int n)
+	{
+		int lus = 0;
+		while (lus < n && (position < valides || remplit()))
+		{
+			final int copie = Math.min(n-lus, valides-position);
+			System.arraycopy(tampon, position, dest, debut+lus, copie);
+			position += copie;
+			lus += copie;
+		}
+		return lus;
+	}
+
+	// Passe n échantillons ; renvoie le nombre effectivement passés
+	public long saute(final long n)
+	{
+		long sautes = 0;
+		if (son != null && reechantillonneur == null && position == valides && !fini)
+		{
+			// Son à accès direct : inutile de convertir les échantillons passés
+			sautes = Math.min(n, son.taille()-decodes);
+			decodes += sautes;
+		}
+		while (sautes < n && (position < valides || remplit()))
+		{
+			final int pas = (int)Math.min(n-sautes, valides-position);
+			position += pas;
+			sautes += pas;
+		}
+		return sautes;
+	}
+
+	// Décode le morceau suivant de la source dans le tampon (en le
+	// rééchantillonnant si besoin) ; renvoie false à la fin des données
+	private boolean remplit()
+	{
+		if (fini)
+			return false;
+		position = 0;
+		if (reechantillonneur == null)
+		{
+			valides = decode(tampon, tampon.length);
+			fini = valides < tampon.length;
+			return valides > 0;
+		}
+		valides = 0;
+		// Les premiers morceaux bruts peuvent ne rien produire (retard du filtre)
+		while (valides == 0 && !fini)
+		{
+			if (!sourceFinie)
+			{
+				final int n = decode(brut, brut.length);
+				sourceFinie = n < brut.length;
+				valides = reechantillonneur.traite(brut, 0, n, tampon, 0);
+			}
+			if (sourceFinie)
+			{
+				valides += reechantillonneur.vide(tampon, valides, tampon.length-valides);
+				fini = reechantillonneur.estVide();
+			}
+		}
+		return valides > 0;
+	}
+
+	// Décode jusqu'à n échantillons de la source dans dest ; renvoie le
+	// nombre décodés, inférieur à n seulement à la fin de la source
+	private int decode(final float[] dest, final int n)
+	{
+		final int lus;
+		if (son != null)
+			lus = son.lire((int)decodes, dest, 0, n);
+		else
+		{
+			try
+			{
+				// readNBytes insiste jusqu'à remplir le tableau ou atteindre la fin du flux
+				lus = ais.readNBytes(octets, 0, n*format.octetsParTrame)/format.octetsParTrame;
+			}
+			catch (IOException e)
+			{
+				throw new UncheckedIOException(e);
+			}
+			format.decode(vueOctets, 0, lus, dest, 0);
+		}
+		decodes += lus;
+		return lus;
+	}
+
+	public void close() throws IOException
+	{
+		if (ais != null)
+			ais.close();
+	}
+}
@@ -0,0 +1,105 @@
+package Son;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import javax.sound.sampled.AudioFormat;
+
+// *****************************************************************************
+// Format d'échantillons PCM non compressés : entiers sur 8, 16, 24 ou 32 bits
+// ou flottants sur 32 ou 64 bits, un ou plusieurs canaux entrelacés.
+// Le décodage mélange les canaux (moyenne) en un signal monophonique, ramené
+// à l'échelle des échantillons 16 bits (-32768..32767) quel que soit le
+// format d'origine : les traitements suivants et les neurones déjà entraînés
+// voient ainsi les mêmes amplitudes.
+
+final class FormatPCM
+{
+	final boolean flottant;
+	// Entiers 8 bits non signés (convention des fichiers WAV)
+	final boolean nonSigne;
+	final int bits;
+	final int canaux;
+	final ByteOrder ordre;
+	final int frequence;
+	final int octetsParTrame;
+	// Facteur ramenant un échantillon à l'échelle 16 bits, divisé par le nombre de canaux
+	private final float echelle;
+
+	FormatPCM(final boolean flottant, final boolean nonSigne, final int bits, final int canaux,
+			final ByteOrder ordre, final int frequence) throws IOException
+	{
+		if (flottant ? bits != 32 && bits != 64 : bits != 8 && bits != 16 && bits != 24 && bits != 32)
+			throw new IOException("Échantillons "+(flottant ? "flottants" : "entiers")+" sur "+bits+" bits non pris en charge");
+		if (canaux < 1)
+			throw new IOException("Nombre de canaux invalide : "+canaux);
+		if (frequence < 1)
+			throw new IOException("Fréquence d'échantillonnage invalide : "+frequence);
+		this.flottant = flottant;
+		this.nonSigne = nonSigne;
+		this.bits = bits;
+		this.canaux = canaux;
+		this.ordre = ordre;
+		this.frequence = frequence;
+		octetsParTrame = canaux*bits/8;
+		final double pleineEchelle = flottant ? 1./32768. : Math.pow(2., bits-16);
+		echelle = (float)(1./(pleineEchelle*canaux));
+	}
+
+	// Format décrit par l'API Java Sound
+	static FormatPCM depuis(final AudioFormat af) throws IOException
+	{
+		final AudioFormat.Encoding codage = af.getEncoding();
+		final boolean flottant = codage == AudioFormat.Encoding.PCM_FLOAT;
+		final boolean nonSigne = codage == AudioFormat.Encoding.PCM_UNSIGNED;
+		if (!flottant && !nonSigne && codage != AudioFormat.Encoding.PCM_SIGNED)
+			throw new IOException("Codage non pris en charge : "+codage);
+		if (nonSigne && af.getSampleSizeInBits() != 8)
+			throw new IOException("Entiers non signés sur "+af.getSampleSizeInBits()+" bits non pris en charge");
+		return new FormatPCM(flottant, nonSigne, af.getSampleSizeInBits(), af.getChannels(),
+				af.isBigEndian() ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN, Math.round(af.getSampleRate()));
+	}
+
+	// Vrai pour le format historique de Son : entiers 16 bits, un seul canal
+	boolean estMono16() {return !flottant && bits == 16 && canaux == 1;}
+
+	// Décode nbTrames trames de src (rangé dans l'ordre "ordre"), à partir de
+	// l'octet "position", en échantillons monophoniques dans dest[destDebut..]
+	void decode(final ByteBuffer src, final int position, final int nbTrames, final float[] dest, final int destDebut)
+	{
+		int o = position;
+		if (estMono16())
+		{
+			// Cas le plus courant, sans mélange
+			for (int t = 0; t < nbTrames; ++t, o += 2)
+				dest[destDebut+t] = src.getShort(o);
+			return;
+		}
+		for (int t = 0; t < nbTrames; ++t, o += octetsParTrame)
+			dest[destDebut+t] = trame(src, o);
+	}
+
+	// Décode la trame commençant à l'octet o de src
+	float trame(final ByteBuffer src, final int o)
+	{
+		double somme = 0;
+		for (int c = 0, p = o; c < canaux; ++c, p += bits/8)
+			switch (bits)
+			{
+				case 8: somme += nonSigne ? (src.get(p)&0xFF)-128 : src.get(p); break;
+				case 16: somme += src.getShort(p); break;
+				case 24: somme += entier24(src, p); break;
+				case 32: somme += flottant ? src.getFloat(p) : src.getInt(p); break;
+				default: somme += src.getDouble(p); break;
+			}
+		return (float)(somme*echelle);
+	}
+
+	private int entier24(final ByteBuffer src, final int o)
+	{
+		// L'octet de poids fort, signé, porte le signe
+		if (ordre == ByteOrder.LITTLE_ENDIAN)
+			return src.get(o+2)<<16 | (src.get(o+1)&0xFF)<<8 | (src.get(o)&0xFF);
+		return src.get(o)<<16 | (src.get(o+1)&0xFF)<<8 | (src.get(o+2)&0xFF);
+	}
+}
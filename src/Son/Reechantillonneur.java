@@ -0,0 +1,190 @@
+package Son;
+
+import java.util.Arrays;
+
+// *****************************************************************************
+// Changement de fréquence d'échantillonnage d'un signal reçu en flux, par
+// un rapport rationnel L/M (par exemple 1/3 de 48 kHz à 16 kHz, 160/441 de
+// 44,1 kHz à 16 kHz) : le signal est virtuellement suréchantillonné par L,
+// filtré passe-bas (anti-repliement) puis décimé par M. Le filtre, un sinus
+// cardinal fenêtré par Kaiser, est découpé en L phases : chaque échantillon
+// produit ne coûte qu'une phase du filtre (quelques dizaines de
+// multiplications), sans jamais calculer les échantillons écartés.
+// Le retard du filtre est compensé : le i-ème échantillon produit correspond
+// à l'instant i/frequenceCible du signal d'origine.
+
+public class Reechantillonneur
+{
+	// Passages par zéro du sinus cardinal de chaque côté du centre
+	private static final int ZerosParCote = 16;
+	// Fraction de la bande utile (moitié de la plus petite des deux fréquences) conservée
+	private static final double Bande = 0.85;
+	// Paramètre de la fenêtre de Kaiser (environ 80 dB d'atténuation)
+	private static final double BetaKaiser = 8.;
+	// Nombre d'échantillons d'entrée gardés en plus de la mémoire du filtre
+	private static final int TailleTampon = 4096;
+
+	private final int haut;			// L
+	private final int bas;			// M
+	private final int nbCoefficients;	// K : coefficients par phase
+	// Coefficient k de la phase p en [p*K+k] (réponse du filtre en p+k.L, multipliée par L)
+	private final float[] phases;
+	// Position du centre du filtre, en échantillons suréchantillonnés
+	private final long centre;
+
+	// Entrées gardées : entrees[0..nb[ sont les échantillons numéro premier..
+	private float[] entrees;
+	private long premier;
+	private int nb;
+	// Nombre d'échantillons reçus et produits
+	private long nbRecus = 0;
+	private long nbProduits = 0;
+
+	public Reechantillonneur(final int frequenceSource, final int frequenceCible)
+	{
+		if (frequenceSource < 1 || frequenceCible < 1)
+			throw new IllegalArgumentException("Fréquences invalides : "+frequenceSource+" -> "+frequenceCible);
+		final int pgcd = pgcd(frequenceSource, frequenceCible);
+		haut = frequenceCible/pgcd;
+		bas = frequenceSource/pgcd;
+
+		// Fréquence de coupure, en cycles par échantillon suréchantillonné
+		final int maximum = Math.max(haut, bas);
+		final double coupure = Bande*.5/maximum;
+		final int demi = (int)Math.ceil(ZerosParCote/(2.*coupure));
+		nbCoefficients = (2*demi+1+haut-1)/haut;
+		centre = demi;
+		phases = new float[haut*nbCoefficients];
+		final double i0Beta = besselI0(BetaKaiser);
+		for (int p = 0; p < haut; ++p)
+			for (int k = 0; k < nbCoefficients; ++k)
+			{
+				final int m = p+k*haut-demi;	// Écart au centre du filtre
+				if (m > demi)
+					continue;
+				final double x = 2.*coupure*m;
+				final double sinc = m == 0 ? 1. : Math.sin(Math.PI*x)/(Math.PI*x);
+				final double r = (double)m/demi;
+				final double fenetre = besselI0(BetaKaiser*Math.sqrt(Math.max(0., 1.-r*r)))/i0Beta;
+				phases[p*nbCoefficients+k] = (float)(haut*2.*coupure*sinc*fenetre);
+			}
+
+		// Mémoire du filtre initialement nulle (échantillons d'indice négatif)
+		entrees = new float[nbCoefficients-1+TailleTampon];
+		premier = -(nbCoefficients-1);
+		nb = nbCoefficients-1;
+	}
+
+	private static int pgcd(final int a, final int b)
+	{
+		return b == 0 ? a : pgcd(b, a%b);
+	}
+
+	// Fonction de Bessel modifiée de première espèce d'ordre 0 (série)
+	private static double besselI0(final double x)
+	{
+		double somme = 1., terme = 1.;
+		for (int k = 1; k < 50 && terme > 1.e-12*somme; ++k)
+		{
+			terme *= (x/(2.*k))*(x/(2.*k));
+			somme += terme;
+		}
+		return somme;
+	}
+
+	// Nombre d'échantillons produits pour nbEntrees échantillons reçus
+	public long nbSorties(final long nbEntrees)
+	{
+		return (nbEntrees*haut+bas-1)/bas;
+	}
+
+	// Nombre maximal d'échantillons produits par traite(..., n, ...)
+	public int maxSorties(final int n)
+	{
+		return (int)((long)n*haut/bas)+1;
+	}
+
+	// Plus grand nombre d'entrées (au moins 1) à passer à traite pour qu'il
+	// ne produise pas plus de nbSorties échantillons
+	public int maxEntrees(final int nbSorties)
+	{
+		return (int)Math.max(1, (long)(nbSorties-1)*bas/haut);
+	}
+
+	// Reçoit entree[debut..debut+n[ et écrit les échantillons qu'ils permettent
+	// de calculer dans sortie[sortieDebut..] (au plus maxSorties(n)) ;
+	// renvoie le nombre d'échantillons écrits
+	public int traite(final float[] entree, final int debut, final int n, final float[] sortie, final int sortieDebut)
+	{
+		if (nb+n > entrees.length)
+			agrandit(nb+n);
+		System.arraycopy(entree, debut, entrees, nb, n);
+		nb += n;
+		nbRecus += n;
+		return produit(sortie, sortieDebut, Integer.MAX_VALUE, false);
+	}
+
+	// En fin de signal : écrit au plus max des échantillons restants (ceux
+	// qui dépendent d'entrées après la fin, supposées nulles) ; renvoie le
+	// nombre écrit, nul lorsque tout a été produit
+	public int vide(final float[] sortie, final int debut, final int max)
+	{
+		return produit(sortie, debut, max, true);
+	}
+
+	// Vrai lorsque tous les échantillons correspondant aux entrées reçues ont été produits
+	public boolean estVide()
+	{
+		return nbProduits >= nbSorties(nbRecus);
+	}
+
+	private int produit(final float[] sortie, final int debut, final int max, final boolean finDuSignal)
+	{
+		final long total = nbSorties(nbRecus);
+		int n = 0;
+		while (n < max && (!finDuSignal || nbProduits < total))
+		{
+			final long t = nbProduits*bas+centre;
+			final long plusRecente = t/haut;
+			if (plusRecente >= premier+nb)
+			{
+				if (!finDuSignal)
+					break;
+				// Après la fin du signal : entrées nulles
+				final int manquantes = (int)(plusRecente-(premier+nb)+1);
+				if (nb+manquantes > entrees.length)
+					agrandit(nb+manquantes);
+				Arrays.fill(entrees, nb, nb+manquantes, 0.f);
+				nb += manquantes;
+			}
+			final int p = (int)(t%haut);
+			final int indice = (int)(plusRecente-premier);
+			final int c = p*nbCoefficients;
+			double somme = 0.;
+			for (int k = 0; k < nbCoefficients; ++k)
+				somme += phases[c+k]*entrees[indice-k];
+			sortie[debut+n++] = (float)somme;
+			++nbProduits;
+		}
+		oublie();
+		return n;
+	}
+
+	// Supprime les entrées dont plus aucun échantillon à produire n'a besoin
+	private void oublie()
+	{
+		final long utile = (nbProduits*bas+centre)/haut-(nbCoefficients-1);
+		final int inutiles = (int)Math.min(nb, Math.max(0, utile-premier));
+		if (inutiles > 0)
+		{
+			System.arraycopy(entrees, inutiles, entrees, 0, nb-inutiles);
+			nb -= inutiles;
+			premier += inutiles;
+		}
+	}
+
+	private void agrandit(final int taille)
+	{
+		entrees = Arrays.copyOf(entrees, Math.max(taille, 2*entrees.length));
+	}
+}
@@ -1,17 +1,12 @@
 package Son;
 import java.util.Arrays;
-import java.io.File;
-import java.nio.ByteBuffer;
-import java.nio.ShortBuffer;
-import java.nio.ByteOrder;
-import javax.sound.sampled.AudioInputStream;
-import javax.sound.sampled.AudioSystem;
-import javax.sound.sampled.AudioFormat;
 
 
 // *****************************************************************************
 // La classe Son illustre la lecture de fichiers son de type WAV,
-// au format 16 bits monaural non compressé
+// au format PCM non compressé (entiers de 8 à 32 bits ou flottants) ;
+// les fichiers stéréophoniques sont mélangés en un seul canal, et les
+// échantillons toujours exprimés sur l'échelle 16 bits
 // Installez et utilisez éventuellement Audacity pour convertir vos
 // propres sons dans ce format
 
@@ -24,39 +19,67 @@ public class Son
 	public float[] donnees() {return donnees;}
 	public float[] bloc_deTaille(final int numeroBloc, final int tailleBloc)
 	{
-		final int from = numeroBloc*tailleBloc;
-		final int to = from+tailleBloc;
-		return Arrays.copyOfRange(donnees, from, to);
+		return bloc_deTaille(numeroBloc, tailleBloc, new float[tailleBloc]);
 	}
 
-	// Constructeur d'un objet permettant de lire un fichier son mono-canal
-	// 16 bits PCM little endian, en utilisant les API Java
+	// Copie le bloc dans dest (tailleBloc premières valeurs) sans allocation ;
+	// la partie au-delà de la fin du son est mise à zéro
+	public float[] bloc_deTaille(final int numeroBloc, final int tailleBloc, final float[] dest)
+	{
+		final int lus = lire(numeroBloc*tailleBloc, dest, 0, tailleBloc);
+		Arrays.fill(dest, lus, tailleBloc, 0.f);
+		return dest;
+	}
+
+	// Copie jusqu'à n échantillons à partir de l'échantillon "debut" dans
+	// dest[destDebut..] ; renvoie le nombre copiés (moins à la fin du son)
+	public int lire(final int debut, final float[] dest, final int destDebut, final int n)
+	{
+		final int lus = Math.max(0, Math.min(n, taille()-debut));
+		System.arraycopy(donnees(), debut, dest, destDebut, lus);
+		return lus;
+	}
+
+	// Constructeur réservé aux sons dont les échantillons sont fournis
+	// autrement que par un tableau (voir SonMappe)
+	protected Son(final int frequence)
+	{
+		this.frequence = frequence;
+	}
+
+	// Constructeur d'un son à partir d'échantillons déjà en mémoire
+	public Son(final float[] donnees, final int frequence)
+	{
+		this.donnees = donnees;
+		this.frequence = frequence;
+	}
+
+	// Constructeur d'un objet permettant de lire un fichier son PCM, en
+	// utilisant les API Java : le fichier est décodé en entier par un FluxSon
+	// (voir cette classe pour le parcourir sans tout charger)
 	public Son(final String nomFichier)
 	{
-		try
-		{
-			// Ouvrir le fichier comme une source audio
-			AudioInputStream ais = AudioSystem.getAudioInputStream(new File(nomFichier));
-			// Obtenir des informations sur cette source
-			AudioFormat af = ais.getFormat();
+		this(nomFichier, 0);
+	}
 
-			if (af.getChannels() == 1 &&	// Si le signal est monophonique
-				af.getEncoding() == AudioFormat.Encoding.PCM_SIGNED &&	// et qu'il est en Pulse Code Modulation signé
-				af.getSampleSizeInBits() == 16)	// et que les échantillons sont sur 16 bits
+	// Comme ci-dessus, rééchantillonné à frequenceCible Hz pendant le
+	// décodage (0 : fréquence du fichier)
+	public Son(final String nomFichier, final int frequenceCible)
+	{
+		try (FluxSon flux = new FluxSon(nomFichier, FluxSon.TailleMorceau, frequenceCible))
+		{
+			// Récupérer la fréquence du fichier audio
+			frequence = flux.frequence();
+			// Tableau à la taille annoncée par le fichier, agrandi si besoin
+			float[] lus = new float[flux.taille() >= 0 ? (int)flux.taille() : FluxSon.TailleMorceau];
+			int nbLus = 0;
+			while (flux.hasNext())
 			{
-				final int NombreDonnees = ais.available();	// Combien d'octets constituent les données
-				final byte[] bufferOctets = new byte[NombreDonnees];	// Préparer un buffer pour lire tout le flux du fichier
-				ais.read(bufferOctets);	// Lire le fichier dans le buffer d'octets
-				ais.close();	// On peut fermer le flux du fichier
-				ByteBuffer bb = ByteBuffer.wrap(bufferOctets);	// Prépare le travail sur le buffer
-				bb.order(ByteOrder.LITTLE_ENDIAN);	// Indique le format des données lues dans le WAV
-				ShortBuffer donneesAudio = bb.asShortBuffer();	// Préparer un buffer pour interpréter les données en tableau de short
-				donnees = new float[donneesAudio.capacity()];
-				for (int i = 0; i < donnees.length; ++i)
-					donnees[i] = (float)donneesAudio.get(i);
-				// Récupérer la fréquence du fichier audio
-				frequence = (int)af.getSampleRate();
+				if (nbLus == lus.length)
+					lus = Arrays.copyOf(lus, Math.max(FluxSon.TailleMorceau, 2*lus.length));
+				nbLus += flux.lire(lus, nbLus, lus.length-nbLus);
 			}
+			donnees = nbLus == lus.length ? lus : Arrays.copyOf(lus, nbLus);
 		}
 		catch (Exception e)
 		{
@@ -78,6 +101,6 @@ public class Son
 	}
 
 	public int taille() {
-		return donnees.length;
+		return donnees().length;
 	}
 }
@@ -0,0 +1,198 @@
+package Son;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// *****************************************************************************
+// Son lu directement dans un fichier WAV projeté en mémoire (FileChannel.map) :
+// l'en-tête RIFF est analysé ici même, puis le bloc de données "data" est
+// projeté tel quel, sans rien décoder à l'ouverture. Les échantillons ne
+// sont convertis en float que pour les blocs effectivement demandés
+// (bloc_deTaille, lire), si bien qu'ouvrir un fichier de plusieurs giga-octets
+// ne coûte presque rien, et que plusieurs processus analysant le même fichier
+// partagent les pages du cache du système au lieu d'en garder chacun une copie.
+// Tous les formats PCM de FormatPCM sont acceptés (entiers 8 à 32 bits,
+// flottants, plusieurs canaux) : les canaux sont mélangés et les échantillons
+// ramenés à l'échelle 16 bits au moment de la conversion.
+// Seul donnees() convertit (une fois) le fichier entier : à éviter sur les
+// longs enregistrements.
+// Le contenu projeté n'étant jamais modifié, une instance peut être lue par
+// plusieurs threads à la fois.
+
+public class SonMappe extends Son
+{
+	// Les données de plus de 1 Go sont projetées en plusieurs segments
+	private static final int OctetsParSegment = 1<<30;
+
+	private final FormatPCM format;
+	// Segments projetés (petit-boutistes), de tramesParSegment trames chacun
+	private final ByteBuffer[] segments;
+	private final int tramesParSegment;
+	private final int taille;
+	// Données entièrement converties, seulement si donnees() a été appelée
+	private volatile float[] donnees = null;
+
+	private SonMappe(final FormatPCM format, final ByteBuffer[] segments, final int tramesParSegment, final int taille)
+	{
+		super(format.frequence);
+		this.format = format;
+		this.segments = segments;
+		this.tramesParSegment = tramesParSegment;
+		this.taille = taille;
+	}
+
+	// Ouvre un fichier WAV PCM et en projette les données
+	public static SonMappe ouvre(final String nomFichier) throws IOException
+	{
+		try (FileChannel canal = FileChannel.open(Path.of(nomFichier), StandardOpenOption.READ))
+		{
+			final long tailleFichier = canal.size();
+			final ByteBuffer entete = ByteBuffer.allocate(12).order(ByteOrder.LITTLE_ENDIAN);
+			if (lit(canal, entete, 0) < 12 || !identifiant(entete, 0).equals("RIFF")
+					|| !identifiant(entete, 8).equals("WAVE"))
+				throw new IOException("Fichier RIFF/WAVE attendu : "+nomFichier);
+
+			// Parcours des blocs : "fmt " décrit le format, "data" contient les échantillons
+			FormatPCM format = null;
+			final ByteBuffer bloc = ByteBuffer.allocate(40).order(ByteOrder.LITTLE_ENDIAN);
+			long position = 12;
+			while (position+8 <= tailleFichier)
+			{
+				bloc.clear().limit(8);
+				lit(canal, bloc, position);
+				final String id = identifiant(bloc, 0);
+				final long tailleBloc = bloc.getInt(4) & 0xFFFFFFFFL;
+				final long debut = position+8;
+				if (id.equals("fmt "))
+				{
+					bloc.clear().limit((int)Math.min(bloc.capacity(), tailleBloc));
+					if (lit(canal, bloc, debut) < 16)
+						throw new IOException("Bloc fmt incomplet : "+nomFichier);
+					int codage = bloc.getShort(0) & 0xFFFF;
+					// WAVE_FORMAT_EXTENSIBLE : le vrai codage est au début du sous-format
+					if (codage == 0xFFFE && tailleBloc >= 26)
+						codage = bloc.getShort(24) & 0xFFFF;
+					final int canaux = bloc.getShort(2) & 0xFFFF;
+					final int octetsParTrame = bloc.getShort(12) & 0xFFFF;
+					final int bits = bloc.getShort(14) & 0xFFFF;
+					// 1 : PCM entier (non signé sur 8 bits), 3 : flottants IEEE
+					if (codage != 1 && codage != 3)
+						throw new IOException("Codage WAV non pris en charge : "+codage);
+					format = new FormatPCM(codage == 3, codage == 1 && bits == 8, bits, canaux,
+							ByteOrder.LITTLE_ENDIAN, bloc.getInt(4));
+					if (octetsParTrame != format.octetsParTrame)
+						throw new IOException("Trames de "+octetsParTrame+" octets non prises en charge ("
+								+canaux+" canaux de "+bits+" bits)");
+				}
+				else if (id.equals("data"))
+				{
+					if (format == null)
+						throw new IOException("Bloc data avant le bloc fmt : "+nomFichier);
+					// Taille parfois laissée nulle ou maximale par les enregistreurs en flux
+					final long octets = Math.min(tailleBloc == 0 ? Long.MAX_VALUE : tailleBloc, tailleFichier-debut);
+					final long nbTrames = Math.min(Integer.MAX_VALUE, octets/format.octetsParTrame);
+					final int tramesParSegment = OctetsParSegment/format.octetsParTrame;
+					return new SonMappe(format, projette(canal, debut, nbTrames, format.octetsParTrame, tramesParSegment),
+							tramesParSegment, (int)nbTrames);
+				}
+				// Les blocs sont alignés sur un nombre pair d'octets
+				position = debut+tailleBloc+(tailleBloc&1);
+			}
+			throw new IOException("Aucun bloc data dans "+nomFichier);
+		}
+	}
+
+	// Projette nbTrames trames à partir de l'octet "debut", par segments d'au
+	// plus tramesParSegment trames (une trame n'est jamais coupée entre deux
+	// segments) ; la projection reste valable après la fermeture du canal
+	private static ByteBuffer[] projette(final FileChannel canal, final long debut, final long nbTrames,
+			final int octetsParTrame, final int tramesParSegment) throws IOException
+	{
+		final int nbSegments = (int)Math.max(1, (nbTrames+tramesParSegment-1)/tramesParSegment);
+		final ByteBuffer[] segments = new ByteBuffer[nbSegments];
+		for (int s = 0; s < nbSegments; ++s)
+		{
+			final long premiere = (long)s*tramesParSegment;
+			final long nb = Math.min(tramesParSegment, nbTrames-premiere);
+			segments[s] = canal.map(FileChannel.MapMode.READ_ONLY, debut+premiere*octetsParTrame, nb*octetsParTrame)
+					.order(ByteOrder.LITTLE_ENDIAN);
+		}
+		return segments;
+	}
+
+	private static int lit(final FileChannel canal, final ByteBuffer tampon, final long position) throws IOException
+	{
+		int lus = 0;
+		while (tampon.hasRemaining())
+		{
+			final int n = canal.read(tampon, position+lus);
+			if (n < 0)
+				break;
+			lus += n;
+		}
+		return lus;
+	}
+
+	private static String identifiant(final ByteBuffer tampon, final int position)
+	{
+		final byte[] octets = new byte[4];
+		tampon.get(position, octets);
+		return new String(octets, StandardCharsets.US_ASCII);
+	}
+
+	public int taille() {return taille;}
+
+	// Vue 16 bits petit-boutiste des échantillons du fichier (fichiers 16 bits
+	// monauraux de moins de 1 Go, projetés en un seul segment)
+	public ShortBuffer echantillons()
+	{
+		if (!format.estMono16())
+			throw new UnsupportedOperationException("Échantillons qui ne sont pas en 16 bits monaural");
+		if (segments.length > 1)
+			throw new UnsupportedOperationException("Données projetées en "+segments.length+" segments");
+		return segments[0].duplicate().order(ByteOrder.LITTLE_ENDIAN).asShortBuffer();
+	}
+
+	// Échantillon numéro i (canaux mélangés), sur l'échelle 16 bits
+	public float echantillon(final int i)
+	{
+		return format.trame(segments[i/tramesParSegment], (i%tramesParSegment)*format.octetsParTrame);
+	}
+
+	// Conversion à la demande des seuls échantillons demandés
+	public int lire(final int debut, final float[] dest, final int destDebut, final int n)
+	{
+		final int lus = Math.max(0, Math.min(n, taille-debut));
+		int i = 0;
+		while (i < lus)
+		{
+			final int s = (debut+i)/tramesParSegment;
+			final int dansSegment = (debut+i)%tramesParSegment;
+			final ByteBuffer segment = segments[s];
+			final int nb = Math.min(lus-i, segment.limit()/format.octetsParTrame-dansSegment);
+			format.decode(segment, dansSegment*format.octetsParTrame, nb, dest, destDebut+i);
+			i += nb;
+		}
+		return lus;
+	}
+
+	// Convertit le fichier entier (une seule fois) : préférer bloc_deTaille,
+	// lire ou un FluxSon pour ne convertir que ce qui sert
+	public float[] donnees()
+	{
+		float[] resultat = donnees;
+		if (resultat == null)
+		{
+			resultat = new float[taille];
+			lire(0, resultat, 0, taille);
+			donnees = resultat;
+		}
+		return resultat;
+	}
+}
@@ -0,0 +1,172 @@
+package Son;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.util.Random;
+
+public class testSon
+{
+	/**
+	 * Compare la lecture complète (Son), la projection en mémoire (SonMappe)
+	 * et la lecture en flux (FluxSon) d'un fichier WAV fabriqué pour
+	 * l'occasion, puis des fichiers WAV donnés en paramètres ; vérifie aussi
+	 * le décodage des autres formats PCM et le rééchantillonnage.
+	 * @param args Fichiers WAV supplémentaires à comparer (facultatif).
+	 */
+	public static void main(final String[] args) throws IOException
+	{
+		boolean succes = true;
+
+		// Fichier avec des blocs inconnus (dont un de taille impaire) avant les données
+		final Random rand = new Random(3);
+		final int nb = 20000;
+		final ByteBuffer mono16 = ByteBuffer.allocate(2*nb).order(ByteOrder.LITTLE_ENDIAN);
+		final ByteBuffer stereo24 = ByteBuffer.allocate(6*nb).order(ByteOrder.LITTLE_ENDIAN);
+		final ByteBuffer flottants = ByteBuffer.allocate(4*nb).order(ByteOrder.LITTLE_ENDIAN);
+		final ByteBuffer nonSignes = ByteBuffer.allocate(nb);
+		final float[] attendus16 = new float[nb], attendus24 = new float[nb], attendus8 = new float[nb];
+		for (int i = 0; i < nb; ++i)
+		{
+			final short e = (short)(rand.nextInt(65536)-32768);
+			mono16.putShort(e);
+			attendus16[i] = e;
+			// Stéréo 24 bits : la moyenne des deux canaux, ramenée sur 16 bits
+			final int gauche = rand.nextInt(1<<24)-(1<<23), droite = rand.nextInt(1<<24)-(1<<23);
+			stereo24.put((byte)gauche).putShort((short)(gauche>>8)).put((byte)droite).putShort((short)(droite>>8));
+			attendus24[i] = (gauche+droite)/512.f;
+			flottants.putFloat(e/32768.f);
+			final int octet = rand.nextInt(256);
+			nonSignes.put((byte)octet);
+			attendus8[i] = (octet-128)*256;
+		}
+		succes &= compare(fichierTemporaire(wav(mono16.array(), 1, 1, 16, 22050)), attendus16);
+		succes &= compare(fichierTemporaire(wav(stereo24.array(), 1, 2, 24, 48000)), attendus24);
+		succes &= compare(fichierTemporaire(wav(flottants.array(), 3, 1, 32, 44100)), attendus16);
+		succes &= compare(fichierTemporaire(wav(nonSignes.array(), 1, 1, 8, 8000)), attendus8);
+
+		// Rééchantillonnage d'un sinus : fidèle dans la bande conservée,
+		// éliminé au-dessus de la moitié de la nouvelle fréquence
+		succes &= reechantillonne(48000, 16000, 1000., true);
+		succes &= reechantillonne(44100, 16000, 1000., true);
+		succes &= reechantillonne(8000, 22050, 1000., true);
+		succes &= reechantillonne(48000, 16000, 12000., false);
+
+		for (final String nom : args)
+			succes &= compare(nom, null);
+
+		System.out.println(succes ? "Tous les tests Son sont passés" : "Des tests Son ont échoué");
+		if (!succes)
+			System.exit(1);
+	}
+
+	// Vérifie que les trois lectures donnent les mêmes échantillons (et les
+	// échantillons attendus s'ils sont connus)
+	static boolean compare(final String nom, final float[] attendus) throws IOException
+	{
+		final Son son = new Son(nom);
+		final SonMappe mappe = SonMappe.ouvre(nom);
+		boolean ok = son.frequence() == mappe.frequence() && son.taille() == mappe.taille();
+		if (attendus != null)
+			ok &= son.taille() == attendus.length;
+		for (int i = 0; ok && i < son.taille(); ++i)
+			ok = son.donnees()[i] == mappe.echantillon(i) && (attendus == null || attendus[i] == son.donnees()[i]);
+
+		// Blocs demandés dans le désordre, dont le dernier, incomplet
+		final int tailleBloc = 1000;
+		final float[] bloc = new float[tailleBloc];
+		for (int numero = son.taille()/tailleBloc; ok && numero >= 0; numero -= 3)
+		{
+			final float[] reference = son.bloc_deTaille(numero, tailleBloc);
+			mappe.bloc_deTaille(numero, tailleBloc, bloc);
+			for (int i = 0; i < tailleBloc; ++i)
+				ok &= reference[i] == bloc[i];
+		}
+
+		// Lecture en flux par morceaux, en sautant des échantillons
+		try (FluxSon flux = FluxSon.ouvre(nom); FluxSon fluxJava = new FluxSon(nom, 777))
+		{
+			int position = 0;
+			while (ok && position < son.taille())
+			{
+				final int n = flux.lire(bloc, 0, 300);
+				for (int i = 0; i < n; ++i)
+					ok &= bloc[i] == son.donnees()[position+i];
+				position += n+(int)flux.saute(500);
+			}
+			position = 0;
+			while (ok && fluxJava.hasNext())
+			{
+				final float[] morceau = fluxJava.next();
+				for (int i = 0; i < fluxJava.nbValides(); ++i)
+					ok &= morceau[i] == son.donnees()[position+i];
+				position += fluxJava.nbValides();
+			}
+			ok &= position == son.taille();
+		}
+
+		// Rééchantillonnage à 16 kHz : mêmes échantillons par les deux lectures
+		final Son reduit = new Son(nom, 16000);
+		try (FluxSon flux = FluxSon.ouvre(nom, 16000))
+		{
+			ok &= reduit.frequence() == 16000 && flux.taille() == reduit.taille();
+			final float[] lus = new float[reduit.taille()];
+			ok &= flux.lire(lus, 0, lus.length) == lus.length && !flux.hasNext();
+			for (int i = 0; ok && i < lus.length; ++i)
+				ok = lus[i] == reduit.donnees()[i];
+		}
+		System.out.println((ok ? "OK     " : "ÉCHEC  ")+nom+" ("+son.taille()+" échantillons)");
+		return ok;
+	}
+
+	// Rééchantillonne un sinus de fréquence f et le compare, loin des bords,
+	// au sinus idéal (passant) ou au silence (coupé)
+	static boolean reechantillonne(final int source, final int cible, final double f, final boolean passant)
+	{
+		final double amplitude = 10000.;
+		final float[] signal = new float[source];	// Une seconde
+		for (int i = 0; i < signal.length; ++i)
+			signal[i] = (float)(amplitude*Math.sin(2.*Math.PI*f*i/source));
+		final FluxSon flux = new FluxSon(new Son(signal, source), 1000, cible);
+		final float[] sortie = new float[(int)flux.taille()+1];
+		final int n = flux.lire(sortie, 0, sortie.length);
+		double ecartMax = 0.;
+		for (int i = 100; i < n-100; ++i)
+		{
+			final double ideal = passant ? amplitude*Math.sin(2.*Math.PI*f*i/cible) : 0.;
+			ecartMax = Math.max(ecartMax, Math.abs(sortie[i]-ideal));
+		}
+		final boolean ok = flux.frequence() == cible && n == flux.taille()
+				&& n == cible && ecartMax < 1.e-3*amplitude;
+		System.out.printf("%s%d -> %d Hz, sinus de %.0f Hz : écart maximal %.2g%n",
+				ok ? "OK     " : "ÉCHEC  ", source, cible, f, ecartMax/amplitude);
+		return ok;
+	}
+
+	static String fichierTemporaire(final byte[] contenu) throws IOException
+	{
+		final File fichier = File.createTempFile("testSon", ".wav");
+		fichier.deleteOnExit();
+		Files.write(fichier.toPath(), contenu);
+		return fichier.getPath();
+	}
+
+	// Fichier WAV (codage 1 : PCM entier, 3 : flottant), avec deux blocs à
+	// ignorer avant "data"
+	static byte[] wav(final byte[] donnees, final int codage, final int canaux, final int bits, final int frequence)
+	{
+		final byte[] inconnu = {1, 2, 3};	// taille impaire : suivi d'un octet de remplissage
+		final int taille = 12+(8+16)+(8+inconnu.length+1)+(8+4)+(8+donnees.length);
+		final int octetsParTrame = canaux*bits/8;
+		final ByteBuffer b = ByteBuffer.allocate(taille).order(ByteOrder.LITTLE_ENDIAN);
+		b.put("RIFF".getBytes()).putInt(taille-8).put("WAVE".getBytes());
+		b.put("fmt ".getBytes()).putInt(16).putShort((short)codage).putShort((short)canaux)
+				.putInt(frequence).putInt(octetsParTrame*frequence).putShort((short)octetsParTrame).putShort((short)bits);
+		b.put("junk".getBytes()).putInt(inconnu.length).put(inconnu).put((byte)0);
+		b.put("LIST".getBytes()).putInt(4).put("INFO".getBytes());
+		b.put("data".getBytes()).putInt(donnees.length).put(donnees);
+		return b.array();
+	}
+}
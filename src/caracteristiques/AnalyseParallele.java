@@ -0,0 +1,266 @@
+package caracteristiques;
+
+import Son.FluxSon;
+import java.util.List;
+import neurone.ProduitScalaire;
+import pipeline.Etage;
+import pipeline.Pipeline;
+
+// *****************************************************************************
+// Analyse d'un long fichier son répartie entre plusieurs threads. Les blocs
+// sont indépendants les uns des autres : le son est lu en segments de
+// BlocsParSegment blocs consécutifs (en gardant d'un segment au suivant le
+// recouvrement des blocs lorsque le pas est plus petit qu'eux), et chaque
+// segment passe par une chaîne de traitement (Pipeline) :
+//  - décodage : lecture du son, un thread (le fichier est lu dans l'ordre) ;
+//  - caractéristiques : fenêtre, FFT et extraction des blocs du segment,
+//    transformés ensemble par la FFT par lots (Extracteur.extraitLot, dans
+//    l'ardoise de chaque thread) ;
+//  - classification : évaluation de tous les blocs du segment d'un coup
+//    (Evaluation, typiquement Modele.evalueLot d'un modèle partagé en
+//    lecture seule).
+// Pour un modèle int8 (EvaluationQuantifiee), les caractéristiques de chaque
+// bloc sont quantifiées une fois pour toutes dans l'étage des
+// caractéristiques : la classification ne fait plus que le produit entier.
+// Chaque étage a son propre nombre de threads ; sans threads de
+// classification, les deux derniers étages n'en font qu'un, qui évalue
+// les blocs du segment sitôt leurs caractéristiques calculées.
+// Les segments sont rendus dans l'ordre du fichier, et chaque bloc reçoit
+// les valeurs du parcours séquentiel (FluxCaracteristiques) aux arrondis
+// du float près : mêmes échantillons, même fenêtre, même évaluation bloc
+// par bloc, seule la FFT par lots ordonne ses calculs autrement que la FFT
+// réelle d'un bloc.
+// Les segments viennent d'une réserve fixe et les files entre étages sont
+// bornées : la mémoire reste constante quelle que soit la durée du fichier,
+// et la lecture n'avance pas plus vite que le calcul.
+
+public final class AnalyseParallele implements AutoCloseable
+{
+	// Calcul des valeurs des blocs d'un segment à partir de leurs
+	// caractéristiques ; appelé en même temps depuis plusieurs threads
+	@FunctionalInterface
+	public interface Evaluation
+	{
+		// Écrit dans "valeurs" les résultats des nbBlocs blocs dont les
+		// caractéristiques sont rangées bloc après bloc (extracteur.dimension()
+		// valeurs chacun), nbValeurs valeurs par bloc, bloc après bloc
+		public void evalue(float[] caracteristiques, int nbBlocs, float[] valeurs);
+	}
+
+	// Idem pour des blocs dont les caractéristiques ont été quantifiées en
+	// int8 (ProduitScalaire.quantifie) : entrees[b], d'échelle echelles[b]
+	@FunctionalInterface
+	public interface EvaluationQuantifiee
+	{
+		public void evalue(byte[][] entrees, float[] echelles, int nbBlocs, float[] valeurs);
+	}
+
+	// Blocs consécutifs confiés ensemble à un thread
+	public static final int BlocsParSegment = 256;
+	// Segments en file entre deux étages
+	private static final int CapaciteFiles = 4;
+
+	// Blocs consécutifs, leurs échantillons, leurs caractéristiques (et leur
+	// version int8 pour une EvaluationQuantifiee, null sinon) et les valeurs
+	// calculées
+	private static final class Segment
+	{
+		final float[] echantillons;
+		final float[] caracteristiques;
+		final byte[][] octets;
+		final float[] echelles;
+		final float[] valeurs;
+		int premierBloc;
+		int nbBlocs;
+
+		Segment(final int nbEchantillons, final int dimension, final int nbValeurs, final boolean quantifie)
+		{
+			echantillons = new float[nbEchantillons];
+			caracteristiques = new float[BlocsParSegment*dimension];
+			octets = quantifie ? new byte[BlocsParSegment][dimension] : null;
+			echelles = quantifie ? new float[BlocsParSegment] : null;
+			valeurs = new float[BlocsParSegment*nbValeurs];
+		}
+	}
+
+	private final FluxSon son;
+	private final Extracteur extracteur;
+	private final int pas;
+	private final int nbBlocs;
+	private final Evaluation evaluation;
+	private final EvaluationQuantifiee evaluationQuantifiee;
+	private final Pipeline<Segment> pipeline;
+	private Segment courant = null;
+
+	// Échantillons d'un segment : ses blocs et ce qui les sépare
+	private final int nbEchantillons;
+	// Fin du dernier segment lu, gardée pour le recouvrement avec le suivant
+	private final float[] recouvrement;
+	private int nbRecouvrement = 0;
+	// Position dans le son du prochain échantillon non lu, et prochain bloc
+	private long lus = 0;
+	private int blocSuivant = 0;
+	private boolean finLecture = false;
+
+	// Analyse de "son" en blocs de extracteur.tailleBloc() échantillons
+	// espacés de "pas", par nbThreads threads calculant chacun les
+	// caractéristiques puis les valeurs de ses blocs ; l'appelant reste
+	// propriétaire du flux et le ferme
+	public AnalyseParallele(final FluxSon son, final Extracteur extracteur, final int pas, final int nbValeurs,
+			final Evaluation evaluation, final int nbThreads)
+	{
+		this(son, extracteur, pas, nbValeurs, evaluation, nbThreads, 0);
+	}
+
+	// Idem, avec nbThreadsCaracteristiques threads de calcul des
+	// caractéristiques et nbThreadsClassification threads d'évaluation (0 :
+	// évaluation par les threads des caractéristiques)
+	public AnalyseParallele(final FluxSon son, final Extracteur extracteur, final int pas, final int nbValeurs,
+			final Evaluation evaluation, final int nbThreadsCaracteristiques, final int nbThreadsClassification)
+	{
+		this(son, extracteur, pas, nbValeurs, evaluation, null, nbThreadsCaracteristiques, nbThreadsClassification);
+	}
+
+	// Idem pour un modèle int8 : les caractéristiques sont quantifiées par
+	// les threads des caractéristiques
+	public AnalyseParallele(final FluxSon son, final Extracteur extracteur, final int pas, final int nbValeurs,
+			final EvaluationQuantifiee evaluation, final int nbThreadsCaracteristiques,
+			final int nbThreadsClassification)
+	{
+		this(son, extracteur, pas, nbValeurs, null, evaluation, nbThreadsCaracteristiques, nbThreadsClassification);
+	}
+
+	private AnalyseParallele(final FluxSon son, final Extracteur extracteur, final int pas, final int nbValeurs,
+			final Evaluation evaluation, final EvaluationQuantifiee evaluationQuantifiee,
+			final int nbThreadsCaracteristiques, final int nbThreadsClassification)
+	{
+		if (pas < 1 || nbValeurs < 1 || nbThreadsCaracteristiques < 1 || nbThreadsClassification < 0)
+			throw new IllegalArgumentException("Analyse parallèle invalide : pas "+pas+", "+nbValeurs+" valeurs, "
+					+nbThreadsCaracteristiques+"+"+nbThreadsClassification+" threads");
+		this.son = son;
+		this.extracteur = extracteur;
+		this.pas = pas;
+		this.evaluation = evaluation;
+		this.evaluationQuantifiee = evaluationQuantifiee;
+		nbEchantillons = (BlocsParSegment-1)*pas+extracteur.tailleBloc();
+		recouvrement = new float[extracteur.tailleBloc()];
+		final long taille = son.taille();
+		nbBlocs = taille < 0 ? -1
+				: taille < extracteur.tailleBloc() ? 0 : (int)((taille-extracteur.tailleBloc())/pas+1);
+
+		pipeline = new Pipeline<>("décodage", "blocs", this::lit,
+				() -> new Segment(nbEchantillons, extracteur.dimension(), nbValeurs, evaluationQuantifiee != null),
+				CapaciteFiles);
+		if (nbThreadsClassification == 0)
+			pipeline.ajoute("analyse", "blocs", nbThreadsCaracteristiques, this::analyse);
+		else
+		{
+			pipeline.ajoute("caractéristiques", "blocs", nbThreadsCaracteristiques, this::extrait);
+			pipeline.ajoute("classification", "blocs", nbThreadsClassification, this::classe);
+		}
+		pipeline.demarre();
+	}
+
+	// Nombre total de blocs de l'analyse, ou -1 si la durée du son n'est pas
+	// connue (même décompte que Spectrogramme)
+	public int nbBlocs() {return nbBlocs;}
+
+	// Passe au segment suivant, dans l'ordre du fichier, en attendant la fin
+	// de son calcul ; renvoie false lorsque tous les blocs ont été rendus
+	public boolean suivant()
+	{
+		courant = pipeline.suivant();
+		return courant != null;
+	}
+
+	// Numéro du premier bloc du segment courant
+	public int premierBloc() {return courant.premierBloc;}
+	// Nombre de blocs du segment courant
+	public int nbBlocsSegment() {return courant.nbBlocs;}
+	// Valeurs des blocs du segment courant, nbValeurs par bloc, bloc après
+	// bloc (tableau réutilisé une fois passé au segment suivant)
+	public float[] valeurs() {return courant.valeurs;}
+
+	// Compteurs de chaque étage, pour les dimensionner
+	public List<Etage> etages() {return pipeline.etages();}
+	// Durée de l'analyse jusqu'ici, en nanosecondes
+	public long duree() {return pipeline.duree();}
+
+	// Lit les échantillons du segment suivant (étage de décodage) ; renvoie
+	// son nombre de blocs, ou -1 à la fin du son
+	private int lit(final Segment segment)
+	{
+		if (finLecture)
+			return -1;
+		final long debut = (long)blocSuivant*pas;
+		int n = 0;
+		if (lus > debut)
+		{
+			// Fin du segment précédent commune aux premiers blocs de celui-ci
+			n = (int)(lus-debut);
+			System.arraycopy(recouvrement, nbRecouvrement-n, segment.echantillons, 0, n);
+		}
+		else if (lus < debut && son.saute(debut-lus) < debut-lus)
+			return fin();
+		n += son.lire(segment.echantillons, n, nbEchantillons-n);
+		lus = debut+n;
+		final int tailleBloc = extracteur.tailleBloc();
+		if (n < nbEchantillons)
+			finLecture = true;
+		if (n < tailleBloc)
+			return fin();
+		segment.premierBloc = blocSuivant;
+		segment.nbBlocs = Math.min(BlocsParSegment, (n-tailleBloc)/pas+1);
+		blocSuivant += segment.nbBlocs;
+		// Échantillons lus au-delà du début du bloc suivant
+		nbRecouvrement = Math.max(0, n-segment.nbBlocs*pas);
+		System.arraycopy(segment.echantillons, n-nbRecouvrement, recouvrement, 0, nbRecouvrement);
+		return segment.nbBlocs;
+	}
+
+	private int fin()
+	{
+		finLecture = true;
+		return -1;
+	}
+
+	// Caractéristiques puis valeurs des blocs d'un segment
+	private int analyse(final Segment segment)
+	{
+		extrait(segment);
+		return classe(segment);
+	}
+
+	// Caractéristiques des blocs d'un segment, et leur version int8 pour une
+	// EvaluationQuantifiee (étage des caractéristiques)
+	private int extrait(final Segment segment)
+	{
+		extracteur.extraitLot(segment.echantillons, 0, pas, segment.nbBlocs, segment.caracteristiques);
+		if (segment.octets != null)
+		{
+			final int dimension = extracteur.dimension();
+			final ProduitScalaire produit = ProduitScalaire.courant();
+			for (int b = 0; b < segment.nbBlocs; ++b)
+				segment.echelles[b] = produit.quantifie(segment.caracteristiques, b*dimension, dimension,
+						segment.octets[b]);
+		}
+		return segment.nbBlocs;
+	}
+
+	// Valeurs des blocs d'un segment, évalués ensemble (étage de
+	// classification)
+	private int classe(final Segment segment)
+	{
+		if (segment.octets != null)
+			evaluationQuantifiee.evalue(segment.octets, segment.echelles, segment.nbBlocs, segment.valeurs);
+		else
+			evaluation.evalue(segment.caracteristiques, segment.nbBlocs, segment.valeurs);
+		return segment.nbBlocs;
+	}
+
+	// Arrête les threads ; les segments encore en cours sont abandonnés
+	public void close()
+	{
+		pipeline.close();
+	}
+}
@@ -0,0 +1,96 @@
+package caracteristiques;
+
+import java.util.Arrays;
+
+// *****************************************************************************
+// Banc de filtres triangulaires appliqué à un spectre de module : chaque
+// filtre somme l'énergie (module au carré) des raies qu'il couvre, pondérée
+// par un triangle. Les centres des filtres sont régulièrement espacés sur
+// l'échelle mel (perception humaine) ou sur une échelle logarithmique.
+// Seuls les poids non nuls sont gardés (quelques raies par filtre), rangés
+// les uns à la suite des autres : appliquer le banc coûte quelques
+// multiplications par raie au lieu d'une par raie et par filtre.
+
+public class BancFiltres
+{
+	public enum Echelle {MEL, LOG}
+
+	// Fréquence minimale des filtres sur l'échelle logarithmique (Hz)
+	private static final double FrequenceMinLog = 50.;
+
+	private final int nbFiltres;
+	// Le filtre j couvre les raies premiereRaie[j]..premiereRaie[j]+nbPoids-1,
+	// ses poids étant poids[debutPoids[j]..debutPoids[j+1][
+	private final int[] premiereRaie;
+	private final int[] debutPoids;
+	private final float[] poids;
+
+	public BancFiltres(final Echelle echelle, final int nbFiltres, final int tailleFFT, final int frequence)
+	{
+		if (nbFiltres < 1)
+			throw new IllegalArgumentException("Nombre de filtres invalide : "+nbFiltres);
+		this.nbFiltres = nbFiltres;
+		final int nbRaies = tailleFFT/2+1;
+		final double pasRaie = (double)frequence/tailleFFT;
+
+		// nbFiltres+2 bornes régulièrement espacées sur l'échelle choisie
+		final double fMin = echelle == Echelle.MEL ? 0. : Math.max(FrequenceMinLog, pasRaie);
+		final double fMax = frequence/2.;
+		final double[] bornes = new double[nbFiltres+2];
+		for (int j = 0; j < bornes.length; ++j)
+		{
+			final double t = (double)j/(nbFiltres+1);
+			bornes[j] = echelle == Echelle.MEL
+					? depuisMel(versMel(fMin)+t*(versMel(fMax)-versMel(fMin)))
+					: fMin*Math.pow(fMax/fMin, t);
+		}
+
+		premiereRaie = new int[nbFiltres];
+		debutPoids = new int[nbFiltres+1];
+		final float[] tous = new float[nbFiltres*nbRaies];
+		int nbPoids = 0;
+		for (int j = 0; j < nbFiltres; ++j)
+		{
+			final double gauche = bornes[j], centre = bornes[j+1], droite = bornes[j+2];
+			int premiere = (int)Math.ceil(gauche/pasRaie);
+			int derniere = Math.min(nbRaies-1, (int)Math.floor(droite/pasRaie));
+			debutPoids[j] = nbPoids;
+			if (premiere > derniere || premiere >= nbRaies)
+			{
+				// Filtre plus étroit qu'une raie : on garde la raie la plus proche du centre
+				premiere = Math.min(nbRaies-1, (int)Math.round(centre/pasRaie));
+				tous[nbPoids++] = 1.f;
+			}
+			else
+			{
+				for (int k = premiere; k <= derniere; ++k)
+				{
+					final double f = k*pasRaie;
+					final double w = f <= centre ? (f-gauche)/(centre-gauche) : (droite-f)/(droite-centre);
+					tous[nbPoids++] = (float)Math.max(0., w);
+				}
+			}
+			premiereRaie[j] = premiere;
+		}
+		debutPoids[nbFiltres] = nbPoids;
+		poids = Arrays.copyOf(tous, nbPoids);
+	}
+
+	static double versMel(final double frequence) {return 2595.*Math.log10(1.+frequence/700.);}
+	static double depuisMel(final double mel) {return 700.*(Math.pow(10., mel/2595.)-1.);}
+
+	public int nbFiltres() {return nbFiltres;}
+
+	// dest[j] = somme des poids du filtre j par le carré des modules couverts
+	public void applique(final float[] modules, final float[] dest)
+	{
+		for (int j = 0; j < nbFiltres; ++j)
+		{
+			float energie = 0;
+			int k = premiereRaie[j];
+			for (int p = debutPoids[j]; p < debutPoids[j+1]; ++p, ++k)
+				energie += poids[p]*modules[k]*modules[k];
+			dest[j] = energie;
+		}
+	}
+}
@@ -0,0 +1,316 @@
+package caracteristiques;
+
+import Son.FluxSon;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// *****************************************************************************
+// Cache sur disque des caractéristiques calculées pour un fichier son : une
+// fois un fichier parcouru avec des réglages donnés, les relancements
+// (autre type de neurone, nouvel entraînement, nouvelle analyse) relisent
+// directement les vecteurs, sans décoder le son ni calculer de FFT.
+// La clé réunit une empreinte SHA-256 du contenu du fichier son (renommer
+// ou déplacer le fichier ne perd pas le cache, le modifier l'invalide) et
+// tous les réglages qui influent sur les vecteurs : description de
+// l'extracteur, pas entre blocs, fréquence après rééchantillonnage, nombre
+// de blocs gardés.
+// Pour ne pas relire tout un long fichier à chaque ouverture, l'empreinte
+// est gardée à côté des entrées (fichier .emp, par chemin du fichier son)
+// avec la taille et la date de modification du fichier : tant qu'elles
+// n'ont pas changé, elle est reprise sans être recalculée.
+// Chaque entrée est un fichier binaire compact : un en-tête (dont la clé
+// complète, vérifiée à la relecture) suivi des vecteurs en float32
+// petit-boutistes, projeté en mémoire à la relecture. Une entrée n'apparaît
+// qu'une fois complète (écriture dans un fichier temporaire puis
+// renommage), si bien que plusieurs programmes peuvent partager le dossier.
+// La taille totale du dossier est bornée : les entrées les moins récemment
+// utilisées (date de modification, rafraîchie à chaque lecture) sont
+// supprimées au-delà.
+
+public class CacheCaracteristiques
+{
+	private static final String Extension = ".car";
+	// Empreintes gardées (quelques dizaines d'octets, hors taille du cache)
+	private static final String ExtensionEmpreinte = ".emp";
+	private static final byte[] Signature = "CARC".getBytes(StandardCharsets.US_ASCII);
+	private static final int Version = 1;
+	// Signature, version, nombre de vecteurs, dimension, longueur de la clé
+	private static final int TailleEntete = 20;
+	private static final int PositionNbTrames = 8;
+	// Taille visée des écritures groupées (octets)
+	private static final int TailleEcriture = 1<<16;
+
+	private final Path dossier;
+	private final long tailleMax;
+
+	// tailleMax : taille totale des entrées gardées, en octets
+	public CacheCaracteristiques(final Path dossier, final long tailleMax) throws IOException
+	{
+		if (tailleMax < 0)
+			throw new IllegalArgumentException("Taille de cache invalide : "+tailleMax);
+		this.dossier = Files.createDirectories(dossier);
+		this.tailleMax = tailleMax;
+	}
+
+	public Path dossier() {return dossier;}
+	public long tailleMax() {return tailleMax;}
+
+	// Caractéristiques des nbMax premiers blocs (0 : tous) du fichier son,
+	// lu par le flux "son" déjà ouvert : relues du cache si elles y sont,
+	// calculées au fil du flux et enregistrées à la fin du parcours sinon
+	public FluxCaracteristiques ouvre(final String fichierSon, final FluxSon son, final Extracteur extracteur,
+			final int pas, final int nbMax) throws IOException
+	{
+		final String cle = "empreinte="+empreinte(Path.of(fichierSon))
+				+";pas="+pas
+				+";echantillonnage="+son.frequence()
+				+";blocs="+nbMax
+				+";"+extracteur.description();
+		final Path entree = dossier.resolve(nom(cle, Extension));
+		final FluxCaracteristiques relus = relit(entree, cle, extracteur.dimension());
+		if (relus != null)
+			return relus;
+		return new FluxCaracteristiques(son, extracteur, pas, nbMax, new Enregistrement(entree, cle, extracteur.dimension()));
+	}
+
+	// Empreinte du contenu d'un fichier : celle gardée pour son chemin si sa
+	// taille et sa date n'ont pas changé, recalculée et gardée sinon
+	String empreinte(final Path fichier) throws IOException
+	{
+		final Path chemin = fichier.toRealPath();
+		final BasicFileAttributes attributs = Files.readAttributes(chemin, BasicFileAttributes.class);
+		final String etat = attributs.size()+";"+attributs.lastModifiedTime().to(TimeUnit.NANOSECONDS)+";";
+		final Path gardee = dossier.resolve(nom(chemin.toString(), ExtensionEmpreinte));
+		try
+		{
+			final String lue = Files.readString(gardee, StandardCharsets.UTF_8);
+			if (lue.startsWith(etat))
+				return lue.substring(etat.length());
+		}
+		catch (NoSuchFileException e)
+		{
+			// Fichier jamais vu
+		}
+		final String empreinte = condense(chemin);
+		final Path temporaire = Files.createTempFile(dossier, "ecriture", ".tmp");
+		try
+		{
+			Files.writeString(temporaire, etat+empreinte, StandardCharsets.UTF_8);
+			Files.move(temporaire, gardee, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		}
+		finally
+		{
+			Files.deleteIfExists(temporaire);
+		}
+		return empreinte;
+	}
+
+	// Empreinte SHA-256 du contenu d'un fichier, en hexadécimal
+	static String condense(final Path fichier) throws IOException
+	{
+		final MessageDigest sha = sha256();
+		try (FileChannel canal = FileChannel.open(fichier, StandardOpenOption.READ))
+		{
+			final ByteBuffer tampon = ByteBuffer.allocateDirect(1<<20);
+			while (canal.read(tampon) >= 0)
+			{
+				tampon.flip();
+				sha.update(tampon);
+				tampon.clear();
+			}
+		}
+		return HexFormat.of().formatHex(sha.digest());
+	}
+
+	// Nom du fichier d'une entrée (ou d'une empreinte gardée) : condensé de
+	// la clé complète (ou du chemin du fichier son)
+	private static String nom(final String cle, final String extension)
+	{
+		final byte[] condense = sha256().digest(cle.getBytes(StandardCharsets.UTF_8));
+		return HexFormat.of().formatHex(condense, 0, 16)+extension;
+	}
+
+	private static MessageDigest sha256()
+	{
+		try
+		{
+			return MessageDigest.getInstance("SHA-256");
+		}
+		catch (NoSuchAlgorithmException e)
+		{
+			throw new IllegalStateException(e);	// Exigé de toute plateforme Java
+		}
+	}
+
+	private static int tailleEntete(final byte[] cle)
+	{
+		return TailleEntete+(cle.length+3)/4*4;
+	}
+
+	// Projette une entrée du cache si elle existe et correspond bien à la clé ;
+	// une entrée illisible est supprimée
+	private FluxCaracteristiques relit(final Path entree, final String cle, final int dimension) throws IOException
+	{
+		if (!Files.isRegularFile(entree))
+			return null;
+		final byte[] octetsCle = cle.getBytes(StandardCharsets.UTF_8);
+		final int debut = tailleEntete(octetsCle);
+		try (FileChannel canal = FileChannel.open(entree, StandardOpenOption.READ))
+		{
+			final ByteBuffer entete = ByteBuffer.allocate(debut).order(ByteOrder.LITTLE_ENDIAN);
+			while (entete.hasRemaining() && canal.read(entete) >= 0)
+				;
+			final byte[] signature = new byte[Signature.length];
+			final byte[] cleLue = new byte[octetsCle.length];
+			entete.get(0, signature).get(TailleEntete, cleLue);
+			final int nbTrames = entete.getInt(PositionNbTrames);
+			if (entete.hasRemaining() || !Arrays.equals(signature, Signature)
+					|| entete.getInt(4) != Version || entete.getInt(12) != dimension
+					|| entete.getInt(16) != octetsCle.length || !Arrays.equals(cleLue, octetsCle)
+					|| nbTrames < 0 || canal.size() != debut+4L*nbTrames*dimension)
+			{
+				Files.deleteIfExists(entree);
+				return null;
+			}
+			final FloatBuffer vecteurs = canal.map(FileChannel.MapMode.READ_ONLY, debut, 4L*nbTrames*dimension)
+					.order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
+			// Entrée utilisée : la plus récente pour l'éviction
+			Files.setLastModifiedTime(entree, FileTime.fromMillis(System.currentTimeMillis()));
+			return new FluxCaracteristiques(vecteurs, nbTrames, dimension);
+		}
+	}
+
+	// Supprime les entrées les moins récemment utilisées jusqu'à revenir sous
+	// tailleMax, sans jamais toucher à l'entrée "garder"
+	private void evince(final Path garder) throws IOException
+	{
+		final List<Path> entrees = new ArrayList<>();
+		final Map<Path, FileTime> dates = new HashMap<>();
+		long total = 0;
+		try (DirectoryStream<Path> dossierCache = Files.newDirectoryStream(dossier, "*"+Extension))
+		{
+			for (final Path entree : dossierCache)
+			{
+				entrees.add(entree);
+				dates.put(entree, Files.getLastModifiedTime(entree));
+				total += Files.size(entree);
+			}
+		}
+		// Les plus anciennement utilisées d'abord
+		entrees.sort(Comparator.comparing(dates::get));
+		for (final Path entree : entrees)
+		{
+			if (total <= tailleMax)
+				break;
+			if (entree.equals(garder))
+				continue;
+			final long taille = Files.size(entree);
+			if (Files.deleteIfExists(entree))
+				total -= taille;
+		}
+	}
+
+	// Écriture d'une nouvelle entrée au fil du calcul des vecteurs : dans un
+	// fichier temporaire, renommé une fois le parcours complet
+	final class Enregistrement
+	{
+		private final Path entree;
+		private final Path temporaire;
+		private final FileChannel canal;
+		private final ByteBuffer tampon;
+		private final FloatBuffer vue;
+		private boolean ferme = false;
+
+		Enregistrement(final Path entree, final String cle, final int dimension) throws IOException
+		{
+			this.entree = entree;
+			temporaire = Files.createTempFile(dossier, "ecriture", ".tmp");
+			canal = FileChannel.open(temporaire, StandardOpenOption.WRITE);
+			final byte[] octetsCle = cle.getBytes(StandardCharsets.UTF_8);
+			final ByteBuffer entete = ByteBuffer.allocate(tailleEntete(octetsCle)).order(ByteOrder.LITTLE_ENDIAN);
+			entete.put(Signature).putInt(Version).putInt(-1).putInt(dimension).putInt(octetsCle.length).put(octetsCle);
+			entete.clear();
+			ecrit(entete);
+			final int vecteursParEcriture = Math.max(1, TailleEcriture/(4*dimension));
+			tampon = ByteBuffer.allocateDirect(4*dimension*vecteursParEcriture).order(ByteOrder.LITTLE_ENDIAN);
+			vue = tampon.asFloatBuffer();
+		}
+
+		void ajoute(final float[] vecteur) throws IOException
+		{
+			if (vue.remaining() < vecteur.length)
+				vide();
+			vue.put(vecteur);
+		}
+
+		// Parcours complet de nbTrames vecteurs : l'entrée devient visible
+		void valide(final int nbTrames) throws IOException
+		{
+			if (ferme)
+				return;
+			try
+			{
+				vide();
+				canal.write(ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(0, nbTrames), PositionNbTrames);
+				canal.close();
+				ferme = true;
+				Files.move(temporaire, entree, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+				evince(entree);
+			}
+			finally
+			{
+				abandonne();
+			}
+		}
+
+		// Parcours interrompu : rien n'est gardé
+		void abandonne()
+		{
+			try
+			{
+				ferme = true;
+				canal.close();
+				Files.deleteIfExists(temporaire);
+			}
+			catch (IOException e)
+			{
+				// Fichier temporaire laissé dans le dossier : sans conséquence
+			}
+		}
+
+		private void vide() throws IOException
+		{
+			tampon.clear().limit(4*vue.position());
+			ecrit(tampon);
+			vue.clear();
+		}
+
+		private void ecrit(final ByteBuffer octets) throws IOException
+		{
+			while (octets.hasRemaining())
+				canal.write(octets);
+		}
+	}
+}
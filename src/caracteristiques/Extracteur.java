@@ -0,0 +1,296 @@
+package caracteristiques;
+
+import FFT.Ardoise;
+import FFT.FFTLot;
+import FFT.Fenetre;
+
+// *****************************************************************************
+// Étage d'extraction de caractéristiques, entre la FFT et le neurone : à
+// partir du spectre de module d'un bloc, produit le vecteur d'entrée du
+// neurone selon le type choisi :
+//  - SPECTRE : les tailleBloc/2 premières raies, normalisées par leur maximum
+//    (comportement historique) ;
+//  - MEL / LOG : énergies d'un banc de filtres triangulaires en échelle mel
+//    ou logarithmique, éventuellement compressées en logarithme ;
+//  - MFCC : coefficients cepstraux (DCT du logarithme des énergies mel).
+// Les réglages tiennent dans une description textuelle, enregistrée avec le
+// neurone entraîné afin que l'analyse utilise exactement les mêmes entrées.
+// Une instance est immuable et peut être partagée entre plusieurs threads :
+// les tableaux intermédiaires sont pris dans l'ardoise du thread appelant,
+// si bien qu'extraire les caractéristiques d'un bloc n'alloue rien.
+
+public class Extracteur
+{
+	public enum Type {SPECTRE, MEL, LOG, MFCC}
+
+	// Plancher des énergies relatives avant logarithme (-60 dB)
+	private static final float PlancherLog = 1.e-6f;
+	// Numéros des tampons de l'ardoise employés par l'extracteur
+	private static final int TamponTrame = 0;
+	private static final int TamponSpectre = 1;
+	private static final int TamponEnergies = 2;
+	private static final int TamponSpectresLot = 3;
+	private static final int TamponVecteur = 4;
+	// Blocs transformés ensemble par extraitLot
+	private static final int BlocsParLot = 64;
+
+	private final Type type;
+	private final int tailleBloc;
+	private final Fenetre fenetre;
+	private final int frequence;
+	private final int nbFiltres;
+	private final boolean compression;
+	private final int nbCoefficients;
+
+	// Coefficients de la fenêtre, partagés
+	private final float[] coefficients;
+	private final BancFiltres banc;
+	// Matrice de DCT-II orthonormée, nbCoefficients x nbFiltres (MFCC)
+	private final float[] dct;
+
+	// frequence : fréquence d'échantillonnage des blocs (Hz)
+	// nbFiltres : nombre de filtres du banc (MEL, LOG, MFCC)
+	// compression : logarithme des énergies (MEL, LOG ; toujours pour MFCC)
+	// nbCoefficients : nombre de coefficients cepstraux gardés (MFCC)
+	public Extracteur(final Type type, final int tailleBloc, final Fenetre fenetre, final int frequence,
+			final int nbFiltres, final boolean compression, final int nbCoefficients)
+	{
+		this.type = type;
+		this.tailleBloc = tailleBloc;
+		this.fenetre = fenetre;
+		this.frequence = frequence;
+		// Les réglages sans effet pour le type choisi gardent leur valeur par
+		// défaut, pour que deux descriptions équivalentes soient identiques
+		this.nbFiltres = type == Type.SPECTRE ? 40 : nbFiltres;
+		this.compression = type == Type.MFCC || (type != Type.SPECTRE && compression);
+		this.nbCoefficients = type == Type.MFCC ? nbCoefficients : 13;
+		coefficients = fenetre.coefficients(tailleBloc);
+
+		if (type != Type.SPECTRE && frequence > 0)
+			banc = new BancFiltres(type == Type.LOG ? BancFiltres.Echelle.LOG : BancFiltres.Echelle.MEL,
+					this.nbFiltres, tailleBloc, frequence);
+		else
+			banc = null;
+
+		if (type == Type.MFCC)
+		{
+			if (nbCoefficients < 1 || nbCoefficients > nbFiltres)
+				throw new IllegalArgumentException("Nombre de coefficients MFCC invalide : "+nbCoefficients);
+			dct = new float[nbCoefficients*nbFiltres];
+			for (int n = 0; n < nbCoefficients; ++n)
+				for (int m = 0; m < nbFiltres; ++m)
+					dct[n*nbFiltres+m] = (float)(Math.sqrt((n == 0 ? 1. : 2.)/nbFiltres)
+							*Math.cos(Math.PI*n*(m+.5)/nbFiltres));
+		}
+		else
+			dct = null;
+	}
+
+	// Réglages historiques : spectre brut normalisé, sans fenêtre
+	public static Extracteur parDefaut(final int tailleBloc)
+	{
+		return new Extracteur(Type.SPECTRE, tailleBloc, Fenetre.RECTANGULAIRE, 0, 40, false, 13);
+	}
+
+	// Mêmes réglages pour des blocs échantillonnés à une autre fréquence
+	public Extracteur avecFrequence(final int nouvelleFrequence)
+	{
+		return new Extracteur(type, tailleBloc, fenetre, nouvelleFrequence, nbFiltres, compression, nbCoefficients);
+	}
+
+	public Type type() {return type;}
+	public int tailleBloc() {return tailleBloc;}
+	public Fenetre fenetre() {return fenetre;}
+	public int frequence() {return frequence;}
+
+	// Nombre de raies du spectre attendues en entrée
+	public int nbRaies()
+	{
+		return type == Type.SPECTRE ? tailleBloc/2 : tailleBloc/2+1;
+	}
+
+	// Nombre de caractéristiques produites, c'est-à-dire d'entrées du neurone
+	public int dimension()
+	{
+		switch (type)
+		{
+			case SPECTRE: return tailleBloc/2;
+			case MFCC: return nbCoefficients;
+			default: return nbFiltres;
+		}
+	}
+
+	// Spectre de module (nbRaies() valeurs) du bloc src[debut..debut+tailleBloc[
+	// pondéré par la fenêtre, écrit dans dest
+	public void spectre(final float[] src, final int debut, final float[] dest)
+	{
+		final Ardoise ardoise = Ardoise.courante();
+		final float[] trame = ardoise.tampon(TamponTrame, tailleBloc);
+		for (int i = 0; i < tailleBloc; ++i)
+			trame[i] = src[debut+i]*coefficients[i];
+		ardoise.fftReelle(tailleBloc).module(trame, 0, dest, nbRaies());
+	}
+
+	// Calcule directement les caractéristiques (dimension() valeurs) du bloc
+	// src[debut..debut+tailleBloc[ dans dest
+	public void extraitBloc(final float[] src, final int debut, final float[] dest)
+	{
+		final float[] spectre = Ardoise.courante().tampon(TamponSpectre, nbRaies());
+		spectre(src, debut, spectre);
+		extrait(spectre, dest);
+	}
+
+	// Caractéristiques des nbBlocs blocs src[debut+b*pas..debut+b*pas+tailleBloc[,
+	// écrites bout à bout dans dest[b*dimension()..] : les blocs fenêtrés
+	// passent ensemble par la FFT par lots (FFTLot, vectorisée à travers les
+	// blocs), plus rapide sur un long morceau qu'une FFT réelle par bloc. Les
+	// valeurs ne diffèrent de celles de extraitBloc que par l'arrondi du float
+	public void extraitLot(final float[] src, final int debut, final int pas, final int nbBlocs, final float[] dest)
+	{
+		final Ardoise ardoise = Ardoise.courante();
+		final FFTLot lot = ardoise.fftLot(tailleBloc);
+		final int n = nbRaies(), dimension = dimension();
+		final float[] trames = ardoise.tampon(TamponTrame, BlocsParLot*tailleBloc);
+		final float[] spectres = ardoise.tampon(TamponSpectresLot, BlocsParLot*n);
+		final float[] spectre = ardoise.tampon(TamponSpectre, n);
+		final float[] vecteur = ardoise.tampon(TamponVecteur, dimension);
+		for (int premier = 0; premier < nbBlocs; premier += BlocsParLot)
+		{
+			final int nbLot = Math.min(BlocsParLot, nbBlocs-premier);
+			for (int b = 0; b < nbLot; ++b)
+			{
+				final int origine = debut+(premier+b)*pas;
+				for (int i = 0; i < tailleBloc; ++i)
+					trames[b*tailleBloc+i] = src[origine+i]*coefficients[i];
+			}
+			lot.module(trames, 0, nbLot, spectres, n);
+			for (int b = 0; b < nbLot; ++b)
+			{
+				System.arraycopy(spectres, b*n, spectre, 0, n);
+				extrait(spectre, vecteur);
+				System.arraycopy(vecteur, 0, dest, (premier+b)*dimension, dimension);
+			}
+		}
+	}
+
+	// Calcule les caractéristiques du spectre de module (nbRaies() valeurs)
+	// dans dest (dimension() valeurs) ; spectre et dest peuvent être le même
+	// tableau pour le type SPECTRE
+	public void extrait(final float[] spectre, final float[] dest)
+	{
+		if (type != Type.SPECTRE && banc == null)
+			throw new IllegalStateException("Fréquence d'échantillonnage non fixée pour le banc de filtres");
+		switch (type)
+		{
+			case SPECTRE:
+				System.arraycopy(spectre, 0, dest, 0, tailleBloc/2);
+				normalise(dest, tailleBloc/2);
+				break;
+			case MFCC:
+				final float[] energies = Ardoise.courante().tampon(TamponEnergies, nbFiltres);
+				banc.applique(spectre, energies);
+				compresse(energies);
+				for (int n = 0; n < nbCoefficients; ++n)
+				{
+					float c = 0;
+					for (int m = 0; m < nbFiltres; ++m)
+						c += dct[n*nbFiltres+m]*energies[m];
+					dest[n] = c;
+				}
+				break;
+			default:
+				banc.applique(spectre, dest);
+				if (compression)
+					compresse(dest);
+				else
+					normalise(dest, nbFiltres);
+				break;
+		}
+	}
+
+	// Mise à l'échelle entre 0 et 1 par division par le maximum
+	private static void normalise(final float[] valeurs, final int n)
+	{
+		float max = 0;
+		for (int i = 0; i < n; ++i)
+			if (valeurs[i] > max)
+				max = valeurs[i];
+		if (max > 0)
+			for (int i = 0; i < n; ++i)
+				valeurs[i] /= max;
+	}
+
+	// Compression logarithmique des énergies relatives au maximum du bloc,
+	// ramenée entre 0 (-60 dB ou moins) et 1 (maximum)
+	private void compresse(final float[] energies)
+	{
+		normalise(energies, nbFiltres);
+		final float echelle = (float)(-1./Math.log10(PlancherLog));
+		for (int j = 0; j < nbFiltres; ++j)
+			energies[j] = 1.f+(float)Math.log10(Math.max(energies[j], PlancherLog))*echelle;
+	}
+
+	// Description textuelle complète des réglages, relue par depuisDescription
+	public String description()
+	{
+		return "type="+type.name().toLowerCase()
+				+";bloc="+tailleBloc
+				+";fenetre="+fenetre.nom()
+				+";frequence="+frequence
+				+";filtres="+nbFiltres
+				+";compression="+(compression ? "log" : "non")
+				+";coefficients="+nbCoefficients;
+	}
+
+	public static Extracteur depuisDescription(final String description)
+	{
+		Type type = Type.SPECTRE;
+		int tailleBloc = 0, frequence = 0, nbFiltres = 40, nbCoefficients = 13;
+		Fenetre fenetre = Fenetre.RECTANGULAIRE;
+		boolean compression = false;
+		for (final String champ : description.trim().split(";"))
+		{
+			final String[] cleValeur = champ.split("=", 2);
+			if (cleValeur.length != 2)
+				throw new IllegalArgumentException("Description de caractéristiques invalide : "+description);
+			final String valeur = cleValeur[1].trim();
+			switch (cleValeur[0].trim())
+			{
+				case "type": type = Type.valueOf(valeur.toUpperCase()); break;
+				case "bloc": tailleBloc = Integer.parseInt(valeur); break;
+				case "fenetre": fenetre = Fenetre.depuisNom(valeur); break;
+				case "frequence": frequence = Integer.parseInt(valeur); break;
+				case "filtres": nbFiltres = Integer.parseInt(valeur); break;
+				case "compression": compression = valeur.equals("log"); break;
+				case "coefficients": nbCoefficients = Integer.parseInt(valeur); break;
+				default: break;	// Champ ajouté par une version ultérieure : ignoré
+			}
+		}
+		if (tailleBloc < 2)
+			throw new IllegalArgumentException("Taille de bloc absente ou invalide : "+description);
+		return new Extracteur(type, tailleBloc, fenetre, frequence, nbFiltres, compression, nbCoefficients);
+	}
+
+	// Vrai si les deux extracteurs produisent les mêmes entrées, à la
+	// fréquence d'échantillonnage près
+	public boolean memesReglages(final Extracteur autre)
+	{
+		return avecFrequence(0).description().equals(autre.avecFrequence(0).description());
+	}
+
+	// Suffixe distinguant les fichiers de neurones selon les réglages
+	// (vide pour les réglages historiques)
+	public String suffixe()
+	{
+		String suffixe = "";
+		if (type == Type.MFCC)
+			suffixe += "_mfcc"+nbCoefficients+"x"+nbFiltres;
+		else if (type != Type.SPECTRE)
+			suffixe += "_"+type.name().toLowerCase()+nbFiltres+(compression ? "log" : "");
+		if (tailleBloc != 1024)
+			suffixe += "_"+tailleBloc;
+		if (fenetre != Fenetre.RECTANGULAIRE)
+			suffixe += "_"+fenetre.nom();
+		return suffixe;
+	}
+}
@@ -0,0 +1,134 @@
+package caracteristiques;
+
+import FFT.Spectrogramme;
+import Son.FluxSon;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.FloatBuffer;
+
+// *****************************************************************************
+// Suite des vecteurs de caractéristiques d'un son, bloc après bloc : ce que
+// reçoit le neurone, à l'entraînement comme à l'analyse. Les vecteurs sont
+// soit calculés au fil d'un FluxSon (Spectrogramme puis Extracteur), et
+// alors éventuellement enregistrés dans le cache, soit relus depuis un
+// fichier du cache (CacheCaracteristiques) sans décoder ni transformer le son.
+// Le tableau renvoyé par caracteristiques() est réutilisé d'un bloc à l'autre.
+
+public class FluxCaracteristiques implements AutoCloseable
+{
+	// Source calculée : spectrogramme du son et extracteur
+	private final Spectrogramme spectrogramme;
+	private final Extracteur extracteur;
+	// Enregistrement en cours dans le cache (null sinon)
+	private final CacheCaracteristiques.Enregistrement enregistrement;
+
+	// Source relue : vecteurs rangés les uns après les autres dans le cache
+	private final FloatBuffer relus;
+
+	private final float[] caracteristiques;
+	private final int nbTrames;
+	// Nombre maximal de blocs parcourus (0 : tous)
+	private final int nbMax;
+	private int indice = -1;
+	private boolean termine = false;
+
+	// Caractéristiques calculées au fil du flux, blocs espacés de "pas" échantillons
+	public FluxCaracteristiques(final FluxSon son, final Extracteur extracteur, final int pas)
+	{
+		this(son, extracteur, pas, 0, null);
+	}
+
+	// Comme ci-dessus, limité aux nbMax premiers blocs (0 : tous)
+	public FluxCaracteristiques(final FluxSon son, final Extracteur extracteur, final int pas, final int nbMax)
+	{
+		this(son, extracteur, pas, nbMax, null);
+	}
+
+	FluxCaracteristiques(final FluxSon son, final Extracteur extracteur, final int pas, final int nbMax,
+			final CacheCaracteristiques.Enregistrement enregistrement)
+	{
+		spectrogramme = new Spectrogramme(son, extracteur.tailleBloc(), pas, extracteur.fenetre(), extracteur.nbRaies());
+		this.extracteur = extracteur;
+		this.enregistrement = enregistrement;
+		this.nbMax = nbMax;
+		final int total = spectrogramme.nbTrames();
+		nbTrames = total < 0 || nbMax == 0 ? total : Math.min(total, nbMax);
+		relus = null;
+		caracteristiques = new float[extracteur.dimension()];
+	}
+
+	// Caractéristiques relues du cache : nbTrames vecteurs de "dimension" valeurs
+	FluxCaracteristiques(final FloatBuffer relus, final int nbTrames, final int dimension)
+	{
+		spectrogramme = null;
+		extracteur = null;
+		enregistrement = null;
+		nbMax = 0;
+		this.relus = relus;
+		this.nbTrames = nbTrames;
+		caracteristiques = new float[dimension];
+	}
+
+	// Nombre de blocs du parcours, ou -1 s'il n'est pas connu d'avance
+	public int nbTrames() {return nbTrames;}
+	public int dimension() {return caracteristiques.length;}
+	// Numéro du bloc courant
+	public int indice() {return indice;}
+	// Caractéristiques du bloc courant (tableau réutilisé)
+	public float[] caracteristiques() {return caracteristiques;}
+	// Vrai si les caractéristiques sont relues du cache
+	public boolean depuisCache() {return relus != null;}
+
+	// Passe au bloc suivant ; renvoie false à la fin du parcours
+	public boolean suivante()
+	{
+		if (termine)
+			return false;
+		if (relus != null)
+		{
+			if (indice+1 >= nbTrames)
+				return fin();
+			++indice;
+			relus.get(indice*caracteristiques.length, caracteristiques);
+			return true;
+		}
+		if ((nbMax > 0 && indice+1 >= nbMax) || !spectrogramme.suivante())
+			return fin();
+		++indice;
+		extracteur.extrait(spectrogramme.spectre(), caracteristiques);
+		if (enregistrement != null)
+			try
+			{
+				enregistrement.ajoute(caracteristiques);
+			}
+			catch (IOException e)
+			{
+				throw new UncheckedIOException(e);
+			}
+		return true;
+	}
+
+	// Parcours complet : l'enregistrement éventuel entre dans le cache
+	private boolean fin()
+	{
+		termine = true;
+		if (enregistrement != null)
+			try
+			{
+				enregistrement.valide(indice+1);
+			}
+			catch (IOException e)
+			{
+				// Le cache n'est qu'une optimisation : le calcul reste valable
+				System.err.println("Cache de caractéristiques non enregistré : "+e.getMessage());
+			}
+		return false;
+	}
+
+	// Un parcours interrompu avant la fin n'est pas gardé dans le cache
+	public void close()
+	{
+		if (enregistrement != null)
+			enregistrement.abandonne();
+	}
+}
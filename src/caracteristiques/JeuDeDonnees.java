@@ -0,0 +1,339 @@
+package caracteristiques;
+
+import Son.FluxSon;
+import Son.Son;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Stream;
+import pipeline.Etage;
+import pipeline.Pipeline;
+
+// *****************************************************************************
+// Jeu de données d'entraînement : les vecteurs de caractéristiques des blocs
+// d'un ensemble de fichiers son étiquetés, rangés dans une seule matrice
+// contiguë (exemple i en [i*dimension..(i+1)*dimension[) accompagnée du
+// vecteur des étiquettes.
+// Chaque source est un fichier WAV ou un dossier dont tous les fichiers WAV
+// portent la même étiquette (par exemple train/cats et train/dogs). Pour
+// plus de deux classes, l'étiquette est le numéro de la classe, et chaque
+// classe un sous-dossier d'un même dossier (dossiersClasses).
+// Le chargement traite les fichiers en parallèle, par une chaîne de
+// traitement (Pipeline) à deux étages ayant chacun ses threads : lecture et
+// décodage de chaque fichier (entrées-sorties, ou relecture du cache), puis
+// calcul de ses caractéristiques (FFT, bancs de filtres). La durée dépend
+// ainsi du nombre de cœurs et du volume de son, non du nombre de fichiers.
+// Les files entre étages sont bornées : le nombre de fichiers décodés en
+// attente de calcul aussi, et la mémoire ne croît pas avec la taille du jeu.
+// Les compteurs des étages (etagesChargement) servent à les dimensionner.
+// L'ordre des exemples ne dépend pas de l'ordre d'arrivée des calculs :
+// sources dans l'ordre donné, fichiers d'un dossier par ordre alphabétique,
+// blocs dans l'ordre du fichier.
+
+public class JeuDeDonnees
+{
+	// Fichiers en file entre deux étages du chargement
+	private static final int FichiersEnFile = 4;
+
+	// Fichier en cours de chargement : son numéro, son parcours préparé par
+	// l'étage de lecture, puis ses vecteurs ou l'erreur qui le fait ignorer
+	private static final class Fichier
+	{
+		int numero;
+		FluxSon flux;
+		FluxCaracteristiques trames;
+		float[] vecteurs;
+		Exception erreur;
+	}
+
+	// Source d'exemples : fichier ou dossier, étiquette des blocs et nombre
+	// maximal de blocs pris au début de chaque fichier (0 : tous)
+	public static class Source
+	{
+		public final String chemin;
+		public final float etiquette;
+		public final int nbMaxParFichier;
+
+		public Source(final String chemin, final float etiquette, final int nbMaxParFichier)
+		{
+			this.chemin = chemin;
+			this.etiquette = etiquette;
+			this.nbMaxParFichier = nbMaxParFichier;
+		}
+	}
+
+	private final Extracteur extracteur;
+	private final float[] matrice;
+	private final float[] etiquettes;
+	private final int nbFichiers;
+	private final List<Etage> etagesChargement;
+	private final long dureeChargement;
+
+	private JeuDeDonnees(final Extracteur extracteur, final float[] matrice, final float[] etiquettes,
+			final int nbFichiers, final List<Etage> etagesChargement, final long dureeChargement)
+	{
+		this.extracteur = extracteur;
+		this.matrice = matrice;
+		this.etiquettes = etiquettes;
+		this.nbFichiers = nbFichiers;
+		this.etagesChargement = etagesChargement;
+		this.dureeChargement = dureeChargement;
+	}
+
+	// Réglages des caractéristiques, fréquence d'échantillonnage comprise
+	public Extracteur extracteur() {return extracteur;}
+	public int dimension() {return extracteur.dimension();}
+	public int nbExemples() {return etiquettes.length;}
+	// Nombre de fichiers son lus
+	public int nbFichiers() {return nbFichiers;}
+	// Matrice nbExemples x dimension des caractéristiques, ligne par ligne
+	public float[] matrice() {return matrice;}
+	public float[] etiquettes() {return etiquettes;}
+	// Compteurs des étages du chargement et sa durée en nanosecondes
+	public List<Etage> etagesChargement() {return etagesChargement;}
+	public long dureeChargement() {return dureeChargement;}
+
+	// Résultats attendus "un parmi nbClasses" : pour l'exemple i, 1 en
+	// [i*nbClasses+etiquette] et 0 pour les autres classes
+	public float[] unParmi(final int nbClasses)
+	{
+		final float[] resultats = new float[etiquettes.length*nbClasses];
+		for (int i = 0; i < etiquettes.length; ++i)
+		{
+			final int classe = (int)etiquettes[i];
+			if (classe < 0 || classe >= nbClasses || classe != etiquettes[i])
+				throw new IllegalArgumentException("Étiquette "+etiquettes[i]+" hors des "+nbClasses+" classes");
+			resultats[i*nbClasses+classe] = 1.f;
+		}
+		return resultats;
+	}
+
+	// Copie de l'exemple i dans dest
+	public float[] exemple(final int i, final float[] dest)
+	{
+		System.arraycopy(matrice, i*dimension(), dest, 0, dimension());
+		return dest;
+	}
+
+	// Exemples en tableaux séparés, tels que les attendent les neurones
+	public float[][] lignes()
+	{
+		final float[][] lignes = new float[nbExemples()][];
+		for (int i = 0; i < lignes.length; ++i)
+			lignes[i] = exemple(i, new float[dimension()]);
+		return lignes;
+	}
+
+	// Charge les sources avec les réglages "demande", à frequenceCible Hz (0 :
+	// fréquence du premier fichier, à laquelle les suivants sont ramenés),
+	// blocs espacés de "pas" échantillons ; cache facultatif (null) ;
+	// nbThreads : threads de lecture et threads de calcul des caractéristiques
+	public static JeuDeDonnees charge(final List<Source> sources, final Extracteur demande, final int pas,
+			final int frequenceCible, final CacheCaracteristiques cache, final int nbThreads) throws IOException
+	{
+		return charge(sources, demande, pas, frequenceCible, cache, nbThreads, nbThreads);
+	}
+
+	// Idem, avec nbThreadsLecture threads de lecture et de décodage des
+	// fichiers et nbThreads threads de calcul des caractéristiques
+	public static JeuDeDonnees charge(final List<Source> sources, final Extracteur demande, final int pas,
+			final int frequenceCible, final CacheCaracteristiques cache, final int nbThreadsLecture,
+			final int nbThreads) throws IOException
+	{
+		if (nbThreads < 1 || nbThreadsLecture < 1)
+			throw new IllegalArgumentException("Nombre de threads invalide : "+nbThreadsLecture+"+"+nbThreads);
+		final List<String> fichiers = new ArrayList<>();
+		final List<Source> sourcesFichiers = new ArrayList<>();
+		for (final Source source : sources)
+			for (final String fichier : fichiersSon(Path.of(source.chemin)))
+			{
+				fichiers.add(fichier);
+				sourcesFichiers.add(source);
+			}
+		if (fichiers.isEmpty())
+			throw new IOException("Aucun fichier son dans les sources d'entraînement");
+
+		// Les bancs de filtres dépendent de la fréquence commune à tous les fichiers
+		int frequence = frequenceCible;
+		if (frequence == 0)
+			try (FluxSon premier = FluxSon.ouvre(fichiers.get(0)))
+			{
+				frequence = premier.frequence();
+			}
+		final Extracteur extracteur = demande.avecFrequence(frequence);
+
+		// Vecteurs de chaque fichier (null si le fichier n'a pas pu être lu)
+		final float[][] resultats = new float[fichiers.size()][];
+		final int frequenceCommune = frequence;
+		final int[] suivant = {0};
+		final Pipeline<Fichier> pipeline = new Pipeline<>("fichiers", "fichiers", f -> {
+			if (suivant[0] == fichiers.size())
+				return -1;
+			f.numero = suivant[0]++;
+			return 1;
+		}, Fichier::new, FichiersEnFile);
+		pipeline.ajoute("lecture", "fichiers", nbThreadsLecture, f -> {
+			lit(f, fichiers.get(f.numero), frequenceCommune, extracteur, pas,
+					sourcesFichiers.get(f.numero).nbMaxParFichier, cache);
+			return 1;
+		});
+		pipeline.ajoute("caractéristiques", "blocs", nbThreads, f -> calcule(f)/extracteur.dimension());
+		try (pipeline)
+		{
+			pipeline.demarre();
+			for (Fichier f; (f = pipeline.suivant()) != null; )
+			{
+				if (f.erreur != null)
+					System.err.println("Fichier ignoré : "+fichiers.get(f.numero)+" ("+f.erreur.getMessage()+")");
+				else
+					resultats[f.numero] = f.vecteurs;
+				f.vecteurs = null;
+				f.erreur = null;
+			}
+		}
+		catch (RuntimeException e)
+		{
+			throw new IOException("Échec du chargement : "+e.getMessage(), e);
+		}
+
+		// Assemblage dans l'ordre des fichiers
+		final int dimension = extracteur.dimension();
+		int nbExemples = 0, nbLus = 0;
+		for (final float[] vecteurs : resultats)
+			if (vecteurs != null)
+			{
+				nbExemples += vecteurs.length/dimension;
+				++nbLus;
+			}
+		final float[] matrice = new float[nbExemples*dimension];
+		final float[] etiquettes = new float[nbExemples];
+		int position = 0;
+		for (int f = 0; f < resultats.length; ++f)
+			if (resultats[f] != null)
+			{
+				final int n = resultats[f].length/dimension;
+				System.arraycopy(resultats[f], 0, matrice, position*dimension, resultats[f].length);
+				Arrays.fill(etiquettes, position, position+n, sourcesFichiers.get(f).etiquette);
+				position += n;
+			}
+		return new JeuDeDonnees(extracteur, matrice, etiquettes, nbLus, pipeline.etages(), pipeline.duree());
+	}
+
+	// Sous-dossiers d'un dossier de classes, par ordre alphabétique : un par
+	// classe, nommé comme elle (les fichiers à la racine sont ignorés)
+	public static List<Path> dossiersClasses(final Path dossier) throws IOException
+	{
+		try (Stream<Path> contenu = Files.list(dossier))
+		{
+			return contenu.filter(Files::isDirectory).sorted().toList();
+		}
+	}
+
+	// Fichiers WAV d'un dossier (triés), ou le fichier lui-même
+	static List<String> fichiersSon(final Path chemin) throws IOException
+	{
+		if (!Files.isDirectory(chemin))
+			return List.of(chemin.toString());
+		try (Stream<Path> contenu = Files.list(chemin))
+		{
+			return contenu.filter(f -> Files.isRegularFile(f)
+							&& f.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".wav"))
+					.map(Path::toString)
+					.sorted()
+					.toList();
+		}
+	}
+
+	// Lit un fichier (étage de lecture) et prépare le parcours de ses blocs ;
+	// les vecteurs relus du cache sont pris ici même
+	private static void lit(final Fichier f, final String fichier, final int frequence, final Extracteur extracteur,
+			final int pas, final int nbMax, final CacheCaracteristiques cache)
+	{
+		try
+		{
+			if (cache != null)
+			{
+				// L'empreinte du contenu peut lire tout le fichier : entrées-sorties,
+				// ici même
+				f.flux = FluxSon.ouvre(fichier, frequence);
+				f.trames = cache.ouvre(fichier, f.flux, extracteur, pas, nbMax);
+				if (f.trames.depuisCache())
+					calcule(f);
+				// Sinon : décodage et calcul à l'étage suivant, puis enregistrement
+				return;
+			}
+			final Son son = new Son(fichier, frequence);
+			if (son.donnees() == null)
+				throw new IOException("fichier illisible");
+			f.trames = new FluxCaracteristiques(new FluxSon(son, FluxSon.TailleMorceau), extracteur, pas, nbMax);
+		}
+		catch (IOException | RuntimeException e)
+		{
+			f.erreur = e;
+			ferme(f);
+		}
+	}
+
+	// Parcourt les blocs du fichier préparé par lit (étage des
+	// caractéristiques, ou lecture pour le cache) ; renvoie le nombre de
+	// valeurs calculées
+	private static int calcule(final Fichier f)
+	{
+		if (f.trames == null)
+			return 0;
+		try
+		{
+			f.vecteurs = vecteurs(f.trames);
+			return f.vecteurs.length;
+		}
+		catch (RuntimeException e)
+		{
+			f.erreur = e;
+			return 0;
+		}
+		finally
+		{
+			ferme(f);
+		}
+	}
+
+	private static void ferme(final Fichier f)
+	{
+		try
+		{
+			if (f.flux != null)
+				f.flux.close();
+		}
+		catch (IOException e)
+		{
+			if (f.erreur == null)
+				f.erreur = e;
+		}
+		f.flux = null;
+		f.trames = null;
+	}
+
+	// Parcourt tous les blocs et renvoie leurs vecteurs bout à bout
+	private static float[] vecteurs(final FluxCaracteristiques trames)
+	{
+		final int dimension = trames.dimension();
+		float[] vecteurs = new float[Math.max(0, trames.nbTrames())*dimension];
+		int n = 0;
+		try (trames)
+		{
+			while (trames.suivante())
+			{
+				if ((n+1)*dimension > vecteurs.length)
+					vecteurs = Arrays.copyOf(vecteurs, Math.max(dimension, 2*vecteurs.length));
+				System.arraycopy(trames.caracteristiques(), 0, vecteurs, n*dimension, dimension);
+				++n;
+			}
+		}
+		return n*dimension == vecteurs.length ? vecteurs : Arrays.copyOf(vecteurs, n*dimension);
+	}
+
+}
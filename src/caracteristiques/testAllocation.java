@@ -0,0 +1,121 @@
+package caracteristiques;
+
+import FFT.Fenetre;
+import FFT.Spectrogramme;
+import Son.Son;
+import neurone.NeuroneSigmoide;
+import neurone.iNeurone;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+public class testAllocation
+{
+	final static int Frequence = 16000;
+	final static int TailleBloc = 1024;
+	final static int NbBlocs = 200;
+	final static int NbEchauffements = 50; // Passes préalables, le temps que le JIT compile la boucle
+
+	/**
+	 * Vérifie que la chaîne bloc -> caractéristiques -> neurone n'alloue rien
+	 * par bloc une fois en régime établi, pour chaque type de caractéristiques.
+	 * @param args Aucun argument n'est attendu.
+	 */
+	public static void main(final String[] args)
+	{
+		if (!(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean mesure)
+				|| !mesure.isThreadAllocatedMemorySupported())
+		{
+			System.out.println("Mesure des allocations par thread non disponible sur cette JVM");
+			return;
+		}
+		mesure.setThreadAllocatedMemoryEnabled(true);
+
+		final Random rand = new Random(7);
+		final float[] donnees = new float[NbBlocs*TailleBloc];
+		for (int i = 0; i < donnees.length; ++i)
+			donnees[i] = (rand.nextFloat()*2-1)*10000;
+		final Son son = new Son(donnees, Frequence);
+
+		final Extracteur.Type[] types = Extracteur.Type.values();
+		final Extracteur[] extracteurs = new Extracteur[types.length];
+		final iNeurone[] neurones = new iNeurone[types.length];
+		final float[] bloc = new float[TailleBloc];
+		final float[][] caracteristiques = new float[types.length][];
+		for (int t = 0; t < types.length; ++t)
+		{
+			extracteurs[t] = new Extracteur(types[t], TailleBloc, Fenetre.HANN, Frequence, 40, true, 13);
+			neurones[t] = new NeuroneSigmoide(extracteurs[t].dimension());
+			caracteristiques[t] = new float[extracteurs[t].dimension()];
+		}
+
+		// Échauffement de tous les chemins avant la moindre mesure, pour que la
+		// compilation des méthodes partagées soit terminée
+		for (int passe = 0; passe < NbEchauffements; ++passe)
+			for (int t = 0; t < types.length; ++t)
+			{
+				parBlocs(son, extracteurs[t], neurones[t], bloc, caracteristiques[t]);
+				parTrames(new Spectrogramme(son, TailleBloc, TailleBloc/2, Fenetre.HANN, extracteurs[t].nbRaies()),
+						extracteurs[t], neurones[t], caracteristiques[t]);
+			}
+
+		boolean succes = true;
+		for (int t = 0; t < types.length; ++t)
+		{
+			// Blocs copiés depuis le son, puis FFT et caractéristiques par l'ardoise
+			// (le nom du test n'est construit qu'après la mesure)
+			long avant = mesure.getCurrentThreadAllocatedBytes();
+			parBlocs(son, extracteurs[t], neurones[t], bloc, caracteristiques[t]);
+			long octets = mesure.getCurrentThreadAllocatedBytes()-avant;
+			succes &= verifie("blocs "+types[t], octets);
+
+			// Trames successives d'un spectrogramme (construit hors de la mesure)
+			final Spectrogramme spectrogramme = new Spectrogramme(son, TailleBloc, TailleBloc/2, Fenetre.HANN,
+					extracteurs[t].nbRaies());
+			avant = mesure.getCurrentThreadAllocatedBytes();
+			parTrames(spectrogramme, extracteurs[t], neurones[t], caracteristiques[t]);
+			octets = mesure.getCurrentThreadAllocatedBytes()-avant;
+			succes &= verifie("trames "+types[t], octets);
+		}
+
+		System.out.println(succes ? "Aucune allocation par bloc" : "ÉCHEC : des blocs allouent de la mémoire");
+		if (!succes)
+			System.exit(1);
+	}
+
+	static float parBlocs(final Son son, final Extracteur extracteur, final iNeurone neurone,
+			final float[] bloc, final float[] caracteristiques)
+	{
+		float somme = 0;
+		for (int b = 0; b < NbBlocs; ++b)
+		{
+			son.bloc_deTaille(b, TailleBloc, bloc);
+			extracteur.extraitBloc(bloc, 0, caracteristiques);
+			neurone.metAJour(caracteristiques);
+			somme += neurone.sortie();
+		}
+		return somme;
+	}
+
+	static float parTrames(final Spectrogramme spectrogramme, final Extracteur extracteur, final iNeurone neurone,
+			final float[] caracteristiques)
+	{
+		float somme = 0;
+		while (spectrogramme.suivante())
+		{
+			extracteur.extrait(spectrogramme.spectre(), caracteristiques);
+			neurone.metAJour(caracteristiques);
+			somme += neurone.sortie();
+		}
+		return somme;
+	}
+
+	// Toute allocation fait au moins 16 octets : moins d'un octet par bloc
+	// signifie qu'aucun bloc n'a alloué
+	static boolean verifie(final String nom, final long octets)
+	{
+		final boolean ok = octets < NbBlocs;
+		System.out.println((ok ? "OK     " : "ÉCHEC  ")+nom+" : "+octets+" octets alloués pour "+NbBlocs+" blocs");
+		return ok;
+	}
+}
@@ -0,0 +1,363 @@
+package caracteristiques;
+
+import FFT.Fenetre;
+import FFT.FFTReelle;
+import Son.FluxSon;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+
+public class testCaracteristiques
+{
+	final static int Frequence = 16000;
+	final static int TailleBloc = 1024;
+
+	/**
+	 * Vérifie les bancs de filtres, les MFCC, la relecture des réglages et
+	 * le cache des caractéristiques.
+	 * @param args Aucun argument n'est attendu.
+	 */
+	public static void main(final String[] args) throws IOException
+	{
+		boolean succes = true;
+
+		// Une sinusoïde à 1 kHz doit exciter le filtre mel centré le plus près de 1 kHz
+		final float[] signal = new float[TailleBloc];
+		final double f0 = 64.*Frequence/TailleBloc;	// 1000 Hz, sur une raie
+		for (int i = 0; i < TailleBloc; ++i)
+			signal[i] = (float)Math.sin(2.*Math.PI*f0*i/Frequence);
+		final float[] spectre = new FFTReelle(TailleBloc).module(signal);
+		final Extracteur mel = new Extracteur(Extracteur.Type.MEL, TailleBloc, Fenetre.RECTANGULAIRE, Frequence,
+				40, false, 13);
+		final float[] energies = new float[mel.dimension()];
+		mel.extrait(spectre, energies);
+		int maximum = 0;
+		for (int j = 1; j < energies.length; ++j)
+			if (energies[j] > energies[maximum])
+				maximum = j;
+		final double pasMel = BancFiltres.versMel(Frequence/2.)/41.;
+		final double centre = BancFiltres.depuisMel(pasMel*(maximum+1));
+		succes &= verifie("filtre mel du maximum", Math.abs(centre-f0) < BancFiltres.depuisMel(pasMel*(maximum+2))-centre);
+		succes &= verifie("énergies mel normalisées", energies[maximum] == 1.f);
+
+		// Spectre plat : dimensions et compression des bancs de filtres
+		final float[] plat = new float[TailleBloc/2+1];
+		Arrays.fill(plat, 1.f);
+		final Extracteur mfcc = new Extracteur(Extracteur.Type.MFCC, TailleBloc, Fenetre.HANN, Frequence, 26, false, 13);
+		final float[] coefficients = new float[mfcc.dimension()];
+		final Extracteur log = new Extracteur(Extracteur.Type.LOG, TailleBloc, Fenetre.HANN, Frequence, 26, true, 13);
+		final float[] energiesLog = new float[log.dimension()];
+		log.extrait(plat, energiesLog);
+		mfcc.extrait(plat, coefficients);
+		succes &= verifie("dimension MFCC", coefficients.length == 13);
+		succes &= verifie("compression forcée pour MFCC", mfcc.description().contains("compression=log"));
+		float maxBanc = 0;
+		for (final float e : energiesLog)
+			maxBanc = Math.max(maxBanc, e);
+		succes &= verifie("énergies compressées entre 0 et 1", maxBanc == 1.f);
+
+		// Relecture des réglages enregistrés avec le neurone
+		for (final Extracteur e : new Extracteur[] {Extracteur.parDefaut(TailleBloc), mel, mfcc, log})
+		{
+			final Extracteur relu = Extracteur.depuisDescription(e.description());
+			succes &= verifie("relecture de "+e.description(),
+					relu.description().equals(e.description()) && relu.memesReglages(e));
+		}
+		succes &= verifie("suffixe des réglages par défaut", Extracteur.parDefaut(TailleBloc).suffixe().isEmpty());
+		succes &= verifie("réglages différents", !mel.memesReglages(log) && !mel.memesReglages(Extracteur.parDefaut(TailleBloc)));
+		succes &= verifie("champ inconnu ignoré",
+				Extracteur.depuisDescription(mel.description()+";version=2").memesReglages(mel));
+
+		succes &= verifieCache(mfcc);
+		succes &= verifieJeuDeDonnees(mfcc);
+		succes &= verifieAnalyseParallele(mfcc);
+		succes &= verifieAnalyseQuantifiee(mfcc);
+
+		System.out.println(succes ? "Tous les tests sont passés" : "ÉCHEC d'au moins un test");
+		if (!succes)
+			System.exit(1);
+	}
+
+	// Le cache doit rendre exactement les vecteurs calculés, ne garder que les
+	// parcours complets et rester sous sa taille maximale
+	static boolean verifieCache(final Extracteur extracteur) throws IOException
+	{
+		boolean succes = true;
+		final Path dossier = Files.createTempDirectory("testCache");
+		final String[] sons = new String[3];
+		for (int k = 0; k < sons.length; ++k)
+			sons[k] = fichierSon(k, 40*TailleBloc);
+		final int pas = TailleBloc/2;
+		final float[][] calcules = parcourt(new FluxCaracteristiques(FluxSon.ouvre(sons[0]), extracteur, pas));
+
+		final CacheCaracteristiques cache = new CacheCaracteristiques(dossier, 1L<<20);
+		// Parcours interrompu : rien n'est enregistré
+		try (FluxSon son = FluxSon.ouvre(sons[0]);
+				FluxCaracteristiques trames = cache.ouvre(sons[0], son, extracteur, pas, 0))
+		{
+			trames.suivante();
+		}
+		succes &= verifie("parcours interrompu non gardé", nbFichiers(dossier) == 0);
+		float[][] premier, second;
+		try (FluxSon son = FluxSon.ouvre(sons[0]))
+		{
+			final FluxCaracteristiques trames = cache.ouvre(sons[0], son, extracteur, pas, 0);
+			succes &= verifie("premier parcours calculé", !trames.depuisCache());
+			premier = parcourt(trames);
+		}
+		try (FluxSon son = FluxSon.ouvre(sons[0]))
+		{
+			final FluxCaracteristiques trames = cache.ouvre(sons[0], son, extracteur, pas, 0);
+			succes &= verifie("second parcours relu du cache", trames.depuisCache() && trames.nbTrames() == calcules.length);
+			second = parcourt(trames);
+		}
+		succes &= verifie("vecteurs du cache identiques", Arrays.deepEquals(calcules, premier) && Arrays.deepEquals(calcules, second));
+		try (FluxSon son = FluxSon.ouvre(sons[0]))
+		{
+			succes &= verifie("autre pas, autre entrée", !cache.ouvre(sons[0], son, extracteur, 2*pas, 0).depuisCache());
+		}
+
+		// Cache limité à deux entrées : la moins récemment utilisée disparaît
+		// (la plus grande entrée du premier cache : celle du pas de départ)
+		long tailleEntree = 0;
+		try (var fichiers = Files.list(dossier))
+		{
+			for (final Path f : (Iterable<Path>)fichiers::iterator)
+				tailleEntree = Math.max(tailleEntree, Files.size(f));
+		}
+		final CacheCaracteristiques petit = new CacheCaracteristiques(Files.createTempDirectory("testCache"), 2*tailleEntree);
+		for (final int k : new int[] {0, 1, 0, 2})
+			try (FluxSon son = FluxSon.ouvre(sons[k]);
+					FluxCaracteristiques trames = petit.ouvre(sons[k], son, extracteur, pas, 0))
+			{
+				parcourt(trames);
+				vieillit(petit.dossier());
+			}
+		boolean garde0, garde1;
+		try (FluxSon son0 = FluxSon.ouvre(sons[0]); FluxSon son1 = FluxSon.ouvre(sons[1]))
+		{
+			garde1 = petit.ouvre(sons[1], son1, extracteur, pas, 0).depuisCache();
+			garde0 = petit.ouvre(sons[0], son0, extracteur, pas, 0).depuisCache();
+		}
+		succes &= verifie("éviction de la moins récemment utilisée", garde0 && !garde1 && nbFichiers(petit.dossier()) == 2);
+
+		// Empreinte reprise tant que taille et date du fichier son sont
+		// inchangées : un contenu remplacé sous la même date n'est pas relu
+		final Path modifie = Path.of(fichierSon(3, 40*TailleBloc));
+		try (FluxSon son = FluxSon.ouvre(modifie.toString());
+				FluxCaracteristiques trames = cache.ouvre(modifie.toString(), son, extracteur, pas, 0))
+		{
+			parcourt(trames);
+		}
+		final FileTime date = Files.getLastModifiedTime(modifie);
+		Files.copy(Path.of(sons[1]), modifie, StandardCopyOption.REPLACE_EXISTING);
+		Files.setLastModifiedTime(modifie, date);
+		try (FluxSon son = FluxSon.ouvre(modifie.toString()))
+		{
+			succes &= verifie("empreinte reprise sans relire le fichier",
+					cache.ouvre(modifie.toString(), son, extracteur, pas, 0).depuisCache());
+		}
+		Files.setLastModifiedTime(modifie, FileTime.fromMillis(date.toMillis()+1000));
+		try (FluxSon son = FluxSon.ouvre(modifie.toString()))
+		{
+			succes &= verifie("empreinte recalculée après modification",
+					!cache.ouvre(modifie.toString(), son, extracteur, pas, 0).depuisCache());
+		}
+		return succes;
+	}
+
+	// Recule d'une seconde les dates des entrées, pour qu'elles restent
+	// distinctes malgré la résolution des dates de fichiers
+	static void vieillit(final Path dossier) throws IOException
+	{
+		try (var fichiers = Files.list(dossier))
+		{
+			fichiers.forEach(f -> {
+				try
+				{
+					Files.setLastModifiedTime(f, FileTime.fromMillis(Files.getLastModifiedTime(f).toMillis()-1000));
+				}
+				catch (IOException e)
+				{
+					throw new UncheckedIOException(e);
+				}
+			});
+		}
+	}
+
+	// Le chargement parallèle d'un dossier doit donner les mêmes exemples, dans
+	// le même ordre, que le parcours des fichiers un à un
+	static boolean verifieJeuDeDonnees(final Extracteur extracteur) throws IOException
+	{
+		final Path dossier = Files.createTempDirectory("testJeu");
+		final String[] sons = new String[7];
+		for (int k = 0; k < sons.length; ++k)
+		{
+			final Path son = dossier.resolve("son"+k+".wav");
+			Files.move(Path.of(fichierSon(k, (5+k)*TailleBloc)), son);
+			son.toFile().deleteOnExit();
+			sons[k] = son.toString();
+		}
+		final int pas = TailleBloc/2, nbMax = 6;
+		final float[][] premiers = parcourt(new FluxCaracteristiques(FluxSon.ouvre(sons[0]), extracteur, pas, nbMax));
+		boolean succes = true;
+		for (final int nbThreads : new int[] {1, 3})
+		{
+			final JeuDeDonnees jeu = JeuDeDonnees.charge(List.of(
+					new JeuDeDonnees.Source(sons[0], 1, nbMax),
+					new JeuDeDonnees.Source(dossier.toString(), 0, 0)), extracteur, pas, 0, null, nbThreads);
+			int i = 0;
+			boolean ok = jeu.nbFichiers() == 1+sons.length && jeu.extracteur().frequence() == Frequence;
+			for (final float[] vecteur : premiers)
+				ok &= jeu.etiquettes()[i] == 1 && Arrays.equals(vecteur, jeu.exemple(i++, new float[jeu.dimension()]));
+			for (final String son : sons)
+				for (final float[] vecteur : parcourt(new FluxCaracteristiques(FluxSon.ouvre(son), extracteur, pas)))
+					ok &= jeu.etiquettes()[i] == 0 && Arrays.equals(vecteur, jeu.exemple(i++, new float[jeu.dimension()]));
+			succes &= verifie("jeu de données chargé avec "+nbThreads+" thread(s)", ok && i == jeu.nbExemples());
+		}
+		return succes;
+	}
+
+	// L'analyse répartie entre plusieurs threads doit rendre, dans l'ordre,
+	// les vecteurs du parcours séquentiel (aux arrondis de la FFT par lots
+	// près), que les blocs se recouvrent ou non, et que la classification
+	// ait ses threads ou non
+	static boolean verifieAnalyseParallele(final Extracteur extracteur) throws IOException
+	{
+		boolean succes = true;
+		final String fichier = fichierSon(3, 3*AnalyseParallele.BlocsParSegment*TailleBloc/4+TailleBloc/3);
+		for (final int pas : new int[] {TailleBloc/4, TailleBloc, 3*TailleBloc/2})
+		{
+			final float[][] attendus = parcourt(new FluxCaracteristiques(FluxSon.ouvre(fichier), extracteur, pas));
+			final float[][] obtenus = new float[attendus.length][];
+			boolean ordre = true;
+			int suivant = 0;
+			// Étages caractéristiques et classification séparés, sauf pour pas == TailleBloc
+			try (FluxSon son = FluxSon.ouvre(fichier);
+					AnalyseParallele analyse = new AnalyseParallele(son, extracteur, pas, extracteur.dimension(),
+							(caracteristiques, n, valeurs) -> System.arraycopy(caracteristiques, 0, valeurs, 0,
+									n*extracteur.dimension()), 3, pas == TailleBloc ? 0 : 2))
+			{
+				succes &= verifie("nombre de blocs de l'analyse parallèle (pas "+pas+")",
+						analyse.nbBlocs() == attendus.length);
+				while (analyse.suivant())
+				{
+					ordre &= analyse.premierBloc() == suivant;
+					for (int b = 0; b < analyse.nbBlocsSegment() && suivant < obtenus.length; ++b, ++suivant)
+						obtenus[suivant] = Arrays.copyOfRange(analyse.valeurs(), b*extracteur.dimension(),
+								(b+1)*extracteur.dimension());
+				}
+			}
+			succes &= verifie("analyse parallèle identique au parcours séquentiel (pas "+pas+")",
+					ordre && suivant == attendus.length && proches(attendus, obtenus));
+		}
+		return succes;
+	}
+
+	// Pour un modèle int8, chaque bloc doit recevoir ses caractéristiques
+	// quantifiées : l'évaluation qui les ramène en float (echelle*entree)
+	// retrouve celles du parcours séquentiel au pas de quantification près
+	static boolean verifieAnalyseQuantifiee(final Extracteur extracteur) throws IOException
+	{
+		boolean succes = true;
+		final String fichier = fichierSon(4, (AnalyseParallele.BlocsParSegment+1)*TailleBloc);
+		final int pas = TailleBloc/2;
+		final float[][] attendus = parcourt(new FluxCaracteristiques(FluxSon.ouvre(fichier), extracteur, pas));
+		final int dimension = extracteur.dimension();
+		boolean proches = true;
+		int suivant = 0;
+		try (FluxSon son = FluxSon.ouvre(fichier);
+				AnalyseParallele analyse = new AnalyseParallele(son, extracteur, pas, dimension,
+						(entrees, echelles, n, valeurs) -> {
+							for (int b = 0; b < n; ++b)
+								for (int k = 0; k < dimension; ++k)
+									valeurs[b*dimension+k] = echelles[b]*entrees[b][k];
+						}, 2, 1))
+		{
+			while (analyse.suivant())
+				for (int b = 0; b < analyse.nbBlocsSegment() && suivant < attendus.length; ++b, ++suivant)
+				{
+					float max = 0;
+					for (final float v : attendus[suivant])
+						max = Math.max(max, Math.abs(v));
+					// Demi-pas de quantification, plus les arrondis de la FFT par lots
+					final float tolerance = 0.5f*max/127+1.e-4f*Math.max(1.f, max);
+					for (int k = 0; k < dimension; ++k)
+						proches &= Math.abs(analyse.valeurs()[b*dimension+k]-attendus[suivant][k]) <= tolerance;
+				}
+		}
+		succes &= verifie("analyse int8 sur caractéristiques quantifiées par leur étage",
+				proches && suivant == attendus.length);
+		return succes;
+	}
+
+	// Vecteurs égaux à 1e-4 près en relatif (1e-4 près en absolu pour les
+	// valeurs plus petites que 1)
+	static boolean proches(final float[][] attendus, final float[][] obtenus)
+	{
+		for (int i = 0; i < attendus.length; ++i)
+		{
+			if (obtenus[i] == null || obtenus[i].length != attendus[i].length)
+				return false;
+			for (int j = 0; j < attendus[i].length; ++j)
+				if (!(Math.abs(obtenus[i][j]-attendus[i][j]) <= 1.e-4f*Math.max(1.f, Math.abs(attendus[i][j]))))
+					return false;
+		}
+		return true;
+	}
+
+	static float[][] parcourt(final FluxCaracteristiques trames)
+	{
+		final float[][] vecteurs = new float[Math.max(0, trames.nbTrames())][];
+		try (trames)
+		{
+			while (trames.suivante())
+				vecteurs[trames.indice()] = trames.caracteristiques().clone();
+		}
+		return vecteurs;
+	}
+
+	static long nbFichiers(final Path dossier) throws IOException
+	{
+		try (var fichiers = Files.list(dossier))
+		{
+			return fichiers.filter(f -> f.toString().endsWith(".car")).count();
+		}
+	}
+
+	// Fichier WAV 16 bits de n échantillons aléatoires (graine k)
+	static String fichierSon(final int k, final int n) throws IOException
+	{
+		final Random rand = new Random(k);
+		final ByteBuffer octets = ByteBuffer.allocate(2*n).order(ByteOrder.LITTLE_ENDIAN);
+		for (int i = 0; i < n; ++i)
+			octets.putShort((short)(rand.nextGaussian()*3000.));
+		final File fichier = File.createTempFile("testCache", ".wav");
+		fichier.deleteOnExit();
+		final AudioFormat format = new AudioFormat(Frequence, 16, 1, true, false);
+		AudioSystem.write(new AudioInputStream(new ByteArrayInputStream(octets.array()), format, n),
+				AudioFileFormat.Type.WAVE, fichier);
+		return fichier.getPath();
+	}
+
+	static boolean verifie(final String nom, final boolean condition)
+	{
+		System.out.println((condition ? "OK     " : "ÉCHEC  ")+nom);
+		return condition;
+	}
+}
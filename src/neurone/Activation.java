@@ -0,0 +1,85 @@
+package neurone;
+
+// *****************************************************************************
+// Fonctions d'activation des neurones (R, H, S), partagées entre les neurones
+// seuls et les couches d'un réseau. La dérivée sert à la rétropropagation du
+// gradient à travers une couche cachée ; elle reçoit la somme pondérée et la
+// sortie déjà calculée, selon ce qui la rend la moins coûteuse.
+// SOFTMAX ne s'applique pas valeur par valeur : elle normalise toutes les
+// sorties d'une couche (voir softmax), et n'est admise que pour la couche de
+// sortie d'un réseau.
+
+public enum Activation
+{
+	// Leaky ReLU : valeur si positive, sinon Fuite*valeur ; évite le
+	// problème du "neurone mort" en gardant une petite activation négative
+	RELU
+	{
+		public float valeur(final float somme) {return somme >= 0 ? somme : Fuite*somme;}
+		public float derivee(final float somme, final float sortie) {return somme > 0 ? 1.f : Fuite;}
+	},
+	// Heavyside : 0 si somme < 0, 1 sinon. Sa dérivée est nulle presque
+	// partout : la rétropropagation la remplace par 1 (estimateur "passe-droit"),
+	// comme le fait déjà la règle d'apprentissage du neurone seul
+	HEAVYSIDE
+	{
+		public float valeur(final float somme) {return somme >= 0 ? 1.f : 0.f;}
+		public float derivee(final float somme, final float sortie) {return 1.f;}
+	},
+	// Sigmoïde : 1/(1+e^-somme), entre 0 et 1
+	SIGMOIDE
+	{
+		public float valeur(final float somme) {return (float)(1.0/(1.0+Math.exp(-somme)));}
+		public float derivee(final float somme, final float sortie) {return sortie*(1.f-sortie);}
+	},
+	// Softmax : exp(somme) normalisé par la somme des exponentielles de la
+	// couche, soit une probabilité par classe. Avec l'écart sortie attendue
+	// - sortie comme correction de la couche de sortie, l'apprentissage suit
+	// le gradient de l'entropie croisée. La dérivée donnée est la diagonale
+	// de la jacobienne, qui ne sert pas (couche de sortie seulement)
+	SOFTMAX
+	{
+		public float valeur(final float somme) {return (float)Math.exp(somme);}
+		public float derivee(final float somme, final float sortie) {return sortie*(1.f-sortie);}
+		// S étant pris par la sigmoïde
+		public char lettre() {return 'M';}
+	};
+
+	// Coefficient de fuite de RELU pour les valeurs négatives (1% de l'entrée passe)
+	public static final float Fuite = 0.01f;
+
+	public abstract float valeur(final float somme);
+	public abstract float derivee(final float somme, final float sortie);
+
+	// Lettre du type de neurone (R, H ou S ; M pour SOFTMAX)
+	public char lettre() {return name().charAt(0);}
+
+	// Softmax des n sommes commençant en sommes[debut], écrites dans sorties à
+	// partir du même indice ; le maximum est soustrait avant l'exponentielle,
+	// qui ne peut ainsi pas déborder
+	public static void softmax(final float[] sommes, final float[] sorties, final int debut, final int n)
+	{
+		float max = Float.NEGATIVE_INFINITY;
+		for (int k = debut; k < debut+n; ++k)
+			max = Math.max(max, sommes[k]);
+		float total = 0.f;
+		for (int k = debut; k < debut+n; ++k)
+			total += sorties[k] = (float)Math.exp(sommes[k]-max);
+		final float inverse = 1.f/total;
+		for (int k = debut; k < debut+n; ++k)
+			sorties[k] *= inverse;
+	}
+
+	// Activation désignée par la lettre du type de neurone (R, H ou S ; M pour SOFTMAX)
+	public static Activation depuisLettre(final String lettre)
+	{
+		switch (lettre.toUpperCase())
+		{
+			case "R": return RELU;
+			case "H": return HEAVYSIDE;
+			case "S": return SIGMOIDE;
+			case "M": return SOFTMAX;
+			default: throw new IllegalArgumentException("Type d'activation inconnu : "+lettre);
+		}
+	}
+}
@@ -0,0 +1,190 @@
+package neurone;
+
+// *****************************************************************************
+// Réglages d'un apprentissage : critères d'arrêt (erreur visée, nombre
+// maximal d'époques, durée maximale, patience), coefficient d'apprentissage
+// et son évolution au fil des époques, méthode de mise à jour des poids
+// (descente de gradient simple, avec inertie ou Adam), découpage en
+// mini-lots et nombre de threads.
+// Une instance est immuable : chaque méthode avec...() renvoie une copie
+// modifiée, si bien qu'une configuration peut servir à plusieurs neurones.
+// L'apprentissage s'arrête dès qu'un des critères est rempli ; il se termine
+// donc toujours, même si les exemples ne sont pas séparables.
+
+public final class ConfigApprentissage implements Cloneable
+{
+	// Mise à jour des poids à partir du gradient d'un exemple ou d'un lot
+	public enum Methode {SGD, INERTIE, ADAM}
+	// Évolution du coefficient d'apprentissage au fil des époques
+	public enum Planning {CONSTANT, EXPONENTIEL, COSINUS}
+	// Raison de la fin d'un apprentissage
+	public enum Arret {MSE_ATTEINTE, EPOQUES, DUREE, PATIENCE}
+
+	private float mseLimite = 0.01f;
+	private int nbEpoquesMax = 1000;
+	// Durée maximale en millisecondes (0 : pas de limite)
+	private long dureeMax = 0;
+	// Nombre d'époques sans amélioration relative d'au moins ameliorationMin
+	// de la meilleure erreur avant l'arrêt (0 : pas d'arrêt anticipé)
+	private int patience = 50;
+	private float ameliorationMin = 1.e-3f;
+	private float eta = 0.0001f;
+	private Planning planning = Planning.CONSTANT;
+	// Facteur appliqué à eta à chaque époque (planning EXPONENTIEL)
+	private float decroissance = 0.99f;
+	private Methode methode = Methode.SGD;
+	// Inertie (INERTIE), ou coefficients des moyennes des moments (ADAM)
+	private float beta1 = 0.9f;
+	private float beta2 = 0.999f;
+	// Exemples par mise à jour des poids (1 : exemple par exemple)
+	private int tailleLot = 1;
+	private int nbThreads = 1;
+	private boolean hogwild = false;
+	private EcouteurApprentissage ecouteur = null;
+
+	private ConfigApprentissage() {}
+
+	// Réglages par défaut : descente de gradient exemple par exemple,
+	// eta = 0.0001, au plus 1000 époques, arrêt après 50 époques sans progrès
+	public static ConfigApprentissage parDefaut() {return new ConfigApprentissage();}
+
+	public float mseLimite() {return mseLimite;}
+	public int nbEpoquesMax() {return nbEpoquesMax;}
+	public long dureeMax() {return dureeMax;}
+	public int patience() {return patience;}
+	public float ameliorationMin() {return ameliorationMin;}
+	public float eta() {return eta;}
+	public Planning planning() {return planning;}
+	public float decroissance() {return decroissance;}
+	public Methode methode() {return methode;}
+	public float beta1() {return beta1;}
+	public float beta2() {return beta2;}
+	public int tailleLot() {return tailleLot;}
+	public int nbThreads() {return nbThreads;}
+	public boolean hogwild() {return hogwild;}
+	public EcouteurApprentissage ecouteur() {return ecouteur;}
+
+	public ConfigApprentissage avecMseLimite(final float nouvelleLimite)
+	{
+		final ConfigApprentissage copie = copie();
+		copie.mseLimite = nouvelleLimite;
+		return copie;
+	}
+
+	public ConfigApprentissage avecNbEpoquesMax(final int nouveauMax)
+	{
+		if (nouveauMax < 1)
+			throw new IllegalArgumentException("Nombre d'époques invalide : "+nouveauMax);
+		final ConfigApprentissage copie = copie();
+		copie.nbEpoquesMax = nouveauMax;
+		return copie;
+	}
+
+	// Durée en millisecondes, vérifiée à la fin de chaque époque (0 : pas de limite)
+	public ConfigApprentissage avecDureeMax(final long nouvelleDuree)
+	{
+		if (nouvelleDuree < 0)
+			throw new IllegalArgumentException("Durée invalide : "+nouvelleDuree);
+		final ConfigApprentissage copie = copie();
+		copie.dureeMax = nouvelleDuree;
+		return copie;
+	}
+
+	public ConfigApprentissage avecPatience(final int nouvellePatience, final float nouvelleAmelioration)
+	{
+		if (nouvellePatience < 0 || nouvelleAmelioration < 0)
+			throw new IllegalArgumentException("Patience invalide : "+nouvellePatience);
+		final ConfigApprentissage copie = copie();
+		copie.patience = nouvellePatience;
+		copie.ameliorationMin = nouvelleAmelioration;
+		return copie;
+	}
+
+	public ConfigApprentissage avecEta(final float nouvelEta)
+	{
+		if (!(nouvelEta > 0))
+			throw new IllegalArgumentException("Coefficient d'apprentissage invalide : "+nouvelEta);
+		final ConfigApprentissage copie = copie();
+		copie.eta = nouvelEta;
+		return copie;
+	}
+
+	// decroissance : facteur par époque (EXPONENTIEL) ; COSINUS descend de eta
+	// à 0 en nbEpoquesMax époques
+	public ConfigApprentissage avecPlanning(final Planning nouveauPlanning, final float nouvelleDecroissance)
+	{
+		if (!(nouvelleDecroissance > 0) || nouvelleDecroissance > 1)
+			throw new IllegalArgumentException("Décroissance invalide : "+nouvelleDecroissance);
+		final ConfigApprentissage copie = copie();
+		copie.planning = nouveauPlanning;
+		copie.decroissance = nouvelleDecroissance;
+		return copie;
+	}
+
+	public ConfigApprentissage avecMethode(final Methode nouvelleMethode)
+	{
+		final ConfigApprentissage copie = copie();
+		copie.methode = nouvelleMethode;
+		return copie;
+	}
+
+	// beta1 : inertie (INERTIE) ou moyenne du gradient (ADAM) ;
+	// beta2 : moyenne du carré du gradient (ADAM)
+	public ConfigApprentissage avecMoments(final float nouveauBeta1, final float nouveauBeta2)
+	{
+		if (!(nouveauBeta1 >= 0 && nouveauBeta1 < 1 && nouveauBeta2 >= 0 && nouveauBeta2 < 1))
+			throw new IllegalArgumentException("Coefficients de moments invalides : "+nouveauBeta1+", "+nouveauBeta2);
+		final ConfigApprentissage copie = copie();
+		copie.beta1 = nouveauBeta1;
+		copie.beta2 = nouveauBeta2;
+		return copie;
+	}
+
+	// Mini-lots de tailleLot exemples répartis entre nbThreads threads ;
+	// hogwild : mises à jour exemple par exemple sans verrou (SGD seulement)
+	public ConfigApprentissage avecLots(final int nouvelleTaille, final int nouveauNbThreads, final boolean nouveauHogwild)
+	{
+		if (nouvelleTaille < 1)
+			throw new IllegalArgumentException("Taille de lot invalide : "+nouvelleTaille);
+		if (nouveauNbThreads < 1)
+			throw new IllegalArgumentException("Nombre de threads invalide : "+nouveauNbThreads);
+		final ConfigApprentissage copie = copie();
+		copie.tailleLot = nouvelleTaille;
+		copie.nbThreads = nouveauNbThreads;
+		copie.hogwild = nouveauHogwild;
+		return copie;
+	}
+
+	public ConfigApprentissage avecEcouteur(final EcouteurApprentissage nouvelEcouteur)
+	{
+		final ConfigApprentissage copie = copie();
+		copie.ecouteur = nouvelEcouteur;
+		return copie;
+	}
+
+	// Coefficient d'apprentissage de l'époque donnée (numérotées à partir de 0)
+	public float eta(final int epoque)
+	{
+		switch (planning)
+		{
+			case EXPONENTIEL:
+				return (float)(eta*Math.pow(decroissance, epoque));
+			case COSINUS:
+				return (float)(eta*.5*(1.+Math.cos(Math.PI*epoque/nbEpoquesMax)));
+			default:
+				return eta;
+		}
+	}
+
+	private ConfigApprentissage copie()
+	{
+		try
+		{
+			return (ConfigApprentissage)clone();
+		}
+		catch (CloneNotSupportedException e)
+		{
+			throw new IllegalStateException(e);	// Cloneable est implémentée
+		}
+	}
+}
@@ -0,0 +1,108 @@
+package neurone;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+// *****************************************************************************
+// Couche entièrement connectée d'un réseau de neurones : nbSorties neurones
+// partageant les mêmes nbEntrees entrées et la même fonction d'activation.
+// Tous les paramètres tiennent dans un seul tableau contigu : la matrice des
+// poids ligne par ligne (neurone r en [r*nbEntrees, (r+1)*nbEntrees[), puis
+// les nbSorties biais. La propagation est un produit matrice-vecteur, traité
+// par paquets de quatre lignes de poids qui partagent chaque lecture de
+// l'entrée (ProduitScalaire) ; la rétropropagation parcourt elle aussi les
+// poids ligne par ligne, dans l'ordre de la mémoire. Une couche softmax de K
+// classes calcule ainsi ses K scores en un seul passage sur l'entrée.
+// La couche ne garde aucun état de calcul : les sommes pondérées, sorties et
+// gradients sont écrits dans des tampons fournis par l'appelant, ce qui
+// permet à plusieurs threads de se servir de la même couche.
+
+public final class Couche
+{
+	private final int nbEntrees;
+	private final int nbSorties;
+	private final Activation activation;
+	private final float[] parametres;
+
+	// Poids initiaux tirés uniformément dans +-sqrt(6/(nbEntrees+nbSorties))
+	// (les sorties gardent ainsi une variance comparable d'une couche à
+	// l'autre), biais initiaux nuls
+	public Couche(final int nbEntrees, final int nbSorties, final Activation activation, final SplittableRandom aleatoire)
+	{
+		if (nbEntrees < 1 || nbSorties < 1)
+			throw new IllegalArgumentException("Couche invalide : "+nbEntrees+" entrées, "+nbSorties+" sorties");
+		this.nbEntrees = nbEntrees;
+		this.nbSorties = nbSorties;
+		this.activation = activation;
+		parametres = new float[nbSorties*(nbEntrees+1)];
+		final double limite = Math.sqrt(6./(nbEntrees+nbSorties));
+		for (int j = 0; j < nbSorties*nbEntrees; ++j)
+			parametres[j] = (float)aleatoire.nextDouble(-limite, limite);
+	}
+
+	// Copie indépendante d'une couche (instantané d'un réseau)
+	Couche(final Couche modele)
+	{
+		nbEntrees = modele.nbEntrees;
+		nbSorties = modele.nbSorties;
+		activation = modele.activation;
+		parametres = modele.parametres.clone();
+	}
+
+	public int nbEntrees() {return nbEntrees;}
+	public int nbSorties() {return nbSorties;}
+	public Activation activation() {return activation;}
+	// Poids puis biais, en lecture-écriture
+	public float[] parametres() {return parametres;}
+
+	// Sommes pondérées et sorties de nbLignes exemples rangés ligne par ligne
+	// à partir de entrees[debut] ; sommes et sorties sont écrites ligne par
+	// ligne, nbSorties valeurs par exemple
+	public void propage(final float[] entrees, final int debut, final int nbLignes, final float[] sommes,
+			final float[] sorties)
+	{
+		final ProduitScalaire produit = ProduitScalaire.courant();
+		final int debutBiais = nbSorties*nbEntrees;
+		for (int l = 0; l < nbLignes; ++l)
+		{
+			final int ligne = l*nbSorties;
+			produit.produits(parametres, 0, nbSorties, nbEntrees, entrees, debut+l*nbEntrees, 0.f, sommes, ligne);
+			for (int r = 0; r < nbSorties; ++r)
+				sommes[ligne+r] += parametres[debutBiais+r];
+			if (activation == Activation.SOFTMAX)
+				Activation.softmax(sommes, sorties, ligne, nbSorties);
+			else
+				for (int r = 0; r < nbSorties; ++r)
+					sorties[ligne+r] = activation.valeur(sommes[ligne+r]);
+		}
+	}
+
+	// Rétropropagation pour un exemple d'entrées commençant en entrees[debut] :
+	// deltas contient, pour chaque neurone, la correction de sa somme pondérée.
+	// Ajoute entree*delta (et delta pour les biais) au gradient, rangé comme
+	// les paramètres ; si deltasEntrees n'est pas null, y écrit la correction
+	// de chaque entrée, somme des poids*delta, à multiplier ensuite par la
+	// dérivée de l'activation de la couche précédente
+	public void retropropage(final float[] entrees, final int debut, final float[] deltas, final float[] gradient,
+			final float[] deltasEntrees)
+	{
+		final int debutBiais = nbSorties*nbEntrees;
+		if (deltasEntrees != null)
+			Arrays.fill(deltasEntrees, 0, nbEntrees, 0.f);
+		for (int r = 0; r < nbSorties; ++r)
+		{
+			final float delta = deltas[r];
+			final int ligne = r*nbEntrees;
+			if (deltasEntrees == null)
+				for (int i = 0; i < nbEntrees; ++i)
+					gradient[ligne+i] += entrees[debut+i]*delta;
+			else
+				for (int i = 0; i < nbEntrees; ++i)
+				{
+					gradient[ligne+i] += entrees[debut+i]*delta;
+					deltasEntrees[i] += parametres[ligne+i]*delta;
+				}
+			gradient[debutBiais+r] += delta;
+		}
+	}
+}
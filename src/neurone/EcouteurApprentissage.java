@@ -0,0 +1,17 @@
+package neurone;
+
+// *****************************************************************************
+// Suivi d'un apprentissage : appelé à la fin de chaque époque, puis une fois
+// l'apprentissage terminé. Les appels ont lieu dans le thread qui a lancé
+// l'apprentissage.
+
+@FunctionalInterface
+public interface EcouteurApprentissage
+{
+	// Fin d'une époque (numérotées à partir de 0) : erreur quadratique
+	// moyenne sur ses exemples et coefficient d'apprentissage employé
+	public void epoque(final int epoque, final double mse, final float eta);
+
+	// Fin de l'apprentissage, après nbEpoques époques
+	public default void fin(final ConfigApprentissage.Arret arret, final int nbEpoques, final double mse) {}
+}
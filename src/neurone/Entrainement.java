@@ -0,0 +1,150 @@
+package neurone;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.TimeUnit;
+
+// *****************************************************************************
+// Boucle d'apprentissage commune au neurone seul (Neurone) et au réseau
+// (Reseau) : époques, mini-lots, critères d'arrêt et suivi par l'écouteur.
+// Chaque lot est découpé en parts, traitées en parallèle (ForkJoinPool) si
+// plusieurs threads sont demandés. Chaque part calcule son gradient dans son
+// propre tampon ; les tampons sont sommés dans l'ordre des parts, puis les
+// poids mis à jour une fois par lot. Le découpage ne dépend que de la taille
+// du lot : le résultat est reproductible et indépendant du nombre de threads.
+// En mode hogwild, chaque part met directement à jour les poids partagés,
+// exemple par exemple et sans verrou : plus de mises à jour par époque, mais
+// un résultat qui dépend de l'ordonnancement des threads.
+
+abstract class Entrainement
+{
+	// Nombre maximal de parts d'un lot, et donc de tampons de gradient
+	static final int PartiesParLot = 16;
+
+	// Gradient de la part numéro "partie" sur les exemples [debut, fin[,
+	// écrit dans le tampon de cette part ; renvoie la somme des erreurs au carré
+	protected abstract double gradientPartiel(final int partie, final int debut, final int fin);
+
+	// Somme, dans l'ordre, des gradients des parts [0, nbParties[, puis mise
+	// à jour des poids par l'optimiseur avec le coefficient eta
+	protected abstract void appliqueGradients(final int nbParties, final float eta);
+
+	// Hogwild : mise à jour des poids partagés exemple par exemple sur
+	// [debut, fin[, avec les tampons de la part numéro "partie" ; renvoie la
+	// somme des erreurs au carré
+	protected abstract double apprentissagePartiel(final int partie, final int debut, final int fin, final float eta);
+
+	// Apprentissage sur nbExemples exemples ; renvoie la raison de l'arrêt
+	final ConfigApprentissage.Arret lance(final int nbExemples, final ConfigApprentissage config)
+	{
+		if (nbExemples == 0)
+			throw new IllegalArgumentException("Aucun exemple d'apprentissage");
+		if (config.hogwild() && config.methode() != ConfigApprentissage.Methode.SGD)
+			throw new IllegalArgumentException("Le mode hogwild n'accepte que la descente de gradient simple");
+		final int tailleLot = config.tailleLot();
+		final boolean hogwild = config.hogwild();
+		final double[] erreurs = new double[PartiesParLot];
+		final List<ForkJoinTask<?>> parties = new ArrayList<>(PartiesParLot);
+		final EcouteurApprentissage ecouteur = config.ecouteur();
+		final long debut = System.nanoTime();
+		final ForkJoinPool groupe = config.nbThreads() > 1 ? new ForkJoinPool(config.nbThreads()) : null;
+		double mse, meilleure = Double.POSITIVE_INFINITY;
+		int epoque = 0, sansProgres = 0;
+		ConfigApprentissage.Arret arret;
+		try
+		{
+			while (true)
+			{
+				final float eta = config.eta(epoque);
+				Arrays.fill(erreurs, 0.);
+				for (int debutLot = 0; debutLot < nbExemples; debutLot += tailleLot)
+				{
+					final int taille = Math.min(tailleLot, nbExemples-debutLot);
+					if (taille == 1 && !hogwild)
+					{
+						// Exemple par exemple : rien à découper ni à sommer
+						erreurs[0] += gradientPartiel(0, debutLot, debutLot+1);
+						appliqueGradients(1, eta);
+						continue;
+					}
+					final int nbParties = Math.min(PartiesParLot, taille);
+					parties.clear();
+					for (int p = 0; p < nbParties; ++p)
+					{
+						final int numero = p;
+						final int debutPartie = debutLot+taille*p/nbParties;
+						final int finPartie = debutLot+taille*(p+1)/nbParties;
+						parties.add(ForkJoinTask.adapt(() -> {
+							erreurs[numero] += hogwild ? apprentissagePartiel(numero, debutPartie, finPartie, eta)
+									: gradientPartiel(numero, debutPartie, finPartie);
+						}));
+					}
+					if (groupe != null)
+						groupe.invoke(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(parties)));
+					else
+						for (final ForkJoinTask<?> partie : parties)
+							partie.invoke();
+					if (!hogwild)
+						appliqueGradients(nbParties, eta);
+				}
+				mse = 0.;
+				for (final double erreur : erreurs)
+					mse += erreur;
+				mse /= nbExemples;
+				if (ecouteur != null)
+					ecouteur.epoque(epoque, mse, eta);
+				++epoque;
+
+				// Critères d'arrêt
+				if (mse <= config.mseLimite())
+					arret = ConfigApprentissage.Arret.MSE_ATTEINTE;
+				else if (epoque >= config.nbEpoquesMax())
+					arret = ConfigApprentissage.Arret.EPOQUES;
+				else if (config.dureeMax() > 0 && (System.nanoTime()-debut)/1000000 >= config.dureeMax())
+					arret = ConfigApprentissage.Arret.DUREE;
+				else if (mse < meilleure*(1.-config.ameliorationMin()))
+				{
+					meilleure = mse;
+					sansProgres = 0;
+					continue;
+				}
+				else if (config.patience() == 0 || ++sansProgres < config.patience())
+					continue;
+				else
+					arret = ConfigApprentissage.Arret.PATIENCE;
+				break;
+			}
+		}
+		finally
+		{
+			if (groupe != null)
+				arrete(groupe);
+		}
+		if (ecouteur != null)
+			ecouteur.fin(arret, epoque, mse);
+		return arret;
+	}
+
+	// Arrête les threads du groupe et attend leur fin (ForkJoinPool.close,
+	// absent avant Java 19)
+	private static void arrete(final ForkJoinPool groupe)
+	{
+		groupe.shutdown();
+		boolean interrompu = false;
+		while (true)
+			try
+			{
+				if (groupe.awaitTermination(1, TimeUnit.DAYS))
+					break;
+			}
+			catch (InterruptedException e)
+			{
+				interrompu = true;
+			}
+		if (interrompu)
+			Thread.currentThread().interrupt();
+	}
+}
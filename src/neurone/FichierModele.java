@@ -0,0 +1,227 @@
+package neurone;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+// *****************************************************************************
+// Format binaire des neurones et réseaux entraînés. Tout ce qu'il faut pour
+// vérifier qu'un fichier convient y figure, et un fichier qui ne convient
+// pas est refusé en entier : jamais chargé à moitié.
+// Un fichier contient, en petit-boutiste :
+//  - la signature "NEUR", la version du format, le genre de modèle (neurone
+//    seul ou réseau), le nombre de couches, le nombre d'entrées et la
+//    longueur de la description (-1 si absente) ;
+//  - pour chaque couche, son nombre de neurones et la lettre de son
+//    activation (R, H, S, ou M pour softmax) ;
+//  - la description des caractéristiques d'entrée (réglages d'extraction,
+//    taille des blocs, fréquence), en UTF-8 complétée à un multiple de 4 ;
+//  - les paramètres de chaque couche en float32, poids ligne par ligne puis
+//    biais (la disposition de Couche ; un neurone seul est une couche d'un
+//    neurone) ;
+//  - le CRC32 de tout ce qui précède.
+// La lecture tient en une seule lecture du fichier (ou une projection en
+// mémoire pour les gros modèles) suivie de copies en bloc : sa durée est
+// celle des entrées-sorties, sans conversion de texte.
+// Le format texte historique (une valeur par ligne) reste disponible pour
+// l'export et se relit toujours : voir estBinaire.
+
+public final class FichierModele
+{
+	// Genre de modèle enregistré
+	public static final int GenreNeurone = 0;
+	public static final int GenreReseau = 1;
+
+	private static final byte[] Signature = "NEUR".getBytes(StandardCharsets.US_ASCII);
+	private static final int Version = 1;
+	// Signature, version, genre, nombre de couches, entrées, longueur de la description
+	private static final int TailleEntete = 24;
+	// Taille à partir de laquelle le fichier est projeté en mémoire plutôt que lu
+	private static final long TailleProjection = 1<<20;
+
+	public final int genre;
+	public final int nbEntrees;
+	public final int[] nbNeurones;
+	public final Activation[] activations;
+	// Paramètres de chaque couche, rangés comme ceux de Couche
+	public final float[][] parametres;
+	public final String description;
+
+	public FichierModele(final int genre, final int nbEntrees, final int[] nbNeurones, final Activation[] activations,
+			final float[][] parametres, final String description)
+	{
+		this.genre = genre;
+		this.nbEntrees = nbEntrees;
+		this.nbNeurones = nbNeurones;
+		this.activations = activations;
+		this.parametres = parametres;
+		this.description = description;
+	}
+
+	// Vrai si le fichier commence par la signature du format binaire (sinon :
+	// format texte historique)
+	public static boolean estBinaire(final String chemin) throws IOException
+	{
+		try (FileChannel canal = FileChannel.open(Path.of(chemin), StandardOpenOption.READ))
+		{
+			final ByteBuffer debut = ByteBuffer.allocate(Signature.length);
+			while (debut.hasRemaining() && canal.read(debut) >= 0)
+				;
+			return !debut.hasRemaining() && Arrays.equals(debut.array(), Signature);
+		}
+	}
+
+	// Écrit le modèle dans un fichier temporaire, renommé une fois complet :
+	// un enregistrement interrompu ne laisse pas de fichier tronqué
+	public void ecrit(final String chemin) throws IOException
+	{
+		final byte[] octetsDescription = description == null ? new byte[0] : description.getBytes(StandardCharsets.UTF_8);
+		long taille = TailleEntete+8L*nbNeurones.length+(octetsDescription.length+3)/4*4+4;
+		for (final float[] p : parametres)
+			taille += 4L*p.length;
+		if (taille > Integer.MAX_VALUE)
+			throw new IOException("Modèle trop grand : "+taille+" octets");
+		final ByteBuffer octets = ByteBuffer.allocate((int)taille).order(ByteOrder.LITTLE_ENDIAN);
+		octets.put(Signature).putInt(Version).putInt(genre).putInt(nbNeurones.length).putInt(nbEntrees)
+				.putInt(description == null ? -1 : octetsDescription.length);
+		for (int c = 0; c < nbNeurones.length; ++c)
+			octets.putInt(nbNeurones[c]).putInt(activations[c].lettre());
+		octets.put(octetsDescription).position(octets.position()+(4-octetsDescription.length%4)%4);
+		for (final float[] p : parametres)
+		{
+			octets.asFloatBuffer().put(p);
+			octets.position(octets.position()+4*p.length);
+		}
+		octets.putInt(crc(octets, octets.position()));
+		octets.flip();
+
+		final Path destination = Path.of(chemin).toAbsolutePath();
+		final Path temporaire = destination.resolveSibling(destination.getFileName()+".tmp");
+		try
+		{
+			try (FileChannel canal = FileChannel.open(temporaire, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+					StandardOpenOption.TRUNCATE_EXISTING))
+			{
+				while (octets.hasRemaining())
+					canal.write(octets);
+			}
+			Files.move(temporaire, destination, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		}
+		finally
+		{
+			Files.deleteIfExists(temporaire);
+		}
+	}
+
+	// Lit et vérifie un fichier binaire complet
+	public static FichierModele lit(final String chemin) throws IOException
+	{
+		final ByteBuffer octets;
+		try (FileChannel canal = FileChannel.open(Path.of(chemin), StandardOpenOption.READ))
+		{
+			final long taille = canal.size();
+			if (taille < TailleEntete+4 || taille > Integer.MAX_VALUE)
+				throw new IOException(chemin+" n'est pas un modèle valide (taille "+taille+")");
+			if (taille >= TailleProjection)
+				octets = canal.map(FileChannel.MapMode.READ_ONLY, 0, taille);
+			else
+			{
+				octets = ByteBuffer.allocate((int)taille);
+				while (octets.hasRemaining() && canal.read(octets) >= 0)
+					;
+				octets.flip();
+			}
+		}
+		octets.order(ByteOrder.LITTLE_ENDIAN);
+		final int taille = octets.limit();
+		final byte[] signature = new byte[Signature.length];
+		octets.get(0, signature);
+		if (!Arrays.equals(signature, Signature))
+			throw new IOException(chemin+" n'est pas un modèle binaire");
+		if (octets.getInt(4) != Version)
+			throw new IOException("Version "+octets.getInt(4)+" du format de modèle non prise en charge : "+chemin);
+		if (crc(octets, taille-4) != octets.getInt(taille-4))
+			throw new IOException("Somme de contrôle incorrecte : "+chemin+" est corrompu");
+
+		try
+		{
+			octets.position(8);
+			final int genre = octets.getInt();
+			final int nbCouches = octets.getInt();
+			final int nbEntrees = octets.getInt();
+			final int longueurDescription = octets.getInt();
+			if (nbCouches < 1 || nbCouches > 1000 || nbEntrees < 1)
+				throw new IOException("Architecture invalide dans "+chemin);
+			final int[] nbNeurones = new int[nbCouches];
+			final Activation[] activations = new Activation[nbCouches];
+			for (int c = 0; c < nbCouches; ++c)
+			{
+				nbNeurones[c] = octets.getInt();
+				activations[c] = Activation.depuisLettre(String.valueOf((char)octets.getInt()));
+				if (nbNeurones[c] < 1)
+					throw new IOException("Architecture invalide dans "+chemin);
+			}
+			String description = null;
+			if (longueurDescription >= 0)
+			{
+				final byte[] octetsDescription = new byte[longueurDescription];
+				octets.get(octetsDescription);
+				description = new String(octetsDescription, StandardCharsets.UTF_8);
+				octets.position(octets.position()+(4-longueurDescription%4)%4);
+			}
+			final float[][] parametres = new float[nbCouches][];
+			for (int c = 0; c < nbCouches; ++c)
+			{
+				final long n = (long)nbNeurones[c]*((c == 0 ? nbEntrees : nbNeurones[c-1])+1);
+				if (octets.position()+4*n > taille-4)
+					throw new IOException("Modèle tronqué : "+chemin);
+				parametres[c] = new float[(int)n];
+				octets.asFloatBuffer().get(parametres[c]);
+				octets.position(octets.position()+4*(int)n);
+			}
+			if (octets.position() != taille-4)
+				throw new IOException("Données inattendues à la fin de "+chemin);
+			return new FichierModele(genre, nbEntrees, nbNeurones, activations, parametres, description);
+		}
+		catch (RuntimeException e)
+		{
+			// Champ hors limites ou lettre d'activation inconnue
+			throw new IOException(chemin+" n'est pas un modèle valide : "+e.getMessage(), e);
+		}
+	}
+
+	// Vérifie que le modèle lu a l'architecture attendue
+	void verifie(final String chemin, final int genreAttendu, final int nbEntreesAttendu, final int[] nbNeuronesAttendus,
+			final Activation[] activationsAttendues) throws IOException
+	{
+		if (genre != genreAttendu || nbEntrees != nbEntreesAttendu || !Arrays.equals(nbNeurones, nbNeuronesAttendus)
+				|| !Arrays.equals(activations, activationsAttendues))
+			throw new IOException(chemin+" contient "+architecture(genre, nbEntrees, nbNeurones, activations)
+					+" au lieu de "+architecture(genreAttendu, nbEntreesAttendu, nbNeuronesAttendus, activationsAttendues));
+	}
+
+	private static String architecture(final int genre, final int nbEntrees, final int[] nbNeurones,
+			final Activation[] activations)
+	{
+		final StringBuilder texte = new StringBuilder(genre == GenreReseau ? "un réseau " : "un neurone ").append(nbEntrees);
+		for (int c = 0; c < nbNeurones.length; ++c)
+			texte.append(' ').append(nbNeurones[c]).append(':').append(activations[c].lettre());
+		return texte.toString();
+	}
+
+	// CRC32 des "longueur" premiers octets
+	private static int crc(final ByteBuffer octets, final int longueur)
+	{
+		final CRC32 crc = new CRC32();
+		crc.update(octets.duplicate().position(0).limit(longueur));
+		return (int)crc.getValue();
+	}
+}
@@ -0,0 +1,27 @@
+package neurone;
+
+// *****************************************************************************
+// Modèle entraîné, figé pour l'analyse : instantané immuable des poids d'un
+// neurone ou d'un réseau, obtenu par iNeurone.modele(). L'évaluation est une
+// fonction pure des entrées, sans état interne : une même instance peut être
+// partagée entre tous les threads d'analyse, sans copie ni verrou, et
+// l'apprentissage qui se poursuit sur le neurone d'origine ne la modifie pas.
+// Les champs des implémentations sont final et leurs tableaux ne sont
+// jamais exposés : l'instantané est correctement publié dès sa construction.
+
+public interface Modele
+{
+	public int nbEntrees();
+	// Nombre de sorties par exemple (1 pour un neurone seul)
+	public int nbSorties();
+
+	// Description des entrées attendues (réglages d'extraction), null si inconnue
+	public String description();
+
+	// Première sortie du modèle pour une entrée
+	public float evalue(final float[] entree);
+
+	// Sorties de n exemples rangés ligne par ligne dans "lignes", écrites
+	// ligne par ligne dans "sorties" (nbSorties() valeurs par exemple)
+	public void evalueLot(final float[] lignes, final int n, final float[] sorties);
+}
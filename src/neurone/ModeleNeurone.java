@@ -0,0 +1,43 @@
+package neurone;
+
+// *****************************************************************************
+// Instantané immuable d'un neurone seul : copie de ses poids synaptiques, de
+// son biais et de sa fonction d'activation.
+
+public final class ModeleNeurone implements Modele
+{
+	private final float[] synapses;
+	private final float biais;
+	private final Activation activation;
+	private final String description;
+
+	// Les poids sont copiés : le tableau d'origine peut continuer d'évoluer
+	public ModeleNeurone(final float[] synapses, final float biais, final Activation activation,
+			final String description)
+	{
+		this.synapses = synapses.clone();
+		this.biais = biais;
+		this.activation = activation;
+		this.description = description;
+	}
+
+	public int nbEntrees() {return synapses.length;}
+	public int nbSorties() {return 1;}
+	public String description() {return description;}
+	public Activation activation() {return activation;}
+
+	// Version int8 de ce modèle (ModeleQuantifie)
+	public ModeleQuantifie quantifie() {return new ModeleQuantifie(synapses, biais, activation, description);}
+
+	public float evalue(final float[] entree)
+	{
+		return activation.valeur(biais+ProduitScalaire.courant().produit(entree, synapses, synapses.length));
+	}
+
+	public void evalueLot(final float[] lignes, final int n, final float[] sorties)
+	{
+		ProduitScalaire.courant().produits(lignes, n, synapses.length, synapses, biais, sorties);
+		for (int l = 0; l < n; ++l)
+			sorties[l] = activation.valeur(sorties[l]);
+	}
+}
@@ -0,0 +1,81 @@
+package neurone;
+
+import FFT.Ardoise;
+
+// *****************************************************************************
+// Instantané quantifié d'un neurone seul, pour réduire la mémoire : poids
+// int8 avec une échelle commune (4 fois moins de mémoire que les float), et
+// entrées quantifiées de même, avec leur propre échelle : une fois pour
+// toutes par l'appelant (evalue sur des octets, comme l'analyse répartie
+// qui les quantifie dans l'étage des caractéristiques), ou à chaque
+// évaluation par les méthodes de Modele, qui reçoivent des float.
+// La somme pondérée devient un produit scalaire entier exact, ramené en
+// float par le produit des deux échelles :
+//   somme = biais + echellePoids*echelleEntree*sum(q_poids[i]*q_entree[i])
+// Le biais et l'activation restent en float. L'arrondi de chaque valeur à
+// 1/254 de la plus grande en valeur absolue décale un peu les sorties : les
+// décisions ne changent qu'au voisinage du seuil (voir l'option -validation
+// de Main, qui compare les deux modèles sur des exemples étiquetés).
+// Il n'est pas plus rapide que le modèle float : même sur une entrée déjà
+// quantifiée, le produit entier ne fait guère mieux qu'une passe de
+// multiplications-additions fusionnées en float (voir testProduitScalaire),
+// et quantifier chaque entrée coûte plus que ce produit.
+
+public final class ModeleQuantifie implements Modele
+{
+	private final byte[] poids;
+	private final float echelle;
+	private final float biais;
+	private final Activation activation;
+	private final String description;
+
+	public ModeleQuantifie(final float[] synapses, final float biais, final Activation activation,
+			final String description)
+	{
+		poids = new byte[synapses.length];
+		echelle = ProduitScalaire.courant().quantifie(synapses, 0, synapses.length, poids);
+		this.biais = biais;
+		this.activation = activation;
+		this.description = description;
+	}
+
+	public int nbEntrees() {return poids.length;}
+	public int nbSorties() {return 1;}
+	public String description() {return description;}
+	public Activation activation() {return activation;}
+	// Mémoire occupée par les poids, en octets
+	public int taillePoids() {return poids.length;}
+
+	public float evalue(final float[] entree)
+	{
+		return evalue(entree, 0);
+	}
+
+	public void evalueLot(final float[] lignes, final int n, final float[] sorties)
+	{
+		for (int l = 0; l < n; ++l)
+			sorties[l] = evalue(lignes, l*poids.length);
+	}
+
+	// Sortie pour une entrée déjà quantifiée (ProduitScalaire.quantifie),
+	// d'échelle echelleEntree : un seul produit scalaire entier
+	public float evalue(final byte[] entree, final float echelleEntree)
+	{
+		return activation.valeur(biais+echelle*echelleEntree*ProduitScalaire.courant().produit(poids, entree,
+				poids.length));
+	}
+
+	// Sorties de n entrées déjà quantifiées, entrees[l] d'échelle echelles[l]
+	public void evalueLot(final byte[][] entrees, final float[] echelles, final int n, final float[] sorties)
+	{
+		for (int l = 0; l < n; ++l)
+			sorties[l] = evalue(entrees[l], echelles[l]);
+	}
+
+	// Entrée quantifiée dans le tampon d'octets de l'ardoise du thread appelant
+	private float evalue(final float[] entrees, final int debut)
+	{
+		final byte[] entree = Ardoise.courante().octets(poids.length);
+		return evalue(entree, ProduitScalaire.courant().quantifie(entrees, debut, poids.length, entree));
+	}
+}
@@ -0,0 +1,76 @@
+package neurone;
+
+import FFT.Ardoise;
+
+// *****************************************************************************
+// Instantané immuable d'un réseau : copie de ses couches. Les sommes et
+// sorties intermédiaires sont prises dans l'ardoise du thread appelant,
+// si bien qu'évaluer n'alloue rien et que plusieurs threads peuvent
+// évaluer en même temps.
+
+public final class ModeleReseau implements Modele
+{
+	// Exemples propagés ensemble par evalueLot
+	private static final int LignesParPaquet = 64;
+	// Tampons de l'ardoise employés (ceux de l'extracteur de caractéristiques
+	// restent libres) : sommes pondérées, puis sorties des couches paires et impaires
+	private static final int TamponSommes = 5;
+	private static final int TamponSortiesPaires = 6;
+	private static final int TamponSortiesImpaires = 7;
+
+	private final Couche[] couches;
+	private final String description;
+	// Plus grand nombre de neurones d'une couche
+	private final int largeurMax;
+
+	// Les couches sont copiées : celles d'origine peuvent continuer d'évoluer
+	public ModeleReseau(final Couche[] couches, final String description)
+	{
+		this.couches = new Couche[couches.length];
+		int largeur = 0;
+		for (int c = 0; c < couches.length; ++c)
+		{
+			this.couches[c] = new Couche(couches[c]);
+			largeur = Math.max(largeur, couches[c].nbSorties());
+		}
+		this.description = description;
+		largeurMax = largeur;
+	}
+
+	public int nbEntrees() {return couches[0].nbEntrees();}
+	public int nbSorties() {return couches[couches.length-1].nbSorties();}
+	public String description() {return description;}
+
+	public float evalue(final float[] entree)
+	{
+		final float[] sorties = propage(entree, 0, 1);
+		return sorties[0];
+	}
+
+	public void evalueLot(final float[] lignes, final int n, final float[] sorties)
+	{
+		for (int debut = 0; debut < n; debut += LignesParPaquet)
+		{
+			final int paquet = Math.min(LignesParPaquet, n-debut);
+			System.arraycopy(propage(lignes, debut*nbEntrees(), paquet), 0, sorties, debut*nbSorties(), paquet*nbSorties());
+		}
+	}
+
+	// Propage nbLignes exemples à partir de entrees[debut] ; renvoie le tampon
+	// de l'ardoise qui contient les sorties de la dernière couche
+	private float[] propage(final float[] entrees, final int debut, final int nbLignes)
+	{
+		final Ardoise ardoise = Ardoise.courante();
+		final float[] sommes = ardoise.tampon(TamponSommes, nbLignes*largeurMax);
+		final float[] paires = ardoise.tampon(TamponSortiesPaires, nbLignes*largeurMax);
+		final float[] impaires = ardoise.tampon(TamponSortiesImpaires, nbLignes*largeurMax);
+		float[] precedentes = entrees;
+		for (int c = 0; c < couches.length; ++c)
+		{
+			final float[] sorties = c%2 == 0 ? paires : impaires;
+			couches[c].propage(precedentes, c == 0 ? debut : 0, nbLignes, sommes, sorties);
+			precedentes = sorties;
+		}
+		return precedentes;
+	}
+}
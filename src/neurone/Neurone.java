@@ -3,6 +3,9 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.io.FileReader;
 import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.util.Arrays;
+import java.util.SplittableRandom;
 
 public abstract class Neurone implements iNeurone
 {
@@ -25,6 +28,13 @@ public abstract class Neurone implements iNeurone
 	// Valeur de sortie d'un neurone (à "Not A Number" par défaut)
 	private float etatInterne = Float.NaN;
 
+	// Description des entrées, écrite en tête du fichier de sauvegarde
+	// sur une ligne commençant par MarqueDescription
+	private String description = null;
+	private static final String MarqueDescription = "#";
+	// Extension des fichiers enregistrés au format texte
+	public static final String ExtensionTexte = ".txt";
+
 	// Fonction d'activation d'un neurone ; à modifier par héritage,
 	// c'est d'ailleurs le but ici du qualificateur abstract, qui dit que cette
 	// méthode n'est pas implémentée => à faire dans un ou plusieurs classes filles
@@ -32,20 +42,38 @@ public abstract class Neurone implements iNeurone
 	// mais doit être redéfinie dans les classes filles
 	protected abstract float activation(final float valeur);
 
+	// Fonction d'activation, pour l'instantané du neurone
+	public abstract Activation typeActivation();
+
 	// Constructeur d'un neurone
 	public Neurone(final int nbEntrees)
+	{
+		this(nbEntrees, new SplittableRandom());
+	}
+
+	// Constructeur d'un neurone aux poids initiaux reproductibles : une même
+	// graine donne toujours les mêmes poids
+	public Neurone(final int nbEntrees, final long graine)
+	{
+		this(nbEntrees, new SplittableRandom(graine));
+	}
+
+	private Neurone(final int nbEntrees, final SplittableRandom aleatoire)
 	{
 		synapses = new float[nbEntrees];
 		// On initialise tous les poids de manière alétoire
 		for (int i = 0; i < nbEntrees; ++i)
-			synapses[i] = (float)(Math.random()*2.-1.);
+			synapses[i] = (float)aleatoire.nextDouble(-1., 1.);
 		// On initialise le biais de manière aléatoire
-		biais = (float)(Math.random()*2.-1.);
+		biais = (float)aleatoire.nextDouble(-1., 1.);
 	}
 
 	// Accesseur pour la valeur de sortie
 	public float sortie() {return etatInterne;}
 
+	// Instantané des poids actuels, pour l'analyse
+	public Modele modele() {return new ModeleNeurone(synapses, biais, typeActivation(), description);}
+
 	// Donne accès en lecture-écriture aux valeurs des poids synaptiques
 	public float[] synapses() {return synapses;}
 	// Donne accès en lecture à la valeur du biais
@@ -53,76 +81,214 @@ public abstract class Neurone implements iNeurone
 	// Donne accès en écriture à la valeur du biais
 	public void fixeBiais(final float nouveauBiais) {biais = nouveauBiais;}
 
+	// Accesseurs de la description des entrées
+	public String description() {return description;}
+	public void fixeDescription(final String nouvelleDescription) {description = nouvelleDescription;}
+
 	// Calcule la valeur de sortie en fonction des entrées, des poids synaptiques,
 	// du biais et de la fonction d'activation
 	public void metAJour(final float[] entrees)
 	{
-		// On démarre en extrayant le biais
-		float somme = biais();
-
-		// Puis on ajoute les produits entrée-poids synaptique
-		for (int i = 0; i < synapses().length; ++i)
-			somme += entrees[i]*synapses()[i];
+		// Biais plus somme des produits entrée-poids synaptique (noyau vectorisé)
+		final float somme = biais+ProduitScalaire.courant().produit(entrees, synapses, synapses.length);
 
 		// On fixe la sortie du neurone relativement à la fonction d'activation
 		etatInterne = activation(somme);
 	}
 
-	// Fonction d'apprentissage relative à la mse
+	// Calcule en un seul passage les sorties de nbLignes exemples rangés
+	// ligne par ligne dans "matrice", écrites dans sorties[0..nbLignes[ ;
+	// l'état interne du neurone n'est pas modifié
+	public void metAJourLot(final float[] matrice, final int nbLignes, final float[] sorties)
+	{
+		ProduitScalaire.courant().produits(matrice, nbLignes, synapses.length, synapses, biais, sorties);
+		for (int l = 0; l < nbLignes; ++l)
+			sorties[l] = activation(sorties[l]);
+	}
+
+	// Fonction d'apprentissage relative à la mse : exemple par exemple, avec
+	// le coefficient commun eta, dans les limites par défaut de
+	// ConfigApprentissage (nombre d'époques, patience)
 	public void apprentissage(final float[][] entrees, final float[] resultats, final float MSElimite)
 	{
-		double mse = 0.;
-		int iter = 0;
-		do
+		final int dimension = synapses.length;
+		final float[] matrice = new float[entrees.length*dimension];
+		for (int i = 0; i < entrees.length; ++i)
+			System.arraycopy(entrees[i], 0, matrice, i*dimension, dimension);
+		apprentissage(matrice, resultats, ConfigApprentissage.parDefaut().avecMseLimite(MSElimite).avecEta(eta));
+	}
+
+	// Apprentissage sur les exemples rangés ligne par ligne dans "matrice",
+	// selon la configuration (voir Entrainement) ; renvoie la raison de l'arrêt
+	public ConfigApprentissage.Arret apprentissage(final float[] matrice, final float[] resultats,
+			final ConfigApprentissage config)
+	{
+		if (matrice.length != resultats.length*synapses.length)
+			throw new IllegalArgumentException("Matrice de "+matrice.length+" valeurs pour "+resultats.length
+					+" exemples de "+synapses.length+" entrées");
+		return new EntrainementNeurone(matrice, resultats, config).lance(resultats.length, config);
+	}
+
+	// Règle d'apprentissage du neurone seul : correction entree*delta des
+	// poids (delta pour le biais), delta étant l'écart à la sortie attendue
+	private final class EntrainementNeurone extends Entrainement
+	{
+		private final float[] matrice;
+		private final float[] resultats;
+		private final Optimiseur optimiseur;
+		// Gradient de chaque part, biais en dernière position
+		private final float[][] gradients;
+		private final float[] pas;
+
+		EntrainementNeurone(final float[] matrice, final float[] resultats, final ConfigApprentissage config)
 		{
-			mse = 0.;
-			for (int i = 0; i < entrees.length; ++i)
+			this.matrice = matrice;
+			this.resultats = resultats;
+			optimiseur = new Optimiseur(config, synapses.length+1);
+			gradients = new float[PartiesParLot][synapses.length+1];
+			pas = new float[synapses.length+1];
+		}
+
+		protected double gradientPartiel(final int partie, final int debut, final int fin)
+		{
+			final int dimension = synapses.length;
+			final float[] gradient = gradients[partie];
+			final ProduitScalaire produit = ProduitScalaire.courant();
+			Arrays.fill(gradient, 0.f);
+			double erreur = 0.;
+			for (int i = debut; i < fin; ++i)
 			{
-				final float[] entree = entrees[i];
-				metAJour(entree);
-				final float delta = resultats[i]-sortie();
-				mse += delta * delta;
-				for (int j = 0; j < entree.length; ++j)
-					synapses()[j] += entree[j]*eta*delta;
-				fixeBiais(biais()+eta*delta);
+				final int ligne = i*dimension;
+				final float delta = resultats[i]-activation(biais+produit.produit(matrice, ligne, synapses, 0, dimension));
+				erreur += delta*delta;
+				for (int j = 0; j < dimension; ++j)
+					gradient[j] += matrice[ligne+j]*delta;
+				gradient[dimension] += delta;
+			}
+			return erreur;
+		}
+
+		protected void appliqueGradients(final int nbParties, final float eta)
+		{
+			final int dimension = synapses.length;
+			System.arraycopy(gradients[0], 0, pas, 0, pas.length);
+			for (int p = 1; p < nbParties; ++p)
+				for (int j = 0; j <= dimension; ++j)
+					pas[j] += gradients[p][j];
+			optimiseur.pas(pas, eta);
+			for (int j = 0; j < dimension; ++j)
+				synapses[j] += pas[j];
+			biais += pas[dimension];
+		}
+
+		protected double apprentissagePartiel(final int partie, final int debut, final int fin, final float eta)
+		{
+			final int dimension = synapses.length;
+			final ProduitScalaire produit = ProduitScalaire.courant();
+			double erreur = 0.;
+			for (int i = debut; i < fin; ++i)
+			{
+				final int ligne = i*dimension;
+				final float delta = resultats[i]-activation(biais+produit.produit(matrice, ligne, synapses, 0, dimension));
+				erreur += delta*delta;
+				final float correction = eta*delta;
+				for (int j = 0; j < dimension; ++j)
+					synapses[j] += matrice[ligne+j]*correction;
+				biais += correction;
+			}
+			return erreur;
+		}
+	}
+
+	// Sauvegarde au format binaire (FichierModele), ou au format texte
+	// historique (une valeur par ligne) si le chemin se termine par ".txt"
+	public void sauvegarde(String chemin) throws IOException {
+		if (chemin.endsWith(ExtensionTexte)) {
+			try (BufferedWriter writer = new BufferedWriter(new FileWriter(chemin))) {
+				if (description != null) {
+					writer.write(MarqueDescription + " " + description + "\n");
+				}
+				for (float x : synapses) {
+					writer.write(String.valueOf(x) + "\n");
+				}
+				writer.write(String.valueOf(biais) + "\n");
 			}
-			mse /= entrees.length;
-			System.out.printf("Itération %d, mse:  %.6f\n", iter, mse);
-			iter += 1;
 		}
-		while (mse > MSElimite);
+		else {
+			final float[] parametres = Arrays.copyOf(synapses, synapses.length + 1);
+			parametres[synapses.length] = biais;
+			new FichierModele(FichierModele.GenreNeurone, synapses.length, new int[] {1},
+					new Activation[] {typeActivation()}, new float[][] {parametres}, description).ecrit(chemin);
+		}
+		System.out.println("Sauvegarde réussie dans le fichier: " + chemin);
 	}
 
+	// Chargement d'un fichier binaire ou texte ; un fichier qui ne correspond
+	// pas à ce neurone (type, nombre d'entrées) est refusé sans rien modifier
+	public void chargement(String chemin) throws IOException {
+		final float[] lus = new float[synapses.length];
+		final float biaisLu;
+		final String descriptionLue;
+		if (FichierModele.estBinaire(chemin)) {
+			final FichierModele modele = FichierModele.lit(chemin);
+			modele.verifie(chemin, FichierModele.GenreNeurone, synapses.length, new int[] {1},
+					new Activation[] {typeActivation()});
+			System.arraycopy(modele.parametres[0], 0, lus, 0, lus.length);
+			biaisLu = modele.parametres[0][lus.length];
+			descriptionLue = modele.description;
+		}
+		else {
+			try (BufferedReader br = new BufferedReader(new FileReader(chemin))) {
+				// Une éventuelle première ligne de description précède les poids
+				String ligne = br.readLine();
+				String entete = null;
+				if (ligne != null && ligne.startsWith(MarqueDescription)) {
+					entete = ligne.substring(MarqueDescription.length()).trim();
+					ligne = br.readLine();
+				}
+				// Une valeur par ligne pour chaque poids synaptique, puis le biais
+				for (int i = 0; i < lus.length; ++i) {
+					lus[i] = valeur(ligne, chemin);
+					ligne = br.readLine();
+				}
+				biaisLu = valeur(ligne, chemin);
+				if (br.readLine() != null) {
+					throw new IOException(chemin + " contient plus de " + (lus.length + 1) + " valeurs");
+				}
+				descriptionLue = entete;
+			}
+		}
+		System.arraycopy(lus, 0, synapses, 0, lus.length);
+		biais = biaisLu;
+		description = descriptionLue;
+		System.out.println("Chargement réussi depuis le fichier: " + chemin);
+	}
 
-	public void sauvegarde(String chemin) { // optionel
+	// Valeur d'une ligne du format texte
+	private static float valeur(String ligne, String chemin) throws IOException {
+		if (ligne == null) {
+			throw new IOException(chemin + " contient trop peu de valeurs");
+		}
 		try {
-			FileWriter writer = new FileWriter(chemin);
-			for (float x : synapses) {
-				writer.write(String.valueOf(x) + "\n");
-			}
-			writer.write(String.valueOf(biais) + "\n");
-			writer.close();
-			System.out.println("Sauvegarde réussie dans le fichier: " + chemin);
+			return Float.parseFloat(ligne);
 		}
-		catch (IOException e) {
-			System.out.println("Impossible de sauvegarder le neurone dans: " + chemin);
-			e.printStackTrace();
+		catch (NumberFormatException e) {
+			throw new IOException("Valeur illisible dans " + chemin + " : " + ligne, e);
 		}
 	}
 
-	public void chargement(String chemin) { // optionel
+	// Lit la description enregistrée en tête d'un fichier de neurone (binaire
+	// ou texte), sans charger les poids ; renvoie null si le fichier n'en contient pas
+	public static String lireDescription(String chemin) throws IOException {
+		if (FichierModele.estBinaire(chemin)) {
+			return FichierModele.lit(chemin).description;
+		}
 		try(BufferedReader br = new BufferedReader(new FileReader(chemin))) {
-			// On remplit chaque poids synaptique avec une valeur par ligne
-			for (int i = 0; i < synapses.length; ++i) {
-				synapses[i] = Float.valueOf(br.readLine());
+			String ligne = br.readLine();
+			if (ligne != null && ligne.startsWith(MarqueDescription)) {
+				return ligne.substring(MarqueDescription.length()).trim();
 			}
-			// La dernière valeur lue sert de biais
-			biais = Float.valueOf(br.readLine());
-			System.out.println("Chargement réussi depuis le fichier: " + chemin);
-		}
-		catch (Exception e) {
-			System.out.println("Impossible de charger le neurone depuis: " + chemin);
-			e.printStackTrace();
+			return null;
 		}
 	}
 }
\ No newline at end of file
@@ -12,7 +12,15 @@ public class NeuroneHeavyside extends Neurone
 	 * @return 1.0f si valeur >= 0, sinon 0.0f
 	 */
 	protected float activation(final float valeur) {
-		return valeur >= 0 ? 1.f : 0.f;
+		return Activation.HEAVYSIDE.valeur(valeur);
+	}
+
+	/**
+	 * Fonction d'activation Heavyside, pour l'instantané du neurone
+	 * @return Activation.HEAVYSIDE
+	 */
+	public Activation typeActivation() {
+		return Activation.HEAVYSIDE;
 	}
 
 	/**
@@ -22,4 +30,13 @@ public class NeuroneHeavyside extends Neurone
 	public NeuroneHeavyside(final int nbEntrees) {
 		super(nbEntrees);
 	}
+
+	/**
+	 * Constructeur : crée un neurone Heavyside aux poids initiaux reproductibles
+	 * @param nbEntrees nombre d'entrées du neurone
+	 * @param graine graine du tirage des poids initiaux
+	 */
+	public NeuroneHeavyside(final int nbEntrees, final long graine) {
+		super(nbEntrees, graine);
+	}
 }
\ No newline at end of file
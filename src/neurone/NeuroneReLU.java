@@ -6,25 +6,31 @@ package neurone;
  */
 public class NeuroneReLU extends Neurone
 {
-    // Coefficient de fuite pour les valeurs négatives (1% de l'entrée passe)
-    private static final float ALPHA = 0.01f;
-
     /**
-     * Fonction d'activation Leaky ReLU : valeur si positive, sinon ALPHA * valeur
+     * Fonction d'activation Leaky ReLU : valeur si positive, sinon Activation.Fuite * valeur
+     * (1% de l'entrée passe)
      * @param valeur somme pondérée des entrées
-     * @return valeur si >= 0, sinon ALPHA * valeur
+     * @return valeur si >= 0, sinon Activation.Fuite * valeur
      */
     protected float activation(final float valeur) {
-        return valeur >= 0 ? valeur : ALPHA * valeur;
+        return Activation.RELU.valeur(valeur);
     }
 
     /**
      * Dérivée de Leaky ReLU pour l'apprentissage par rétropropagation
      * @param valeur entrée de la fonction d'activation
-     * @return 1.0f si valeur > 0, sinon ALPHA
+     * @return 1.0f si valeur > 0, sinon Activation.Fuite
      */
     protected float deriveeActivation(final float valeur) {
-        return valeur > 0 ? 1.f : ALPHA;
+        return Activation.RELU.derivee(valeur, activation(valeur));
+    }
+
+    /**
+     * Fonction d'activation ReLU, pour l'instantané du neurone
+     * @return Activation.RELU
+     */
+    public Activation typeActivation() {
+        return Activation.RELU;
     }
 
     /**
@@ -34,4 +40,13 @@ public class NeuroneReLU extends Neurone
     public NeuroneReLU (final int nbEntrees) {
         super(nbEntrees);
     }
+
+    /**
+     * Constructeur : crée un neurone ReLU aux poids initiaux reproductibles
+     * @param nbEntrees nombre d'entrées du neurone
+     * @param graine graine du tirage des poids initiaux
+     */
+    public NeuroneReLU (final int nbEntrees, final long graine) {
+        super(nbEntrees, graine);
+    }
 }
\ No newline at end of file
@@ -13,7 +13,15 @@ public class NeuroneSigmoide extends Neurone
      * @return valeur entre 0.0f et 1.0f
      */
     protected float activation(final float valeur) {
-        return (float)(1.0 / (1.0 + Math.exp(-valeur)));
+        return Activation.SIGMOIDE.valeur(valeur);
+    }
+
+    /**
+     * Fonction d'activation Sigmoide, pour l'instantané du neurone
+     * @return Activation.SIGMOIDE
+     */
+    public Activation typeActivation() {
+        return Activation.SIGMOIDE;
     }
 
     /**
@@ -23,4 +31,13 @@ public class NeuroneSigmoide extends Neurone
     public NeuroneSigmoide(final int nbEntrees) {
         super(nbEntrees);
     }
+
+    /**
+     * Constructeur : crée un neurone Sigmoide aux poids initiaux reproductibles
+     * @param nbEntrees nombre d'entrées du neurone
+     * @param graine graine du tirage des poids initiaux
+     */
+    public NeuroneSigmoide(final int nbEntrees, final long graine) {
+        super(nbEntrees, graine);
+    }
 }
\ No newline at end of file
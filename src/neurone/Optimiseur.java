@@ -0,0 +1,61 @@
+package neurone;
+
+// *****************************************************************************
+// Transforme le gradient d'un exemple ou d'un lot (sens de la correction des
+// poids, biais en dernière position) en pas à ajouter aux poids, selon la
+// méthode choisie : descente simple, avec inertie, ou Adam. L'état de la
+// méthode (vitesse, moyennes des moments) tient dans des tableaux de float
+// alloués une fois pour tout l'apprentissage.
+
+final class Optimiseur
+{
+	private static final float EpsilonAdam = 1.e-8f;
+
+	private final ConfigApprentissage.Methode methode;
+	private final float beta1, beta2;
+	// Vitesse (INERTIE) ou moyenne du gradient (ADAM)
+	private final float[] moment1;
+	// Moyenne du carré du gradient (ADAM)
+	private final float[] moment2;
+	// Nombre de pas effectués, pour la correction du biais des moyennes d'Adam
+	private int nbPas = 0;
+
+	Optimiseur(final ConfigApprentissage config, final int nbParametres)
+	{
+		methode = config.methode();
+		beta1 = config.beta1();
+		beta2 = config.beta2();
+		moment1 = methode == ConfigApprentissage.Methode.SGD ? null : new float[nbParametres];
+		moment2 = methode == ConfigApprentissage.Methode.ADAM ? new float[nbParametres] : null;
+	}
+
+	// Remplace le gradient par le pas correspondant, pour le coefficient eta
+	void pas(final float[] gradient, final float eta)
+	{
+		++nbPas;
+		switch (methode)
+		{
+			case INERTIE:
+				for (int j = 0; j < gradient.length; ++j)
+				{
+					moment1[j] = beta1*moment1[j]+gradient[j];
+					gradient[j] = eta*moment1[j];
+				}
+				break;
+			case ADAM:
+				final float correction1 = (float)(1.-Math.pow(beta1, nbPas));
+				final float correction2 = (float)(1.-Math.pow(beta2, nbPas));
+				for (int j = 0; j < gradient.length; ++j)
+				{
+					final float g = gradient[j];
+					moment1[j] = beta1*moment1[j]+(1.f-beta1)*g;
+					moment2[j] = beta2*moment2[j]+(1.f-beta2)*g*g;
+					gradient[j] = eta*(moment1[j]/correction1)/((float)Math.sqrt(moment2[j]/correction2)+EpsilonAdam);
+				}
+				break;
+			default:
+				for (int j = 0; j < gradient.length; ++j)
+					gradient[j] *= eta;
+		}
+	}
+}
@@ -0,0 +1,86 @@
+package neurone;
+
+// *****************************************************************************
+// Produits scalaires entre les entrées et les poids d'un neurone : le calcul
+// de sa sortie (metAJour), exécuté une fois par bloc et par itération
+// d'apprentissage, puis une fois par bloc à l'analyse.
+// Plusieurs accumulateurs indépendants sont employés : une somme unique
+// attendrait à chaque terme le résultat de l'addition précédente, alors que
+// plusieurs sommes entrelacées occupent toutes les unités de calcul. L'ordre
+// des additions diffère donc de la boucle naïve ; l'écart reste de l'ordre de
+// l'arrondi du float.
+// Lorsque le module jdk.incubator.vector est disponible, les produits sont
+// vectorisés (instructions SIMD, multiplication-addition fusionnée) ; sinon
+// une version scalaire déroulée prend le relais.
+// Les produits entiers (int8 x int8, sommes sur int) servent aux modèles
+// quantifiés (ModeleQuantifie) : tant que n reste sous 133 000, la somme
+// de n produits de valeurs entre -127 et 127 ne peut pas déborder.
+// Les instances sont sans état et peuvent être partagées entre threads.
+
+public abstract class ProduitScalaire
+{
+	private static final ProduitScalaire Courant = cree();
+
+	// Version employée par les neurones
+	public static ProduitScalaire courant() {return Courant;}
+
+	// Renvoie la version vectorielle si la plateforme le permet, scalaire sinon
+	public static ProduitScalaire cree()
+	{
+		if (vectorielDisponible())
+		{
+			try
+			{
+				return new ProduitScalaireVectoriel();
+			}
+			catch (LinkageError e)
+			{
+				// Module présent mais inutilisable : on se rabat sur le scalaire
+			}
+		}
+		return scalaire();
+	}
+
+	public static ProduitScalaire scalaire() {return new ProduitScalaireScalaire();}
+
+	// Vrai si l'API Vector (module incubateur) a été ajoutée au lancement
+	static boolean vectorielDisponible()
+	{
+		return ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+	}
+
+	// Somme des a[debutA+i]*b[debutB+i] pour i de 0 à n-1
+	public abstract float produit(final float[] a, final int debutA, final float[] b, final int debutB, final int n);
+
+	public float produit(final float[] a, final float[] b, final int n)
+	{
+		return produit(a, 0, b, 0, n);
+	}
+
+	// Produits des nbLignes lignes de "matrice" (ligne l en [l*dimension..])
+	// par les poids, plus le biais, écrits dans dest[0..nbLignes[ ; chaque
+	// groupe de lignes est traité en un seul passage sur les poids
+	public void produits(final float[] matrice, final int nbLignes, final int dimension,
+			final float[] poids, final float biais, final float[] dest)
+	{
+		produits(matrice, 0, nbLignes, dimension, poids, 0, biais, dest, 0);
+	}
+
+	// Comme ci-dessus, la matrice commençant en debutMatrice, les poids en
+	// debutPoids et les résultats en debutDest
+	public abstract void produits(final float[] matrice, final int debutMatrice, final int nbLignes, final int dimension,
+			final float[] poids, final int debutPoids, final float biais, final float[] dest, final int debutDest);
+
+	// Somme exacte des a[i]*b[i] pour i de 0 à n-1, valeurs entre -127 et 127
+	// (celles de quantifie)
+	public abstract int produit(final byte[] a, final byte[] b, final int n);
+
+	// Quantification symétrique de source[debut..debut+n[ dans dest[0..n[ :
+	// dest[i] = arrondi(source[debut+i]/echelle), entre -127 et 127, où
+	// echelle = max|source|/127 est renvoyée (0 si les valeurs sont toutes nulles)
+	public abstract float quantifie(final float[] source, final int debut, final int n, final byte[] dest);
+
+	// Arrondi commun aux deux versions : décalé pour rester positif, puis tronqué
+	static final float Decalage = 128.5f;
+	static byte arrondi(final float x) {return (byte)((int)(x+Decalage)-128);}
+}
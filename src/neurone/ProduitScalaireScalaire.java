@@ -0,0 +1,62 @@
+package neurone;
+
+import java.util.Arrays;
+
+// Repli scalaire de ProduitScalaire : quatre sommes entrelacées
+final class ProduitScalaireScalaire extends ProduitScalaire
+{
+	public float produit(final float[] a, final int debutA, final float[] b, final int debutB, final int n)
+	{
+		float s0 = 0.f, s1 = 0.f, s2 = 0.f, s3 = 0.f;
+		int i = 0;
+		for (; i+4 <= n; i += 4)
+		{
+			s0 += a[debutA+i]*b[debutB+i];
+			s1 += a[debutA+i+1]*b[debutB+i+1];
+			s2 += a[debutA+i+2]*b[debutB+i+2];
+			s3 += a[debutA+i+3]*b[debutB+i+3];
+		}
+		for (; i < n; ++i)
+			s0 += a[debutA+i]*b[debutB+i];
+		return (s0+s1)+(s2+s3);
+	}
+
+	public void produits(final float[] matrice, final int debutMatrice, final int nbLignes, final int dimension,
+			final float[] poids, final int debutPoids, final float biais, final float[] dest, final int debutDest)
+	{
+		for (int l = 0; l < nbLignes; ++l)
+			dest[debutDest+l] = biais+produit(matrice, debutMatrice+l*dimension, poids, debutPoids, dimension);
+	}
+
+	public int produit(final byte[] a, final byte[] b, final int n)
+	{
+		int s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+		int i = 0;
+		for (; i+4 <= n; i += 4)
+		{
+			s0 += a[i]*b[i];
+			s1 += a[i+1]*b[i+1];
+			s2 += a[i+2]*b[i+2];
+			s3 += a[i+3]*b[i+3];
+		}
+		for (; i < n; ++i)
+			s0 += a[i]*b[i];
+		return s0+s1+s2+s3;
+	}
+
+	public float quantifie(final float[] source, final int debut, final int n, final byte[] dest)
+	{
+		float max = 0.f;
+		for (int i = 0; i < n; ++i)
+			max = Math.max(max, Math.abs(source[debut+i]));
+		if (max == 0.f)
+		{
+			Arrays.fill(dest, 0, n, (byte)0);
+			return 0.f;
+		}
+		final float inverse = 127.f/max;
+		for (int i = 0; i < n; ++i)
+			dest[i] = arrondi(source[debut+i]*inverse);
+		return max/127.f;
+	}
+}
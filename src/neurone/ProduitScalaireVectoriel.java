@@ -0,0 +1,143 @@
+package neurone;
+
+import java.util.Arrays;
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.ShortVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+// *****************************************************************************
+// ProduitScalaire vectorisé avec l'API Vector : quatre accumulateurs
+// vectoriels pour un produit seul ; pour un lot, quatre lignes à la fois,
+// chaque vecteur de poids chargé une seule fois servant aux quatre lignes.
+// Les produits entiers chargent un vecteur d'octets de pleine largeur, dont
+// chaque moitié est convertie en short : un produit de deux int8 tient dans
+// un short, et la somme de deux produits aussi (2*127*127 < 32767). Chaque
+// paire de short voisins est ensuite ajoutée aux sommes int par décalages,
+// sans autre conversion.
+
+final class ProduitScalaireVectoriel extends ProduitScalaire
+{
+	private static final VectorSpecies<Float> Espece = FloatVector.SPECIES_PREFERRED;
+	private static final int Largeur = Espece.length();
+	private static final VectorSpecies<Integer> EspeceEntiers = IntVector.SPECIES_PREFERRED;
+	// Octets d'autant de voies qu'un vecteur d'int (quantification)
+	private static final VectorSpecies<Byte> EspeceOctets =
+			VectorSpecies.of(byte.class, VectorShape.forBitSize(EspeceEntiers.length()*Byte.SIZE));
+	// Octets et short de pleine largeur (produits entiers)
+	private static final VectorSpecies<Byte> EspeceOctetsLarges = ByteVector.SPECIES_PREFERRED;
+	private static final int LargeurOctets = EspeceOctetsLarges.length();
+	private static final VectorSpecies<Short> EspeceCourts = ShortVector.SPECIES_PREFERRED;
+
+	public float produit(final float[] a, final int debutA, final float[] b, final int debutB, final int n)
+	{
+		FloatVector s0 = FloatVector.zero(Espece), s1 = s0, s2 = s0, s3 = s0;
+		int i = 0;
+		for (; i+4*Largeur <= n; i += 4*Largeur)
+		{
+			s0 = FloatVector.fromArray(Espece, a, debutA+i).fma(FloatVector.fromArray(Espece, b, debutB+i), s0);
+			s1 = FloatVector.fromArray(Espece, a, debutA+i+Largeur)
+					.fma(FloatVector.fromArray(Espece, b, debutB+i+Largeur), s1);
+			s2 = FloatVector.fromArray(Espece, a, debutA+i+2*Largeur)
+					.fma(FloatVector.fromArray(Espece, b, debutB+i+2*Largeur), s2);
+			s3 = FloatVector.fromArray(Espece, a, debutA+i+3*Largeur)
+					.fma(FloatVector.fromArray(Espece, b, debutB+i+3*Largeur), s3);
+		}
+		for (; i+Largeur <= n; i += Largeur)
+			s0 = FloatVector.fromArray(Espece, a, debutA+i).fma(FloatVector.fromArray(Espece, b, debutB+i), s0);
+		float somme = s0.add(s1).add(s2.add(s3)).reduceLanes(VectorOperators.ADD);
+		for (; i < n; ++i)
+			somme += a[debutA+i]*b[debutB+i];
+		return somme;
+	}
+
+	public void produits(final float[] matrice, final int debutMatrice, final int nbLignes, final int dimension,
+			final float[] poids, final int debutPoids, final float biais, final float[] dest, final int debutDest)
+	{
+		int l = 0;
+		for (; l+4 <= nbLignes; l += 4)
+		{
+			final int d0 = debutMatrice+l*dimension, d1 = d0+dimension, d2 = d1+dimension, d3 = d2+dimension;
+			FloatVector s0 = FloatVector.zero(Espece), s1 = s0, s2 = s0, s3 = s0;
+			int i = 0;
+			for (; i+Largeur <= dimension; i += Largeur)
+			{
+				final FloatVector w = FloatVector.fromArray(Espece, poids, debutPoids+i);
+				s0 = FloatVector.fromArray(Espece, matrice, d0+i).fma(w, s0);
+				s1 = FloatVector.fromArray(Espece, matrice, d1+i).fma(w, s1);
+				s2 = FloatVector.fromArray(Espece, matrice, d2+i).fma(w, s2);
+				s3 = FloatVector.fromArray(Espece, matrice, d3+i).fma(w, s3);
+			}
+			float r0 = s0.reduceLanes(VectorOperators.ADD), r1 = s1.reduceLanes(VectorOperators.ADD);
+			float r2 = s2.reduceLanes(VectorOperators.ADD), r3 = s3.reduceLanes(VectorOperators.ADD);
+			for (; i < dimension; ++i)
+			{
+				r0 += matrice[d0+i]*poids[debutPoids+i];
+				r1 += matrice[d1+i]*poids[debutPoids+i];
+				r2 += matrice[d2+i]*poids[debutPoids+i];
+				r3 += matrice[d3+i]*poids[debutPoids+i];
+			}
+			dest[debutDest+l] = biais+r0;
+			dest[debutDest+l+1] = biais+r1;
+			dest[debutDest+l+2] = biais+r2;
+			dest[debutDest+l+3] = biais+r3;
+		}
+		// Lignes restantes, une à une
+		for (; l < nbLignes; ++l)
+			dest[debutDest+l] = biais+produit(matrice, debutMatrice+l*dimension, poids, debutPoids, dimension);
+	}
+
+	public int produit(final byte[] a, final byte[] b, final int n)
+	{
+		// s0 : produits des voies paires, s1 : des voies impaires
+		IntVector s0 = IntVector.zero(EspeceEntiers), s1 = s0;
+		int i = 0;
+		for (; i+LargeurOctets <= n; i += LargeurOctets)
+		{
+			final ByteVector va = ByteVector.fromArray(EspeceOctetsLarges, a, i);
+			final ByteVector vb = ByteVector.fromArray(EspeceOctetsLarges, b, i);
+			final IntVector paires = courts(va, 0).mul(courts(vb, 0)).add(courts(va, 1).mul(courts(vb, 1)))
+					.reinterpretAsInts();
+			s0 = s0.add(paires.lanewise(VectorOperators.LSHL, 16).lanewise(VectorOperators.ASHR, 16));
+			s1 = s1.add(paires.lanewise(VectorOperators.ASHR, 16));
+		}
+		int somme = s0.add(s1).reduceLanes(VectorOperators.ADD);
+		for (; i < n; ++i)
+			somme += a[i]*b[i];
+		return somme;
+	}
+
+	// Moitié "partie" (0 ou 1) des octets, convertie en short
+	private static ShortVector courts(final ByteVector octets, final int partie)
+	{
+		return (ShortVector)octets.convertShape(VectorOperators.B2S, EspeceCourts, partie);
+	}
+
+	public float quantifie(final float[] source, final int debut, final int n, final byte[] dest)
+	{
+		FloatVector maxima = FloatVector.zero(Espece);
+		int i = 0;
+		for (; i+Largeur <= n; i += Largeur)
+			maxima = maxima.max(FloatVector.fromArray(Espece, source, debut+i).abs());
+		float max = maxima.reduceLanes(VectorOperators.MAX);
+		for (; i < n; ++i)
+			max = Math.max(max, Math.abs(source[debut+i]));
+		if (max == 0.f)
+		{
+			Arrays.fill(dest, 0, n, (byte)0);
+			return 0.f;
+		}
+		final float inverse = 127.f/max;
+		i = 0;
+		for (; i+Largeur <= n; i += Largeur)
+			FloatVector.fromArray(Espece, source, debut+i).mul(inverse).add(Decalage)
+					.convertShape(VectorOperators.F2I, EspeceEntiers, 0).reinterpretAsInts().sub(128)
+					.convertShape(VectorOperators.I2B, EspeceOctets, 0).reinterpretAsBytes().intoArray(dest, i);
+		for (; i < n; ++i)
+			dest[i] = arrondi(source[debut+i]*inverse);
+		return max/127.f;
+	}
+}
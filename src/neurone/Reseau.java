@@ -0,0 +1,378 @@
+package neurone;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+// *****************************************************************************
+// Perceptron multicouche : une suite de couches entièrement connectées
+// (Couche), chacune avec sa fonction d'activation, entraînée par
+// rétropropagation du gradient. Une couche cachée de quelques neurones
+// sépare des classes qu'un neurone seul, limité à une frontière linéaire,
+// ne peut pas séparer (OU exclusif, classes en plusieurs amas).
+// Le réseau s'emploie comme un neurone (iNeurone) : sortie() est la sortie
+// du premier neurone de la dernière couche. L'apprentissage suit la même
+// règle que le neurone seul pour la couche de sortie (correction
+// proportionnelle à l'écart à la sortie attendue), puis propage les
+// corrections vers les couches cachées en les multipliant par la dérivée
+// de leur activation. Il partage la boucle d'apprentissage du neurone
+// (Entrainement) : mêmes critères d'arrêt, optimiseurs et mini-lots.
+// Pour classer parmi K classes, la couche de sortie est une couche SOFTMAX
+// de K neurones, entraînée sur des résultats attendus "un parmi K" (1 pour
+// la classe de l'exemple, 0 pour les autres) : l'écart à la sortie attendue
+// est alors exactement le gradient de l'entropie croisée.
+// Tous les tampons de calcul sont alloués une fois : aucune allocation par
+// exemple, ni à l'apprentissage ni à l'analyse.
+
+public class Reseau implements iNeurone
+{
+	// Exemples propagés ensemble par metAJourLot
+	private static final int LignesParPaquet = 64;
+	// Marque des lignes de description et d'architecture du fichier de sauvegarde
+	private static final String MarqueDescription = "#";
+	private static final String MarqueArchitecture = "reseau";
+
+	private final Couche[] couches;
+	// Tampons de metAJour
+	private final Passe passe;
+	private float etatInterne = Float.NaN;
+	private String description = null;
+
+	// Réseau de nbEntrees entrées et de couches de nbNeurones[c] neurones
+	// d'activation activations[c], la dernière étant la couche de sortie
+	public Reseau(final int nbEntrees, final int[] nbNeurones, final Activation[] activations)
+	{
+		this(nbEntrees, nbNeurones, activations, new SplittableRandom());
+	}
+
+	// Comme ci-dessus, aux poids initiaux reproductibles
+	public Reseau(final int nbEntrees, final int[] nbNeurones, final Activation[] activations, final long graine)
+	{
+		this(nbEntrees, nbNeurones, activations, new SplittableRandom(graine));
+	}
+
+	private Reseau(final int nbEntrees, final int[] nbNeurones, final Activation[] activations,
+			final SplittableRandom aleatoire)
+	{
+		if (nbNeurones.length == 0 || nbNeurones.length != activations.length)
+			throw new IllegalArgumentException("Architecture invalide : "+nbNeurones.length+" couches, "
+					+activations.length+" activations");
+		for (int c = 0; c < activations.length-1; ++c)
+			if (activations[c] == Activation.SOFTMAX)
+				throw new IllegalArgumentException("Softmax réservée à la couche de sortie");
+		couches = new Couche[nbNeurones.length];
+		for (int c = 0; c < couches.length; ++c)
+			couches[c] = new Couche(c == 0 ? nbEntrees : nbNeurones[c-1], nbNeurones[c], activations[c], aleatoire);
+		passe = new Passe(false);
+	}
+
+	public int nbCouches() {return couches.length;}
+	public Couche couche(final int c) {return couches[c];}
+	public int nbEntrees() {return couches[0].nbEntrees();}
+	public int nbSorties() {return couches[couches.length-1].nbSorties();}
+
+	public String description() {return description;}
+	public void fixeDescription(final String nouvelleDescription) {description = nouvelleDescription;}
+
+	// Instantané des poids actuels, pour l'analyse
+	public Modele modele() {return new ModeleReseau(couches, description);}
+
+	public void metAJour(final float[] entrees)
+	{
+		passe.propage(entrees, 0);
+		etatInterne = sorties()[0];
+	}
+
+	// Sorties de la dernière couche pour le dernier appel à metAJour (tableau réutilisé)
+	public float[] sorties() {return passe.sorties[couches.length-1];}
+
+	public float sortie() {return etatInterne;}
+
+	// Sorties de nbLignes exemples rangés ligne par ligne dans "matrice",
+	// écrites ligne par ligne dans "sorties" (nbSorties() valeurs par
+	// exemple) ; les exemples passent par paquets, couche après couche
+	public void metAJourLot(final float[] matrice, final int nbLignes, final float[] sorties)
+	{
+		final int paquet = Math.min(nbLignes, LignesParPaquet);
+		final float[][] sommesPaquet = new float[couches.length][];
+		final float[][] sortiesPaquet = new float[couches.length][];
+		for (int c = 0; c < couches.length; ++c)
+		{
+			sommesPaquet[c] = new float[paquet*couches[c].nbSorties()];
+			sortiesPaquet[c] = new float[paquet*couches[c].nbSorties()];
+		}
+		for (int debut = 0; debut < nbLignes; debut += paquet)
+		{
+			final int n = Math.min(paquet, nbLignes-debut);
+			for (int c = 0; c < couches.length; ++c)
+				couches[c].propage(c == 0 ? matrice : sortiesPaquet[c-1], c == 0 ? debut*nbEntrees() : 0, n,
+						sommesPaquet[c], sortiesPaquet[c]);
+			System.arraycopy(sortiesPaquet[couches.length-1], 0, sorties, debut*nbSorties(), n*nbSorties());
+		}
+	}
+
+	// Apprentissage relatif à la mse, dans les limites par défaut de ConfigApprentissage
+	public void apprentissage(final float[][] entrees, final float[] resultats, final float MSElimite)
+	{
+		final float[] matrice = new float[entrees.length*nbEntrees()];
+		for (int i = 0; i < entrees.length; ++i)
+			System.arraycopy(entrees[i], 0, matrice, i*nbEntrees(), nbEntrees());
+		apprentissage(matrice, resultats, ConfigApprentissage.parDefaut().avecMseLimite(MSElimite));
+	}
+
+	// Apprentissage sur les exemples rangés ligne par ligne dans "matrice",
+	// avec nbSorties() résultats attendus par exemple, rangés de même dans
+	// "resultats" ; renvoie la raison de l'arrêt
+	public ConfigApprentissage.Arret apprentissage(final float[] matrice, final float[] resultats,
+			final ConfigApprentissage config)
+	{
+		final int nbExemples = resultats.length/nbSorties();
+		if (resultats.length != nbExemples*nbSorties() || matrice.length != nbExemples*nbEntrees())
+			throw new IllegalArgumentException("Matrice de "+matrice.length+" valeurs et "+resultats.length
+					+" résultats pour un réseau de "+nbEntrees()+" entrées et "+nbSorties()+" sorties");
+		return new EntrainementReseau(matrice, resultats, config).lance(nbExemples, config);
+	}
+
+	// Tampons d'un exemple : sommes pondérées, sorties et corrections de
+	// chaque couche, et éventuellement gradients de ses paramètres
+	private final class Passe
+	{
+		final float[][] sommes;
+		final float[][] sorties;
+		final float[][] deltas;
+		final float[][] gradients;
+
+		Passe(final boolean avecGradients)
+		{
+			sommes = new float[couches.length][];
+			sorties = new float[couches.length][];
+			deltas = new float[couches.length][];
+			gradients = avecGradients ? new float[couches.length][] : null;
+			for (int c = 0; c < couches.length; ++c)
+			{
+				sommes[c] = new float[couches[c].nbSorties()];
+				sorties[c] = new float[couches[c].nbSorties()];
+				deltas[c] = new float[couches[c].nbSorties()];
+				if (avecGradients)
+					gradients[c] = new float[couches[c].parametres().length];
+			}
+		}
+
+		void propage(final float[] entrees, final int debut)
+		{
+			for (int c = 0; c < couches.length; ++c)
+				couches[c].propage(c == 0 ? entrees : sorties[c-1], c == 0 ? debut : 0, 1, sommes[c], sorties[c]);
+		}
+
+		void videGradients()
+		{
+			for (final float[] gradient : gradients)
+				Arrays.fill(gradient, 0.f);
+		}
+
+		// Propage un exemple puis ajoute son gradient à "gradients" ; renvoie
+		// la somme des erreurs au carré de ses sorties
+		double retropropage(final float[] entrees, final int debut, final float[] attendus, final int debutAttendus)
+		{
+			propage(entrees, debut);
+			final int derniere = couches.length-1;
+			double erreur = 0.;
+			for (int k = 0; k < sorties[derniere].length; ++k)
+			{
+				final float delta = attendus[debutAttendus+k]-sorties[derniere][k];
+				erreur += delta*delta;
+				deltas[derniere][k] = delta;
+			}
+			for (int c = derniere; c >= 0; --c)
+			{
+				couches[c].retropropage(c == 0 ? entrees : sorties[c-1], c == 0 ? debut : 0, deltas[c], gradients[c],
+						c > 0 ? deltas[c-1] : null);
+				if (c > 0)
+				{
+					final Activation activation = couches[c-1].activation();
+					for (int i = 0; i < deltas[c-1].length; ++i)
+						deltas[c-1][i] *= activation.derivee(sommes[c-1][i], sorties[c-1][i]);
+				}
+			}
+			return erreur;
+		}
+	}
+
+	private final class EntrainementReseau extends Entrainement
+	{
+		private final float[] matrice;
+		private final float[] resultats;
+		// Tampons de chaque part
+		private final Passe[] passes;
+		// Optimiseur et pas de chaque couche
+		private final Optimiseur[] optimiseurs;
+		private final float[][] pas;
+
+		EntrainementReseau(final float[] matrice, final float[] resultats, final ConfigApprentissage config)
+		{
+			this.matrice = matrice;
+			this.resultats = resultats;
+			passes = new Passe[PartiesParLot];
+			for (int p = 0; p < passes.length; ++p)
+				passes[p] = new Passe(true);
+			optimiseurs = new Optimiseur[couches.length];
+			pas = new float[couches.length][];
+			for (int c = 0; c < couches.length; ++c)
+			{
+				optimiseurs[c] = new Optimiseur(config, couches[c].parametres().length);
+				pas[c] = new float[couches[c].parametres().length];
+			}
+		}
+
+		protected double gradientPartiel(final int partie, final int debut, final int fin)
+		{
+			final Passe passe = passes[partie];
+			passe.videGradients();
+			double erreur = 0.;
+			for (int i = debut; i < fin; ++i)
+				erreur += passe.retropropage(matrice, i*nbEntrees(), resultats, i*nbSorties());
+			return erreur;
+		}
+
+		protected void appliqueGradients(final int nbParties, final float eta)
+		{
+			for (int c = 0; c < couches.length; ++c)
+			{
+				final float[] pasCouche = pas[c];
+				System.arraycopy(passes[0].gradients[c], 0, pasCouche, 0, pasCouche.length);
+				for (int p = 1; p < nbParties; ++p)
+				{
+					final float[] gradient = passes[p].gradients[c];
+					for (int j = 0; j < pasCouche.length; ++j)
+						pasCouche[j] += gradient[j];
+				}
+				optimiseurs[c].pas(pasCouche, eta);
+				final float[] parametres = couches[c].parametres();
+				for (int j = 0; j < pasCouche.length; ++j)
+					parametres[j] += pasCouche[j];
+			}
+		}
+
+		protected double apprentissagePartiel(final int partie, final int debut, final int fin, final float eta)
+		{
+			final Passe passe = passes[partie];
+			double erreur = 0.;
+			for (int i = debut; i < fin; ++i)
+			{
+				passe.videGradients();
+				erreur += passe.retropropage(matrice, i*nbEntrees(), resultats, i*nbSorties());
+				for (int c = 0; c < couches.length; ++c)
+				{
+					final float[] gradient = passe.gradients[c];
+					final float[] parametres = couches[c].parametres();
+					for (int j = 0; j < gradient.length; ++j)
+						parametres[j] += eta*gradient[j];
+				}
+			}
+			return erreur;
+		}
+	}
+
+	// Architecture écrite dans le fichier de sauvegarde, par exemple
+	// "reseau 512 16:RELU 1:SIGMOIDE"
+	private String architecture()
+	{
+		final StringBuilder texte = new StringBuilder(MarqueArchitecture).append(' ').append(nbEntrees());
+		for (final Couche couche : couches)
+			texte.append(' ').append(couche.nbSorties()).append(':').append(couche.activation().name());
+		return texte.toString();
+	}
+
+	// Sauvegarde au format binaire (FichierModele), ou au format texte (même
+	// présentation que le neurone seul, architecture écrite avant les
+	// paramètres) si le chemin se termine par ".txt"
+	public void sauvegarde(final String chemin) throws IOException
+	{
+		if (chemin.endsWith(Neurone.ExtensionTexte))
+			try (BufferedWriter writer = new BufferedWriter(new FileWriter(chemin)))
+			{
+				if (description != null)
+					writer.write(MarqueDescription+" "+description+"\n");
+				writer.write(architecture()+"\n");
+				for (final Couche couche : couches)
+					for (final float x : couche.parametres())
+						writer.write(x+"\n");
+			}
+		else
+		{
+			final float[][] parametres = new float[couches.length][];
+			for (int c = 0; c < couches.length; ++c)
+				parametres[c] = couches[c].parametres();
+			new FichierModele(FichierModele.GenreReseau, nbEntrees(), nbNeurones(), activations(), parametres, description)
+					.ecrit(chemin);
+		}
+		System.out.println("Sauvegarde réussie dans le fichier: "+chemin);
+	}
+
+	// Recharge les paramètres d'un réseau de même architecture (fichier
+	// binaire ou texte) ; un fichier qui ne correspond pas est refusé sans
+	// rien modifier
+	public void chargement(final String chemin) throws IOException
+	{
+		final float[][] lus = new float[couches.length][];
+		String descriptionLue = null;
+		if (FichierModele.estBinaire(chemin))
+		{
+			final FichierModele modele = FichierModele.lit(chemin);
+			modele.verifie(chemin, FichierModele.GenreReseau, nbEntrees(), nbNeurones(), activations());
+			System.arraycopy(modele.parametres, 0, lus, 0, lus.length);
+			descriptionLue = modele.description;
+		}
+		else
+			try (BufferedReader br = new BufferedReader(new FileReader(chemin)))
+			{
+				String ligne = br.readLine();
+				if (ligne != null && ligne.startsWith(MarqueDescription))
+				{
+					descriptionLue = ligne.substring(MarqueDescription.length()).trim();
+					ligne = br.readLine();
+				}
+				if (ligne == null || !ligne.trim().equals(architecture()))
+					throw new IOException("architecture "+ligne+" différente de "+architecture()+" dans "+chemin);
+				for (int c = 0; c < couches.length; ++c)
+				{
+					lus[c] = new float[couches[c].parametres().length];
+					for (int j = 0; j < lus[c].length; ++j)
+					{
+						ligne = br.readLine();
+						if (ligne == null)
+							throw new IOException("fichier "+chemin+" incomplet");
+						lus[c][j] = Float.parseFloat(ligne);
+					}
+				}
+			}
+			catch (NumberFormatException e)
+			{
+				throw new IOException("valeur illisible dans "+chemin+" : "+e.getMessage(), e);
+			}
+		for (int c = 0; c < couches.length; ++c)
+			System.arraycopy(lus[c], 0, couches[c].parametres(), 0, lus[c].length);
+		description = descriptionLue;
+		System.out.println("Chargement réussi depuis le fichier: "+chemin);
+	}
+
+	private int[] nbNeurones()
+	{
+		final int[] nbNeurones = new int[couches.length];
+		for (int c = 0; c < couches.length; ++c)
+			nbNeurones[c] = couches[c].nbSorties();
+		return nbNeurones;
+	}
+
+	private Activation[] activations()
+	{
+		final Activation[] activations = new Activation[couches.length];
+		for (int c = 0; c < couches.length; ++c)
+			activations[c] = couches[c].activation();
+		return activations;
+	}
+}
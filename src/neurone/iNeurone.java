@@ -7,13 +7,30 @@ public interface iNeurone
 	// Calcule la valeur de sortie en fonction des entrées, des poids synaptiques,
 	// du biais et de la fonction d'activation
 	public void metAJour(final float[] entrees);
+
+	// Sorties de nbLignes exemples rangés ligne par ligne dans une matrice
+	public void metAJourLot(final float[] matrice, final int nbLignes, final float[] sorties);
 	
 	// Accesseur pour la valeur de sortie/d'activation du neurone
 	public float sortie();
 
+	// Instantané immuable des poids actuels, évaluable depuis plusieurs
+	// threads à la fois (metAJour et sortie n'en sont pas capables)
+	public Modele modele();
+
 	// Fonction d'apprentissage relative à la mse
 	public void apprentissage(final float[][] entrees, final float[] resultats, final float MSElimite);
 
+	// Apprentissage sur des exemples rangés ligne par ligne dans une matrice,
+	// selon la configuration (critères d'arrêt, optimiseur, mini-lots)
+	public ConfigApprentissage.Arret apprentissage(final float[] matrice, final float[] resultats,
+			final ConfigApprentissage config);
+
+	// Description des entrées attendues (réglages d'extraction des
+	// caractéristiques), enregistrée avec le neurone ; null si inconnue
+	public String description();
+	public void fixeDescription(String description);
+
 	public void sauvegarde(String chemin) throws IOException; // optionel
 	public void chargement(String chemin) throws IOException; // optionel
 }
@@ -1,5 +1,9 @@
 package neurone;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
 import java.util.Random;
 
 public class testNeurone
@@ -55,6 +59,356 @@ public class testNeurone
 			// On affiche cette sortie
 			System.out.println("Entree " + i + " : " + n.sortie());
 		}
+
+		boolean succes = verifieLots();
+		succes &= verifieArrets();
+		succes &= verifieReseau();
+		succes &= verifieModeles();
+		succes &= verifieFichiers();
+		succes &= verifieSoftmax();
+		if (!succes)
+			System.exit(1);
+	}
+
+	// Apprentissage par mini-lots sur un problème linéairement séparable :
+	// même graine, mêmes poids, quel que soit le nombre de threads ; le mode
+	// hogwild doit lui aussi converger
+	static boolean verifieLots()
+	{
+		final int dimension = 8, nbExemples = 300;
+		final Random rand = new Random(3);
+		final float[] matrice = new float[nbExemples*dimension];
+		final float[] resultats = new float[nbExemples];
+		for (int i = 0; i < nbExemples; ++i)
+		{
+			float somme;
+			do
+			{
+				somme = .3f;
+				for (int j = 0; j < dimension; ++j)
+				{
+					matrice[i*dimension+j] = rand.nextFloat()*2.f-1.f;
+					somme += matrice[i*dimension+j]*(j-3.5f);
+				}
+			}
+			while (Math.abs(somme) < .5f);	// Marge entre les deux classes
+			resultats[i] = somme > 0 ? 1.f : 0.f;
+		}
+
+		System.out.println("Apprentissage par mini-lots…");
+		final ConfigApprentissage config = ConfigApprentissage.parDefaut().avecMseLimite(0.f).avecEta(.01f)
+				.avecNbEpoquesMax(100000).avecPatience(0, 0.f);
+		final Neurone[] neurones = new Neurone[4];
+		final int[] nbThreads = {1, 4, 4, 4};
+		boolean succes = true;
+		for (int k = 0; k < neurones.length; ++k)
+		{
+			neurones[k] = new NeuroneHeavyside(dimension, 42);
+			final ConfigApprentissage.Arret arret = neurones[k].apprentissage(matrice, resultats, k == 3
+					? config.avecMethode(ConfigApprentissage.Methode.ADAM).avecLots(32, nbThreads[k], false)
+					: config.avecLots(32, nbThreads[k], k == 2));
+			succes &= arret == ConfigApprentissage.Arret.MSE_ATTEINTE;
+		}
+		succes &= verifie("mêmes poids initiaux pour une même graine",
+				new NeuroneHeavyside(dimension, 42).biais() == new NeuroneHeavyside(dimension, 42).biais());
+		succes &= verifie("mini-lots indépendants du nombre de threads",
+				Arrays.equals(neurones[0].synapses(), neurones[1].synapses())
+				&& neurones[0].biais() == neurones[1].biais());
+		for (int k = 0; k < neurones.length; ++k)
+		{
+			final float[] sorties = new float[nbExemples];
+			neurones[k].metAJourLot(matrice, nbExemples, sorties);
+			succes &= verifie((k == 3 ? "Adam" : k == 2 ? "hogwild" : "mini-lots, "+nbThreads[k]+" thread(s)")
+					+" : exemples tous appris", Arrays.equals(sorties, resultats));
+		}
+		return succes;
+	}
+
+	// Sur la fonction OU exclusif, que le neurone ne peut pas apprendre,
+	// l'apprentissage doit s'arrêter sur chacun des autres critères
+	static boolean verifieArrets()
+	{
+		final float[] matrice = {0, 0, 0, 1, 1, 0, 1, 1};
+		final float[] resultats = {0, 1, 1, 0};
+		final int[] nbEpoques = new int[1];
+		final ConfigApprentissage config = ConfigApprentissage.parDefaut().avecEta(.1f).avecPatience(0, 0.f)
+				.avecEcouteur((epoque, mse, eta) -> nbEpoques[0] = epoque+1);
+		boolean succes = true;
+		succes &= verifie("arrêt au nombre maximal d'époques",
+				new NeuroneSigmoide(2, 1).apprentissage(matrice, resultats, config.avecNbEpoquesMax(500))
+				== ConfigApprentissage.Arret.EPOQUES && nbEpoques[0] == 500);
+		final long debut = System.nanoTime();
+		succes &= verifie("arrêt à la durée maximale",
+				new NeuroneSigmoide(2, 1).apprentissage(matrice, resultats,
+						config.avecNbEpoquesMax(Integer.MAX_VALUE).avecDureeMax(200))
+				== ConfigApprentissage.Arret.DUREE && (System.nanoTime()-debut)/1000000 < 2000);
+		succes &= verifie("arrêt faute de progrès",
+				new NeuroneSigmoide(2, 1).apprentissage(matrice, resultats,
+						config.avecNbEpoquesMax(Integer.MAX_VALUE).avecPatience(20, 1.e-3f).avecMethode(ConfigApprentissage.Methode.INERTIE))
+				== ConfigApprentissage.Arret.PATIENCE);
+		final ConfigApprentissage cosinus = config.avecNbEpoquesMax(100).avecPlanning(ConfigApprentissage.Planning.COSINUS, 1.f);
+		succes &= verifie("planning cosinus", cosinus.eta(0) == .1f && cosinus.eta(50) < .0501f && cosinus.eta(99) < .001f);
+		return succes;
+	}
+
+	// Le réseau à couche cachée doit apprendre le OU exclusif, suivre le
+	// gradient de l'entropie croisée et se relire à l'identique
+	static boolean verifieReseau()
+	{
+		boolean succes = true;
+		final float[] matrice = {0, 0, 0, 1, 1, 0, 1, 1};
+		final float[] resultats = {0, 1, 1, 0};
+		final Reseau reseau = new Reseau(2, new int[] {4, 1}, new Activation[] {Activation.SIGMOIDE, Activation.SIGMOIDE}, 7);
+		final ConfigApprentissage.Arret arret = reseau.apprentissage(matrice, resultats, ConfigApprentissage.parDefaut()
+				.avecEta(.5f).avecMseLimite(.01f).avecNbEpoquesMax(20000).avecPatience(0, 0.f));
+		final float[] sorties = new float[4];
+		reseau.metAJourLot(matrice, 4, sorties);
+		boolean appris = arret == ConfigApprentissage.Arret.MSE_ATTEINTE;
+		for (int i = 0; i < 4; ++i)
+			appris &= Math.abs(sorties[i]-resultats[i]) < .25f;
+		succes &= verifie("réseau à couche cachée : OU exclusif appris", appris);
+		boolean lot = true;
+		for (int i = 0; i < 4; ++i)
+		{
+			reseau.metAJour(new float[] {matrice[2*i], matrice[2*i+1]});
+			lot &= reseau.sortie() == sorties[i];
+		}
+		succes &= verifie("metAJourLot du réseau cohérent avec metAJour", lot);
+
+		// Un pas de descente sur un exemple suit l'opposé du gradient de
+		// l'entropie croisée, estimé par différences finies
+		final Reseau petit = new Reseau(3, new int[] {5, 1}, new Activation[] {Activation.RELU, Activation.SIGMOIDE}, 11);
+		final float[] entree = {.3f, -.8f, .5f};
+		final float[] attendu = {1.f};
+		final float[][] avant = new float[2][];
+		for (int c = 0; c < 2; ++c)
+			avant[c] = petit.couche(c).parametres().clone();
+		final float eta = 1.e-3f;
+		petit.apprentissage(entree, attendu, ConfigApprentissage.parDefaut().avecEta(eta).avecNbEpoquesMax(1));
+		double ecartMax = 0., gradientMax = 0.;
+		for (int c = 0; c < 2; ++c)
+		{
+			final float[] parametres = petit.couche(c).parametres();
+			final float[] apres = parametres.clone();
+			System.arraycopy(avant[c], 0, parametres, 0, parametres.length);
+			for (int j = 0; j < parametres.length; ++j)
+			{
+				final float h = 1.e-2f;
+				parametres[j] = avant[c][j]+h;
+				final double plus = entropieCroisee(petit, entree, 1.f);
+				parametres[j] = avant[c][j]-h;
+				final double moins = entropieCroisee(petit, entree, 1.f);
+				parametres[j] = avant[c][j];
+				final double gradient = -(plus-moins)/(2.*h);
+				ecartMax = Math.max(ecartMax, Math.abs((apres[j]-avant[c][j])/eta-gradient));
+				gradientMax = Math.max(gradientMax, Math.abs(gradient));
+			}
+			System.arraycopy(apres, 0, parametres, 0, parametres.length);
+		}
+		succes &= verifie("rétropropagation conforme au gradient", gradientMax > .01 && ecartMax < .02*gradientMax);
+
+		// Sauvegarde puis relecture
+		try
+		{
+			final File fichier = File.createTempFile("testReseau", ".txt");
+			fichier.deleteOnExit();
+			reseau.fixeDescription("type=test");
+			reseau.sauvegarde(fichier.getPath());
+			final Reseau relu = new Reseau(2, new int[] {4, 1}, new Activation[] {Activation.SIGMOIDE, Activation.SIGMOIDE});
+			relu.chargement(fichier.getPath());
+			boolean identique = "type=test".equals(relu.description());
+			for (int c = 0; c < 2; ++c)
+				identique &= Arrays.equals(relu.couche(c).parametres(), reseau.couche(c).parametres());
+			boolean refuse = false;
+			try
+			{
+				new Reseau(2, new int[] {3, 1}, new Activation[] {Activation.SIGMOIDE, Activation.SIGMOIDE})
+						.chargement(fichier.getPath());
+			}
+			catch (IOException e)
+			{
+				refuse = true;
+			}
+			succes &= verifie("réseau relu à l'identique, autre architecture refusée", identique && refuse);
+		}
+		catch (IOException e)
+		{
+			succes &= verifie("sauvegarde du réseau ("+e.getMessage()+")", false);
+		}
+		return succes;
+	}
+
+	// Les instantanés donnent les sorties de metAJour, ne suivent pas
+	// l'apprentissage qui continue et s'évaluent depuis plusieurs threads
+	static boolean verifieModeles()
+	{
+		boolean succes = true;
+		final Random rand = new Random(9);
+		final int dimension = 40, nbExemples = 1000;
+		final float[] matrice = new float[nbExemples*dimension], resultats = new float[nbExemples];
+		for (int i = 0; i < matrice.length; ++i)
+			matrice[i] = rand.nextFloat();
+		for (int i = 0; i < nbExemples; ++i)
+			resultats[i] = matrice[i*dimension] > matrice[i*dimension+1] ? 1 : 0;
+		final iNeurone[] neurones = {new NeuroneSigmoide(dimension, 1),
+				new Reseau(dimension, new int[] {8, 1}, new Activation[] {Activation.RELU, Activation.SIGMOIDE}, 1)};
+		for (final iNeurone neurone : neurones)
+		{
+			final String nom = neurone.getClass().getSimpleName();
+			final Modele modele = neurone.modele();
+			final float[] attendues = new float[nbExemples];
+			boolean identiques = true;
+			for (int i = 0; i < nbExemples; ++i)
+			{
+				final float[] ligne = Arrays.copyOfRange(matrice, i*dimension, (i+1)*dimension);
+				neurone.metAJour(ligne);
+				attendues[i] = neurone.sortie();
+				identiques &= modele.evalue(ligne) == attendues[i];
+			}
+			final float[] lot = new float[nbExemples];
+			modele.evalueLot(matrice, nbExemples, lot);
+			succes &= verifie("instantané de "+nom+" : sorties de metAJour", identiques && Arrays.equals(lot, attendues));
+
+			// Évaluation concurrente d'une même instance
+			final float[][] parThread = new float[4][nbExemples];
+			final Thread[] threads = new Thread[parThread.length];
+			for (int t = 0; t < threads.length; ++t)
+			{
+				final float[] sorties = parThread[t];
+				threads[t] = new Thread(() -> {
+					for (int r = 0; r < 20; ++r)
+						for (int i = 0; i < nbExemples; ++i)
+							sorties[i] = modele.evalue(Arrays.copyOfRange(matrice, i*dimension, (i+1)*dimension));
+				});
+				threads[t].start();
+			}
+			boolean concurrentes = true;
+			for (int t = 0; t < threads.length; ++t)
+			{
+				try
+				{
+					threads[t].join();
+				}
+				catch (InterruptedException e)
+				{
+					Thread.currentThread().interrupt();
+				}
+				concurrentes &= Arrays.equals(parThread[t], attendues);
+			}
+			succes &= verifie("instantané de "+nom+" partagé entre threads", concurrentes);
+
+			neurone.apprentissage(matrice, resultats, ConfigApprentissage.parDefaut().avecEta(.01f).avecNbEpoquesMax(3));
+			final float[] apres = new float[nbExemples];
+			modele.evalueLot(matrice, nbExemples, apres);
+			succes &= verifie("instantané de "+nom+" figé pendant l'apprentissage", Arrays.equals(apres, attendues));
+		}
+		return succes;
+	}
+
+	// Tête softmax à trois classes : probabilités de somme 1, gradient de
+	// l'entropie croisée, classes apprises et relecture du fichier binaire
+	static boolean verifieSoftmax()
+	{
+		boolean succes = true;
+		final Random rand = new Random(4);
+		final int dimension = 6, nbClasses = 3, nbExemples = 600;
+		final float[] matrice = new float[nbExemples*dimension], resultats = new float[nbExemples*nbClasses];
+		for (int i = 0; i < nbExemples; ++i)
+		{
+			// Un amas par classe, centré sur l'une des trois premières coordonnées
+			final int classe = i%nbClasses;
+			for (int j = 0; j < dimension; ++j)
+				matrice[i*dimension+j] = (float)rand.nextGaussian()*.3f+(j == classe ? 1.f : 0.f);
+			resultats[i*nbClasses+classe] = 1.f;
+		}
+		final Reseau reseau = new Reseau(dimension, new int[] {nbClasses}, new Activation[] {Activation.SOFTMAX}, 2);
+		final float[] probabilites = new float[nbExemples*nbClasses];
+		reseau.metAJourLot(matrice, nbExemples, probabilites);
+		boolean sommes = true;
+		for (int i = 0; i < nbExemples; ++i)
+			sommes &= Math.abs(probabilites[i*nbClasses]+probabilites[i*nbClasses+1]+probabilites[i*nbClasses+2]-1.f) < 1.e-5f;
+		succes &= verifie("softmax : probabilités de somme 1", sommes);
+
+		// Un pas de descente sur un exemple suit l'opposé du gradient de
+		// l'entropie croisée -log(p[classe]), estimé par différences finies
+		final float[] entree = Arrays.copyOf(matrice, dimension), attendu = Arrays.copyOf(resultats, nbClasses);
+		final float[] avant = reseau.couche(0).parametres().clone();
+		final float eta = 1.e-3f;
+		reseau.apprentissage(entree, attendu, ConfigApprentissage.parDefaut().avecEta(eta).avecNbEpoquesMax(1));
+		final float[] parametres = reseau.couche(0).parametres();
+		final float[] apres = parametres.clone();
+		double ecartMax = 0., gradientMax = 0.;
+		for (int j = 0; j < parametres.length; ++j)
+		{
+			final float h = 1.e-2f;
+			parametres[j] = avant[j]+h;
+			reseau.metAJour(entree);
+			final double plus = -Math.log(reseau.sorties()[0]);
+			parametres[j] = avant[j]-h;
+			reseau.metAJour(entree);
+			final double moins = -Math.log(reseau.sorties()[0]);
+			parametres[j] = avant[j];
+			final double gradient = -(plus-moins)/(2.*h);
+			ecartMax = Math.max(ecartMax, Math.abs((apres[j]-avant[j])/eta-gradient));
+			gradientMax = Math.max(gradientMax, Math.abs(gradient));
+		}
+		succes &= verifie("softmax conforme au gradient de l'entropie croisée", gradientMax > .01 && ecartMax < .02*gradientMax);
+
+		reseau.apprentissage(matrice, resultats, ConfigApprentissage.parDefaut().avecEta(.01f).avecNbEpoquesMax(200)
+				.avecMethode(ConfigApprentissage.Methode.ADAM).avecLots(32, 1, false));
+		reseau.metAJourLot(matrice, nbExemples, probabilites);
+		int justes = 0;
+		for (int i = 0; i < nbExemples; ++i)
+		{
+			int meilleure = 0;
+			for (int k = 1; k < nbClasses; ++k)
+				if (probabilites[i*nbClasses+k] > probabilites[i*nbClasses+meilleure])
+					meilleure = k;
+			justes += meilleure == i%nbClasses ? 1 : 0;
+		}
+		succes &= verifie("softmax : trois classes apprises ("+justes+"/"+nbExemples+")", justes > .95*nbExemples);
+
+		boolean refuse = false;
+		try
+		{
+			new Reseau(dimension, new int[] {4, nbClasses}, new Activation[] {Activation.SOFTMAX, Activation.SOFTMAX});
+		}
+		catch (IllegalArgumentException e)
+		{
+			refuse = true;
+		}
+		succes &= verifie("softmax refusée dans une couche cachée", refuse);
+
+		try
+		{
+			final File fichier = File.createTempFile("testSoftmax", ".mod");
+			fichier.deleteOnExit();
+			reseau.sauvegarde(fichier.getPath());
+			final Reseau relu = new Reseau(dimension, new int[] {nbClasses}, new Activation[] {Activation.SOFTMAX});
+			relu.chargement(fichier.getPath());
+			final float[] sorties = new float[nbExemples*nbClasses];
+			relu.modele().evalueLot(matrice, nbExemples, sorties);
+			succes &= verifie("réseau softmax relu à l'identique", Arrays.equals(sorties, probabilites)
+					&& refuse(new Reseau(dimension, new int[] {nbClasses}, new Activation[] {Activation.SIGMOIDE}), fichier));
+		}
+		catch (IOException e)
+		{
+			succes &= verifie("sauvegarde du réseau softmax ("+e.getMessage()+")", false);
+		}
+		return succes;
+	}
+
+	static double entropieCroisee(final Reseau reseau, final float[] entree, final float attendu)
+	{
+		reseau.metAJour(entree);
+		final double sortie = reseau.sortie();
+		return -(attendu*Math.log(sortie)+(1.-attendu)*Math.log(1.-sortie));
+	}
+
+	static boolean verifie(final String nom, final boolean condition)
+	{
+		System.out.println((condition ? "OK     " : "ÉCHEC  ")+nom);
+		return condition;
 	}
 
 	// Méthode pour ajouter du bruit blanc à un vecteur d'entrée
@@ -77,7 +431,81 @@ public class testNeurone
 		return bruitée;
 	}
 
+	// Format binaire : relecture exacte, fichier corrompu ou d'une autre
+	// architecture refusé sans modifier le neurone, export texte toujours relu
+	static boolean verifieFichiers()
+	{
+		boolean succes = true;
+		try
+		{
+			final File binaire = File.createTempFile("testModele", ".mod");
+			final File texte = File.createTempFile("testModele", ".txt");
+			binaire.deleteOnExit();
+			texte.deleteOnExit();
+
+			final NeuroneSigmoide neurone = new NeuroneSigmoide(300, 5);
+			neurone.fixeDescription("type=spectre bloc=1024 frequence=44100");
+			neurone.sauvegarde(binaire.getPath());
+			succes &= verifie("fichier binaire : en-tête, 301 float32 et CRC", FichierModele.estBinaire(binaire.getPath())
+					&& binaire.length() < 24+8+40+301*4+4+1);
+			final NeuroneSigmoide relu = new NeuroneSigmoide(300, 6);
+			relu.chargement(binaire.getPath());
+			succes &= verifie("neurone relu à l'identique depuis le binaire",
+					Arrays.equals(relu.synapses(), neurone.synapses()) && relu.biais() == neurone.biais()
+					&& neurone.description().equals(Neurone.lireDescription(binaire.getPath())));
+			neurone.sauvegarde(texte.getPath());
+			final NeuroneSigmoide reluTexte = new NeuroneSigmoide(300, 7);
+			reluTexte.chargement(texte.getPath());
+			succes &= verifie("export texte relu à l'identique", !FichierModele.estBinaire(texte.getPath())
+					&& Arrays.equals(reluTexte.synapses(), neurone.synapses()) && reluTexte.biais() == neurone.biais());
 
+			// Autre type d'activation, autre nombre d'entrées
+			final NeuroneReLU autreType = new NeuroneReLU(300, 8);
+			final float[] avant = autreType.synapses().clone();
+			succes &= verifie("autre activation refusée, neurone inchangé",
+					refuse(autreType, binaire) && Arrays.equals(autreType.synapses(), avant));
+			succes &= verifie("autre nombre d'entrées refusé", refuse(new NeuroneSigmoide(299, 8), binaire)
+					&& refuse(new NeuroneSigmoide(299, 8), texte));
 
+			// Un octet modifié au milieu des poids
+			final byte[] octets = Files.readAllBytes(binaire.toPath());
+			octets[octets.length/2] ^= 0x10;
+			Files.write(binaire.toPath(), octets);
+			final float[] avantCorruption = relu.synapses().clone();
+			succes &= verifie("fichier corrompu refusé par le CRC, neurone inchangé",
+					refuse(relu, binaire) && Arrays.equals(relu.synapses(), avantCorruption));
+
+			// Réseau : relecture exacte, couche cachée différente refusée
+			final Reseau reseau = new Reseau(64, new int[] {16, 1}, new Activation[] {Activation.RELU, Activation.SIGMOIDE}, 3);
+			reseau.sauvegarde(binaire.getPath());
+			final Reseau reseauRelu = new Reseau(64, new int[] {16, 1}, new Activation[] {Activation.RELU, Activation.SIGMOIDE}, 4);
+			reseauRelu.chargement(binaire.getPath());
+			boolean identique = true;
+			for (int c = 0; c < 2; ++c)
+				identique &= Arrays.equals(reseauRelu.couche(c).parametres(), reseau.couche(c).parametres());
+			succes &= verifie("réseau relu à l'identique depuis le binaire", identique);
+			succes &= verifie("réseau d'une autre architecture refusé",
+					refuse(new Reseau(64, new int[] {8, 1}, new Activation[] {Activation.RELU, Activation.SIGMOIDE}), binaire)
+					&& refuse(new NeuroneSigmoide(64, 1), binaire));
+		}
+		catch (IOException e)
+		{
+			succes &= verifie("fichiers de modèle ("+e.getMessage()+")", false);
+		}
+		return succes;
+	}
 
-}
\ No newline at end of file
+	// Vrai si le chargement du fichier est refusé
+	private static boolean refuse(final iNeurone neurone, final File fichier)
+	{
+		try
+		{
+			neurone.chargement(fichier.getPath());
+			return false;
+		}
+		catch (IOException e)
+		{
+			return true;
+		}
+	}
+}
@@ -0,0 +1,205 @@
+package neurone;
+
+import java.util.Arrays;
+import java.util.Random;
+
+public class testProduitScalaire
+{
+	/**
+	 * Compare les noyaux de produit scalaire (vectoriel s'il est disponible,
+	 * scalaire) à la boucle naïve, pour des tailles quelconques, puis mesure
+	 * leur débit.
+	 * @param args Aucun argument n'est attendu.
+	 */
+	public static void main(final String[] args)
+	{
+		boolean succes = true;
+		final Random rand = new Random(5);
+		System.out.println("Noyau courant : "+ProduitScalaire.courant().getClass().getSimpleName());
+		for (final ProduitScalaire noyau : new ProduitScalaire[] {ProduitScalaire.courant(), ProduitScalaire.scalaire()})
+		{
+			boolean ok = true;
+			for (int n = 0; n <= 1100 && ok; n += n < 40 ? 1 : 53)
+			{
+				final float[] a = aleatoire(rand, n+3), b = aleatoire(rand, n+5);
+				ok &= proche(noyau.produit(a, 3, b, 5, n), naif(a, 3, b, 5, n, 0.f), a, 3, b, 5, n);
+			}
+			// Lots de toutes tailles, dont des restes de moins de quatre lignes
+			for (final int dimension : new int[] {1, 7, 13, 40, 512, 513})
+				for (int nbLignes = 0; nbLignes <= 9 && ok; ++nbLignes)
+				{
+					final float[] matrice = aleatoire(rand, nbLignes*dimension), poids = aleatoire(rand, dimension);
+					final float[] sorties = new float[nbLignes];
+					noyau.produits(matrice, nbLignes, dimension, poids, .25f, sorties);
+					for (int l = 0; l < nbLignes; ++l)
+						ok &= proche(sorties[l], naif(matrice, l*dimension, poids, 0, dimension, .25f),
+								matrice, l*dimension, poids, 0, dimension);
+				}
+			succes &= verifie(noyau.getClass().getSimpleName()+" équivalent à la boucle naïve", ok);
+		}
+
+		// Les sorties d'un lot sont celles de metAJour, exemple par exemple
+		final Neurone neurone = new NeuroneSigmoide(513);
+		final int nbLignes = 11;
+		final float[] matrice = aleatoire(rand, nbLignes*513), sorties = new float[nbLignes];
+		neurone.metAJourLot(matrice, nbLignes, sorties);
+		boolean ok = true;
+		for (int l = 0; l < nbLignes; ++l)
+		{
+			final float[] ligne = new float[513];
+			System.arraycopy(matrice, l*513, ligne, 0, 513);
+			neurone.metAJour(ligne);
+			ok &= Math.abs(neurone.sortie()-sorties[l]) < 1.e-5f;
+		}
+		succes &= verifie("metAJourLot cohérent avec metAJour", ok);
+
+		// Débit, comparé à la boucle naïve
+		final float[] a = aleatoire(rand, 512), b = aleatoire(rand, 512);
+		for (int passe = 0; passe < 3; ++passe)
+		{
+			float puits = 0;
+			final int repetitions = 200000;
+			long debut = System.nanoTime();
+			for (int r = 0; r < repetitions; ++r)
+				puits += naif(a, 0, b, 0, 512, 0.f);
+			final double naif = (System.nanoTime()-debut)/(double)repetitions;
+			debut = System.nanoTime();
+			for (int r = 0; r < repetitions; ++r)
+				puits += ProduitScalaire.courant().produit(a, b, 512);
+			final double noyau = (System.nanoTime()-debut)/(double)repetitions;
+			System.out.printf("512 entrées : boucle naïve %.1f ns, noyau %.1f ns (%.1fx)%s%n", naif, noyau, naif/noyau,
+					puits == 42.f ? " " : "");
+		}
+
+		succes &= verifieQuantification(rand);
+
+		System.out.println(succes ? "Tous les tests du produit scalaire sont passés" : "ÉCHEC d'au moins un test");
+		if (!succes)
+			System.exit(1);
+	}
+
+	// Produits entiers exacts, quantification identique dans les deux noyaux
+	// et à un demi-pas près, modèle int8 proche du modèle float et débit des deux
+	static boolean verifieQuantification(final Random rand)
+	{
+		boolean succes = true;
+		final ProduitScalaire vectoriel = ProduitScalaire.courant(), scalaire = ProduitScalaire.scalaire();
+		boolean exacts = true, identiques = true, arrondis = true;
+		for (int n = 0; n <= 1100; n += n < 40 ? 1 : 53)
+		{
+			final byte[] a = new byte[n], b = new byte[n];
+			int attendu = 0;
+			for (int i = 0; i < n; ++i)
+			{
+				a[i] = (byte)(rand.nextInt(255)-127);
+				b[i] = (byte)(rand.nextInt(255)-127);
+				attendu += a[i]*b[i];
+			}
+			exacts &= vectoriel.produit(a, b, n) == attendu && scalaire.produit(a, b, n) == attendu;
+
+			final float[] source = aleatoire(rand, n+3);
+			final byte[] qv = new byte[n], qs = new byte[n];
+			final float echelle = vectoriel.quantifie(source, 3, n, qv);
+			identiques &= echelle == scalaire.quantifie(source, 3, n, qs) && Arrays.equals(qv, qs);
+			for (int i = 0; i < n; ++i)
+				arrondis &= Math.abs(qv[i]*echelle-source[3+i]) <= echelle*.5001f;
+		}
+		succes &= verifie("produits entiers exacts", exacts);
+		succes &= verifie("quantification identique dans les deux noyaux", identiques);
+		succes &= verifie("quantification à un demi-pas près", arrondis);
+		final byte[] nuls = {5, 5};
+		succes &= verifie("entrée nulle quantifiée à 0", scalaire.quantifie(new float[2], 0, 2, nuls) == 0.f
+				&& nuls[0] == 0 && vectoriel.quantifie(new float[2], 0, 2, nuls) == 0.f);
+
+		// Modèle int8 d'un neurone à 512 entrées, sur des entrées positives
+		// comme un spectre
+		final Neurone neurone = new NeuroneSigmoide(512, 3);
+		final ModeleNeurone modele = (ModeleNeurone)neurone.modele();
+		final ModeleQuantifie quantifie = modele.quantifie();
+		final int nbLignes = 2000;
+		final float[] lignes = new float[nbLignes*512];
+		for (int i = 0; i < lignes.length; ++i)
+			lignes[i] = rand.nextFloat()*rand.nextFloat();
+		final float[] sortiesFloat = new float[nbLignes], sortiesInt8 = new float[nbLignes];
+		modele.evalueLot(lignes, nbLignes, sortiesFloat);
+		quantifie.evalueLot(lignes, nbLignes, sortiesInt8);
+		float ecartMax = 0.f;
+		for (int l = 0; l < nbLignes; ++l)
+			ecartMax = Math.max(ecartMax, Math.abs(sortiesFloat[l]-sortiesInt8[l]));
+		succes &= verifie("modèle int8 proche du modèle float (écart max "+ecartMax+")", ecartMax < .05f);
+		succes &= verifie("poids int8 4 fois plus petits", quantifie.taillePoids()*4 == 512*Float.BYTES);
+
+		// Entrées quantifiées une fois pour toutes, comme des caractéristiques
+		// quantifiées à leur production : ne reste que le produit entier
+		final float[] ligne = Arrays.copyOf(lignes, 512);
+		final byte[] octets = new byte[512], poidsInt8 = new byte[512];
+		final float echelleLigne = vectoriel.quantifie(ligne, 0, 512, octets);
+		vectoriel.quantifie(aleatoire(rand, 512), 0, 512, poidsInt8);
+		succes &= verifie("évaluation sur entrée déjà quantifiée identique",
+				quantifie.evalue(octets, echelleLigne) == quantifie.evalue(ligne));
+		final float[] poidsFloat = aleatoire(rand, 512);
+		for (int passe = 0; passe < 3; ++passe)
+		{
+			float puits = 0;
+			final int repetitions = 200000;
+			long debut = System.nanoTime();
+			for (int r = 0; r < repetitions; ++r)
+				puits += vectoriel.produit(ligne, poidsFloat, 512);
+			final double produitFloat = (System.nanoTime()-debut)/(double)repetitions;
+			debut = System.nanoTime();
+			for (int r = 0; r < repetitions; ++r)
+				puits += vectoriel.produit(octets, poidsInt8, 512);
+			final double produitInt8 = (System.nanoTime()-debut)/(double)repetitions;
+			debut = System.nanoTime();
+			for (int r = 0; r < repetitions; ++r)
+				puits += modele.evalue(ligne);
+			final double tempsFloat = (System.nanoTime()-debut)/(double)repetitions;
+			debut = System.nanoTime();
+			for (int r = 0; r < repetitions; ++r)
+				puits += quantifie.evalue(octets, echelleLigne);
+			final double tempsInt8 = (System.nanoTime()-debut)/(double)repetitions;
+			debut = System.nanoTime();
+			for (int r = 0; r < repetitions; ++r)
+				puits += quantifie.evalue(ligne);
+			final double tempsQuantification = (System.nanoTime()-debut)/(double)repetitions;
+			System.out.printf("512 entrées : produit float %.1f ns, int8 %.1f ns (%.2fx) ; modèle float %.1f ns, "
+					+"int8 %.1f ns (%.2fx), int8 quantifiant l'entrée %.1f ns (%.2fx)%s%n", produitFloat, produitInt8,
+					produitFloat/produitInt8, tempsFloat, tempsInt8, tempsFloat/tempsInt8, tempsQuantification,
+					tempsFloat/tempsQuantification, puits == 42.f ? " " : "");
+		}
+		return succes;
+	}
+
+	// Boucle historique de Neurone.metAJour
+	static float naif(final float[] a, final int debutA, final float[] b, final int debutB, final int n, final float biais)
+	{
+		float somme = biais;
+		for (int i = 0; i < n; ++i)
+			somme += a[debutA+i]*b[debutB+i];
+		return somme;
+	}
+
+	// Écart admis : quelques arrondis du float sur la somme des valeurs absolues des termes
+	static boolean proche(final float x, final float reference, final float[] a, final int debutA,
+			final float[] b, final int debutB, final int n)
+	{
+		double absolus = 1.;
+		for (int i = 0; i < n; ++i)
+			absolus += Math.abs(a[debutA+i]*b[debutB+i]);
+		return Math.abs(x-reference) <= 4.*Math.ulp(1.f)*Math.sqrt(n+1.)*absolus;
+	}
+
+	static float[] aleatoire(final Random rand, final int n)
+	{
+		final float[] t = new float[n];
+		for (int i = 0; i < n; ++i)
+			t[i] = rand.nextFloat()*2.f-1.f;
+		return t;
+	}
+
+	static boolean verifie(final String nom, final boolean condition)
+	{
+		System.out.println((condition ? "OK     " : "ÉCHEC  ")+nom);
+		return condition;
+	}
+}
@@ -0,0 +1,76 @@
+package pipeline;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+// *****************************************************************************
+// Compteurs d'un étage de Pipeline, mis à jour par ses threads et lisibles à
+// tout moment pour dimensionner les étages : lots et quantité traités (blocs,
+// fichiers... selon l'étage), temps de calcul cumulé de ses threads, temps
+// passé à attendre un lot en entrée (étage affamé : l'amont est trop lent) ou
+// de la place en sortie (étage freiné : l'aval est trop lent), et profondeur
+// de sa file de sortie relevée à chaque dépôt. Une file de sortie souvent
+// pleine désigne l'étage suivant comme goulet d'étranglement.
+
+public final class Etage
+{
+	private final String nom;
+	private final String unite;
+	private final int nbThreads;
+	private final int capaciteSortie;
+
+	final LongAdder lots = new LongAdder();
+	final LongAdder quantite = new LongAdder();
+	final LongAdder tempsCalcul = new LongAdder();
+	final LongAdder attenteEntree = new LongAdder();
+	final LongAdder attenteSortie = new LongAdder();
+	final LongAdder sommeProfondeurs = new LongAdder();
+	final LongAccumulator profondeurMax = new LongAccumulator(Math::max, 0);
+
+	Etage(final String nom, final String unite, final int nbThreads, final int capaciteSortie)
+	{
+		this.nom = nom;
+		this.unite = unite;
+		this.nbThreads = nbThreads;
+		this.capaciteSortie = capaciteSortie;
+	}
+
+	public String nom() {return nom;}
+	public int nbThreads() {return nbThreads;}
+	public long lots() {return lots.sum();}
+	// Quantité traitée, en unités de l'étage
+	public long quantite() {return quantite.sum();}
+	// Temps cumulés de tous les threads de l'étage, en nanosecondes
+	public long tempsCalcul() {return tempsCalcul.sum();}
+	public long attenteEntree() {return attenteEntree.sum();}
+	public long attenteSortie() {return attenteSortie.sum();}
+	public int capaciteSortie() {return capaciteSortie;}
+	public long profondeurMax() {return profondeurMax.get();}
+
+	// Profondeur moyenne de la file de sortie après un dépôt
+	public double profondeurMoyenne()
+	{
+		final long n = lots.sum();
+		return n == 0 ? 0 : (double)sommeProfondeurs.sum()/n;
+	}
+
+	// Quantité traitée par seconde de calcul d'un thread : multipliée par le
+	// nombre de threads, débit que l'étage peut soutenir s'il n'attend jamais
+	public double debitParThread()
+	{
+		final long temps = tempsCalcul.sum();
+		return temps == 0 ? 0 : quantite.sum()*1e9/temps;
+	}
+
+	// Ligne de résumé, pour une exécution de "duree" nanosecondes
+	public String resume(final long duree)
+	{
+		final double total = (double)Math.max(1, duree)*nbThreads;
+		return String.format(Locale.ROOT, "%-16s %2d thread(s) : %7d lots, %9d %s, %10.0f %s/s par thread,"
+				+" calcul %3.0f%%, attente entrée %3.0f%%, sortie %3.0f%%, file de sortie %.1f/%d (max %d)",
+				nom, nbThreads, lots(), quantite(), unite, debitParThread(), unite, 100*tempsCalcul()/total,
+				100*attenteEntree()/total, 100*attenteSortie()/total, profondeurMoyenne(), capaciteSortie,
+				profondeurMax());
+	}
+}
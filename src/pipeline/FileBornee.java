@@ -0,0 +1,98 @@
+package pipeline;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+// *****************************************************************************
+// File bornée sans verrou, à plusieurs producteurs et plusieurs consommateurs
+// (tableau circulaire de D. Vyukov). Chaque case porte un numéro de séquence :
+// égal à la position d'écriture quand la case est libre, à la position + 1
+// quand elle est pleine. Un producteur réserve une position par compareAndSet
+// sur le compteur d'écriture, remplit la case puis publie son numéro ; un
+// consommateur fait de même avec le compteur de lecture. Aucun thread n'en
+// attend un autre : offre et prend échouent aussitôt (false, null) si la file
+// est pleine ou vide, à l'appelant de patienter (voir Pipeline).
+// La capacité est arrondie à la puissance de 2 supérieure.
+
+public final class FileBornee<E>
+{
+	private final AtomicReferenceArray<E> cases;
+	private final AtomicLongArray sequences;
+	private final int masque;
+	private final AtomicLong ecriture = new AtomicLong();
+	private final AtomicLong lecture = new AtomicLong();
+
+	public FileBornee(final int capaciteMin)
+	{
+		if (capaciteMin < 1 || capaciteMin > 1<<30)
+			throw new IllegalArgumentException("Capacité de file invalide : "+capaciteMin);
+		final int capacite = Integer.highestOneBit(capaciteMin) == capaciteMin ? capaciteMin
+				: Integer.highestOneBit(capaciteMin)<<1;
+		cases = new AtomicReferenceArray<>(capacite);
+		sequences = new AtomicLongArray(capacite);
+		for (int i = 0; i < capacite; ++i)
+			sequences.set(i, i);
+		masque = capacite-1;
+	}
+
+	public int capacite() {return masque+1;}
+
+	// Nombre d'éléments en file (approché si d'autres threads s'en servent)
+	public int taille()
+	{
+		final long n = ecriture.get()-lecture.get();
+		return (int)Math.max(0, Math.min(n, capacite()));
+	}
+
+	// Ajoute e en fin de file ; false si la file est pleine
+	public boolean offre(final E e)
+	{
+		long position = ecriture.get();
+		while (true)
+		{
+			final int i = (int)position&masque;
+			final long ecart = sequences.get(i)-position;
+			if (ecart == 0)
+			{
+				if (ecriture.compareAndSet(position, position+1))
+				{
+					cases.set(i, e);
+					sequences.set(i, position+1);
+					return true;
+				}
+				position = ecriture.get();
+			}
+			else if (ecart < 0)
+				return false;
+			else
+				position = ecriture.get();
+		}
+	}
+
+	// Retire l'élément de tête ; null si la file est vide
+	public E prend()
+	{
+		long position = lecture.get();
+		while (true)
+		{
+			final int i = (int)position&masque;
+			final long ecart = sequences.get(i)-(position+1);
+			if (ecart == 0)
+			{
+				if (lecture.compareAndSet(position, position+1))
+				{
+					final E e = cases.get(i);
+					cases.set(i, null);
+					sequences.set(i, position+masque+1);
+					return e;
+				}
+				position = lecture.get();
+			}
+			else if (ecart < 0)
+				return null;
+			else
+				position = lecture.get();
+		}
+	}
+}
@@ -0,0 +1,334 @@
+package pipeline;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+// *****************************************************************************
+// Chaîne de traitement par étages : une source remplit des éléments (lots de
+// blocs, fichiers...) qui passent ensuite d'étage en étage, chaque étage
+// ayant ses propres threads, puis sont rendus à l'appelant dans l'ordre de
+// la source (suivant). Les étages d'un même élément s'exécutent l'un après
+// l'autre ; des éléments différents sont traités en même temps par des
+// étages différents et, dans un étage à plusieurs threads, par des threads
+// différents. Un étage lent (disque, FFT) reçoit ainsi ses propres threads
+// sans en donner aux étages peu coûteux.
+// Les étages sont reliés par des files bornées sans verrou (FileBornee) et
+// les éléments viennent d'une réserve fixe, réutilisée : la source attend
+// qu'un élément soit libre, et un étage qu'il y ait de la place dans sa
+// file de sortie. Un disque ou un consommateur lent ralentit donc toute la
+// chaîne sans que la mémoire ne croisse, et aucun tampon n'est alloué en
+// régime établi. Un thread sans travail patiente activement un court
+// instant, puis cède le processeur.
+// Les compteurs de chaque étage (Etage) indiquent lequel limite le débit.
+// Une exception levée par la source ou un étage arrête la chaîne et est
+// relancée par suivant.
+
+public final class Pipeline<T> implements AutoCloseable
+{
+	// Premier étage : remplit l'élément suivant, dans l'ordre, et renvoie la
+	// quantité qu'il contient (dans l'unité de la source), ou -1 à la fin
+	@FunctionalInterface
+	public interface Source<T>
+	{
+		public int remplit(T element) throws Exception;
+	}
+
+	// Étage suivant : traite l'élément en place et renvoie la quantité traitée
+	// (dans l'unité de l'étage) ; appelé en même temps depuis tous les threads
+	// de l'étage, sur des éléments différents
+	@FunctionalInterface
+	public interface Traitement<T>
+	{
+		public int traite(T element) throws Exception;
+	}
+
+	// Élément et son rang dans l'ordre de la source
+	private static final class Case<T>
+	{
+		final T valeur;
+		long numero;
+
+		Case(final T valeur) {this.valeur = valeur;}
+	}
+
+	// Patience d'un thread sans travail : attente active, puis cession du
+	// processeur, puis sommeil de ParkNs nanosecondes
+	private static final int EssaisActifs = 100;
+	private static final int EssaisCession = 200;
+	private static final long ParkNs = 50_000;
+
+	private final Supplier<T> fabrique;
+	private final int capacite;
+	private final Source<T> source;
+	private final List<Etage> etages = new ArrayList<>();
+	private final List<Traitement<T>> traitements = new ArrayList<>();
+	private final List<Thread> threads = new ArrayList<>();
+
+	// Réserve des éléments libres, files en sortie de la source et de chaque
+	// étage, éléments arrivés avant leur tour
+	private FileBornee<Case<T>> libres;
+	private final List<FileBornee<Case<T>>> files = new ArrayList<>();
+	private Case<T>[] enAttente;
+	private Case<T> courant = null;
+	private long prochain = 0;
+	private long attenteResultats = 0;
+	private long debut;
+
+	// Nombre d'éléments remplis par la source, connu une fois celle-ci épuisée
+	private volatile long total = -1;
+	private volatile boolean arret = false;
+	private final AtomicReference<Throwable> echec = new AtomicReference<>();
+
+	// Chaîne dont les éléments sont créés par "fabrique" et remplis par
+	// "source" (un thread) ; capacite : éléments en file entre deux étages
+	public Pipeline(final String nomSource, final String unite, final Source<T> source, final Supplier<T> fabrique,
+			final int capacite)
+	{
+		if (capacite < 1)
+			throw new IllegalArgumentException("Capacité de file invalide : "+capacite);
+		this.source = source;
+		this.fabrique = fabrique;
+		this.capacite = capacite;
+		etages.add(new Etage(nomSource, unite, 1, new FileBornee<>(capacite).capacite()));
+	}
+
+	// Ajoute un étage de nbThreads threads, à la suite des précédents
+	public void ajoute(final String nom, final String unite, final int nbThreads, final Traitement<T> traitement)
+	{
+		if (nbThreads < 1)
+			throw new IllegalArgumentException("Nombre de threads invalide pour l'étage "+nom+" : "+nbThreads);
+		if (libres != null)
+			throw new IllegalStateException("Chaîne déjà démarrée");
+		etages.add(new Etage(nom, unite, nbThreads, new FileBornee<>(capacite).capacite()));
+		traitements.add(traitement);
+	}
+
+	// Crée la réserve d'éléments et lance les threads de tous les étages
+	@SuppressWarnings("unchecked")
+	public void demarre()
+	{
+		if (libres != null)
+			throw new IllegalStateException("Chaîne déjà démarrée");
+		// Assez d'éléments pour remplir toutes les files et occuper tous les
+		// threads, plus celui que garde l'appelant
+		int nbElements = 1;
+		for (final Etage etage : etages)
+		{
+			files.add(new FileBornee<>(capacite));
+			nbElements += etage.capaciteSortie()+etage.nbThreads();
+		}
+		libres = new FileBornee<>(nbElements);
+		for (int i = 0; i < nbElements; ++i)
+			libres.offre(new Case<>(fabrique.get()));
+		enAttente = (Case<T>[])new Case<?>[nbElements];
+
+		debut = System.nanoTime();
+		lance(etages.get(0).nom(), this::executeSource);
+		for (int e = 1; e < etages.size(); ++e)
+		{
+			final int numero = e;
+			for (int t = 0; t < etages.get(e).nbThreads(); ++t)
+				lance(etages.get(e).nom()+"-"+t, () -> executeEtage(numero));
+		}
+	}
+
+	private void lance(final String nom, final Runnable tache)
+	{
+		final Thread thread = new Thread(tache, nom);
+		thread.setDaemon(true);
+		threads.add(thread);
+		thread.start();
+	}
+
+	// Élément suivant dans l'ordre de la source, une fois passé par tous les
+	// étages, ou null à la fin ; l'élément précédent retourne à la réserve
+	public T suivant()
+	{
+		if (courant != null)
+			libres.offre(courant);
+		courant = null;
+		final FileBornee<Case<T>> sortie = files.get(files.size()-1);
+		final int rang = (int)(prochain%enAttente.length);
+		long attente = 0;
+		for (int essai = 0; enAttente[rang] == null; )
+		{
+			final Case<T> arrivee = sortie.prend();
+			if (arrivee != null)
+			{
+				enAttente[(int)(arrivee.numero%enAttente.length)] = arrivee;
+				continue;
+			}
+			if (prochain == total)
+				return null;
+			verifie();
+			if (essai == 0)
+				attente = System.nanoTime();
+			patiente(essai++);
+		}
+		if (attente != 0)
+			attenteResultats += System.nanoTime()-attente;
+		courant = enAttente[rang];
+		enAttente[rang] = null;
+		++prochain;
+		return courant.valeur;
+	}
+
+	// Compteurs de la source puis de chaque étage
+	public List<Etage> etages() {return Collections.unmodifiableList(etages);}
+	// Temps écoulé depuis le démarrage, en nanosecondes
+	public long duree() {return System.nanoTime()-debut;}
+	// Temps passé par l'appelant à attendre un résultat, en nanosecondes
+	public long attenteResultats() {return attenteResultats;}
+
+	// Arrête les threads ; les éléments encore en cours sont abandonnés
+	public void close()
+	{
+		arret = true;
+		boolean interrompu = false;
+		for (final Thread thread : threads)
+			while (true)
+				try
+				{
+					thread.join();
+					break;
+				}
+				catch (InterruptedException e)
+				{
+					interrompu = true;
+				}
+		if (interrompu)
+			Thread.currentThread().interrupt();
+	}
+
+	private void executeSource()
+	{
+		final Etage etage = etages.get(0);
+		final FileBornee<Case<T>> sortie = files.get(0);
+		long numero = 0;
+		try
+		{
+			while (true)
+			{
+				// Pas d'élément libre : l'aval freine la source
+				final Case<T> element = retire(libres, etage, false);
+				if (element == null)
+					return;
+				final long t0 = System.nanoTime();
+				final int quantite = source.remplit(element.valeur);
+				etage.tempsCalcul.add(System.nanoTime()-t0);
+				if (quantite < 0)
+				{
+					libres.offre(element);
+					total = numero;
+					return;
+				}
+				element.numero = numero++;
+				etage.lots.increment();
+				etage.quantite.add(quantite);
+				if (!depose(sortie, element, etage))
+					return;
+			}
+		}
+		catch (Throwable e)
+		{
+			echoue(e);
+		}
+	}
+
+	private void executeEtage(final int numero)
+	{
+		final Etage etage = etages.get(numero);
+		final Traitement<T> traitement = traitements.get(numero-1);
+		final FileBornee<Case<T>> entree = files.get(numero-1);
+		final FileBornee<Case<T>> sortie = files.get(numero);
+		try
+		{
+			while (true)
+			{
+				final Case<T> element = retire(entree, etage, true);
+				if (element == null)
+					return;
+				final long t0 = System.nanoTime();
+				final int quantite = traitement.traite(element.valeur);
+				etage.tempsCalcul.add(System.nanoTime()-t0);
+				etage.lots.increment();
+				etage.quantite.add(quantite);
+				if (!depose(sortie, element, etage))
+					return;
+			}
+		}
+		catch (Throwable e)
+		{
+			echoue(e);
+		}
+	}
+
+	// Prend un élément de la file, en patientant ; null si la chaîne s'arrête.
+	// L'attente est comptée en entrée de l'étage, ou en sortie pour la source
+	// qui attend un élément libre
+	private Case<T> retire(final FileBornee<Case<T>> file, final Etage etage, final boolean entree)
+	{
+		Case<T> element = file.prend();
+		if (element != null)
+			return element;
+		final long t0 = System.nanoTime();
+		for (int essai = 0; (element = file.prend()) == null && !arret; ++essai)
+			patiente(essai);
+		(entree ? etage.attenteEntree : etage.attenteSortie).add(System.nanoTime()-t0);
+		return element;
+	}
+
+	// Dépose un élément dans la file de sortie de l'étage, en patientant tant
+	// qu'elle est pleine ; false si la chaîne s'arrête
+	private boolean depose(final FileBornee<Case<T>> file, final Case<T> element, final Etage etage)
+	{
+		if (!file.offre(element))
+		{
+			final long t0 = System.nanoTime();
+			boolean depose = false;
+			for (int essai = 0; !(depose = file.offre(element)) && !arret; ++essai)
+				patiente(essai);
+			etage.attenteSortie.add(System.nanoTime()-t0);
+			if (!depose)
+				return false;
+		}
+		final int profondeur = file.taille();
+		etage.sommeProfondeurs.add(profondeur);
+		etage.profondeurMax.accumulate(profondeur);
+		return true;
+	}
+
+	private static void patiente(final int essai)
+	{
+		if (essai < EssaisActifs)
+			Thread.onSpinWait();
+		else if (essai < EssaisCession)
+			Thread.yield();
+		else
+			LockSupport.parkNanos(ParkNs);
+	}
+
+	private void echoue(final Throwable e)
+	{
+		echec.compareAndSet(null, e);
+		arret = true;
+	}
+
+	// Relance l'échec d'un étage, ou signale une chaîne arrêtée
+	private void verifie()
+	{
+		final Throwable cause = echec.get();
+		if (cause instanceof RuntimeException exception)
+			throw exception;
+		if (cause instanceof Error erreur)
+			throw erreur;
+		if (cause != null)
+			throw new IllegalStateException(cause.getMessage(), cause);
+		if (arret)
+			throw new IllegalStateException("Chaîne de traitement arrêtée");
+	}
+}
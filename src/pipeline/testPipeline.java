@@ -0,0 +1,143 @@
+package pipeline;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class testPipeline
+{
+	final static int NbElements = 20000;
+
+	/**
+	 * Vérifie la file bornée sans verrou et la chaîne de traitement : ordre
+	 * des résultats, mémoire bornée, compteurs et remontée des erreurs.
+	 * @param args Aucun argument n'est attendu.
+	 */
+	public static void main(final String[] args) throws InterruptedException
+	{
+		boolean succes = true;
+
+		// File : ordre, capacité arrondie, refus quand pleine ou vide
+		final FileBornee<Integer> file = new FileBornee<>(3);
+		boolean fifo = file.capacite() == 4 && file.prend() == null;
+		for (int i = 0; i < 4; ++i)
+			fifo &= file.offre(i);
+		fifo &= !file.offre(4) && file.taille() == 4;
+		for (int i = 0; i < 4; ++i)
+			fifo &= file.prend() == i;
+		succes &= verifie("file bornée : ordre, capacité, pleine et vide", fifo && file.prend() == null);
+
+		// Plusieurs producteurs et consommateurs : rien de perdu ni de doublé
+		final FileBornee<Integer> partagee = new FileBornee<>(64);
+		final AtomicLong somme = new AtomicLong();
+		final AtomicInteger recus = new AtomicInteger();
+		final Thread[] threads = new Thread[6];
+		for (int t = 0; t < threads.length; ++t)
+		{
+			final boolean producteur = t < 3;
+			final int debut = t*NbElements;
+			threads[t] = new Thread(() -> {
+				if (producteur)
+					for (int i = 0; i < NbElements; ++i)
+						while (!partagee.offre(debut+i))
+							Thread.onSpinWait();
+				else
+					while (recus.get() < 3*NbElements)
+					{
+						final Integer e = partagee.prend();
+						if (e == null)
+							Thread.onSpinWait();
+						else
+						{
+							somme.addAndGet(e);
+							recus.incrementAndGet();
+						}
+					}
+			});
+			threads[t].start();
+		}
+		for (final Thread thread : threads)
+			thread.join();
+		final long n = 3L*NbElements;
+		succes &= verifie("file partagée entre 3 producteurs et 3 consommateurs",
+				recus.get() == n && somme.get() == n*(n-1)/2);
+
+		// Chaîne à étages de durées aléatoires : résultats dans l'ordre, éléments
+		// réutilisés sans dépasser la réserve
+		final AtomicInteger crees = new AtomicInteger();
+		final int[] suivant = {0};
+		boolean ordre = true;
+		int nbRendus = 0;
+		final Pipeline<long[]> pipeline = new Pipeline<>("source", "éléments", e -> {
+			if (suivant[0] == NbElements)
+				return -1;
+			e[0] = suivant[0]++;
+			return 1;
+		}, () -> {
+			crees.incrementAndGet();
+			return new long[2];
+		}, 2);
+		pipeline.ajoute("carré", "éléments", 3, e -> {
+			attend(e[0]);
+			e[1] = e[0]*e[0];
+			return 1;
+		});
+		pipeline.ajoute("plus un", "éléments", 2, e -> {
+			attend(e[0]+1);
+			e[1] += 1;
+			return 1;
+		});
+		try (pipeline)
+		{
+			pipeline.demarre();
+			for (long[] e; (e = pipeline.suivant()) != null; ++nbRendus)
+				ordre &= e[0] == nbRendus && e[1] == e[0]*e[0]+1;
+		}
+		succes &= verifie("chaîne : résultats dans l'ordre de la source", ordre && nbRendus == NbElements);
+		succes &= verifie("chaîne : réserve d'éléments bornée ("+crees.get()+" éléments)", crees.get() <= 20);
+		boolean compteurs = pipeline.etages().size() == 3;
+		for (final Etage etage : pipeline.etages())
+			compteurs &= etage.lots() == NbElements && etage.quantite() == NbElements
+					&& etage.profondeurMax() <= etage.capaciteSortie();
+		succes &= verifie("chaîne : compteurs des étages", compteurs);
+
+		// Une exception d'un étage est relancée à l'appelant
+		final int[] compte = {0};
+		final Pipeline<int[]> defaillant = new Pipeline<>("source", "éléments", e -> compte[0]++ < 100 ? 1 : -1,
+				() -> new int[1], 2);
+		defaillant.ajoute("échec", "éléments", 2, e -> {
+			throw new IllegalArgumentException("échec voulu");
+		});
+		String message = null;
+		try (defaillant)
+		{
+			defaillant.demarre();
+			while (defaillant.suivant() != null)
+				;
+		}
+		catch (IllegalArgumentException e)
+		{
+			message = e.getMessage();
+		}
+		succes &= verifie("chaîne : exception d'un étage relancée", "échec voulu".equals(message));
+
+		System.out.println(succes ? "Tous les tests de la chaîne de traitement sont passés"
+				: "ÉCHEC d'au moins un test");
+		if (!succes)
+			System.exit(1);
+	}
+
+	// Durée de traitement pseudo-aléatoire, pour mélanger l'ordre d'arrivée
+	static void attend(final long graine)
+	{
+		final int n = new Random(graine).nextInt(2000);
+		for (int i = 0; i < n; ++i)
+			Thread.onSpinWait();
+	}
+
+	static boolean verifie(final String nom, final boolean condition)
+	{
+		System.out.println((condition ? "OK     " : "ÉCHEC  ")+nom);
+		return condition;
+	}
+}
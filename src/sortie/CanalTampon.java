@@ -0,0 +1,157 @@
+package sortie;
+
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// *****************************************************************************
+// Écriture tamponnée dans un canal : texte (encodé sans passer par des
+// String intermédiaires) et valeurs binaires petit-boutistes s'accumulent
+// dans un tampon de TailleTampon octets, écrit d'un bloc lorsqu'il est plein,
+// sur demande (vide) et à la fermeture. Des milliers de lignes de résultats
+// coûtent ainsi quelques appels système au lieu d'un par ligne, comme le
+// ferait System.out qui se vide à chaque fin de ligne.
+// La console (sortie standard) ne se ferme pas avec le tampon.
+
+public final class CanalTampon implements AutoCloseable
+{
+	public static final int TailleTampon = 1<<20;
+
+	private final WritableByteChannel canal;
+	private final boolean fermeCanal;
+	private final ByteBuffer tampon = ByteBuffer.allocateDirect(TailleTampon).order(ByteOrder.LITTLE_ENDIAN);
+	private final CharsetEncoder encodeur;
+
+	public CanalTampon(final WritableByteChannel canal, final Charset jeu, final boolean fermeCanal)
+	{
+		this.canal = canal;
+		this.fermeCanal = fermeCanal;
+		encodeur = jeu.newEncoder().onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE);
+	}
+
+	// Fichier créé ou remplacé, texte en UTF-8
+	public static CanalTampon fichier(final String chemin) throws IOException
+	{
+		return new CanalTampon(FileChannel.open(Path.of(chemin), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING), StandardCharsets.UTF_8, true);
+	}
+
+	// Sortie standard, dans l'encodage de System.out (vidé au préalable pour
+	// garder l'ordre des lignes)
+	public static CanalTampon console()
+	{
+		System.out.flush();
+		return new CanalTampon(Channels.newChannel(new FileOutputStream(FileDescriptor.out)), encodageConsole(),
+				false);
+	}
+
+	// Encodage de System.out : propriété stdout.encoding (Java 19 et plus,
+	// sun.stdout.encoding avant), sinon celui par défaut ; System.out.charset()
+	// n'existe que depuis Java 18
+	private static Charset encodageConsole()
+	{
+		for (final String propriete : new String[] {"stdout.encoding", "sun.stdout.encoding"})
+		{
+			final String nom = System.getProperty(propriete);
+			try
+			{
+				if (nom != null && Charset.isSupported(nom))
+					return Charset.forName(nom);
+			}
+			catch (IllegalArgumentException e)
+			{
+				// Nom d'encodage invalide : propriété suivante
+			}
+		}
+		return Charset.defaultCharset();
+	}
+
+	public CanalTampon ecrit(final CharSequence texte) throws IOException
+	{
+		final CharBuffer caracteres = CharBuffer.wrap(texte);
+		encodeur.reset();
+		CoderResult resultat;
+		while ((resultat = encodeur.encode(caracteres, tampon, true)).isOverflow())
+			vide();
+		while ((resultat = encodeur.flush(tampon)).isOverflow())
+			vide();
+		if (resultat.isError())
+			resultat.throwException();
+		return this;
+	}
+
+	public CanalTampon entier(final int valeur) throws IOException
+	{
+		place(Integer.BYTES);
+		tampon.putInt(valeur);
+		return this;
+	}
+
+	public CanalTampon flottant(final float valeur) throws IOException
+	{
+		place(Float.BYTES);
+		tampon.putFloat(valeur);
+		return this;
+	}
+
+	public CanalTampon octet(final int valeur) throws IOException
+	{
+		place(1);
+		tampon.put((byte)valeur);
+		return this;
+	}
+
+	public CanalTampon octets(final byte[] valeurs) throws IOException
+	{
+		for (int i = 0; i < valeurs.length; )
+		{
+			place(1);
+			final int n = Math.min(tampon.remaining(), valeurs.length-i);
+			tampon.put(valeurs, i, n);
+			i += n;
+		}
+		return this;
+	}
+
+	// Écrit tout ce qui est en attente dans le tampon
+	public void vide() throws IOException
+	{
+		tampon.flip();
+		while (tampon.hasRemaining())
+			canal.write(tampon);
+		tampon.clear();
+	}
+
+	public void close() throws IOException
+	{
+		try
+		{
+			vide();
+		}
+		finally
+		{
+			if (fermeCanal)
+				canal.close();
+		}
+	}
+
+	private void place(final int n) throws IOException
+	{
+		if (tampon.remaining() < n)
+			vide();
+	}
+}
@@ -0,0 +1,102 @@
+package sortie;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+// *****************************************************************************
+// Résultats binaires en colonnes, compacts et relus sans analyse de texte.
+// En petit-boutiste :
+//  - la signature "RESU", la version du format, le genre (0 : blocs,
+//    1 : segments), l'écart entre deux débuts de bloc et la durée d'un bloc
+//    (float32, en secondes), le nombre d'étiquettes puis chaque étiquette
+//    (longueur en octets, UTF-8 complété à un multiple de 4) ;
+//  - des lots d'au plus TailleLot enregistrements, chacun précédé de son
+//    nombre d'enregistrements n et rangé colonne par colonne :
+//      blocs : n numéros de bloc (int32), n scores (float32), n étiquettes
+//      (un octet) ;
+//      segments : n premiers blocs (int32), n derniers blocs (int32), n
+//      confiances moyennes (float32), n étiquettes (un octet) ;
+//    la colonne des étiquettes est complétée à un multiple de 4 ;
+//  - un lot vide (n = 0) marque la fin du fichier.
+
+final class EcrivainBinaire extends EcrivainResultats
+{
+	private static final byte[] Signature = "RESU".getBytes(StandardCharsets.US_ASCII);
+	private static final int Version = 1;
+	private static final int TailleLot = 4096;
+
+	// Lot en cours, colonne par colonne
+	private final int[] debuts = new int[TailleLot];
+	private final int[] fins = new int[TailleLot];
+	private final float[] valeurs = new float[TailleLot];
+	private final byte[] classes = new byte[TailleLot];
+	private int n = 0;
+
+	EcrivainBinaire(final CanalTampon canal, final List<String> etiquettes, final double secondesParBloc,
+			final double dureeBloc, final boolean segments) throws IOException
+	{
+		super(canal, etiquettes, secondesParBloc, dureeBloc, segments);
+		if (etiquettes.size() > 256)
+			throw new IllegalArgumentException("Trop d'étiquettes pour le format binaire : "+etiquettes.size());
+		canal.octets(Signature).entier(Version).entier(segments ? 1 : 0).flottant((float)secondesParBloc)
+				.flottant((float)dureeBloc).entier(etiquettes.size());
+		for (final String etiquette : etiquettes)
+		{
+			final byte[] octets = etiquette.getBytes(StandardCharsets.UTF_8);
+			canal.entier(octets.length).octets(octets);
+			for (int i = octets.length; i%4 != 0; ++i)
+				canal.octet(0);
+		}
+	}
+
+	public void bloc(final int bloc, final int etiquette, final float score, final float confiance) throws IOException
+	{
+		debuts[n] = bloc;
+		valeurs[n] = score;
+		classes[n] = (byte)etiquette;
+		if (++n == TailleLot)
+			ecritLot();
+	}
+
+	public void segment(final int debut, final int fin, final int etiquette, final float confiance) throws IOException
+	{
+		debuts[n] = debut;
+		fins[n] = fin;
+		valeurs[n] = confiance;
+		classes[n] = (byte)etiquette;
+		if (++n == TailleLot)
+			ecritLot();
+	}
+
+	public void close() throws IOException
+	{
+		try
+		{
+			if (n > 0)
+				ecritLot();
+			canal.entier(0);
+		}
+		finally
+		{
+			super.close();
+		}
+	}
+
+	private void ecritLot() throws IOException
+	{
+		canal.entier(n);
+		for (int i = 0; i < n; ++i)
+			canal.entier(debuts[i]);
+		if (segments)
+			for (int i = 0; i < n; ++i)
+				canal.entier(fins[i]);
+		for (int i = 0; i < n; ++i)
+			canal.flottant(valeurs[i]);
+		for (int i = 0; i < n; ++i)
+			canal.octet(classes[i]);
+		for (int i = n; i%4 != 0; ++i)
+			canal.octet(0);
+		n = 0;
+	}
+}
@@ -0,0 +1,52 @@
+package sortie;
+
+import java.io.IOException;
+import java.util.List;
+
+// *****************************************************************************
+// Résultats en CSV, une ligne d'en-tête puis une ligne par bloc :
+//   bloc,debut_s,etiquette,score,confiance
+// ou par segment :
+//   debut,fin,debut_s,fin_s,etiquette,confiance_moyenne
+// Les étiquettes contenant une virgule ou un guillemet sont entre guillemets.
+
+final class EcrivainCsv extends EcrivainResultats
+{
+	private final StringBuilder ligne = new StringBuilder(128);
+
+	EcrivainCsv(final CanalTampon canal, final List<String> etiquettes, final double secondesParBloc,
+			final double dureeBloc, final boolean segments) throws IOException
+	{
+		super(canal, etiquettes, secondesParBloc, dureeBloc, segments);
+		canal.ecrit(segments ? "debut,fin,debut_s,fin_s,etiquette,confiance_moyenne\n"
+				: "bloc,debut_s,etiquette,score,confiance\n");
+	}
+
+	public void bloc(final int bloc, final int etiquette, final float score, final float confiance) throws IOException
+	{
+		ligne.setLength(0);
+		ligne.append(bloc).append(',').append(debut(bloc)).append(',');
+		etiquette(etiquette);
+		ligne.append(',').append(score).append(',').append(confiance).append('\n');
+		canal.ecrit(ligne);
+	}
+
+	public void segment(final int debut, final int fin, final int etiquette, final float confiance) throws IOException
+	{
+		ligne.setLength(0);
+		ligne.append(debut).append(',').append(fin).append(',').append(debut(debut)).append(',').append(fin(fin))
+				.append(',');
+		etiquette(etiquette);
+		ligne.append(',').append(confiance).append('\n');
+		canal.ecrit(ligne);
+	}
+
+	private void etiquette(final int etiquette)
+	{
+		final String nom = etiquettes.get(etiquette);
+		if (nom.indexOf(',') < 0 && nom.indexOf('"') < 0 && nom.indexOf('\n') < 0)
+			ligne.append(nom);
+		else
+			ligne.append('"').append(nom.replace("\"", "\"\"")).append('"');
+	}
+}
@@ -0,0 +1,66 @@
+package sortie;
+
+import java.io.IOException;
+import java.util.List;
+
+// *****************************************************************************
+// Résultats en JSON Lines, un objet par ligne et par bloc :
+//   {"bloc":12,"debut_s":0.768,"etiquette":"Chat","score":0.91,"confiance":0.91}
+// ou par segment :
+//   {"debut":12,"fin":40,"debut_s":0.768,"fin_s":2.624,"etiquette":"Chat","confiance":0.87}
+
+final class EcrivainJsonl extends EcrivainResultats
+{
+	private final StringBuilder ligne = new StringBuilder(128);
+	// Étiquettes déjà écrites en chaînes JSON, guillemets compris
+	private final String[] chaines;
+
+	EcrivainJsonl(final CanalTampon canal, final List<String> etiquettes, final double secondesParBloc,
+			final double dureeBloc, final boolean segments)
+	{
+		super(canal, etiquettes, secondesParBloc, dureeBloc, segments);
+		chaines = new String[etiquettes.size()];
+		for (int k = 0; k < chaines.length; ++k)
+			chaines[k] = chaine(etiquettes.get(k));
+	}
+
+	public void bloc(final int bloc, final int etiquette, final float score, final float confiance) throws IOException
+	{
+		ligne.setLength(0);
+		ligne.append("{\"bloc\":").append(bloc).append(",\"debut_s\":").append(debut(bloc))
+				.append(",\"etiquette\":").append(chaines[etiquette]).append(",\"score\":").append(nombre(score))
+				.append(",\"confiance\":").append(nombre(confiance)).append("}\n");
+		canal.ecrit(ligne);
+	}
+
+	public void segment(final int debut, final int fin, final int etiquette, final float confiance) throws IOException
+	{
+		ligne.setLength(0);
+		ligne.append("{\"debut\":").append(debut).append(",\"fin\":").append(fin).append(",\"debut_s\":")
+				.append(debut(debut)).append(",\"fin_s\":").append(fin(fin)).append(",\"etiquette\":")
+				.append(chaines[etiquette]).append(",\"confiance\":").append(nombre(confiance)).append("}\n");
+		canal.ecrit(ligne);
+	}
+
+	// NaN et infinis n'existent pas en JSON
+	private static String nombre(final float valeur)
+	{
+		return Float.isFinite(valeur) ? Float.toString(valeur) : "null";
+	}
+
+	private static String chaine(final String texte)
+	{
+		final StringBuilder resultat = new StringBuilder(texte.length()+2).append('"');
+		for (int i = 0; i < texte.length(); ++i)
+		{
+			final char c = texte.charAt(i);
+			if (c == '"' || c == '\\')
+				resultat.append('\\').append(c);
+			else if (c < 0x20)
+				resultat.append(String.format("\\u%04x", (int)c));
+			else
+				resultat.append(c);
+		}
+		return resultat.append('"').toString();
+	}
+}
@@ -0,0 +1,73 @@
+package sortie;
+
+import java.io.IOException;
+import java.util.List;
+
+// *****************************************************************************
+// Fichier de résultats de l'analyse d'un fichier long, dans l'un des formats
+// de Format : un enregistrement par bloc (numéro, score brut du modèle,
+// étiquette et confiance dans celle-ci), ou, en mode segments, un par suite
+// de blocs consécutifs de même étiquette (premier et dernier bloc, étiquette,
+// confiance moyenne ; voir Segmentation). Les étiquettes sont désignées par
+// leur indice dans la liste donnée à l'ouverture.
+// Tout passe par un CanalTampon : les résultats ne sont écrits qu'une fois
+// le tampon plein, et jamais ligne par ligne.
+
+public abstract class EcrivainResultats implements AutoCloseable
+{
+	protected final CanalTampon canal;
+	protected final List<String> etiquettes;
+	protected final boolean segments;
+	private final double secondesParBloc;
+	private final double dureeBloc;
+
+	EcrivainResultats(final CanalTampon canal, final List<String> etiquettes, final double secondesParBloc,
+			final double dureeBloc, final boolean segments)
+	{
+		this.canal = canal;
+		this.etiquettes = etiquettes;
+		this.secondesParBloc = secondesParBloc;
+		this.dureeBloc = dureeBloc;
+		this.segments = segments;
+	}
+
+	// Crée le fichier "chemin" ; secondesParBloc : écart entre les débuts de
+	// deux blocs consécutifs, dureeBloc : durée d'un bloc (en secondes)
+	public static EcrivainResultats ouvre(final Format format, final String chemin, final List<String> etiquettes,
+			final double secondesParBloc, final double dureeBloc, final boolean segments) throws IOException
+	{
+		final CanalTampon canal = CanalTampon.fichier(chemin);
+		try
+		{
+			switch (format)
+			{
+				case CSV: return new EcrivainCsv(canal, etiquettes, secondesParBloc, dureeBloc, segments);
+				case JSONL: return new EcrivainJsonl(canal, etiquettes, secondesParBloc, dureeBloc, segments);
+				case BINAIRE: return new EcrivainBinaire(canal, etiquettes, secondesParBloc, dureeBloc, segments);
+				default: throw new IllegalArgumentException("Pas de fichier de résultats au format "+format);
+			}
+		}
+		catch (IOException | RuntimeException e)
+		{
+			canal.close();
+			throw e;
+		}
+	}
+
+	// Résultat d'un bloc (hors mode segments)
+	public abstract void bloc(int bloc, int etiquette, float score, float confiance) throws IOException;
+
+	// Blocs debut à fin inclus, de même étiquette (mode segments)
+	public abstract void segment(int debut, int fin, int etiquette, float confiance) throws IOException;
+
+	public void close() throws IOException
+	{
+		canal.close();
+	}
+
+	// Début du bloc, et fin du bloc, en secondes arrondies à la milliseconde
+	protected double debut(final int bloc) {return Math.round(bloc*secondesParBloc*1000)/1000.;}
+	protected double fin(final int bloc) {return Math.round((bloc*secondesParBloc+dureeBloc)*1000)/1000.;}
+	protected double secondesParBloc() {return secondesParBloc;}
+	protected double dureeBloc() {return dureeBloc;}
+}
@@ -0,0 +1,49 @@
+package sortie;
+
+import java.util.Locale;
+
+// *****************************************************************************
+// Formats des résultats de l'analyse d'un fichier long : résumé lisible sur
+// la console, ou fichier CSV, JSON Lines (un objet par ligne) ou binaire en
+// colonnes (voir EcrivainBinaire).
+
+public enum Format
+{
+	RESUME("txt"),
+	CSV("csv"),
+	JSONL("jsonl"),
+	BINAIRE("bin");
+
+	private final String extension;
+
+	Format(final String extension)
+	{
+		this.extension = extension;
+	}
+
+	public String extension() {return extension;}
+
+	// Format désigné par son nom (resume, csv, jsonl, bin)
+	public static Format depuisNom(final String nom)
+	{
+		switch (nom.toLowerCase(Locale.ROOT))
+		{
+			case "resume": case "résumé": case "txt": return RESUME;
+			case "csv": return CSV;
+			case "jsonl": case "json": return JSONL;
+			case "bin": case "binaire": return BINAIRE;
+			default: throw new IllegalArgumentException("Format de sortie inconnu : "+nom);
+		}
+	}
+
+	// Format d'un fichier de résultats d'après son extension (CSV par défaut)
+	public static Format depuisFichier(final String chemin)
+	{
+		final int point = chemin.lastIndexOf('.');
+		if (point >= 0)
+			for (final Format format : values())
+				if (format != RESUME && format.extension.equalsIgnoreCase(chemin.substring(point+1)))
+					return format;
+		return CSV;
+	}
+}
@@ -0,0 +1,164 @@
+package sortie;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+// *****************************************************************************
+// Regroupement des blocs consécutifs de même étiquette en segments
+// [premier bloc, dernier bloc, étiquette, confiance moyenne], au fil de
+// l'analyse et en mémoire constante.
+// Les valeurs d'un bloc sont soit la sortie d'un neurone chat/chien
+// (étiquette 1 au-dessus de 0.5, 0 sinon), soit la probabilité de chaque
+// classe (étiquette : la plus probable). Avant la décision, deux lissages
+// facultatifs évitent qu'un bloc isolé ne coupe un long segment :
+//  - médian : chaque valeur est remplacée par la médiane des "lissage" blocs
+//    centrés sur le bloc (ce qui retarde la décision de lissage/2 blocs) ;
+//  - hystérésis : l'étiquette ne change que si la nouvelle l'emporte d'au
+//    moins "hysteresis" (sortie au-delà de 0.5 +- hysteresis, ou probabilité
+//    supérieure d'autant à celle de l'étiquette courante).
+// La confiance moyenne d'un segment est celle des valeurs non lissées de ses
+// blocs dans son étiquette.
+
+public final class Segmentation
+{
+	// Reçoit chaque segment terminé
+	@FunctionalInterface
+	public interface Ecouteur
+	{
+		public void segment(int debut, int fin, int etiquette, float confiance) throws IOException;
+	}
+
+	private final int nbValeurs;
+	private final int lissage;
+	private final int rayon;
+	private final float hysteresis;
+	private final Ecouteur ecouteur;
+
+	// Valeurs des "lissage" derniers blocs, ligne (bloc % lissage) par ligne
+	private final float[] fenetre;
+	private final float[] colonne;
+	private final float[] lissees;
+	private int premier = -1;
+	private int dernier = -1;
+	// Prochain bloc à étiqueter
+	private int prochain = 0;
+
+	// Segment en cours
+	private int etiquette = -1;
+	private int debutSegment = 0;
+	private double sommeConfiances = 0;
+	private int nbSegments = 0;
+
+	// nbValeurs : 1 pour un neurone chat/chien, sinon le nombre de classes ;
+	// lissage : nombre impair de blocs du lissage médian (1 : aucun) ;
+	// hysteresis : écart exigé pour changer d'étiquette (0 : aucun)
+	public Segmentation(final int nbValeurs, final int lissage, final float hysteresis, final Ecouteur ecouteur)
+	{
+		if (nbValeurs < 1 || lissage < 1 || lissage%2 == 0 || !(hysteresis >= 0))
+			throw new IllegalArgumentException("Segmentation invalide : "+nbValeurs+" valeurs, lissage "+lissage
+					+", hystérésis "+hysteresis);
+		this.nbValeurs = nbValeurs;
+		this.lissage = lissage;
+		this.hysteresis = hysteresis;
+		this.ecouteur = ecouteur;
+		rayon = lissage/2;
+		fenetre = new float[lissage*nbValeurs];
+		colonne = new float[lissage];
+		lissees = new float[nbValeurs];
+	}
+
+	public int nbSegments() {return nbSegments;}
+
+	// Ajoute le bloc suivant, de valeurs valeurs[debut..debut+nbValeurs[ ;
+	// les blocs arrivent dans l'ordre, sans trou
+	public void ajoute(final int bloc, final float[] valeurs, final int debut) throws IOException
+	{
+		if (premier < 0)
+			premier = prochain = bloc;
+		else if (bloc != dernier+1)
+			throw new IllegalArgumentException("Bloc "+bloc+" reçu après le bloc "+dernier);
+		System.arraycopy(valeurs, debut, fenetre, (bloc%lissage)*nbValeurs, nbValeurs);
+		dernier = bloc;
+		while (prochain+rayon <= dernier)
+			etiquette(prochain++);
+	}
+
+	// Étiquette les derniers blocs et termine le dernier segment
+	public void termine() throws IOException
+	{
+		if (premier < 0)
+			return;
+		while (prochain <= dernier)
+			etiquette(prochain++);
+		if (etiquette >= 0)
+			termineSegment(dernier);
+		etiquette = -1;
+	}
+
+	private void etiquette(final int bloc) throws IOException
+	{
+		// Médiane de chaque valeur sur les blocs voisins (moins aux extrémités)
+		final int debut = Math.max(premier, bloc-rayon), fin = Math.min(dernier, bloc+rayon);
+		for (int v = 0; v < nbValeurs; ++v)
+		{
+			if (debut == fin)
+			{
+				lissees[v] = fenetre[(bloc%lissage)*nbValeurs+v];
+				continue;
+			}
+			final int n = fin-debut+1;
+			for (int b = debut; b <= fin; ++b)
+				colonne[b-debut] = fenetre[(b%lissage)*nbValeurs+v];
+			Arrays.sort(colonne, 0, n);
+			lissees[v] = n%2 == 1 ? colonne[n/2] : (colonne[n/2-1]+colonne[n/2])/2;
+		}
+
+		final int nouvelle = decide();
+		if (nouvelle != etiquette)
+		{
+			if (etiquette >= 0)
+				termineSegment(bloc-1);
+			etiquette = nouvelle;
+			debutSegment = bloc;
+			sommeConfiances = 0;
+		}
+		sommeConfiances += confiance(fenetre, (bloc%lissage)*nbValeurs, nbValeurs, etiquette);
+	}
+
+	// Étiquette des valeurs lissées, compte tenu de l'étiquette courante
+	private int decide()
+	{
+		if (nbValeurs == 1)
+		{
+			final float sortie = lissees[0];
+			if (etiquette < 0)
+				return sortie > 0.5f ? 1 : 0;
+			if (etiquette == 1 && hysteresis > 0)
+				return sortie < 0.5f-hysteresis ? 0 : 1;
+			return sortie > 0.5f+hysteresis ? 1 : 0;
+		}
+		int meilleure = 0;
+		for (int k = 1; k < nbValeurs; ++k)
+			if (lissees[k] > lissees[meilleure])
+				meilleure = k;
+		if (etiquette < 0 || meilleure == etiquette || lissees[meilleure] > lissees[etiquette]+hysteresis)
+			return meilleure;
+		return etiquette;
+	}
+
+	private void termineSegment(final int fin) throws IOException
+	{
+		++nbSegments;
+		ecouteur.segment(debutSegment, fin, etiquette, (float)(sommeConfiances/(fin-debutSegment+1)));
+	}
+
+	// Confiance des valeurs valeurs[debut..] dans l'étiquette : probabilité
+	// de la classe, ou sortie chat/chien ramenée entre 0 et 1
+	public static float confiance(final float[] valeurs, final int debut, final int nbValeurs, final int etiquette)
+	{
+		if (nbValeurs > 1)
+			return valeurs[debut+etiquette];
+		final float sortie = Math.max(0.f, Math.min(1.f, valeurs[debut]));
+		return etiquette == 1 ? sortie : 1-sortie;
+	}
+}
@@ -0,0 +1,132 @@
+package sortie;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+public class testSortie
+{
+	/**
+	 * Vérifie le regroupement en segments, ses lissages, et les fichiers de
+	 * résultats dans chaque format.
+	 * @param args Aucun argument n'est attendu.
+	 */
+	public static void main(final String[] args) throws IOException
+	{
+		boolean succes = true;
+
+		// Sorties chat/chien : un bloc isolé coupe un segment, sauf lissé
+		final float[] sorties = {0.9f, 0.8f, 0.2f, 0.9f, 0.7f, 0.1f, 0.2f, 0.3f, 0.45f, 0.55f, 0.45f, 0.1f};
+		succes &= verifie("segments sans lissage",
+				segments(sorties, 1, 1, 0).equals("0-1:1 2-2:0 3-4:1 5-8:0 9-9:1 10-11:0"));
+		succes &= verifie("segments lissés par une médiane sur 3 blocs",
+				segments(sorties, 1, 3, 0).equals("0-4:1 5-11:0"));
+		succes &= verifie("segments avec hystérésis de 0.1",
+				segments(sorties, 1, 1, 0.1f).equals("0-1:1 2-2:0 3-4:1 5-11:0"));
+		final List<float[]> liste = new ArrayList<>();
+		final Segmentation moyenne = new Segmentation(1, 1, 0, (d, f, e, c) -> liste.add(new float[] {d, f, e, c}));
+		for (int i = 0; i < 3; ++i)
+			moyenne.ajoute(i, new float[] {0.6f+0.1f*i}, 0);
+		moyenne.termine();
+		succes &= verifie("confiance moyenne d'un segment",
+				liste.size() == 1 && Math.abs(liste.get(0)[3]-0.7f) < 1e-6f);
+
+		// Probabilités de trois classes
+		final float[] probabilites = {0.6f, 0.3f, 0.1f, 0.4f, 0.45f, 0.15f, 0.2f, 0.2f, 0.6f, 0.1f, 0.1f, 0.8f};
+		succes &= verifie("segments de plusieurs classes", segments(probabilites, 3, 1, 0).equals("0-0:0 1-1:1 2-3:2"));
+		succes &= verifie("hystérésis entre classes", segments(probabilites, 3, 1, 0.1f).equals("0-1:0 2-3:2"));
+
+		// Fichiers de résultats
+		final Path dossier = Files.createTempDirectory("testSortie");
+		final List<String> etiquettes = List.of("Chien", "Chat, \"tigré\"");
+		final Path csv = dossier.resolve("r.csv");
+		try (EcrivainResultats ecrivain = EcrivainResultats.ouvre(Format.depuisFichier(csv.toString()), csv.toString(),
+				etiquettes, 0.064, 0.064, false))
+		{
+			ecrivain.bloc(0, 0, 0.25f, 0.75f);
+			ecrivain.bloc(1, 1, 1.f, 1.f);
+		}
+		succes &= verifie("fichier CSV", Files.readString(csv).equals(
+				"bloc,debut_s,etiquette,score,confiance\n0,0.0,Chien,0.25,0.75\n1,0.064,\"Chat, \"\"tigré\"\"\",1.0,1.0\n"));
+
+		final Path jsonl = dossier.resolve("r.jsonl");
+		try (EcrivainResultats ecrivain = EcrivainResultats.ouvre(Format.JSONL, jsonl.toString(), etiquettes, 0.032,
+				0.064, true))
+		{
+			ecrivain.segment(2, 5, 1, 0.5f);
+		}
+		succes &= verifie("fichier JSON Lines", Files.readString(jsonl).equals(
+				"{\"debut\":2,\"fin\":5,\"debut_s\":0.064,\"fin_s\":0.224,\"etiquette\":\"Chat, \\\"tigré\\\"\","
+						+"\"confiance\":0.5}\n"));
+
+		// Binaire : plus d'un lot de blocs, relu colonne par colonne
+		final Path bin = dossier.resolve("r.bin");
+		final int n = 5000;
+		try (EcrivainResultats ecrivain = EcrivainResultats.ouvre(Format.BINAIRE, bin.toString(), etiquettes, 0.064,
+				0.064, false))
+		{
+			for (int i = 0; i < n; ++i)
+				ecrivain.bloc(i, i%2, i/(float)n, 0);
+		}
+		succes &= verifie("fichier binaire en colonnes", relitBinaire(bin, etiquettes, n));
+
+		System.out.println(succes ? "Tous les tests de sortie sont passés" : "ÉCHEC d'au moins un test");
+		if (!succes)
+			System.exit(1);
+	}
+
+	// Segments des blocs de valeurs consécutives (nbValeurs par bloc), sous la
+	// forme "debut-fin:etiquette ..."
+	static String segments(final float[] valeurs, final int nbValeurs, final int lissage, final float hysteresis)
+			throws IOException
+	{
+		final StringBuilder texte = new StringBuilder();
+		final Segmentation segmentation = new Segmentation(nbValeurs, lissage, hysteresis,
+				(debut, fin, etiquette, confiance) -> texte.append(texte.length() > 0 ? " " : "").append(debut)
+						.append('-').append(fin).append(':').append(etiquette));
+		for (int i = 0; i < valeurs.length/nbValeurs; ++i)
+			segmentation.ajoute(i, valeurs, i*nbValeurs);
+		segmentation.termine();
+		return texte.toString();
+	}
+
+	static boolean relitBinaire(final Path fichier, final List<String> etiquettes, final int n) throws IOException
+	{
+		final ByteBuffer octets = ByteBuffer.wrap(Files.readAllBytes(fichier)).order(ByteOrder.LITTLE_ENDIAN);
+		final byte[] signature = new byte[4];
+		octets.get(signature);
+		boolean ok = new String(signature, StandardCharsets.US_ASCII).equals("RESU") && octets.getInt() == 1
+				&& octets.getInt() == 0 && octets.getFloat() == 0.064f && octets.getFloat() == 0.064f
+				&& octets.getInt() == etiquettes.size();
+		for (final String etiquette : etiquettes)
+		{
+			final byte[] nom = new byte[octets.getInt()];
+			octets.get(nom);
+			ok &= new String(nom, StandardCharsets.UTF_8).equals(etiquette);
+			octets.position((octets.position()+3)/4*4);
+		}
+		int lus = 0;
+		for (int taille; ok && (taille = octets.getInt()) > 0; lus += taille)
+		{
+			for (int i = 0; i < taille; ++i)
+				ok &= octets.getInt() == lus+i;
+			for (int i = 0; i < taille; ++i)
+				ok &= octets.getFloat() == (lus+i)/(float)n;
+			for (int i = 0; i < taille; ++i)
+				ok &= octets.get() == (lus+i)%2;
+			octets.position((octets.position()+3)/4*4);
+		}
+		return ok && lus == n && !octets.hasRemaining();
+	}
+
+	static boolean verifie(final String nom, final boolean condition)
+	{
+		System.out.println((condition ? "OK     " : "ÉCHEC  ")+nom);
+		return condition;
+	}
+}